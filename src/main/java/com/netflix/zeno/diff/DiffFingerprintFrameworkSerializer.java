@@ -0,0 +1,188 @@
+/*
+ *
+ *  Copyright 2013 Netflix, Inc.
+ *
+ *     Licensed under the Apache License, Version 2.0 (the "License");
+ *     you may not use this file except in compliance with the License.
+ *     You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *     Unless required by applicable law or agreed to in writing, software
+ *     distributed under the License is distributed on an "AS IS" BASIS,
+ *     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *     See the License for the specific language governing permissions and
+ *     limitations under the License.
+ *
+ */
+package com.netflix.zeno.diff;
+
+import com.netflix.zeno.serializer.FrameworkSerializer;
+import com.netflix.zeno.serializer.SerializationFramework;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Defines operations required to fold individual POJO primitive elements into DiffFingerprintRecords.<p/>
+ *
+ * Values are fingerprinted exactly as the {@link DiffRecord} compares them:  floating point values by their bit patterns,
+ * enums by their names, and Strings by their characters.  Elements of sets and maps are combined independently of
+ * their iteration order.
+ */
+public class DiffFingerprintFrameworkSerializer extends FrameworkSerializer<DiffFingerprintRecord> {
+
+    private static final long NULL_VALUE = 0x2F8D1E5A3B6C7049L;
+
+    public DiffFingerprintFrameworkSerializer(SerializationFramework framework) {
+        super(framework);
+    }
+
+    @Override
+    public void serializePrimitive(DiffFingerprintRecord rec, String fieldName, Object value) {
+        writeFieldName(rec, fieldName);
+
+        if(value == null) {
+            rec.write(NULL_VALUE);
+        } else if(value instanceof String) {
+            rec.write((String)value);
+        } else if(value instanceof Integer) {
+            rec.write(((Integer)value).intValue());
+        } else if(value instanceof Long) {
+            rec.write(((Long)value).longValue());
+        } else if(value instanceof Boolean) {
+            rec.write(((Boolean)value).booleanValue() ? 1 : 0);
+        } else if(value instanceof Double) {
+            rec.write(Double.doubleToLongBits(((Double)value).doubleValue()));
+        } else if(value instanceof Float) {
+            rec.write(Float.floatToIntBits(((Float)value).floatValue()));
+        } else if(value instanceof Enum) {
+            rec.write(((Enum<?>)value).name());
+        } else {
+            rec.unfingerprintable();
+        }
+    }
+
+    @Override
+    public void serializePrimitive(DiffFingerprintRecord rec, String fieldName, int value) {
+        writeFieldName(rec, fieldName);
+        rec.write(value);
+    }
+
+    @Override
+    public void serializePrimitive(DiffFingerprintRecord rec, String fieldName, long value) {
+        writeFieldName(rec, fieldName);
+        rec.write(value);
+    }
+
+    @Override
+    public void serializePrimitive(DiffFingerprintRecord rec, String fieldName, float value) {
+        writeFieldName(rec, fieldName);
+        rec.write(Float.floatToIntBits(value));
+    }
+
+    @Override
+    public void serializePrimitive(DiffFingerprintRecord rec, String fieldName, double value) {
+        writeFieldName(rec, fieldName);
+        rec.write(Double.doubleToLongBits(value));
+    }
+
+    @Override
+    public void serializePrimitive(DiffFingerprintRecord rec, String fieldName, boolean value) {
+        writeFieldName(rec, fieldName);
+        rec.write(value ? 1 : 0);
+    }
+
+    @Override
+    public void serializeBytes(DiffFingerprintRecord rec, String fieldName, byte[] value) {
+        writeFieldName(rec, fieldName);
+        if(value == null)
+            rec.write(NULL_VALUE);
+        else
+            rec.write(value);
+    }
+
+    @Deprecated
+    @Override
+    @SuppressWarnings("unchecked")
+    public void serializeObject(DiffFingerprintRecord rec, String fieldName, String typeName, Object obj) {
+        writeFieldName(rec, fieldName);
+
+        if(obj == null) {
+            rec.write(NULL_VALUE);
+            return;
+        }
+
+        getSerializer(typeName).serialize(obj, rec);
+    }
+
+    @Override
+    public void serializeObject(DiffFingerprintRecord rec, String fieldName, Object obj) {
+        serializeObject(rec, fieldName, rec.getSchema().getObjectType(fieldName), obj);
+    }
+
+    @Override
+    public <T> void serializeList(DiffFingerprintRecord rec, String fieldName, String typeName, Collection<T> obj) {
+        writeFieldName(rec, fieldName);
+
+        if(obj == null) {
+            rec.write(NULL_VALUE);
+            return;
+        }
+
+        rec.write(obj.size());
+
+        for(T t : obj) {
+            serializeObject(rec, "element", typeName, t);
+        }
+    }
+
+    @Override
+    public <T> void serializeSet(DiffFingerprintRecord rec, String fieldName, String typeName, Set<T> obj) {
+        writeFieldName(rec, fieldName);
+
+        if(obj == null) {
+            rec.write(NULL_VALUE);
+            return;
+        }
+
+        long combinedElements = 0;
+
+        for(T t : obj) {
+            long existing = rec.beginElement();
+            serializeObject(rec, "element", typeName, t);
+            combinedElements += rec.finishElement(existing);
+        }
+
+        rec.write(obj.size());
+        rec.write(combinedElements);
+    }
+
+    @Override
+    public <K, V> void serializeMap(DiffFingerprintRecord rec, String fieldName, String keyTypeName, String valueTypeName, Map<K, V> obj) {
+        writeFieldName(rec, fieldName);
+
+        if(obj == null) {
+            rec.write(NULL_VALUE);
+            return;
+        }
+
+        long combinedEntries = 0;
+
+        for(Map.Entry<K, V> entry : obj.entrySet()) {
+            long existing = rec.beginElement();
+            serializeObject(rec, "key", keyTypeName, entry.getKey());
+            serializeObject(rec, "value", valueTypeName, entry.getValue());
+            combinedEntries += rec.finishElement(existing);
+        }
+
+        rec.write(obj.size());
+        rec.write(combinedEntries);
+    }
+
+    private void writeFieldName(DiffFingerprintRecord rec, String fieldName) {
+        rec.write(fieldName.hashCode());
+    }
+
+}
@@ -0,0 +1,161 @@
+/*
+ *
+ *  Copyright 2013 Netflix, Inc.
+ *
+ *     Licensed under the Apache License, Version 2.0 (the "License");
+ *     you may not use this file except in compliance with the License.
+ *     You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *     Unless required by applicable law or agreed to in writing, software
+ *     distributed under the License is distributed on an "AS IS" BASIS,
+ *     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *     See the License for the specific language governing permissions and
+ *     limitations under the License.
+ *
+ */
+package com.netflix.zeno.diff;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * A compact index from the key of each Object of a single type in a data state to that Object's ordinal and fingerprint.<p/>
+ *
+ * This is used by the snapshot file diff in {@link DiffOperation} to determine which Objects differ between two data states
+ * without holding both states in memory simultaneously.<p/>
+ *
+ * The keys themselves are not retained.  Each entry is the key's hashCode(), ordinal, and fingerprint, held in parallel primitive
+ * arrays and located through an open-addressed hash table.  A key hash match is confirmed by the fingerprints:  a pair is only identical
+ * if its key hashes are equal, exactly one indexed entry has that key hash, and the fingerprints are equal.  Any other hash hit marks
+ * the indexed entries as changed, so that their Objects are re-read and matched by key when the changed Objects are diffed.
+ */
+public class DiffFingerprintIndex {
+
+    private int keyHashes[];
+    private int ordinals[];
+    private long fingerprints[];
+    private final BitSet unfingerprintable;
+    private final BitSet matched;
+    private final BitSet changed;
+    private int size;
+
+    /// each slot contains an index into the entry arrays, or -1 if the slot is empty.
+    private int hashTable[];
+
+    public DiffFingerprintIndex() {
+        this.keyHashes = new int[256];
+        this.ordinals = new int[256];
+        this.fingerprints = new long[256];
+        this.unfingerprintable = new BitSet();
+        this.matched = new BitSet();
+        this.changed = new BitSet();
+        this.hashTable = newHashTable(512);
+    }
+
+    public void add(Object key, int ordinal, DiffFingerprintRecord rec) {
+        if(size == ordinals.length)
+            growEntries();
+
+        keyHashes[size] = key.hashCode();
+        ordinals[size] = ordinal;
+        fingerprints[size] = rec.getFingerprint();
+        if(!rec.isFingerprintable())
+            unfingerprintable.set(size);
+
+        if((size + 1) * 4 > hashTable.length * 3)
+            growHashTable();
+        insert(hashTable, size);
+
+        size++;
+    }
+
+    /**
+     * Match an Object from the other data state against this index.
+     *
+     * @return true if exactly one indexed Object has the same key hash, and the fingerprints of the two Objects are identical.
+     */
+    public boolean matchIdentical(Object key, DiffFingerprintRecord rec) {
+        int keyHash = key.hashCode();
+        int mask = hashTable.length - 1;
+        int bucket = hashBucket(keyHash, mask);
+
+        int matchedEntry = -1;
+        boolean ambiguous = false;
+
+        while(hashTable[bucket] != -1) {
+            int entry = hashTable[bucket];
+            if(keyHashes[entry] == keyHash) {
+                matched.set(entry);
+                if(matchedEntry == -1) {
+                    matchedEntry = entry;
+                } else {
+                    changed.set(entry);
+                    ambiguous = true;
+                }
+            }
+            bucket = (bucket + 1) & mask;
+        }
+
+        if(matchedEntry == -1)
+            return false;
+
+        if(!ambiguous && !unfingerprintable.get(matchedEntry) && rec.isFingerprintable() && fingerprints[matchedEntry] == rec.getFingerprint())
+            return true;
+
+        changed.set(matchedEntry);
+        return false;
+    }
+
+    /**
+     * @return the set of ordinals in the indexed data state which were either unmatched or changed.
+     */
+    public BitSet getUnmatchedOrChangedOrdinals() {
+        BitSet ordinalSet = new BitSet();
+        for(int i=0;i<size;i++) {
+            if(!matched.get(i) || changed.get(i))
+                ordinalSet.set(ordinals[i]);
+        }
+        return ordinalSet;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    private void growEntries() {
+        int newLength = ordinals.length * 2;
+        keyHashes = Arrays.copyOf(keyHashes, newLength);
+        ordinals = Arrays.copyOf(ordinals, newLength);
+        fingerprints = Arrays.copyOf(fingerprints, newLength);
+    }
+
+    private void growHashTable() {
+        int newHashTable[] = newHashTable(hashTable.length * 2);
+        for(int i=0;i<size;i++)
+            insert(newHashTable, i);
+        hashTable = newHashTable;
+    }
+
+    private void insert(int table[], int entry) {
+        int mask = table.length - 1;
+        int bucket = hashBucket(keyHashes[entry], mask);
+        while(table[bucket] != -1)
+            bucket = (bucket + 1) & mask;
+        table[bucket] = entry;
+    }
+
+    private static int[] newHashTable(int length) {
+        int table[] = new int[length];
+        Arrays.fill(table, -1);
+        return table;
+    }
+
+    /// spread the bits of the key hash, since keys are frequently sequential Integers.
+    private static int hashBucket(int keyHash, int mask) {
+        int hash = keyHash * 0x9E3779B9;
+        return (hash ^ (hash >>> 16)) & mask;
+    }
+
+}
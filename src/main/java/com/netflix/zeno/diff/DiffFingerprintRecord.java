@@ -0,0 +1,96 @@
+/*
+ *
+ *  Copyright 2013 Netflix, Inc.
+ *
+ *     Licensed under the Apache License, Version 2.0 (the "License");
+ *     you may not use this file except in compliance with the License.
+ *     You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *     Unless required by applicable law or agreed to in writing, software
+ *     distributed under the License is distributed on an "AS IS" BASIS,
+ *     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *     See the License for the specific language governing permissions and
+ *     limitations under the License.
+ *
+ */
+package com.netflix.zeno.diff;
+
+import com.netflix.zeno.serializer.NFSerializationRecord;
+
+/**
+ * A DiffFingerprintRecord accumulates a 64-bit fingerprint of all fields at all levels in an NFTypeSerializer hierarchy.<p/>
+ *
+ * Two Objects with equal fingerprints are considered identical by the {@link TypeDiffOperation} fast path, which then skips
+ * building their {@link DiffRecord}s.  If a value is encountered which cannot be reliably fingerprinted, the record is
+ * marked as such, and the Objects are always compared field by field.
+ */
+public class DiffFingerprintRecord extends NFSerializationRecord {
+
+    private static final long SEED = 0xCBF29CE484222325L;
+    private static final long MULTIPLIER = 0x9E3779B97F4A7C15L;
+
+    private long fingerprint = SEED;
+    private boolean fingerprintable = true;
+
+    public void write(long value) {
+        fingerprint = (fingerprint ^ value) * MULTIPLIER;
+        fingerprint ^= fingerprint >>> 29;
+    }
+
+    public void write(String value) {
+        write(value.length());
+        for(int i=0;i<value.length();i++) {
+            write(value.charAt(i));
+        }
+    }
+
+    public void write(byte[] value) {
+        write(value.length);
+        for(int i=0;i<value.length;i++) {
+            write(value[i]);
+        }
+    }
+
+    /**
+     * Mark this record as containing a value which cannot be fingerprinted.
+     */
+    public void unfingerprintable() {
+        fingerprintable = false;
+    }
+
+    public boolean isFingerprintable() {
+        return fingerprintable;
+    }
+
+    public long getFingerprint() {
+        return fingerprint;
+    }
+
+    /**
+     * Begin fingerprinting an element of an unordered collection, returning the fingerprint accumulated so far.
+     */
+    long beginElement() {
+        long existing = fingerprint;
+        fingerprint = SEED;
+        return existing;
+    }
+
+    /**
+     * Finish fingerprinting an element of an unordered collection, restoring the fingerprint accumulated before the element.
+     *
+     * @return the element's fingerprint.
+     */
+    long finishElement(long existing) {
+        long elementFingerprint = fingerprint;
+        fingerprint = existing;
+        return elementFingerprint;
+    }
+
+    public void clear() {
+        fingerprint = SEED;
+        fingerprintable = true;
+    }
+
+}
@@ -0,0 +1,35 @@
+/*
+ *
+ *  Copyright 2013 Netflix, Inc.
+ *
+ *     Licensed under the Apache License, Version 2.0 (the "License");
+ *     you may not use this file except in compliance with the License.
+ *     You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *     Unless required by applicable law or agreed to in writing, software
+ *     distributed under the License is distributed on an "AS IS" BASIS,
+ *     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *     See the License for the specific language governing permissions and
+ *     limitations under the License.
+ *
+ */
+package com.netflix.zeno.diff;
+
+import com.netflix.zeno.serializer.SerializationFramework;
+import com.netflix.zeno.serializer.SerializerFactory;
+
+/**
+ * This class is used in the context of the Zeno diff operation to quickly identify matching Objects which are identical, so
+ * that the more expensive {@link DiffSerializationFramework} traversal may be skipped for them.  It's unlikely that users will
+ * want to use this directly.<p/>
+ */
+public class DiffFingerprintSerializationFramework extends SerializationFramework {
+
+    public DiffFingerprintSerializationFramework(SerializerFactory serializerFactory) {
+        super(serializerFactory);
+        this.frameworkSerializer = new DiffFingerprintFrameworkSerializer(this);
+    }
+
+}
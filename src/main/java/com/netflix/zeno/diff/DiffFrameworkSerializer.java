@@ -44,6 +44,31 @@ public class DiffFrameworkSerializer extends FrameworkSerializer<DiffRecord> {
         rec.serializePrimitive(fieldName, value);
     }
 
+    @Override
+    public void serializePrimitive(DiffRecord rec, String fieldName, int value) {
+        rec.serializePrimitive(fieldName, value);
+    }
+
+    @Override
+    public void serializePrimitive(DiffRecord rec, String fieldName, long value) {
+        rec.serializePrimitive(fieldName, value);
+    }
+
+    @Override
+    public void serializePrimitive(DiffRecord rec, String fieldName, float value) {
+        rec.serializePrimitive(fieldName, value);
+    }
+
+    @Override
+    public void serializePrimitive(DiffRecord rec, String fieldName, double value) {
+        rec.serializePrimitive(fieldName, value);
+    }
+
+    @Override
+    public void serializePrimitive(DiffRecord rec, String fieldName, boolean value) {
+        rec.serializePrimitive(fieldName, value);
+    }
+
     @Override
     public void serializeBytes(DiffRecord rec, String fieldName, byte[] value) {
         rec.serializePrimitive(fieldName, new DiffByteArray(value));
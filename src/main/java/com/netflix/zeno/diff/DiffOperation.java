@@ -18,14 +18,32 @@
 package com.netflix.zeno.diff;
 
 import com.netflix.zeno.fastblob.FastBlobStateEngine;
+import com.netflix.zeno.fastblob.io.FastBlobReader;
+import com.netflix.zeno.fastblob.io.FastBlobReaderEventHandler;
+import com.netflix.zeno.fastblob.state.TypeDeserializationStateListener;
+import com.netflix.zeno.serializer.NFTypeSerializer;
 import com.netflix.zeno.serializer.SerializerFactory;
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.apache.commons.lang.mutable.MutableInt;
 
 public class DiffOperation {
 
     private final SerializerFactory serializerFactory;
     private final DiffInstruction instruction;
+    private boolean skipIdenticalObjects;
+    private int maxSamples = TypeDiff.UNBOUNDED_SAMPLES;
 
     /**
      * Instantiate a DiffOperation, capable of performing a diff between two data states.
@@ -38,6 +56,24 @@ public class DiffOperation {
         this.instruction = instruction;
     }
 
+    /**
+     * If true, each matching pair of Objects is first fingerprinted, and pairs which are identical are skipped without
+     * being compared field by field.  This makes diffing two mostly unchanged data states much cheaper.<p/>
+     *
+     * Note that skipped pairs do not contribute to the total counts reported for each field.  Defaults to false.
+     */
+    public void setSkipIdenticalObjects(boolean skipIdenticalObjects) {
+        this.skipIdenticalObjects = skipIdenticalObjects;
+    }
+
+    /**
+     * Bound the number of differing pairs of Objects, and extra Objects, retained in each {@link TypeDiff} (and for each field) to
+     * the highest scoring <code>maxSamples</code>.  The counts and scores in the report remain exact.  Defaults to unbounded.
+     */
+    public void setMaxSamples(int maxSamples) {
+        this.maxSamples = maxSamples;
+    }
+
 
     /**
      * Perform a diff between two data states.
@@ -59,6 +95,7 @@ public class DiffOperation {
             final List<TypeDiff<?>> diffs = new ArrayList<TypeDiff<?>>();
 
             final DiffSerializationFramework framework = new DiffSerializationFramework(serializerFactory);
+            final DiffFingerprintSerializationFramework fingerprintFramework = skipIdenticalObjects ? new DiffFingerprintSerializationFramework(serializerFactory) : null;
 
             for (final TypeDiffInstruction<?> instruction : this.instruction.getTypeInstructions()) {
                 /// for now, the DiffOperation ignores non-unique keys.
@@ -66,7 +103,7 @@ public class DiffOperation {
                     Iterable<?> fromDeserializationState = fromState.getTypeDeserializationState(instruction.getSerializerName());
                     Iterable<?> toDeserializationState = toState.getTypeDeserializationState(instruction.getSerializerName());
 
-                    TypeDiff<Object> typeDiff = performDiff(framework, instruction, fromDeserializationState, toDeserializationState);
+                    TypeDiff<Object> typeDiff = performDiff(framework, fingerprintFramework, instruction, fromDeserializationState, toDeserializationState);
                     diffs.add(typeDiff);
                 }
             }
@@ -77,13 +114,289 @@ public class DiffOperation {
         }
     }
 
+    /**
+     * Perform a diff between two data states, each contained in a snapshot file, without holding both states in memory at once.<p/>
+     *
+     * The snapshots are read in three passes:<p/>
+     *
+     * <ol>
+     * <li>The "from" snapshot is read, and each Object of each instruction's type is fingerprinted and indexed by key as it is read.</li>
+     * <li>The "to" snapshot is read, and each Object is matched against the index as it is read.  Only the unmatched or changed "to" Objects are retained.</li>
+     * <li>The "from" snapshot is read again, and only the unmatched or changed "from" Objects are retained.</li>
+     * </ol>
+     *
+     * The retained Objects are then diffed as usual.  In each pass, only the instructions' types and the types they reference are deserialized,
+     * and the Objects of each type are released once every type which references them has been read.<p/>
+     *
+     * This is not a fully streaming diff.  Keys and fingerprints are computed from deserialized Objects, and a FastBlob record refers to its
+     * sub-objects by ordinal, so each sub-object must remain in memory until every type which may reference it has been read.  Peak memory is
+     * therefore that of the types referenced by the instructions' types in one snapshot (when an instruction's type is the root of the data model,
+     * most of one state), plus the indexes and the retained Objects.  It is not proportional to the number of changes alone.<p/>
+     *
+     * As with {@link #setSkipIdenticalObjects(boolean)}, identical pairs do not contribute to the total counts reported for each field, and
+     * are counted by {@link TypeDiff#getNumSkippedByFingerprint()}.
+     *
+     * @param fromSnapshot - a file containing the "from" snapshot
+     * @param toSnapshot - a file containing the "to" snapshot
+     * @return the DiffReport for investigation of the differences between the two data states.
+     * @throws DiffReportGenerationException
+     */
+    public DiffReport performDiff(DiffHeader diffHeader, File fromSnapshot, File toSnapshot) throws DiffReportGenerationException {
+        try {
+            final DiffFingerprintSerializationFramework fingerprintFramework = new DiffFingerprintSerializationFramework(serializerFactory);
+
+            final List<TypeDiffInstruction<?>> typeInstructions = new ArrayList<TypeDiffInstruction<?>>();
+            for(TypeDiffInstruction<?> instruction : this.instruction.getTypeInstructions()) {
+                /// for now, the DiffOperation ignores non-unique keys.
+                if(instruction.isUniqueKey())
+                    typeInstructions.add(instruction);
+            }
+
+            final SerializerFactory instructionSerializerFactory = instructionSerializerFactory(typeInstructions);
+
+            /// each pass reads its own state engine, which is unreachable once the pass completes.
+            final Map<String, DiffFingerprintIndex> fromIndexes = indexFromState(fromSnapshot, instructionSerializerFactory, typeInstructions, fingerprintFramework);
+
+            final Map<String, List<Object>> toObjects = new HashMap<String, List<Object>>();
+            final Map<String, MutableInt> toCounts = new HashMap<String, MutableInt>();
+            retainChangedToObjects(toSnapshot, instructionSerializerFactory, typeInstructions, fingerprintFramework, fromIndexes, toObjects, toCounts);
+
+            final Map<String, List<Object>> fromObjects = retainChangedFromObjects(fromSnapshot, instructionSerializerFactory, typeInstructions, fromIndexes);
+
+            final List<TypeDiff<?>> diffs = new ArrayList<TypeDiff<?>>();
+            final DiffSerializationFramework framework = new DiffSerializationFramework(serializerFactory);
+
+            for(TypeDiffInstruction<?> instruction : typeInstructions) {
+                String typeName = instruction.getSerializerName();
+                List<Object> from = fromObjects.get(typeName);
+                List<Object> to = toObjects.get(typeName);
+                int numSkipped = toCounts.get(typeName).intValue() - to.size();
+
+                TypeDiff<Object> typeDiff = performDiff(framework, null, instruction, from, to);
+                typeDiff.incrementFrom(fromIndexes.get(typeName).size() - from.size());
+                typeDiff.incrementTo(numSkipped);
+                typeDiff.incrementSkippedByFingerprint(numSkipped);
+                diffs.add(typeDiff);
+            }
+
+            return new DiffReport(diffHeader, diffs);
+        } catch (Exception e) {
+            throw new DiffReportGenerationException(e);
+        }
+    }
+
+    /**
+     * Index the "from" state by key and fingerprint.
+     */
+    private Map<String, DiffFingerprintIndex> indexFromState(File fromSnapshot, SerializerFactory instructionSerializerFactory, List<TypeDiffInstruction<?>> typeInstructions,
+            final DiffFingerprintSerializationFramework fingerprintFramework) throws IOException {
+        final Map<String, DiffFingerprintIndex> fromIndexes = new HashMap<String, DiffFingerprintIndex>();
+        final DiffFingerprintRecord fingerprintRec = new DiffFingerprintRecord();
+        FastBlobStateEngine stateEngine = new FastBlobStateEngine(instructionSerializerFactory);
+
+        for(final TypeDiffInstruction<?> instruction : typeInstructions) {
+            final DiffFingerprintIndex index = new DiffFingerprintIndex();
+            fromIndexes.put(instruction.getSerializerName(), index);
+
+            stateEngine.setTypeDeserializationStateListener(instruction.getSerializerName(), new AddedObjectListener() {
+                @Override
+                public void addedObject(Object obj, int ordinal) {
+                    fingerprint(fingerprintFramework, instruction, obj, fingerprintRec);
+                    index.add(instruction.getKeyFromObject(obj), ordinal, fingerprintRec);
+                    fingerprintRec.clear();
+                }
+            });
+        }
+
+        readSnapshot(stateEngine, fromSnapshot);
+
+        return fromIndexes;
+    }
+
+    /**
+     * Retain the "to" Objects which are unmatched or differ, and count all of the "to" Objects.
+     */
+    private void retainChangedToObjects(File toSnapshot, SerializerFactory instructionSerializerFactory, List<TypeDiffInstruction<?>> typeInstructions,
+            final DiffFingerprintSerializationFramework fingerprintFramework, Map<String, DiffFingerprintIndex> fromIndexes,
+            Map<String, List<Object>> toObjects, Map<String, MutableInt> toCounts) throws IOException {
+        final DiffFingerprintRecord fingerprintRec = new DiffFingerprintRecord();
+        FastBlobStateEngine stateEngine = new FastBlobStateEngine(instructionSerializerFactory);
+
+        for(final TypeDiffInstruction<?> instruction : typeInstructions) {
+            final DiffFingerprintIndex index = fromIndexes.get(instruction.getSerializerName());
+            final List<Object> retained = new ArrayList<Object>();
+            final MutableInt count = new MutableInt();
+            toObjects.put(instruction.getSerializerName(), retained);
+            toCounts.put(instruction.getSerializerName(), count);
+
+            stateEngine.setTypeDeserializationStateListener(instruction.getSerializerName(), new AddedObjectListener() {
+                @Override
+                public void addedObject(Object obj, int ordinal) {
+                    fingerprint(fingerprintFramework, instruction, obj, fingerprintRec);
+                    if(!index.matchIdentical(instruction.getKeyFromObject(obj), fingerprintRec))
+                        retained.add(obj);
+                    fingerprintRec.clear();
+                    count.increment();
+                }
+            });
+        }
+
+        readSnapshot(stateEngine, toSnapshot);
+    }
+
+    /**
+     * Retain the "from" Objects which are unmatched or differ.
+     */
+    private Map<String, List<Object>> retainChangedFromObjects(File fromSnapshot, SerializerFactory instructionSerializerFactory, List<TypeDiffInstruction<?>> typeInstructions,
+            Map<String, DiffFingerprintIndex> fromIndexes) throws IOException {
+        Map<String, List<Object>> fromObjects = new HashMap<String, List<Object>>();
+        FastBlobStateEngine stateEngine = new FastBlobStateEngine(instructionSerializerFactory);
+
+        for(TypeDiffInstruction<?> instruction : typeInstructions) {
+            final BitSet ordinals = fromIndexes.get(instruction.getSerializerName()).getUnmatchedOrChangedOrdinals();
+            final List<Object> retained = new ArrayList<Object>();
+            fromObjects.put(instruction.getSerializerName(), retained);
+
+            stateEngine.setTypeDeserializationStateListener(instruction.getSerializerName(), new AddedObjectListener() {
+                @Override
+                public void addedObject(Object obj, int ordinal) {
+                    if(ordinals.get(ordinal))
+                        retained.add(obj);
+                }
+            });
+        }
+
+        readSnapshot(stateEngine, fromSnapshot);
+
+        return fromObjects;
+    }
+
+    private void readSnapshot(FastBlobStateEngine stateEngine, File snapshot) throws IOException {
+        FastBlobReader reader = new FastBlobReader(stateEngine);
+        reader.setEventHandler(new TypeStateReleasingEventHandler(stateEngine));
+
+        InputStream is = new BufferedInputStream(new FileInputStream(snapshot));
+        try {
+            reader.readSnapshot(is);
+        } finally {
+            is.close();
+        }
+    }
+
+    /**
+     * @return a SerializerFactory for only the instructions' types.  A state engine created with this factory also contains each type which
+     * these types reference, but no others, so the FastBlobReader skips the records of every other type.
+     */
+    private SerializerFactory instructionSerializerFactory(final List<TypeDiffInstruction<?>> typeInstructions) {
+        return new SerializerFactory() {
+            @Override
+            public NFTypeSerializer<?>[] createSerializers() {
+                Set<String> instructionTypes = new HashSet<String>();
+                for(TypeDiffInstruction<?> instruction : typeInstructions)
+                    instructionTypes.add(instruction.getSerializerName());
+
+                List<NFTypeSerializer<?>> serializers = new ArrayList<NFTypeSerializer<?>>();
+                Set<String> visitedTypes = new HashSet<String>();
+                List<NFTypeSerializer<?>> toVisit = new ArrayList<NFTypeSerializer<?>>(Arrays.asList(serializerFactory.createSerializers()));
+
+                /// an instruction's type may be a sub-type of one of the factory's top level types.
+                while(!toVisit.isEmpty()) {
+                    NFTypeSerializer<?> serializer = toVisit.remove(toVisit.size() - 1);
+                    if(visitedTypes.add(serializer.getName())) {
+                        if(instructionTypes.contains(serializer.getName()))
+                            serializers.add(serializer);
+                        toVisit.addAll(serializer.requiredSubSerializers());
+                    }
+                }
+
+                return serializers.toArray(new NFTypeSerializer<?>[serializers.size()]);
+            }
+        };
+    }
+
+    private void fingerprint(DiffFingerprintSerializationFramework fingerprintFramework, TypeDiffInstruction<?> instruction, Object obj, DiffFingerprintRecord rec) {
+        NFTypeSerializer<Object> serializer = fingerprintFramework.getSerializer(instruction.getSerializerName());
+        serializer.serialize(obj, rec);
+    }
+
     @SuppressWarnings("unchecked")
-    private <T> TypeDiff<T> performDiff(DiffSerializationFramework framework, TypeDiffInstruction<?> diff, Iterable<?> from, Iterable<?> to) {
+    private <T> TypeDiff<T> performDiff(DiffSerializationFramework framework, DiffFingerprintSerializationFramework fingerprintFramework, TypeDiffInstruction<?> diff, Iterable<?> from, Iterable<?> to) {
         TypeDiffInstruction<T> castDiff = (TypeDiffInstruction<T>) diff;
         Iterable<T> castFrom = (Iterable<T>) from;
         Iterable<T> castTo = (Iterable<T>) to;
 
-        return new TypeDiffOperation<T>(castDiff).performDiff(framework, castFrom, castTo, Runtime.getRuntime().availableProcessors());
+        return new TypeDiffOperation<T>(castDiff, maxSamples).performDiff(framework, fingerprintFramework, castFrom, castTo, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Passes each Object added to a type state to addedObject().  Objects are never removed or reassigned while a single snapshot is read.
+     */
+    private static abstract class AddedObjectListener extends TypeDeserializationStateListener<Object> {
+        @Override
+        public void removedObject(Object obj, int ordinal) { }
+
+        @Override
+        public void reassignedObject(Object obj, int oldOrdinal, int newOrdinal) { }
+    }
+
+    /**
+     * Releases the Objects of each type once every type which references it has been read.<p/>
+     *
+     * The FastBlobReader notifies this handler as it begins reading each type which contains Objects.  Types are written in dependency order,
+     * so each previously notified type has been read completely.  A referencing type which contains no Objects is never notified, in which case
+     * the referenced type is conservatively retained.
+     */
+    private static class TypeStateReleasingEventHandler implements FastBlobReaderEventHandler {
+
+        private final FastBlobStateEngine stateEngine;
+        private final Map<String, Set<String>> referencingTypes;
+        private final Set<String> readTypes;
+        private final Set<String> releasedTypes;
+        private String currentType;
+
+        TypeStateReleasingEventHandler(FastBlobStateEngine stateEngine) {
+            this.stateEngine = stateEngine;
+            this.referencingTypes = new HashMap<String, Set<String>>();
+            this.readTypes = new HashSet<String>();
+            this.releasedTypes = new HashSet<String>();
+
+            for(NFTypeSerializer<?> serializer : stateEngine.getOrderedSerializers())
+                referencingTypes.put(serializer.getName(), new HashSet<String>());
+
+            for(NFTypeSerializer<?> serializer : stateEngine.getOrderedSerializers()) {
+                for(NFTypeSerializer<?> subSerializer : serializer.requiredSubSerializers())
+                    referencingTypes.get(subSerializer.getName()).add(serializer.getName());
+            }
+        }
+
+        @Override
+        public void addedObjects(String typeName, int numAdditions) {
+            if(currentType != null) {
+                readTypes.add(currentType);
+                releaseUnreferencedTypes();
+            }
+            currentType = typeName;
+        }
+
+        private void releaseUnreferencedTypes() {
+            for(String type : readTypes) {
+                Set<String> referencedBy = referencingTypes.get(type);
+                if(referencedBy != null && !releasedTypes.contains(type) && readTypes.containsAll(referencedBy)) {
+                    stateEngine.getTypeDeserializationState(type).releaseObjects();
+                    releasedTypes.add(type);
+                }
+            }
+        }
+
+        @Override
+        public void removedObjects(String typeName, int numRemovals) { }
+
+        @Override
+        public void reusedObjects(String typeName, int numRemovals) { }
+
+        @Override
+        public void objectsFailedReserialization(String typeName, int numFailures) { }
+
     }
 
 }
@@ -0,0 +1,99 @@
+/*
+ *
+ *  Copyright 2013 Netflix, Inc.
+ *
+ *     Licensed under the Apache License, Version 2.0 (the "License");
+ *     you may not use this file except in compliance with the License.
+ *     You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *     Unless required by applicable law or agreed to in writing, software
+ *     distributed under the License is distributed on an "AS IS" BASIS,
+ *     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *     See the License for the specific language governing permissions and
+ *     limitations under the License.
+ *
+ */
+package com.netflix.zeno.diff;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * An interned {@link DiffPropertyPath}.<p/>
+ *
+ * Each distinct property path, starting from a top level serializer, is assigned a node with a small integer id exactly once.  During
+ * traversal, the {@link DiffRecord} moves between these nodes rather than building and copying breadcrumbs, and the
+ * {@link DiffRecordValueListMap} indexes its values by node id.
+ *
+ */
+final class DiffPropertyPathNode {
+
+    private static final ConcurrentHashMap<String, DiffPropertyPathNode> roots = new ConcurrentHashMap<String, DiffPropertyPathNode>();
+    private static final AtomicInteger nextId = new AtomicInteger();
+
+    private final int id;
+    private final DiffPropertyPathNode parent;
+    private final DiffPropertyPath path;
+    private final ConcurrentHashMap<String, DiffPropertyPathNode> children;
+
+    private DiffPropertyPathNode(DiffPropertyPathNode parent, DiffPropertyPath path) {
+        this.id = nextId.getAndIncrement();
+        this.parent = parent;
+        this.path = path;
+        this.children = new ConcurrentHashMap<String, DiffPropertyPathNode>();
+    }
+
+    static DiffPropertyPathNode getRoot(String topNodeSerializer) {
+        DiffPropertyPathNode root = roots.get(topNodeSerializer);
+        if(root == null) {
+            DiffPropertyPathNode newRoot = new DiffPropertyPathNode(null, new DiffPropertyPath(topNodeSerializer, new String[0]));
+            root = roots.putIfAbsent(topNodeSerializer, newRoot);
+            if(root == null)
+                root = newRoot;
+        }
+        return root;
+    }
+
+    /**
+     * Get the node for the supplied path, which may be mutable.
+     */
+    static DiffPropertyPathNode get(DiffPropertyPath path) {
+        DiffPropertyPathNode node = getRoot(path.getTopNodeSerializer());
+        String breadcrumbs[] = path.getBreadcrumbArray();
+        for(int i=0;i<path.getBreadcrumbLength();i++) {
+            node = node.getChild(breadcrumbs[i]);
+        }
+        return node;
+    }
+
+    DiffPropertyPathNode getChild(String fieldName) {
+        DiffPropertyPathNode child = children.get(fieldName);
+        if(child == null) {
+            String parentBreadcrumbs[] = path.getBreadcrumbArray();
+            String breadcrumbs[] = new String[parentBreadcrumbs.length + 1];
+            System.arraycopy(parentBreadcrumbs, 0, breadcrumbs, 0, parentBreadcrumbs.length);
+            breadcrumbs[parentBreadcrumbs.length] = fieldName;
+
+            DiffPropertyPathNode newChild = new DiffPropertyPathNode(this, new DiffPropertyPath(path.getTopNodeSerializer(), breadcrumbs));
+            child = children.putIfAbsent(fieldName, newChild);
+            if(child == null)
+                child = newChild;
+        }
+        return child;
+    }
+
+    int getId() {
+        return id;
+    }
+
+    DiffPropertyPathNode getParent() {
+        return parent;
+    }
+
+    DiffPropertyPath getPath() {
+        return path;
+    }
+
+}
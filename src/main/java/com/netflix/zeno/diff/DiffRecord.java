@@ -29,22 +29,23 @@ import com.netflix.zeno.serializer.NFTypeSerializer;
  * 2) pull out matching pairs of key/value pairs from both Objects.
  * 3) When there are no more matches left, the diff score between the two Objects is sum of the remaining key/value pairs for both Objects.
  *
- * The DiffPropertyPath contained here is updated to reflect the current path during serialization.  This is an optimization which
+ * The current property path is tracked here as an interned {@link DiffPropertyPathNode}.  This is an optimization which
  * allows us to not create new {@link DiffPropertyPath} objects at each step during serialization.  The {@link DiffRecordValueListMap} contains key/value
- * pairs.
+ * pairs, with primitive values unboxed.
  *
  * @author dkoszewnik
  *
  */
 public class DiffRecord extends NFSerializationRecord {
 
-    private final DiffPropertyPath propertyPath;
     private final DiffRecordValueListMap fieldValues;
 
+    private DiffPropertyPathNode rootNode;
+    private DiffPropertyPathNode currentNode;
+
     private FastBlobSchema schema;
 
     public DiffRecord() {
-        this.propertyPath = new DiffPropertyPath();
         this.fieldValues = new DiffRecordValueListMap();
     }
 
@@ -57,25 +58,44 @@ public class DiffRecord extends NFSerializationRecord {
     }
 
     public void setTopLevelSerializerName(String topNodeSerializer) {
-        propertyPath.setTopNodeSerializer(topNodeSerializer);
+        rootNode = DiffPropertyPathNode.getRoot(topNodeSerializer);
+        currentNode = rootNode;
     }
 
     public void serializeObject(String fieldName) {
-        propertyPath.addBreadcrumb(fieldName);
+        currentNode = currentNode.getChild(fieldName);
     }
 
     public void finishedObject() {
-        propertyPath.removeBreadcrumb();
+        currentNode = currentNode.getParent();
     }
 
     public void serializePrimitive(String fieldName, Object value) {
-        propertyPath.addBreadcrumb(fieldName);
-        fieldValues.addValue(propertyPath, value);
-        propertyPath.removeBreadcrumb();
+        fieldValues.addValue(currentNode.getChild(fieldName), value);
+    }
+
+    public void serializePrimitive(String fieldName, int value) {
+        fieldValues.addPrimitive(currentNode.getChild(fieldName), DiffRecordValueListMap.ValueColumn.INT, value);
+    }
+
+    public void serializePrimitive(String fieldName, long value) {
+        fieldValues.addPrimitive(currentNode.getChild(fieldName), DiffRecordValueListMap.ValueColumn.LONG, value);
+    }
+
+    public void serializePrimitive(String fieldName, float value) {
+        fieldValues.addPrimitive(currentNode.getChild(fieldName), DiffRecordValueListMap.ValueColumn.FLOAT, Float.floatToIntBits(value));
+    }
+
+    public void serializePrimitive(String fieldName, double value) {
+        fieldValues.addPrimitive(currentNode.getChild(fieldName), DiffRecordValueListMap.ValueColumn.DOUBLE, Double.doubleToLongBits(value));
+    }
+
+    public void serializePrimitive(String fieldName, boolean value) {
+        fieldValues.addPrimitive(currentNode.getChild(fieldName), DiffRecordValueListMap.ValueColumn.BOOLEAN, value ? 1 : 0);
     }
 
     public void clear() {
-        propertyPath.reset();
+        currentNode = rootNode;
         fieldValues.clear();
     }
 
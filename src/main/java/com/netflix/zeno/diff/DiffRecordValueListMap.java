@@ -18,15 +18,20 @@
 package com.netflix.zeno.diff;
 
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 
+import org.apache.commons.lang.mutable.MutableInt;
+
 /**
  * A map of key/value pairs contained in a {@link DiffRecord}.<p/>
  * 
  * The DiffRecord flattens out a top-level object into key/value pairs.  This data structure
  * is used to hold the list of values corresponding to each "property path". <p/>
+ *
+ * Property paths are interned as {@link DiffPropertyPathNode}s, and the values for each are held in a column indexed by the
+ * node's id.  Primitive values are held unboxed in a separate array per primitive type.<p/>
  * 
  * This data structure is intended to be reused after clear() is called with minimum object
  * creation overhead.
@@ -36,61 +41,264 @@ import java.util.Map;
  */
 public class DiffRecordValueListMap {
 
-    private final Map<DiffPropertyPath, Integer> fieldValuesLists;
-    private final List<List<Object>> valuesLists;
-    private int nextValueIndex;
+    private ValueColumn columnsByPathId[];
+    private ValueColumn usedColumns[];
+    private int numUsedColumns;
 
     public DiffRecordValueListMap() {
-        this.fieldValuesLists = new HashMap<DiffPropertyPath, Integer>();
-        this.valuesLists = new ArrayList<List<Object>>();
+        this.columnsByPathId = new ValueColumn[64];
+        this.usedColumns = new ValueColumn[16];
     }
 
     /**
      * Add a value to be associated with the supplied DiffPropertyPath
      */
     public void addValue(DiffPropertyPath path, Object obj) {
-        getOrCreateList(path).add(obj);
+        addValue(DiffPropertyPathNode.get(path), obj);
+    }
+
+    void addValue(DiffPropertyPathNode node, Object obj) {
+        ValueColumn column = getOrCreateColumn(node);
+
+        if(obj instanceof Integer)
+            column.addPrimitive(ValueColumn.INT, ((Integer)obj).intValue());
+        else if(obj instanceof Long)
+            column.addPrimitive(ValueColumn.LONG, ((Long)obj).longValue());
+        else if(obj instanceof Boolean)
+            column.addPrimitive(ValueColumn.BOOLEAN, ((Boolean)obj).booleanValue() ? 1 : 0);
+        else if(obj instanceof Float)
+            column.addPrimitive(ValueColumn.FLOAT, Float.floatToIntBits(((Float)obj).floatValue()));
+        else if(obj instanceof Double)
+            column.addPrimitive(ValueColumn.DOUBLE, Double.doubleToLongBits(((Double)obj).doubleValue()));
+        else
+            column.addObject(obj);
+    }
+
+    void addPrimitive(DiffPropertyPathNode node, int kind, long value) {
+        getOrCreateColumn(node).addPrimitive(kind, value);
     }
 
     /**
      * Get the list of values associated with the supplied DiffPropertyPath
      */
     public List<Object> getList(DiffPropertyPath path) {
-        Integer listIndex = fieldValuesLists.get(path);
-        if(listIndex == null)
+        ValueColumn column = getColumn(DiffPropertyPathNode.get(path).getId());
+        if(column == null)
             return null;
-        return getList(listIndex.intValue());
+        return column.asList();
     }
 
-    private List<Object> getOrCreateList(DiffPropertyPath path) {
-        Integer listIndex = fieldValuesLists.get(path);
-        if(listIndex == null) {
-            listIndex = Integer.valueOf(nextValueIndex++);
-            /// create a copy of this DiffPropertyPath, as the propertyPath which is passed in
-            /// is modified throughout the traversal.
-            fieldValuesLists.put(path.copy(), listIndex);
-        }
-        return getList(listIndex.intValue());
+    int numColumns() {
+        return numUsedColumns;
+    }
+
+    ValueColumn getUsedColumn(int index) {
+        return usedColumns[index];
+    }
+
+    ValueColumn getColumn(int pathId) {
+        if(pathId >= columnsByPathId.length)
+            return null;
+        ValueColumn column = columnsByPathId[pathId];
+        if(column == null || column.size() == 0)
+            return null;
+        return column;
     }
 
-    private List<Object> getList(int listIndex) {
-        while(valuesLists.size() <= listIndex) {
-            valuesLists.add(new ArrayList<Object>());
+    private ValueColumn getOrCreateColumn(DiffPropertyPathNode node) {
+        int pathId = node.getId();
+        if(pathId >= columnsByPathId.length)
+            columnsByPathId = Arrays.copyOf(columnsByPathId, Math.max(pathId + 1, columnsByPathId.length * 2));
+
+        ValueColumn column = columnsByPathId[pathId];
+        if(column == null) {
+            column = new ValueColumn(node);
+            columnsByPathId[pathId] = column;
+        }
+
+        if(column.size() == 0) {
+            if(numUsedColumns == usedColumns.length)
+                usedColumns = Arrays.copyOf(usedColumns, usedColumns.length * 2);
+            usedColumns[numUsedColumns++] = column;
         }
 
-        return valuesLists.get(listIndex);
+        return column;
     }
 
     public void clear() {
-        for(List<Object> list : valuesLists) {
-            list.clear();
+        for(int i=0;i<numUsedColumns;i++) {
+            usedColumns[i].clear();
+            usedColumns[i] = null;
         }
-        fieldValuesLists.clear();
-        nextValueIndex = 0;
+        numUsedColumns = 0;
     }
 
     public Iterable<DiffPropertyPath> keySet() {
-        return fieldValuesLists.keySet();
+        List<DiffPropertyPath> keys = new ArrayList<DiffPropertyPath>(numUsedColumns);
+        for(int i=0;i<numUsedColumns;i++) {
+            keys.add(usedColumns[i].getPath());
+        }
+        return keys;
+    }
+
+    /**
+     * The values associated with a single property path.
+     */
+    static class ValueColumn {
+        static final int INT = 0;
+        static final int LONG = 1;
+        static final int BOOLEAN = 2;
+        static final int FLOAT = 3;
+        static final int DOUBLE = 4;
+        private static final int NUM_KINDS = 5;
+
+        private final DiffPropertyPathNode node;
+        private final long primitives[][];
+        private final int numPrimitives[];
+        private final List<Object> objects;
+        private int size;
+
+        ValueColumn(DiffPropertyPathNode node) {
+            this.node = node;
+            this.primitives = new long[NUM_KINDS][];
+            this.numPrimitives = new int[NUM_KINDS];
+            this.objects = new ArrayList<Object>();
+        }
+
+        void addPrimitive(int kind, long value) {
+            long values[] = primitives[kind];
+            if(values == null) {
+                values = new long[4];
+                primitives[kind] = values;
+            } else if(numPrimitives[kind] == values.length) {
+                values = Arrays.copyOf(values, values.length * 2);
+                primitives[kind] = values;
+            }
+            values[numPrimitives[kind]++] = value;
+            size++;
+        }
+
+        void addObject(Object obj) {
+            objects.add(obj);
+            size++;
+        }
+
+        int size() {
+            return size;
+        }
+
+        int getPathId() {
+            return node.getId();
+        }
+
+        DiffPropertyPath getPath() {
+            return node.getPath();
+        }
+
+        void clear() {
+            Arrays.fill(numPrimitives, 0);
+            objects.clear();
+            size = 0;
+        }
+
+        /**
+         * Count the values in either this column or the other which could not be paired with an equal value in the other column.
+         */
+        int countUnmatched(ValueColumn other, Map<Object, MutableInt> scratch) {
+            int unmatched = 0;
+
+            for(int kind=0;kind<NUM_KINDS;kind++) {
+                unmatched += countUnmatched(primitives[kind], numPrimitives[kind], other.primitives[kind], other.numPrimitives[kind]);
+            }
+
+            if(!objects.isEmpty() || !other.objects.isEmpty()) {
+                for(Object obj : objects) {
+                    MutableInt i = scratch.get(obj);
+                    if(i == null) {
+                        i = new MutableInt(0);
+                        scratch.put(obj, i);
+                    }
+                    i.increment();
+                }
+
+                for(Object obj : other.objects) {
+                    MutableInt i = scratch.get(obj);
+                    if(i == null) {
+                        unmatched++;
+                    } else {
+                        i.decrement();
+                        if(i.intValue() == 0)
+                            scratch.remove(obj);
+                    }
+                }
+
+                for(MutableInt i : scratch.values()) {
+                    unmatched += i.intValue();
+                }
+
+                scratch.clear();
+            }
+
+            return unmatched;
+        }
+
+        private static int countUnmatched(long values1[], int length1, long values2[], int length2) {
+            if(length1 == 0 || length2 == 0)
+                return length1 + length2;
+
+            if(length1 == 1 && length2 == 1)
+                return values1[0] == values2[0] ? 0 : 2;
+
+            Arrays.sort(values1, 0, length1);
+            Arrays.sort(values2, 0, length2);
+
+            int matched = 0;
+            int i = 0;
+            int j = 0;
+
+            while(i < length1 && j < length2) {
+                if(values1[i] == values2[j]) {
+                    matched++;
+                    i++;
+                    j++;
+                } else if(values1[i] < values2[j]) {
+                    i++;
+                } else {
+                    j++;
+                }
+            }
+
+            return length1 + length2 - (2 * matched);
+        }
+
+        /**
+         * @return a boxed view of the values in this column.  Primitive values are grouped by type.
+         */
+        List<Object> asList() {
+            List<Object> list = new ArrayList<Object>(size);
+            for(int kind=0;kind<NUM_KINDS;kind++) {
+                for(int i=0;i<numPrimitives[kind];i++) {
+                    list.add(box(kind, primitives[kind][i]));
+                }
+            }
+            list.addAll(objects);
+            return list;
+        }
+
+        private static Object box(int kind, long value) {
+            switch(kind) {
+            case INT:
+                return Integer.valueOf((int)value);
+            case LONG:
+                return Long.valueOf(value);
+            case BOOLEAN:
+                return Boolean.valueOf(value != 0);
+            case FLOAT:
+                return Float.valueOf(Float.intBitsToFloat((int)value));
+            default:
+                return Double.valueOf(Double.longBitsToDouble(value));
+            }
+        }
     }
 
 }
@@ -17,8 +17,6 @@
  */
 package com.netflix.zeno.diff;
 
-import com.netflix.zeno.diff.TypeDiff.ObjectDiffScore;
-
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
@@ -52,10 +50,8 @@ public class DiffReport {
         this.typeDiffs = typeDiffs;
 
         for(final TypeDiff<?> td : typeDiffs) {
-            for(final ObjectDiffScore<?> objectDiffScore : td.getDiffObjects()) {
-                totalDiffs += objectDiffScore.getScore();
-            }
-            totalExtra += td.getExtraInFrom().size() + td.getExtraInTo().size();
+            totalDiffs += td.getTotalDiffs();
+            totalExtra += td.getNumExtraInFrom() + td.getNumExtraInTo();
         }
     }
 
@@ -87,8 +83,8 @@ public class DiffReport {
         Collections.sort(typeDiffs, new Comparator<TypeDiff<?>>() {
             @Override
             public int compare(final TypeDiff<?> o1, final TypeDiff<?> o2) {
-                final int extra2 = o2.getExtraInFrom().size() + o2.getExtraInTo().size();
-                final int extra1 = o1.getExtraInFrom().size() + o1.getExtraInTo().size();
+                final int extra2 = o2.getNumExtraInFrom() + o2.getNumExtraInTo();
+                final int extra1 = o1.getNumExtraInFrom() + o1.getNumExtraInTo();
                 return extra2 - extra1;
             }
         });
@@ -102,8 +98,8 @@ public class DiffReport {
         Collections.sort(typeDiffs, new Comparator<TypeDiff<?>>() {
             @Override
             public int compare(final TypeDiff<?> o1, final TypeDiff<?> o2) {
-                final int extra2 = o2.getExtraInFrom().size();
-                final int extra1 = o1.getExtraInFrom().size();
+                final int extra2 = o2.getNumExtraInFrom();
+                final int extra1 = o1.getNumExtraInFrom();
                 return extra2 - extra1;
             }
         });
@@ -116,8 +112,8 @@ public class DiffReport {
         Collections.sort(typeDiffs, new Comparator<TypeDiff<?>>() {
             @Override
             public int compare(final TypeDiff<?> o1, final TypeDiff<?> o2) {
-                final int extra2 = o2.getExtraInTo().size();
-                final int extra1 = o1.getExtraInTo().size();
+                final int extra2 = o2.getNumExtraInTo();
+                final int extra1 = o1.getNumExtraInTo();
                 return extra2 - extra1;
             }
         });
@@ -39,12 +39,19 @@ import java.util.Map;
  * 2) pull out matching pairs of key/value pairs from both Objects.
  * 3) When there are no more matches left, the diff score between the two Objects is sum of the remaining key/value pairs for both Objects.
  *
+ * If a maximum number of samples is specified, then the counts and scores remain exact, but only the highest scoring pairs of Objects
+ * (for the type, and for each field), and only the first extra Objects encountered, are retained.  This bounds the memory
+ * required to produce the diff of two wildly different data states.
+ *
  * @author dkoszewnik
  *
  */
 public class TypeDiff<T> {
 
+    public static final int UNBOUNDED_SAMPLES = -1;
+
     private final String topNodeSerializer;
+    private final int maxSamples;
 
     private final Map<DiffPropertyPath, FieldDiffScore<T>> fieldDifferences;
 
@@ -56,12 +63,26 @@ public class TypeDiff<T> {
     private int itemCountFrom;
     private int itemCountTo;
 
+    private int numExtraInFrom;
+    private int numExtraInTo;
+    private int numDiffObjects;
+    private int numSkippedByFingerprint;
+    private int totalDiffs;
+
     public TypeDiff(String topNodeSerializer) {
+        this(topNodeSerializer, UNBOUNDED_SAMPLES);
+    }
+
+    /**
+     * @param maxSamples - the maximum number of pairs of Objects, and extra Objects, to retain.  Use UNBOUNDED_SAMPLES to retain all of them.
+     */
+    public TypeDiff(String topNodeSerializer, int maxSamples) {
         fieldDifferences = new HashMap<DiffPropertyPath, FieldDiffScore<T>>();
         extraInFrom = new ArrayList<T>();
         extraInTo = new ArrayList<T>();
         objectDiffs = new ArrayList<ObjectDiffScore<T>>();
         this.topNodeSerializer = topNodeSerializer;
+        this.maxSamples = maxSamples;
     }
 
     TypeDiff(String topNodeSerializer, List<T> missingFrom, List<T> missingTo, List<ObjectDiffScore<T>> objectDiffs, Map<DiffPropertyPath, FieldDiffScore<T>> fieldDifferences, int itemCountFrom, int itemCountTo) {
@@ -72,6 +93,13 @@ public class TypeDiff<T> {
         this.fieldDifferences = fieldDifferences;
         this.itemCountFrom = itemCountFrom;
         this.itemCountTo = itemCountTo;
+        this.maxSamples = UNBOUNDED_SAMPLES;
+        this.numExtraInFrom = missingFrom.size();
+        this.numExtraInTo = missingTo.size();
+        this.numDiffObjects = objectDiffs.size();
+        for(ObjectDiffScore<T> objectDiffScore : objectDiffs) {
+            this.totalDiffs += objectDiffScore.getScore();
+        }
     }
 
     public void addFieldObjectDiffScore(DiffPropertyPath fieldBreadcrumbs, T to, T from, int diffScore) {
@@ -108,22 +136,65 @@ public class TypeDiff<T> {
     private FieldDiffScore<T> getFieldDiffScore(DiffPropertyPath fieldBreadcrumbs) {
         FieldDiffScore<T> counter = fieldDifferences.get(fieldBreadcrumbs);
         if(counter == null) {
-            counter = new FieldDiffScore<T>();
+            counter = new FieldDiffScore<T>(maxSamples);
             fieldDifferences.put(fieldBreadcrumbs, counter);
         }
         return counter;
     }
 
     public void addExtraInFrom(T missing) {
-        extraInFrom.add(missing);
+        numExtraInFrom++;
+        if(maxSamples == UNBOUNDED_SAMPLES || extraInFrom.size() < maxSamples)
+            extraInFrom.add(missing);
     }
 
     public void addExtraInTo(T missing) {
-        extraInTo.add(missing);
+        numExtraInTo++;
+        if(maxSamples == UNBOUNDED_SAMPLES || extraInTo.size() < maxSamples)
+            extraInTo.add(missing);
     }
 
     public void addDiffObject(T from, T to, int score) {
-        objectDiffs.add(new ObjectDiffScore<T>(from, to, score));
+        numDiffObjects++;
+        totalDiffs += score;
+        addSample(objectDiffs, new ObjectDiffScore<T>(from, to, score), maxSamples);
+    }
+
+    /**
+     * Merge the results of another TypeDiff into this one.  Only the retained samples of the other TypeDiff are copied.
+     */
+    public void merge(TypeDiff<T> other) {
+        for(T missing : other.extraInFrom) {
+            if(maxSamples == UNBOUNDED_SAMPLES || extraInFrom.size() < maxSamples)
+                extraInFrom.add(missing);
+        }
+        for(T missing : other.extraInTo) {
+            if(maxSamples == UNBOUNDED_SAMPLES || extraInTo.size() < maxSamples)
+                extraInTo.add(missing);
+        }
+        for(ObjectDiffScore<T> objectDiffScore : other.objectDiffs) {
+            addSample(objectDiffs, objectDiffScore, maxSamples);
+        }
+
+        numExtraInFrom += other.numExtraInFrom;
+        numExtraInTo += other.numExtraInTo;
+        numDiffObjects += other.numDiffObjects;
+        numSkippedByFingerprint += other.numSkippedByFingerprint;
+        totalDiffs += other.totalDiffs;
+        itemCountFrom += other.itemCountFrom;
+        itemCountTo += other.itemCountTo;
+
+        for(Map.Entry<DiffPropertyPath, FieldDiffScore<T>> entry : other.fieldDifferences.entrySet()) {
+            getFieldDiffScore(entry.getKey()).merge(entry.getValue());
+        }
+    }
+
+    public void incrementSkippedByFingerprint() {
+        numSkippedByFingerprint++;
+    }
+
+    public void incrementSkippedByFingerprint(int byCount) {
+        numSkippedByFingerprint += byCount;
     }
 
     public void incrementFrom() {
@@ -162,11 +233,39 @@ public class TypeDiff<T> {
         return itemCountTo;
     }
 
+    /**
+     * @return the number of extra Objects in the "from" state.  This may be larger than the number of retained samples.
+     */
+    public int getNumExtraInFrom() {
+        return numExtraInFrom;
+    }
+
+    /**
+     * @return the number of extra Objects in the "to" state.  This may be larger than the number of retained samples.
+     */
+    public int getNumExtraInTo() {
+        return numExtraInTo;
+    }
+
+    /**
+     * @return the number of matched pairs of Objects which were different.  This may be larger than the number of retained samples.
+     */
+    public int getNumDiffObjects() {
+        return numDiffObjects;
+    }
+
+    /**
+     * @return the number of matched pairs of Objects which were skipped because their fingerprints were identical.
+     */
+    public int getNumSkippedByFingerprint() {
+        return numSkippedByFingerprint;
+    }
+
+    public int getMaxSamples() {
+        return maxSamples;
+    }
+
     public int getTotalDiffs() {
-        int totalDiffs = 0;
-        for(ObjectDiffScore<?> objectDiffScore : objectDiffs) {
-            totalDiffs += objectDiffScore.getScore();
-        }
         return totalDiffs;
     }
 
@@ -260,9 +359,15 @@ public class TypeDiff<T> {
         private int diffCount;
         private int totalCount;
         private final List<ObjectDiffScore<T>> objectScores;
+        private final int maxSamples;
 
         public FieldDiffScore() {
+            this(UNBOUNDED_SAMPLES);
+        }
+
+        public FieldDiffScore(int maxSamples) {
             this.objectScores = new ArrayList<ObjectDiffScore<T>>();
+            this.maxSamples = maxSamples;
         }
 
         public void incrementDiffCountBy(int count) {
@@ -290,7 +395,15 @@ public class TypeDiff<T> {
         }
 
         public void addObjectDiffScore(ObjectDiffScore<T> score) {
-            objectScores.add(score);
+            addSample(objectScores, score, maxSamples);
+        }
+
+        public void merge(FieldDiffScore<T> other) {
+            diffCount += other.diffCount;
+            totalCount += other.totalCount;
+            for(ObjectDiffScore<T> score : other.objectScores) {
+                addSample(objectScores, score, maxSamples);
+            }
         }
 
         @Override
@@ -364,4 +477,41 @@ public class TypeDiff<T> {
         }
     }
 
+    /**
+     * If the samples are bounded, they are kept as a min-heap on the score, so that the lowest retained score is always at
+     * index 0, and may be replaced by a higher score in logarithmic time.
+     */
+    private static <T> void addSample(List<ObjectDiffScore<T>> samples, ObjectDiffScore<T> score, int maxSamples) {
+        if(maxSamples == UNBOUNDED_SAMPLES) {
+            samples.add(score);
+        } else if(samples.size() < maxSamples) {
+            samples.add(score);
+
+            int idx = samples.size() - 1;
+            while(idx > 0) {
+                int parent = (idx - 1) / 2;
+                if(samples.get(parent).score <= score.score)
+                    break;
+                samples.set(idx, samples.get(parent));
+                idx = parent;
+            }
+            samples.set(idx, score);
+        } else if(maxSamples > 0 && score.score > samples.get(0).score) {
+            int size = samples.size();
+            int idx = 0;
+            while(true) {
+                int child = (idx * 2) + 1;
+                if(child >= size)
+                    break;
+                if(child + 1 < size && samples.get(child + 1).score < samples.get(child).score)
+                    child++;
+                if(samples.get(child).score >= score.score)
+                    break;
+                samples.set(idx, samples.get(child));
+                idx = child;
+            }
+            samples.set(idx, score);
+        }
+    }
+
 }
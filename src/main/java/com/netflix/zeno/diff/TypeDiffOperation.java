@@ -17,6 +17,7 @@
  */
 package com.netflix.zeno.diff;
 
+import com.netflix.zeno.diff.DiffRecordValueListMap.ValueColumn;
 import com.netflix.zeno.diff.TypeDiff.FieldDiffScore;
 import com.netflix.zeno.serializer.NFTypeSerializer;
 import java.util.ArrayList;
@@ -40,9 +41,18 @@ import org.apache.commons.lang.mutable.MutableInt;
 public class TypeDiffOperation<T> {
 
     private final TypeDiffInstruction<T> instruction;
+    private final int maxSamples;
 
     public TypeDiffOperation(TypeDiffInstruction<T> instruction) {
+        this(instruction, TypeDiff.UNBOUNDED_SAMPLES);
+    }
+
+    /**
+     * @param maxSamples - the maximum number of pairs of Objects, and extra Objects, to retain in the resulting {@link TypeDiff}.
+     */
+    public TypeDiffOperation(TypeDiffInstruction<T> instruction, int maxSamples) {
         this.instruction = instruction;
+        this.maxSamples = maxSamples;
     }
 
     @SuppressWarnings("unchecked")
@@ -52,10 +62,45 @@ public class TypeDiffOperation<T> {
 
     @SuppressWarnings("unchecked")
     public TypeDiff<T> performDiff(DiffSerializationFramework framework, Iterable<T> fromState, Iterable<T> toState, int numThreads) {
+        return performDiff(framework, null, fromState, toState, numThreads);
+    }
+
+    /**
+     * Perform the diff.  If a DiffFingerprintSerializationFramework is supplied, matching Objects are first fingerprinted, and
+     * pairs with identical fingerprints are skipped without building their {@link DiffRecord}s.<p/>
+     *
+     * This is not a hash-only comparison:  the Objects are in memory, so each fingerprint is computed by walking the fields of an Object.  Each
+     * "from" Object is fingerprinted once, as the "from" state is indexed, and each matched "to" Object is fingerprinted once.  An identical pair
+     * therefore costs one walk of each Object, and a pair which differs costs both fingerprint walks in addition to its full diff.<p/>
+     *
+     * Skipped pairs do not contribute to the total counts of the {@link FieldDiffScore}s, and are counted by {@link TypeDiff#getNumSkippedByFingerprint()}.
+     * Two different Objects with colliding 64-bit fingerprints are counted there rather than reported as a difference.
+     */
+    public TypeDiff<T> performDiff(DiffSerializationFramework framework, DiffFingerprintSerializationFramework fingerprintFramework, Iterable<T> fromState, Iterable<T> toState, int numThreads) {
         Map<Object, T> fromStateObjects = new HashMap<Object, T>();
+        Map<Object, Long> fromFingerprints = null;
 
-        for(T obj : fromState) {
-            fromStateObjects.put(instruction.getKey(obj), obj);
+        if(fingerprintFramework == null) {
+            for(T obj : fromState) {
+                fromStateObjects.put(instruction.getKey(obj), obj);
+            }
+        } else {
+            @SuppressWarnings("unchecked")
+            NFTypeSerializer<T> fingerprintSerializer = (NFTypeSerializer<T>) fingerprintFramework.getSerializer(instruction.getSerializerName());
+            DiffFingerprintRecord fingerprintRec = new DiffFingerprintRecord();
+            fromFingerprints = new HashMap<Object, Long>();
+
+            for(T obj : fromState) {
+                Object key = instruction.getKey(obj);
+                fromStateObjects.put(key, obj);
+
+                fingerprintSerializer.serialize(obj, fingerprintRec);
+                if(fingerprintRec.isFingerprintable())
+                    fromFingerprints.put(key, Long.valueOf(fingerprintRec.getFingerprint()));
+                else
+                    fromFingerprints.remove(key);
+                fingerprintRec.clear();
+            }
         }
 
         ArrayList<List<T>> perProcessorWorkList = new ArrayList<List<T>>(numThreads); // each entry is a job
@@ -84,15 +129,15 @@ public class TypeDiffOperation<T> {
             ArrayList<Future<TypeDiff<T>>> workResultList = new ArrayList<Future<TypeDiff<T>>>(perProcessorWorkList.size());
             for (final List<T> workList : perProcessorWorkList) {
                 if (workList != null && !workList.isEmpty()) {
-                    workResultList.add(executor.submit(new TypeDiffCallable<T>(framework, instruction, fromStateObjects, toStateKeys, workList)));
+                    workResultList.add(executor.submit(new TypeDiffCallable<T>(framework, fingerprintFramework, instruction, fromStateObjects, fromFingerprints, toStateKeys, workList)));
                 }
             }
 
-            TypeDiff<T> mergedDiff = new TypeDiff<T>(instruction.getTypeIdentifier());
+            TypeDiff<T> mergedDiff = new TypeDiff<T>(instruction.getTypeIdentifier(), maxSamples);
             for (final Future<TypeDiff<T>> future : workResultList) {
                 try {
                     TypeDiff<T> typeDiff = future.get();
-                    mergeTypeDiff(mergedDiff, typeDiff);
+                    mergedDiff.merge(typeDiff);
                 } catch (Exception e) {
                     throw new RuntimeException(e);
                 }
@@ -111,49 +156,29 @@ public class TypeDiffOperation<T> {
         }
     }
 
-    private void mergeTypeDiff(TypeDiff<T> mergedDiff, TypeDiff<T> typeDiff) {
-
-        mergedDiff.getExtraInFrom().addAll(typeDiff.getExtraInFrom());
-        mergedDiff.getExtraInTo().addAll(typeDiff.getExtraInTo());
-        mergedDiff.getDiffObjects().addAll(typeDiff.getDiffObjects());
-        mergedDiff.incrementFrom(typeDiff.getItemCountFrom());
-        mergedDiff.incrementTo(typeDiff.getItemCountTo());
-
-        Map<DiffPropertyPath, FieldDiffScore<T>> mergedFieldDifferences = mergedDiff.getFieldDifferences();
-        Map<DiffPropertyPath, FieldDiffScore<T>> fieldDifferences = typeDiff.getFieldDifferences();
-        for (final DiffPropertyPath path : fieldDifferences.keySet()) {
-            FieldDiffScore<T> fieldDiffScore = fieldDifferences.get(path);
-
-            FieldDiffScore<T> mergedFieldDiffScore = mergedFieldDifferences.get(path);
-            if (mergedFieldDiffScore != null) {
-                mergedFieldDiffScore.incrementDiffCountBy(fieldDiffScore.getDiffCount());
-                mergedFieldDiffScore.incrementTotalCountBy(fieldDiffScore.getTotalCount());
-                mergedFieldDiffScore.getDiffScores().addAll(fieldDiffScore.getDiffScores());
-            } else {
-                mergedFieldDifferences.put(path, fieldDiffScore);
-            }
-        }
-    }
-
     class TypeDiffCallable<Z> implements Callable<TypeDiff<Z>> {
 
         private final TypeDiffInstruction<Z> instruction;
         private final List<Z> workList;
         private final Map<Object, Object> toStateKeys;
         private final Map<Object, Z> fromStateObjects;
+        private final Map<Object, Long> fromFingerprints;
         private final DiffSerializationFramework framework;
+        private final DiffFingerprintSerializationFramework fingerprintFramework;
 
-        public TypeDiffCallable(DiffSerializationFramework framework, TypeDiffInstruction<Z> instruction, Map<Object, Z> fromStateObjects, Map<Object, Object> toStateKeys, List<Z> workList) {
+        public TypeDiffCallable(DiffSerializationFramework framework, DiffFingerprintSerializationFramework fingerprintFramework, TypeDiffInstruction<Z> instruction, Map<Object, Z> fromStateObjects, Map<Object, Long> fromFingerprints, Map<Object, Object> toStateKeys, List<Z> workList) {
             this.framework = framework;
+            this.fingerprintFramework = fingerprintFramework;
             this.instruction = instruction;
             this.fromStateObjects = fromStateObjects;
+            this.fromFingerprints = fromFingerprints;
             this.toStateKeys = toStateKeys;
             this.workList = workList;
         }
 
         @Override
         public TypeDiff<Z> call() throws Exception {
-            TypeDiff<Z> diff = new TypeDiff<Z>(instruction.getTypeIdentifier());
+            TypeDiff<Z> diff = new TypeDiff<Z>(instruction.getTypeIdentifier(), maxSamples);
             NFTypeSerializer<Z> typeSerializer = (NFTypeSerializer<Z>) framework.getSerializer(instruction.getSerializerName());
 
             DiffRecord fromRec = new DiffRecord();
@@ -163,6 +188,15 @@ public class TypeDiffOperation<T> {
             fromRec.setTopLevelSerializerName(instruction.getSerializerName());
             toRec.setTopLevelSerializerName(instruction.getSerializerName());
 
+            NFTypeSerializer<Z> fingerprintSerializer = null;
+            DiffFingerprintRecord fingerprintRec = null;
+            if(fingerprintFramework != null) {
+                @SuppressWarnings("unchecked")
+                NFTypeSerializer<Z> serializer = (NFTypeSerializer<Z>) fingerprintFramework.getSerializer(instruction.getSerializerName());
+                fingerprintSerializer = serializer;
+                fingerprintRec = new DiffFingerprintRecord();
+            }
+
             for(Z toObject : workList) {
                 diff.incrementTo();
                 Object toStateKey = instruction.getKey(toObject);
@@ -171,6 +205,8 @@ public class TypeDiffOperation<T> {
 
                 if(fromObject == null) {
                     diff.addExtraInTo(toObject);
+                } else if(fingerprintSerializer != null && isIdentical(fingerprintRec, fingerprintSerializer, toObject, fromFingerprints.get(toStateKey))) {
+                    diff.incrementSkippedByFingerprint();
                 } else {
                     int diffScore = diffFields(diff, fromRec, toRec, typeSerializer, toObject, fromObject);
                     if(diffScore > 0)
@@ -181,6 +217,20 @@ public class TypeDiffOperation<T> {
             return diff;
         }
 
+        /**
+         * Compare the fingerprint of the "to" Object against the fingerprint computed for its match when the "from" state was indexed.
+         */
+        private boolean isIdentical(DiffFingerprintRecord fingerprintRec, NFTypeSerializer<Z> fingerprintSerializer, Z toObject, Long fromFingerprint) {
+            if(fromFingerprint == null)
+                return false;
+
+            fingerprintSerializer.serialize(toObject, fingerprintRec);
+            boolean identical = fingerprintRec.isFingerprintable() && fingerprintRec.getFingerprint() == fromFingerprint.longValue();
+            fingerprintRec.clear();
+
+            return identical;
+        }
+
         private int diffFields(TypeDiff<Z> diff, DiffRecord fromRec, DiffRecord toRec, NFTypeSerializer<Z> typeSerializer, Z toObject, Z fromObject) {
             typeSerializer.serialize(toObject, toRec);
             typeSerializer.serialize(fromObject, fromRec);
@@ -195,17 +245,21 @@ public class TypeDiffOperation<T> {
 
         private int incrementDiffFields(TypeDiff<Z> diff, DiffRecord toRecord, DiffRecord fromRecord, Z toObject, Z fromObject) {
             int objectDiffScore = 0;
+            DiffRecordValueListMap toValues = toRecord.getFieldValues();
+            DiffRecordValueListMap fromValues = fromRecord.getFieldValues();
 
-            for(DiffPropertyPath key : toRecord.getFieldValues().keySet()) {
-                List<Object> toObjects = toRecord.getFieldValues().getList(key);
-                List<Object> fromObjects = fromRecord.getFieldValues().getList(key);
+            for(int i=0;i<toValues.numColumns();i++) {
+                ValueColumn toColumn = toValues.getUsedColumn(i);
+                ValueColumn fromColumn = fromValues.getColumn(toColumn.getPathId());
+                DiffPropertyPath key = toColumn.getPath();
                 int objectFieldDiffScore;
 
-                if(fromObjects == null) {
-                    diff.incrementFieldScores(key, toObjects.size(), toObjects.size());
-                    objectFieldDiffScore = toObjects.size();
+                if(fromColumn == null) {
+                    diff.incrementFieldScores(key, toColumn.size(), toColumn.size());
+                    objectFieldDiffScore = toColumn.size();
                 } else {
-                    objectFieldDiffScore = incrementDiffFields(diff, key, toObjects, fromObjects);
+                    objectFieldDiffScore = toColumn.countUnmatched(fromColumn, getObjectMap());
+                    diff.incrementFieldScores(key, objectFieldDiffScore, toColumn.size() + fromColumn.size());
                 }
 
                 objectDiffScore += objectFieldDiffScore;
@@ -213,71 +267,20 @@ public class TypeDiffOperation<T> {
                 diff.addFieldObjectDiffScore(key, toObject, fromObject, objectFieldDiffScore);
             }
 
-            for(DiffPropertyPath key : fromRecord.getFieldValues().keySet()) {
-                if(toRecord.getFieldValues().getList(key) == null) {
-                    int diffSize = fromRecord.getFieldValues().getList(key).size();
-                    diff.incrementFieldScores(key, diffSize, diffSize);
+            for(int i=0;i<fromValues.numColumns();i++) {
+                ValueColumn fromColumn = fromValues.getUsedColumn(i);
+                if(toValues.getColumn(fromColumn.getPathId()) == null) {
+                    int diffSize = fromColumn.size();
+                    diff.incrementFieldScores(fromColumn.getPath(), diffSize, diffSize);
                     objectDiffScore += diffSize;
 
-                    diff.addFieldObjectDiffScore(key, toObject, fromObject, diffSize);
+                    diff.addFieldObjectDiffScore(fromColumn.getPath(), toObject, fromObject, diffSize);
                 }
             }
 
             return objectDiffScore;
         }
 
-        private int incrementDiffFields(TypeDiff<?> diff, DiffPropertyPath breadcrumbs, List<Object> toObjects, List<Object> fromObjects) {
-            int objectFieldDiffScore = 0;
-
-            Map<Object, MutableInt> objectSet = getObjectMap();
-
-            for(Object obj : toObjects) {
-                increment(objectSet, obj);
-            }
-
-            for(Object obj : fromObjects) {
-                if(!decrement(objectSet, obj)) {
-                    objectFieldDiffScore++;
-                }
-            }
-
-            if(!objectSet.isEmpty()) {
-                for(Map.Entry<Object, MutableInt>entry : objectSet.entrySet()) {
-                    objectFieldDiffScore += entry.getValue().intValue();
-                }
-            }
-
-            objectSet.clear();
-
-            diff.incrementFieldScores(breadcrumbs, objectFieldDiffScore, toObjects.size() + fromObjects.size());
-            return objectFieldDiffScore;
-        }
-
-
-        private void increment(Map<Object, MutableInt> map, Object obj) {
-            MutableInt i = map.get(obj);
-            if(i == null) {
-                i = new MutableInt(0);
-                map.put(obj, i);
-            }
-            i.increment();
-        }
-
-        private boolean decrement(Map<Object, MutableInt> map, Object obj) {
-            MutableInt i = map.get(obj);
-            if(i == null) {
-                return false;
-            }
-
-            i.decrement();
-
-            if(i.intValue() == 0) {
-                map.remove(obj);
-            }
-
-            return true;
-        }
-
     }
 
     private static final ThreadLocal<Map<Object, MutableInt>> objectSet = new ThreadLocal<Map<Object, MutableInt>>();
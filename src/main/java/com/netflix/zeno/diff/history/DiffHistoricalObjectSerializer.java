@@ -0,0 +1,97 @@
+/*
+ *
+ *  Copyright 2014 Netflix, Inc.
+ *
+ *     Licensed under the Apache License, Version 2.0 (the "License");
+ *     you may not use this file except in compliance with the License.
+ *     You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *     Unless required by applicable law or agreed to in writing, software
+ *     distributed under the License is distributed on an "AS IS" BASIS,
+ *     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *     See the License for the specific language governing permissions and
+ *     limitations under the License.
+ *
+ */
+package com.netflix.zeno.diff.history;
+
+import com.netflix.zeno.fastblob.record.ByteDataBuffer;
+import com.netflix.zeno.fastblob.record.SegmentedByteArray;
+import com.netflix.zeno.fastblob.record.VarInt;
+import com.netflix.zeno.flatblob.FlatBlobSerializationFramework;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Converts the historical objects for a single type to and from compact, self-contained byte arrays.<p/>
+ *
+ * FastBlob records reference their sub-objects by ordinals, which are only meaningful in the data state they were read from.  Historical
+ * objects are therefore written in the FlatBlob format, which embeds each referenced sub-object in the record.<p/>
+ *
+ * If the type's key is not unique, the historical value is a List of objects.  In this case, the serialized representation is
+ * the number of elements, followed by the length and FlatBlob record of each element.
+ *
+ */
+class DiffHistoricalObjectSerializer {
+
+    private final FlatBlobSerializationFramework framework;
+    private final String serializerName;
+    private final boolean isGroupOfObjects;
+
+    DiffHistoricalObjectSerializer(FlatBlobSerializationFramework framework, String serializerName, boolean isGroupOfObjects) {
+        this.framework = framework;
+        this.serializerName = serializerName;
+        this.isGroupOfObjects = isGroupOfObjects;
+    }
+
+    public byte[] serialize(Object obj) {
+        ByteDataBuffer buf = new ByteDataBuffer();
+
+        if(isGroupOfObjects) {
+            List<?> group = (List<?>)obj;
+            ByteDataBuffer elementBuf = new ByteDataBuffer();
+
+            VarInt.writeVInt(buf, group.size());
+
+            for(Object element : group) {
+                elementBuf.reset();
+                framework.serialize(serializerName, element, elementBuf);
+                VarInt.writeVInt(buf, (int)elementBuf.length());
+                elementBuf.copyTo(buf);
+            }
+        } else {
+            framework.serialize(serializerName, obj, buf);
+        }
+
+        byte data[] = new byte[(int)buf.length()];
+        buf.getUnderlyingArray().copy(0, data, 0, data.length);
+        return data;
+    }
+
+    public Object deserialize(byte data[]) {
+        SegmentedByteArray arr = new SegmentedByteArray(32 - Integer.numberOfLeadingZeros(data.length));
+        arr.copy(data, 0, 0, data.length);
+
+        if(isGroupOfObjects) {
+            int numElements = VarInt.readVInt(arr, 0);
+            int position = VarInt.sizeOfVInt(numElements);
+
+            List<Object> group = new ArrayList<Object>(numElements);
+
+            for(int i=0;i<numElements;i++) {
+                int elementLength = VarInt.readVInt(arr, position);
+                position += VarInt.sizeOfVInt(elementLength);
+                group.add(framework.deserialize(serializerName, arr, position, false));
+                position += elementLength;
+            }
+
+            return group;
+        }
+
+        return framework.deserialize(serializerName, arr, false);
+    }
+
+}
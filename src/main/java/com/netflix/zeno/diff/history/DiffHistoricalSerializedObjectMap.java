@@ -0,0 +1,94 @@
+/*
+ *
+ *  Copyright 2014 Netflix, Inc.
+ *
+ *     Licensed under the Apache License, Version 2.0 (the "License");
+ *     you may not use this file except in compliance with the License.
+ *     You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *     Unless required by applicable law or agreed to in writing, software
+ *     distributed under the License is distributed on an "AS IS" BASIS,
+ *     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *     See the License for the specific language governing permissions and
+ *     limitations under the License.
+ *
+ */
+package com.netflix.zeno.diff.history;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A read-only Map view over historical objects which are retained only in serialized form.<p/>
+ *
+ * Values are deserialized each time they are requested, so the old objects are never pinned on the heap.
+ *
+ */
+class DiffHistoricalSerializedObjectMap<K, V> extends AbstractMap<K, V> {
+
+    private final Map<K, byte[]> serializedObjects;
+    private final DiffHistoricalObjectSerializer serializer;
+
+    DiffHistoricalSerializedObjectMap(Map<K, byte[]> serializedObjects, DiffHistoricalObjectSerializer serializer) {
+        this.serializedObjects = serializedObjects;
+        this.serializer = serializer;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return serializedObjects.containsKey(key);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public V get(Object key) {
+        byte data[] = serializedObjects.get(key);
+        if(data == null)
+            return null;
+        return (V) serializer.deserialize(data);
+    }
+
+    Map<K, byte[]> getSerializedObjects() {
+        return serializedObjects;
+    }
+
+    @Override
+    public int size() {
+        return serializedObjects.size();
+    }
+
+    @Override
+    public Set<Map.Entry<K, V>> entrySet() {
+        return new AbstractSet<Map.Entry<K, V>>() {
+            public Iterator<Map.Entry<K, V>> iterator() {
+                final Iterator<Map.Entry<K, byte[]>> serializedIterator = serializedObjects.entrySet().iterator();
+
+                return new Iterator<Map.Entry<K, V>>() {
+                    public boolean hasNext() {
+                        return serializedIterator.hasNext();
+                    }
+
+                    @SuppressWarnings("unchecked")
+                    public Map.Entry<K, V> next() {
+                        Map.Entry<K, byte[]> entry = serializedIterator.next();
+                        return new AbstractMap.SimpleImmutableEntry<K, V>(entry.getKey(), (V) serializer.deserialize(entry.getValue()));
+                    }
+
+                    public void remove() {
+                        throw new UnsupportedOperationException();
+                    }
+                };
+            }
+
+            public int size() {
+                return serializedObjects.size();
+            }
+        };
+    }
+
+}
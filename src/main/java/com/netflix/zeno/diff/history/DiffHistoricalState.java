@@ -18,6 +18,7 @@
 package com.netflix.zeno.diff.history;
 
 import com.netflix.zeno.diff.TypeDiffInstruction;
+import com.netflix.zeno.flatblob.FlatBlobSerializationFramework;
 import com.netflix.zeno.util.collections.impl.OpenAddressingArraySet;
 import com.netflix.zeno.util.collections.impl.OpenAddressingHashMap;
 
@@ -36,10 +37,20 @@ public class DiffHistoricalState {
 
     private final String version;
     private final Map<String, DiffHistoricalTypeState<?, ?>> typeStates;
+    private final FlatBlobSerializationFramework serializationFramework;
 
     public DiffHistoricalState(String version) {
+        this(version, null);
+    }
+
+    /**
+     * If a FlatBlobSerializationFramework is supplied, the changed and deleted objects are retained only as serialized bytes,
+     * and are deserialized each time they are requested.
+     */
+    public DiffHistoricalState(String version, FlatBlobSerializationFramework serializationFramework) {
         this.version = version;
         this.typeStates = new ConcurrentHashMap<String, DiffHistoricalTypeState<?, ?>>();
+        this.serializationFramework = serializationFramework;
     }
 
     public String getVersion() {
@@ -67,7 +78,44 @@ public class DiffHistoricalState {
         String typeIdentifier = typeInstruction.getTypeIdentifier();
         boolean isGroupOfObjects = !typeInstruction.isUniqueKey();
 
-        typeStates.put(typeIdentifier, createTypeState(from, to, isGroupOfObjects));
+        typeStates.put(typeIdentifier, createTypeState(from, to, isGroupOfObjects, historicalObjectSerializer(typeInstruction)));
+    }
+
+    /**
+     * Add the historical state for a type directly from the keys of the new objects and the previous values of the changed
+     * and deleted objects, rather than by comparing two complete states.
+     */
+    public <K, V> void addTypeState(TypeDiffInstruction<?> typeInstruction, Set<K> newObjects, Map<K, V> diffObjects, Map<K, V> deletedObjects) {
+        OpenAddressingArraySet<K> newSet = new OpenAddressingArraySet<K>();
+        newSet.builderInit(newObjects.size());
+
+        int counter = 0;
+        for(K key : newObjects) {
+            newSet.builderSet(counter++, key);
+        }
+
+        newSet.builderFinish();
+
+        typeStates.put(typeInstruction.getTypeIdentifier(), createTypeState(newSet, compactMap(diffObjects), compactMap(deletedObjects), historicalObjectSerializer(typeInstruction)));
+    }
+
+    private DiffHistoricalObjectSerializer historicalObjectSerializer(TypeDiffInstruction<?> typeInstruction) {
+        if(serializationFramework == null)
+            return null;
+        return new DiffHistoricalObjectSerializer(serializationFramework, typeInstruction.getSerializerName(), !typeInstruction.isUniqueKey());
+    }
+
+    private <K, V> OpenAddressingHashMap<K, V> compactMap(Map<K, V> map) {
+        OpenAddressingHashMap<K, V> compactMap = new OpenAddressingHashMap<K, V>();
+        compactMap.builderInit(map.size());
+
+        int counter = 0;
+        for(Map.Entry<K, V> entry : map.entrySet()) {
+            compactMap.builderPut(counter++, entry.getKey(), entry.getValue());
+        }
+
+        compactMap.builderFinish();
+        return compactMap;
     }
 
     /**
@@ -76,7 +124,7 @@ public class DiffHistoricalState {
      * The key which was chosen for this type may not be unique, in which case both Maps will contain a List of items for each key.
      *
      */
-    private <K, V> DiffHistoricalTypeState<K, V> createTypeState(Map<K, V> from, Map<K, V> to, boolean isGroupOfObjects) {
+    private <K, V> DiffHistoricalTypeState<K, V> createTypeState(Map<K, V> from, Map<K, V> to, boolean isGroupOfObjects, DiffHistoricalObjectSerializer serializer) {
         int newCounter = 0;
         int diffCounter = 0;
         int deleteCounter = 0;
@@ -134,9 +182,34 @@ public class DiffHistoricalState {
         diffMap.builderFinish();
         deleteMap.builderFinish();
 
+        return createTypeState(newSet, diffMap, deleteMap, serializer);
+    }
+
+    private <K, V> DiffHistoricalTypeState<K, V> createTypeState(Set<K> newSet, Map<K, V> diffMap, Map<K, V> deleteMap, DiffHistoricalObjectSerializer serializer) {
+        if(serializer != null)
+            return new DiffHistoricalTypeState<K, V>(newSet, serializedMap(diffMap, serializer), serializedMap(deleteMap, serializer));
+
         return new DiffHistoricalTypeState<K, V>(newSet, diffMap, deleteMap);
     }
 
+    /**
+     * Replace each of the old objects in the supplied map with its serialized representation.
+     */
+    private <K, V> Map<K, V> serializedMap(Map<K, V> objects, DiffHistoricalObjectSerializer serializer) {
+        OpenAddressingHashMap<K, byte[]> serializedObjects = new OpenAddressingHashMap<K, byte[]>();
+        serializedObjects.builderInit(objects.size());
+
+        int counter = 0;
+
+        for(Map.Entry<K, V> entry : objects.entrySet()) {
+            serializedObjects.builderPut(counter++, entry.getKey(), serializer.serialize(entry.getValue()));
+        }
+
+        serializedObjects.builderFinish();
+
+        return new DiffHistoricalSerializedObjectMap<K, V>(serializedObjects, serializer);
+    }
+
     /**
      * Equality is different depending on whether or not we are keying by a unique key.<p/>
      *
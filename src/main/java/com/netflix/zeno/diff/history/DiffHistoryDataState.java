@@ -19,8 +19,11 @@ package com.netflix.zeno.diff.history;
 
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.apache.commons.lang.mutable.MutableInt;
 
@@ -42,9 +45,10 @@ import com.netflix.zeno.util.collections.impl.OpenAddressingHashMap;
  */
 public class DiffHistoryDataState {
 
-    private final String version;
+    private String version;
     private final TypeDiffInstruction<?>[] typeInstructions;
     private final Map<String, Map<?, ?>> typeStates;
+    private final boolean updatable;
 
     /**
      * Create a new DiffHistoryDataState. Pulls data from the supplied
@@ -54,11 +58,19 @@ public class DiffHistoryDataState {
      * @param stateEngine
      * @param typeInstructions
      */
-    @SuppressWarnings("unchecked")
     public DiffHistoryDataState(FastBlobStateEngine stateEngine, TypeDiffInstruction<?>... typeInstructions) {
+        this(stateEngine, false, typeInstructions);
+    }
+
+    /**
+     * If updatable, the type states are built as concurrent maps, which may be updated in place with applyChanges().
+     */
+    @SuppressWarnings("unchecked")
+    DiffHistoryDataState(FastBlobStateEngine stateEngine, boolean updatable, TypeDiffInstruction<?>... typeInstructions) {
         this.version = stateEngine.getLatestVersion();
         this.typeInstructions = typeInstructions;
         this.typeStates = new HashMap<String, Map<?, ?>>();
+        this.updatable = updatable;
 
         for (TypeDiffInstruction<?> instruction : typeInstructions) {
             FastBlobTypeDeserializationState<Object> typeState = stateEngine.getTypeDeserializationState(instruction.getSerializerName());
@@ -74,6 +86,15 @@ public class DiffHistoryDataState {
     }
 
     private <T> void buildUniqueKeyTypeState(FastBlobTypeDeserializationState<T> deserializationState, TypeDiffInstruction<T> instruction) {
+        if(updatable) {
+            Map<Object, T> typeState = new ConcurrentHashMap<Object, T>(deserializationState.countObjects());
+            for (T obj : deserializationState) {
+                typeState.put(instruction.getKeyFromObject(obj), obj);
+            }
+            typeStates.put(instruction.getTypeIdentifier(), typeState);
+            return;
+        }
+
         OpenAddressingHashMap<Object, T> typeState = new OpenAddressingHashMap<Object, T>();
         typeState.builderInit(deserializationState.countObjects());
 
@@ -95,6 +116,11 @@ public class DiffHistoryDataState {
 
         Map<Object, List<T>> groupsByKey = groupObjectsByKey(deserializationState, instruction, countsByKey);
 
+        if(updatable) {
+            typeStates.put(instruction.getTypeIdentifier(), new ConcurrentHashMap<Object, List<T>>(groupsByKey));
+            return;
+        }
+
         OpenAddressingHashMap<Object, List<T>> typeState = buildNewTypeState(groupsByKey);
 
         typeStates.put(instruction.getTypeIdentifier(), typeState);
@@ -148,6 +174,128 @@ public class DiffHistoryDataState {
         return countsByKey;
     }
 
+    /**
+     * Update an updatable state in place with the objects which were removed from and added to a type, and record the
+     * resulting changes in the supplied DiffHistoricalState.  This is O(changes), rather than O(total data).
+     */
+    void applyChanges(TypeDiffInstruction<?> instruction, List<?> removedObjects, List<?> addedObjects, DiffHistoricalState historicalState) {
+        if(!updatable)
+            throw new IllegalStateException("This DiffHistoryDataState was not built to be updated in place");
+
+        if(instruction.isUniqueKey())
+            applyUniqueKeyChanges(instruction, removedObjects, addedObjects, historicalState);
+        else
+            applyGroupedChanges(instruction, removedObjects, addedObjects, historicalState);
+    }
+
+    private void applyUniqueKeyChanges(TypeDiffInstruction<?> instruction, List<?> removedObjects, List<?> addedObjects, DiffHistoricalState historicalState) {
+        Map<Object, Object> typeState = getTypeState(instruction.getTypeIdentifier());
+        Map<Object, Object> previousObjects = new HashMap<Object, Object>();
+
+        for(Object obj : removedObjects) {
+            Object key = instruction.getKeyFromObject(obj);
+            if(typeState.get(key) == obj) {
+                typeState.remove(key);
+                previousObjects.put(key, obj);
+            }
+        }
+
+        Set<Object> newObjects = new HashSet<Object>();
+        Map<Object, Object> diffObjects = new HashMap<Object, Object>();
+
+        for(Object obj : addedObjects) {
+            Object key = instruction.getKeyFromObject(obj);
+            typeState.put(key, obj);
+
+            Object previous = previousObjects.remove(key);
+            if(previous != null)
+                diffObjects.put(key, previous);
+            else
+                newObjects.add(key);
+        }
+
+        /// whatever remains was removed without being replaced.
+        historicalState.addTypeState(instruction, newObjects, diffObjects, previousObjects);
+    }
+
+    /**
+     * Each group which is touched by a change is copied before it is modified, so that the previous List may be retained as the historical value.
+     */
+    private void applyGroupedChanges(TypeDiffInstruction<?> instruction, List<?> removedObjects, List<?> addedObjects, DiffHistoricalState historicalState) {
+        Map<Object, List<Object>> typeState = getTypeState(instruction.getTypeIdentifier());
+        Map<Object, List<Object>> previousGroups = new HashMap<Object, List<Object>>();
+
+        for(Object obj : removedObjects) {
+            Object key = instruction.getKeyFromObject(obj);
+            List<Object> group = typeState.get(key);
+            if(group == null || !containsInstance(group, obj))
+                continue;
+
+            if(!previousGroups.containsKey(key)) {
+                previousGroups.put(key, group);
+                group = new ArrayList<Object>(group);
+            }
+
+            removeInstance(group, obj);
+
+            if(group.isEmpty())
+                typeState.remove(key);
+            else
+                typeState.put(key, group);
+        }
+
+        for(Object obj : addedObjects) {
+            Object key = instruction.getKeyFromObject(obj);
+            List<Object> group = typeState.get(key);
+
+            if(!previousGroups.containsKey(key)) {
+                previousGroups.put(key, group);
+                group = group == null ? new ArrayList<Object>() : new ArrayList<Object>(group);
+            } else if(group == null) {
+                group = new ArrayList<Object>();
+            }
+
+            group.add(obj);
+            typeState.put(key, group);
+        }
+
+        Set<Object> newObjects = new HashSet<Object>();
+        Map<Object, List<Object>> diffObjects = new HashMap<Object, List<Object>>();
+        Map<Object, List<Object>> deletedObjects = new HashMap<Object, List<Object>>();
+
+        for(Map.Entry<Object, List<Object>> entry : previousGroups.entrySet()) {
+            if(entry.getValue() == null)
+                newObjects.add(entry.getKey());
+            else if(!typeState.containsKey(entry.getKey()))
+                deletedObjects.put(entry.getKey(), entry.getValue());
+            else
+                diffObjects.put(entry.getKey(), entry.getValue());
+        }
+
+        historicalState.addTypeState(instruction, newObjects, diffObjects, deletedObjects);
+    }
+
+    private boolean containsInstance(List<Object> group, Object obj) {
+        for(Object element : group) {
+            if(element == obj)
+                return true;
+        }
+        return false;
+    }
+
+    private void removeInstance(List<Object> group, Object obj) {
+        for(int i=0;i<group.size();i++) {
+            if(group.get(i) == obj) {
+                group.remove(i);
+                return;
+            }
+        }
+    }
+
+    void setVersion(String version) {
+        this.version = version;
+    }
+
     public TypeDiffInstruction<?>[] getTypeDiffInstructions() {
         return typeInstructions;
     }
@@ -0,0 +1,133 @@
+/*
+ *
+ *  Copyright 2014 Netflix, Inc.
+ *
+ *     Licensed under the Apache License, Version 2.0 (the "License");
+ *     you may not use this file except in compliance with the License.
+ *     You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *     Unless required by applicable law or agreed to in writing, software
+ *     distributed under the License is distributed on an "AS IS" BASIS,
+ *     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *     See the License for the specific language governing permissions and
+ *     limitations under the License.
+ *
+ */
+package com.netflix.zeno.diff.history;
+
+import com.netflix.zeno.fastblob.record.ByteDataBuffer;
+import com.netflix.zeno.fastblob.record.SegmentedByteArrayHasher;
+import com.netflix.zeno.fastblob.record.VarInt;
+
+import java.util.List;
+
+/**
+ * Encodes diff keys for the indexes of a DiffHistoryLog.<p/>
+ *
+ * The index outlives the JVM which wrote it, so a key's Object.hashCode() cannot be used directly:  enums, and any key class which does not override
+ * hashCode(), hash by identity.  Instead, each key is encoded by value and the encoding is hashed with MurmurHash3:<p/>
+ *
+ * <ul>
+ * <li>Strings, boxed primitives, and enums (by declaring class and constant name) are encoded directly.</li>
+ * <li>Lists are encoded element by element, so that composite keys may be built from the above.</li>
+ * <li>Any other key class is encoded by its hashCode(), which it must override.  Key classes which inherit Object.hashCode() are rejected.</li>
+ * </ul>
+ *
+ */
+class DiffHistoryKeyEncoder {
+
+    private static final byte NULL = 0;
+    private static final byte STRING = 1;
+    private static final byte INTEGER = 2;
+    private static final byte LONG = 3;
+    private static final byte SHORT = 4;
+    private static final byte BYTE = 5;
+    private static final byte CHARACTER = 6;
+    private static final byte BOOLEAN = 7;
+    private static final byte FLOAT = 8;
+    private static final byte DOUBLE = 9;
+    private static final byte ENUM = 10;
+    private static final byte LIST = 11;
+    private static final byte HASH_CODE = 12;
+
+    private final ByteDataBuffer buf = new ByteDataBuffer(64);
+
+    /**
+     * @return a hash of the key which is stable across JVM instances.
+     *
+     * @throws IllegalArgumentException if the key's class cannot be encoded stably.
+     */
+    public int hash(Object key) {
+        buf.reset();
+        encode(key);
+        return SegmentedByteArrayHasher.hashCode(buf);
+    }
+
+    private void encode(Object key) {
+        if(key == null) {
+            buf.write(NULL);
+        } else if(key instanceof String) {
+            buf.write(STRING);
+            writeString((String)key);
+        } else if(key instanceof Integer) {
+            buf.write(INTEGER);
+            VarInt.writeVLong(buf, ((Integer)key).intValue());
+        } else if(key instanceof Long) {
+            buf.write(LONG);
+            VarInt.writeVLong(buf, ((Long)key).longValue());
+        } else if(key instanceof Short) {
+            buf.write(SHORT);
+            VarInt.writeVLong(buf, ((Short)key).shortValue());
+        } else if(key instanceof Byte) {
+            buf.write(BYTE);
+            VarInt.writeVLong(buf, ((Byte)key).byteValue());
+        } else if(key instanceof Character) {
+            buf.write(CHARACTER);
+            VarInt.writeVLong(buf, ((Character)key).charValue());
+        } else if(key instanceof Boolean) {
+            buf.write(BOOLEAN);
+            buf.write(((Boolean)key).booleanValue() ? (byte)1 : (byte)0);
+        } else if(key instanceof Float) {
+            buf.write(FLOAT);
+            VarInt.writeVLong(buf, Float.floatToIntBits(((Float)key).floatValue()));
+        } else if(key instanceof Double) {
+            buf.write(DOUBLE);
+            VarInt.writeVLong(buf, Double.doubleToLongBits(((Double)key).doubleValue()));
+        } else if(key instanceof Enum) {
+            Enum<?> e = (Enum<?>)key;
+            buf.write(ENUM);
+            writeString(e.getDeclaringClass().getName());
+            writeString(e.name());
+        } else if(key instanceof List) {
+            List<?> list = (List<?>)key;
+            buf.write(LIST);
+            VarInt.writeVInt(buf, list.size());
+            for(Object element : list) {
+                encode(element);
+            }
+        } else {
+            if(!overridesHashCode(key.getClass()))
+                throw new IllegalArgumentException("Diff keys of " + key.getClass().getName() + " cannot be written to a DiffHistoryLog: the class does not override hashCode()");
+            buf.write(HASH_CODE);
+            VarInt.writeVLong(buf, key.hashCode());
+        }
+    }
+
+    private void writeString(String str) {
+        VarInt.writeVInt(buf, str.length());
+        for(int i=0;i<str.length();i++) {
+            VarInt.writeVInt(buf, str.charAt(i));
+        }
+    }
+
+    private static boolean overridesHashCode(Class<?> clazz) {
+        try {
+            return clazz.getMethod("hashCode").getDeclaringClass() != Object.class;
+        } catch (NoSuchMethodException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+}
@@ -0,0 +1,360 @@
+/*
+ *
+ *  Copyright 2014 Netflix, Inc.
+ *
+ *     Licensed under the Apache License, Version 2.0 (the "License");
+ *     you may not use this file except in compliance with the License.
+ *     You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *     Unless required by applicable law or agreed to in writing, software
+ *     distributed under the License is distributed on an "AS IS" BASIS,
+ *     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *     See the License for the specific language governing permissions and
+ *     limitations under the License.
+ *
+ */
+package com.netflix.zeno.diff.history;
+
+import com.netflix.zeno.diff.TypeDiffInstruction;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An append-only, on-disk log of DiffHistoricalStates, used by the DiffHistoryTracker to retain a history which is deeper than
+ * may be kept on the heap, and which survives a restart.<p/>
+ *
+ * Each historical state is appended as a single segment:<p/>
+ *
+ * [long segmentEnd][records and indexes][directory][long directoryOffset]<p/>
+ *
+ * Each record is the serialized representation (see DiffHistoricalObjectSerializer) of an object which was added, changed, or deleted in
+ * the state.  For each type, the index is a list of fixed-length entries (key hash, entry kind, record offset), sorted by key hash, so that a key
+ * can be located with a binary search and then verified by extracting the key from the candidate record.  The key hash is computed from an encoding
+ * of the key's value (see DiffHistoryKeyEncoder) rather than its hashCode(), so that the indexes remain valid in another JVM instance.<p/>
+ *
+ * The directory of a segment contains the version, the header tags, and the location of each type's index.  When a log file is opened, the directory
+ * of each complete segment is read into memory.  An incomplete trailing segment (e.g. from a process which died mid-append) is truncated.
+ *
+ */
+public class DiffHistoryLog {
+
+    static final byte NEW_OBJECT = 0;
+    static final byte DIFF_OBJECT = 1;
+    static final byte DELETED_OBJECT = 2;
+
+    private static final int INDEX_ENTRY_SIZE = 4 + 1 + 8;
+
+    private final RandomAccessFile file;
+    private final List<Segment> segments;
+    private final DiffHistoryKeyEncoder keyEncoder;
+
+    public DiffHistoryLog(File file) throws IOException {
+        this.file = new RandomAccessFile(file, "rw");
+        this.segments = new ArrayList<Segment>();
+        this.keyEncoder = new DiffHistoryKeyEncoder();
+        readSegments();
+    }
+
+    /**
+     * @return the number of historical states in this log.  State 0 is the oldest.
+     */
+    public synchronized int numStates() {
+        return segments.size();
+    }
+
+    public synchronized String getVersion(int state) {
+        return segments.get(state).version;
+    }
+
+    public synchronized Map<String, String> getHeaderTags(int state) {
+        return segments.get(state).headerTags;
+    }
+
+    /**
+     * @return the header tags for the most recent state with the given version, or null if no such state is in this log.
+     */
+    public synchronized Map<String, String> getHeaderTags(String version) {
+        for(int i=segments.size()-1;i>=0;i--) {
+            if(segments.get(i).version.equals(version))
+                return segments.get(i).headerTags;
+        }
+        return null;
+    }
+
+    public synchronized void close() throws IOException {
+        file.close();
+    }
+
+    /**
+     * Append a historical state.  The new objects are not retained by the DiffHistoricalState, so they are read from the "to" state,
+     * and are recorded only so that their keys may be verified during a lookup.
+     */
+    synchronized void append(DiffHistoricalState historicalState, DiffHistoryDataState toState, Map<String, String> headerTags, Map<String, DiffHistoricalObjectSerializer> serializers) throws IOException {
+        long segmentStart = file.length();
+
+        ByteArrayOutputStream segmentBytes = new ByteArrayOutputStream();
+        DataOutputStream os = new DataOutputStream(segmentBytes);
+
+        /// placeholder for the end of the segment, which is filled in once the segment is complete.
+        os.writeLong(0);
+
+        Map<String, TypeIndex> typeIndexes = new HashMap<String, TypeIndex>();
+
+        for(String type : historicalState.getTypes()) {
+            DiffHistoricalTypeState<Object, Object> typeState = historicalState.getTypeState(type);
+            DiffHistoricalObjectSerializer serializer = serializers.get(type);
+            Map<Object, Object> toTypeState = toState.getTypeState(type);
+
+            int numEntries = typeState.numChanges();
+            int keyHashes[] = new int[numEntries];
+            byte kinds[] = new byte[numEntries];
+            long recordOffsets[] = new long[numEntries];
+
+            int counter = 0;
+
+            for(Object key : typeState.getNewObjects()) {
+                keyHashes[counter] = keyEncoder.hash(key);
+                kinds[counter] = NEW_OBJECT;
+                recordOffsets[counter] = segmentStart + os.size();
+                writeRecord(os, serializer.serialize(toTypeState.get(key)));
+                counter++;
+            }
+
+            counter = writeRecords(os, segmentStart, typeState.getDiffObjects(), DIFF_OBJECT, serializer, keyHashes, kinds, recordOffsets, counter);
+            counter = writeRecords(os, segmentStart, typeState.getDeletedObjects(), DELETED_OBJECT, serializer, keyHashes, kinds, recordOffsets, counter);
+
+            typeIndexes.put(type, new TypeIndex(segmentStart + os.size(), numEntries));
+            writeIndex(os, keyHashes, kinds, recordOffsets);
+        }
+
+        long directoryOffset = segmentStart + os.size();
+
+        os.writeUTF(historicalState.getVersion());
+        os.writeInt(headerTags.size());
+        for(Map.Entry<String, String> tag : headerTags.entrySet()) {
+            os.writeUTF(tag.getKey());
+            os.writeUTF(tag.getValue());
+        }
+
+        os.writeInt(typeIndexes.size());
+        for(Map.Entry<String, TypeIndex> entry : typeIndexes.entrySet()) {
+            os.writeUTF(entry.getKey());
+            os.writeLong(entry.getValue().offset);
+            os.writeInt(entry.getValue().numEntries);
+        }
+
+        os.writeLong(directoryOffset);
+        os.flush();
+
+        byte segment[] = segmentBytes.toByteArray();
+        long segmentEnd = segmentStart + segment.length;
+        for(int i=0;i<8;i++) {
+            segment[i] = (byte)(segmentEnd >>> (56 - (i * 8)));
+        }
+
+        file.seek(segmentStart);
+        file.write(segment);
+
+        segments.add(new Segment(historicalState.getVersion(), headerTags, typeIndexes));
+    }
+
+    @SuppressWarnings("unchecked")
+    private int writeRecords(DataOutputStream os, long segmentStart, Map<Object, Object> objects, byte kind, DiffHistoricalObjectSerializer serializer, int keyHashes[], byte kinds[], long recordOffsets[], int counter) throws IOException {
+        if(objects instanceof DiffHistoricalSerializedObjectMap) {
+            /// the objects are already serialized -- copy the bytes directly.
+            Map<Object, byte[]> serializedObjects = ((DiffHistoricalSerializedObjectMap<Object, Object>)objects).getSerializedObjects();
+            for(Map.Entry<Object, byte[]> entry : serializedObjects.entrySet()) {
+                keyHashes[counter] = keyEncoder.hash(entry.getKey());
+                kinds[counter] = kind;
+                recordOffsets[counter] = segmentStart + os.size();
+                writeRecord(os, entry.getValue());
+                counter++;
+            }
+        } else {
+            for(Map.Entry<Object, Object> entry : objects.entrySet()) {
+                keyHashes[counter] = keyEncoder.hash(entry.getKey());
+                kinds[counter] = kind;
+                recordOffsets[counter] = segmentStart + os.size();
+                writeRecord(os, serializer.serialize(entry.getValue()));
+                counter++;
+            }
+        }
+        return counter;
+    }
+
+    private void writeRecord(DataOutputStream os, byte data[]) throws IOException {
+        os.writeInt(data.length);
+        os.write(data);
+    }
+
+    private void writeIndex(DataOutputStream os, int keyHashes[], byte kinds[], long recordOffsets[]) throws IOException {
+        /// sort by key hash, carrying the entry index in the low 32 bits.
+        long sortKeys[] = new long[keyHashes.length];
+        for(int i=0;i<keyHashes.length;i++) {
+            sortKeys[i] = ((long)keyHashes[i] << 32) | i;
+        }
+
+        Arrays.sort(sortKeys);
+
+        for(int i=0;i<sortKeys.length;i++) {
+            int entry = (int)sortKeys[i];
+            os.writeInt(keyHashes[entry]);
+            os.writeByte(kinds[entry]);
+            os.writeLong(recordOffsets[entry]);
+        }
+    }
+
+    /**
+     * Locate the record for the given key in the given state.
+     *
+     * @return the logged object, or null if the key did not change in the given state.
+     */
+    synchronized LoggedObject find(int state, String type, Object key, TypeDiffInstruction<?> instruction, DiffHistoricalObjectSerializer serializer) throws IOException {
+        TypeIndex index = segments.get(state).typeIndexes.get(type);
+        if(index == null)
+            return null;
+
+        int keyHash = keyEncoder.hash(key);
+
+        /// binary search for the first entry with this key hash.
+        int low = 0;
+        int high = index.numEntries;
+
+        while(low < high) {
+            int mid = (low + high) >>> 1;
+            file.seek(index.offset + ((long)mid * INDEX_ENTRY_SIZE));
+            if(file.readInt() < keyHash)
+                low = mid + 1;
+            else
+                high = mid;
+        }
+
+        /// then check each entry with a matching hash
+        for(int i=low;i<index.numEntries;i++) {
+            file.seek(index.offset + ((long)i * INDEX_ENTRY_SIZE));
+            if(file.readInt() != keyHash)
+                break;
+
+            byte kind = file.readByte();
+            long recordOffset = file.readLong();
+
+            Object obj = readRecord(recordOffset, serializer);
+
+            if(key.equals(extractKey(obj, instruction)))
+                return new LoggedObject(kind, obj);
+        }
+
+        return null;
+    }
+
+    private Object readRecord(long recordOffset, DiffHistoricalObjectSerializer serializer) throws IOException {
+        file.seek(recordOffset);
+        byte data[] = new byte[file.readInt()];
+        file.readFully(data);
+        return serializer.deserialize(data);
+    }
+
+    private Object extractKey(Object obj, TypeDiffInstruction<?> instruction) {
+        if(!instruction.isUniqueKey()) {
+            /// all of the objects in a group share the same key
+            obj = ((List<?>)obj).get(0);
+        }
+        return instruction.getKeyFromObject(obj);
+    }
+
+    private void readSegments() throws IOException {
+        long position = 0;
+        long fileLength = file.length();
+
+        while(position + 8 <= fileLength) {
+            file.seek(position);
+            long segmentEnd = file.readLong();
+            if(segmentEnd < position + 16 || segmentEnd > fileLength)
+                break;
+
+            file.seek(segmentEnd - 8);
+            file.seek(file.readLong());
+
+            String version = file.readUTF();
+
+            int numTags = file.readInt();
+            Map<String, String> headerTags = new HashMap<String, String>(numTags);
+            for(int i=0;i<numTags;i++) {
+                headerTags.put(file.readUTF(), file.readUTF());
+            }
+
+            int numTypes = file.readInt();
+            Map<String, TypeIndex> typeIndexes = new HashMap<String, TypeIndex>(numTypes);
+            for(int i=0;i<numTypes;i++) {
+                String type = file.readUTF();
+                long offset = file.readLong();
+                int numEntries = file.readInt();
+                typeIndexes.put(type, new TypeIndex(offset, numEntries));
+            }
+
+            segments.add(new Segment(version, headerTags, typeIndexes));
+            position = segmentEnd;
+        }
+
+        if(position != fileLength)
+            file.setLength(position);
+    }
+
+    /**
+     * An object found in the log, along with whether it was added, changed, or deleted in its state.
+     */
+    static class LoggedObject {
+        private final byte kind;
+        private final Object object;
+
+        LoggedObject(byte kind, Object object) {
+            this.kind = kind;
+            this.object = object;
+        }
+
+        public boolean isNewObject() {
+            return kind == NEW_OBJECT;
+        }
+
+        /**
+         * @return the object as it was before the state was applied, or null if it was added in the state.
+         */
+        public Object getPreviousObject() {
+            return isNewObject() ? null : object;
+        }
+    }
+
+    private static class Segment {
+        private final String version;
+        private final Map<String, String> headerTags;
+        private final Map<String, TypeIndex> typeIndexes;
+
+        Segment(String version, Map<String, String> headerTags, Map<String, TypeIndex> typeIndexes) {
+            this.version = version;
+            this.headerTags = headerTags;
+            this.typeIndexes = typeIndexes;
+        }
+    }
+
+    private static class TypeIndex {
+        private final long offset;
+        private final int numEntries;
+
+        TypeIndex(long offset, int numEntries) {
+            this.offset = offset;
+            this.numEntries = numEntries;
+        }
+    }
+
+}
@@ -20,8 +20,11 @@ package com.netflix.zeno.diff.history;
 import com.netflix.zeno.diff.DiffInstruction;
 import com.netflix.zeno.diff.TypeDiffInstruction;
 import com.netflix.zeno.fastblob.FastBlobStateEngine;
+import com.netflix.zeno.flatblob.FlatBlobSerializationFramework;
+import com.netflix.zeno.serializer.SerializerFactory;
 import com.netflix.zeno.util.SimultaneousExecutor;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
@@ -41,7 +44,16 @@ import java.util.concurrent.ConcurrentHashMap;
  * large amount of data, it can consume a significant memory footprint, and resource availability should be planned accordingly.<p/>
  *
  * This class takes advantage of the guarantee that two identical objects across adjacent data states will be the same instance.  Comparisons
- * can therefore be done with ==, rather than checking for identical serialized representations.
+ * can therefore be done with ==, rather than checking for identical serialized representations.<p/>
+ *
+ * If a SerializerFactory is supplied, the changed and deleted objects for each historical state are retained as compact serialized records
+ * rather than as the old object instances, and are deserialized only when requested via getObjectHistory().<p/>
+ *
+ * If a DiffHistoryLog is also supplied, each historical state is additionally appended to the log.  Only the specified number of the most
+ * recent states are then kept in memory; getObjectHistory() continues into the log for earlier states.<p/>
+ *
+ * If the tracker updates incrementally, it registers a TypeDeserializationStateListener for each tracked type, and each call to addState()
+ * costs O(changes) rather than O(total data).  These listeners replace any which were previously set on the state engine for those types.
  *
  * @author dkoszewnik
  *
@@ -53,6 +65,11 @@ public class DiffHistoryTracker {
     private final LinkedList<DiffHistoricalState> historicalStates;
     private final Map<String, Map<String, String>> historicalStateHeaderTags;
     private final TypeDiffInstruction<?> typeDiffInstructions[];
+    private final FlatBlobSerializationFramework historySerializationFramework;
+    private final DiffHistoryLog historyLog;
+    private final Map<String, TypeDiffInstruction<?>> typeDiffInstructionsByIdentifier;
+    private final Map<String, DiffHistoricalObjectSerializer> historicalObjectSerializers;
+    private final Map<String, DiffHistoryTypeChangeListener<Object>> changeListeners;
     private DiffHistoryDataState currentDataState;
 
     /**
@@ -62,11 +79,74 @@ public class DiffHistoryTracker {
      * @param diffInstruction - The set of key extractions for types in the object model.
      */
     public DiffHistoryTracker(int numStatesToKeep, FastBlobStateEngine stateEngine, DiffInstruction diffInstruction) {
-        this.historySizeToKeep = numStatesToKeep;
+        this(numStatesToKeep, stateEngine, diffInstruction, null);
+    }
+
+    /**
+     *
+     * @param numStatesToKeep - The number of historical states to keep
+     * @param stateEngine - The state engine to track the history of
+     * @param diffInstruction - The set of key extractions for types in the object model.
+     * @param serializerFactory - The SerializerFactory for the state engine's object model.  A separate set of serializers is required, because the
+     *                            historical objects are serialized with a different SerializationFramework than the state engine.
+     */
+    public DiffHistoryTracker(int numStatesToKeep, FastBlobStateEngine stateEngine, DiffInstruction diffInstruction, SerializerFactory serializerFactory) {
+        this(numStatesToKeep, stateEngine, diffInstruction, serializerFactory, null);
+    }
+
+    /**
+     *
+     * @param numStatesToKeepInMemory - The number of the most recent historical states to keep in memory
+     * @param stateEngine - The state engine to track the history of
+     * @param diffInstruction - The set of key extractions for types in the object model.
+     * @param serializerFactory - The SerializerFactory for the state engine's object model.
+     * @param historyLog - The log to which every historical state is appended.  Each state which is no longer kept in memory is read from this log.
+     */
+    public DiffHistoryTracker(int numStatesToKeepInMemory, FastBlobStateEngine stateEngine, DiffInstruction diffInstruction, SerializerFactory serializerFactory, DiffHistoryLog historyLog) {
+        this(numStatesToKeepInMemory, stateEngine, diffInstruction, serializerFactory, historyLog, false);
+    }
+
+    /**
+     *
+     * @param numStatesToKeepInMemory - The number of the most recent historical states to keep in memory
+     * @param stateEngine - The state engine to track the history of
+     * @param diffInstruction - The set of key extractions for types in the object model.
+     * @param serializerFactory - The SerializerFactory for the state engine's object model, or null to retain the historical objects themselves.
+     * @param historyLog - The log to which every historical state is appended, or null to keep history only in memory.
+     * @param updateIncrementally - Whether to update the tracked state from the objects added and removed by the state engine, rather than rebuilding it on each call to addState().
+     */
+    public DiffHistoryTracker(int numStatesToKeepInMemory, FastBlobStateEngine stateEngine, DiffInstruction diffInstruction, SerializerFactory serializerFactory, DiffHistoryLog historyLog, boolean updateIncrementally) {
+        if(historyLog != null && serializerFactory == null)
+            throw new IllegalArgumentException("A SerializerFactory is required to write history to a DiffHistoryLog");
+
+        this.historySizeToKeep = numStatesToKeepInMemory;
         this.stateEngine = stateEngine;
         this.historicalStates = new LinkedList<DiffHistoricalState>();
         this.historicalStateHeaderTags = new ConcurrentHashMap<String, Map<String,String>>();
         this.typeDiffInstructions = diffInstruction.getTypeInstructions();
+        this.historySerializationFramework = serializerFactory == null ? null : new FlatBlobSerializationFramework(serializerFactory);
+        this.historyLog = historyLog;
+        this.typeDiffInstructionsByIdentifier = new HashMap<String, TypeDiffInstruction<?>>();
+        this.historicalObjectSerializers = new HashMap<String, DiffHistoricalObjectSerializer>();
+
+        for(TypeDiffInstruction<?> typeInstruction : typeDiffInstructions) {
+            typeDiffInstructionsByIdentifier.put(typeInstruction.getTypeIdentifier(), typeInstruction);
+            if(historySerializationFramework != null)
+                historicalObjectSerializers.put(typeInstruction.getTypeIdentifier(), new DiffHistoricalObjectSerializer(historySerializationFramework, typeInstruction.getSerializerName(), !typeInstruction.isUniqueKey()));
+        }
+
+        this.changeListeners = updateIncrementally ? new HashMap<String, DiffHistoryTypeChangeListener<Object>>() : null;
+
+        if(updateIncrementally) {
+            for(TypeDiffInstruction<?> typeInstruction : typeDiffInstructions) {
+                String serializerName = typeInstruction.getSerializerName();
+                if(!changeListeners.containsKey(serializerName)) {
+                    DiffHistoryTypeChangeListener<Object> listener = new DiffHistoryTypeChangeListener<Object>();
+                    stateEngine.setTypeDeserializationStateListener(serializerName, listener);
+                    changeListeners.put(serializerName, listener);
+                }
+            }
+        }
     }
 
     /**
@@ -74,6 +154,11 @@ public class DiffHistoryTracker {
      * of the differences between the previous state and this new state.
      */
     public void addState() {
+        if(changeListeners != null) {
+            addIncrementalState();
+            return;
+        }
+
         DiffHistoryDataState nextState = new DiffHistoryDataState(stateEngine, typeDiffInstructions);
 
         if(currentDataState != null)
@@ -82,8 +167,41 @@ public class DiffHistoryTracker {
         currentDataState = nextState;
     }
 
+    /**
+     * The first state is built from the complete contents of the state engine.  Afterwards, the same state is updated in place with the
+     * objects which the state engine has added and removed since the previous call.
+     */
+    private void addIncrementalState() {
+        Map<String, List<Object>> removedObjects = new HashMap<String, List<Object>>();
+        Map<String, List<Object>> addedObjects = new HashMap<String, List<Object>>();
+
+        for(Map.Entry<String, DiffHistoryTypeChangeListener<Object>> entry : changeListeners.entrySet()) {
+            List<Object> removed = new ArrayList<Object>();
+            List<Object> added = new ArrayList<Object>();
+            entry.getValue().drainChanges(removed, added);
+            removedObjects.put(entry.getKey(), removed);
+            addedObjects.put(entry.getKey(), added);
+        }
+
+        if(currentDataState == null) {
+            currentDataState = new DiffHistoryDataState(stateEngine, true, typeDiffInstructions);
+            return;
+        }
+
+        DiffHistoricalState historicalState = new DiffHistoricalState(stateEngine.getLatestVersion(), historySerializationFramework);
+
+        for(TypeDiffInstruction<?> typeInstruction : typeDiffInstructions) {
+            String serializerName = typeInstruction.getSerializerName();
+            currentDataState.applyChanges(typeInstruction, removedObjects.get(serializerName), addedObjects.get(serializerName), historicalState);
+        }
+
+        currentDataState.setVersion(stateEngine.getLatestVersion());
+
+        recordHistoricalState(historicalState, currentDataState);
+    }
+
     private void newHistoricalState(final DiffHistoryDataState from, final DiffHistoryDataState to) {
-        final DiffHistoricalState historicalState = new DiffHistoricalState(to.getVersion());
+        final DiffHistoricalState historicalState = new DiffHistoricalState(to.getVersion(), historySerializationFramework);
 
         SimultaneousExecutor executor = new SimultaneousExecutor();
 
@@ -100,8 +218,22 @@ public class DiffHistoryTracker {
 
         executor.awaitUninterruptibly();
 
+        recordHistoricalState(historicalState, to);
+    }
+
+    private void recordHistoricalState(DiffHistoricalState historicalState, DiffHistoryDataState to) {
+        Map<String, String> headerTags = new HashMap<String, String>(stateEngine.getHeaderTags());
+
+        if(historyLog != null) {
+            try {
+                historyLog.append(historicalState, to, headerTags, historicalObjectSerializers);
+            } catch(IOException e) {
+                throw new RuntimeException("Unable to append state " + to.getVersion() + " to the history log", e);
+            }
+        }
+
         historicalStates.addFirst(historicalState);
-        historicalStateHeaderTags.put(to.getVersion(), new HashMap<String, String>(stateEngine.getHeaderTags()));
+        historicalStateHeaderTags.put(to.getVersion(), headerTags);
 
         /// trim historical entries beyond desired size.
         if(historicalStates.size() > historySizeToKeep) {
@@ -151,9 +283,35 @@ public class DiffHistoryTracker {
             currentItem = previous;
         }
 
+        if(historyLog != null)
+            addLoggedObjectHistory(states, type, key, currentItem);
+
         return states;
     }
 
+    /**
+     * Continue working backwards through the states which are no longer kept in memory.  Each state kept in memory
+     * was also appended to the log, so these are the states before the most recent historicalStates.size() states in the log.
+     */
+    @SuppressWarnings("unchecked")
+    private <T> void addLoggedObjectHistory(List<DiffObjectHistoricalTransition<T>> states, String type, Object key, T currentItem) {
+        TypeDiffInstruction<?> typeInstruction = typeDiffInstructionsByIdentifier.get(type);
+        DiffHistoricalObjectSerializer serializer = historicalObjectSerializers.get(type);
+
+        try {
+            for(int i=historyLog.numStates() - historicalStates.size() - 1; i >= 0; i--) {
+                DiffHistoryLog.LoggedObject loggedObject = historyLog.find(i, type, key, typeInstruction, serializer);
+
+                T previous = loggedObject == null ? currentItem : (T) loggedObject.getPreviousObject();
+
+                states.add(new DiffObjectHistoricalTransition<T>(historyLog.getVersion(i), previous, currentItem));
+                currentItem = previous;
+            }
+        } catch(IOException e) {
+            throw new RuntimeException("Unable to read object history from the history log", e);
+        }
+    }
+
     /**
      * Returns a list of the historical states, starting with the most recent and ending with the oldest.
      */
@@ -165,7 +323,10 @@ public class DiffHistoryTracker {
      * Returns the header tags which were attached to the given version.
      */
     public Map<String, String> getHistoricalStateHeaderTags(String stateVersion) {
-        return historicalStateHeaderTags.get(stateVersion);
+        Map<String, String> headerTags = historicalStateHeaderTags.get(stateVersion);
+        if(headerTags == null && historyLog != null)
+            headerTags = historyLog.getHeaderTags(stateVersion);
+        return headerTags;
     }
 
 }
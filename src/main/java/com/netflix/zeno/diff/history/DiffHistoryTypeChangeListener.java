@@ -0,0 +1,76 @@
+/*
+ *
+ *  Copyright 2014 Netflix, Inc.
+ *
+ *     Licensed under the Apache License, Version 2.0 (the "License");
+ *     you may not use this file except in compliance with the License.
+ *     You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *     Unless required by applicable law or agreed to in writing, software
+ *     distributed under the License is distributed on an "AS IS" BASIS,
+ *     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *     See the License for the specific language governing permissions and
+ *     limitations under the License.
+ *
+ */
+package com.netflix.zeno.diff.history;
+
+import com.netflix.zeno.fastblob.state.TypeDeserializationStateListener;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Records the objects which are removed from and added to a single type while the state engine consumes blobs, so that
+ * the DiffHistoryTracker can update its DiffHistoryDataState in O(changes).<p/>
+ *
+ * Objects which are reassigned to a new ordinal during a double snapshot reload are the same instances in both states, and are ignored.
+ *
+ */
+class DiffHistoryTypeChangeListener<T> extends TypeDeserializationStateListener<T> {
+
+    private List<T> removedObjects = new ArrayList<T>();
+    private List<T> addedObjects = new ArrayList<T>();
+
+    @Override
+    public synchronized void removedObject(T obj, int ordinal) {
+        removedObjects.add(obj);
+    }
+
+    @Override
+    public synchronized void addedObject(T obj, int ordinal) {
+        addedObjects.add(obj);
+    }
+
+    @Override
+    public void reassignedObject(T obj, int oldOrdinal, int newOrdinal) { }
+
+    /**
+     * Move the objects which were removed and added since the last call to this method into the supplied lists.<p/>
+     *
+     * An object which was both added and removed since the last call (e.g. by two consecutive deltas) is omitted from both lists.
+     */
+    public synchronized void drainChanges(List<T> netRemovedObjects, List<T> netAddedObjects) {
+        Map<T, Boolean> added = new IdentityHashMap<T, Boolean>(addedObjects.size());
+        for(T obj : addedObjects)
+            added.put(obj, Boolean.TRUE);
+
+        for(T obj : removedObjects) {
+            if(added.remove(obj) == null)
+                netRemovedObjects.add(obj);
+        }
+
+        for(T obj : addedObjects) {
+            if(added.containsKey(obj))
+                netAddedObjects.add(obj);
+        }
+
+        removedObjects = new ArrayList<T>();
+        addedObjects = new ArrayList<T>();
+    }
+
+}
@@ -0,0 +1,125 @@
+/*
+ *
+ *  Copyright 2014 Netflix, Inc.
+ *
+ *     Licensed under the Apache License, Version 2.0 (the "License");
+ *     you may not use this file except in compliance with the License.
+ *     You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *     Unless required by applicable law or agreed to in writing, software
+ *     distributed under the License is distributed on an "AS IS" BASIS,
+ *     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *     See the License for the specific language governing permissions and
+ *     limitations under the License.
+ *
+ */
+package com.netflix.zeno.fastblob;
+
+import com.netflix.zeno.util.PrimitiveRadixSort;
+
+import java.util.Arrays;
+
+/**
+ * Reusable arrays into which the FastBlobFrameworkSerializer gathers the ordinals of a set's elements or a map's entries before sorting them.<p/>
+ *
+ * An instance is used by a single thread.  Because serializing a collection's elements may serialize further collections, arrays
+ * are acquired and released in stack order, and each nesting depth has its own array.
+ *
+ */
+class CollectionOrdinalScratch {
+
+    /// collections smaller than this are sorted with Arrays.sort(), larger collections with a radix sort.
+    private static final int RADIX_SORT_THRESHOLD = 256;
+    /// arrays larger than this are not retained after use.
+    private static final int MAX_RETAINED_LENGTH = 1 << 16;
+
+    private int intArrays[][] = new int[4][];
+    private long longArrays[][] = new long[4][];
+    private int intSortBuffer[];
+    private long longSortBuffer[];
+    private int intSortCounts[][];
+    private int longSortCounts[][];
+    private int depth;
+
+    /**
+     * Get an int array of at least the specified length.  It must be released after use.
+     */
+    int[] acquireInts(int length) {
+        if(depth == intArrays.length) {
+            intArrays = Arrays.copyOf(intArrays, depth * 2);
+            longArrays = Arrays.copyOf(longArrays, depth * 2);
+        }
+
+        int arr[] = intArrays[depth];
+        if(arr == null || arr.length < length) {
+            arr = new int[grow(arr == null ? 0 : arr.length, length)];
+            if(arr.length <= MAX_RETAINED_LENGTH)
+                intArrays[depth] = arr;
+        }
+
+        depth++;
+        return arr;
+    }
+
+    /**
+     * Get a long array of at least the specified length.  It must be released after use.
+     */
+    long[] acquireLongs(int length) {
+        if(depth == longArrays.length) {
+            intArrays = Arrays.copyOf(intArrays, depth * 2);
+            longArrays = Arrays.copyOf(longArrays, depth * 2);
+        }
+
+        long arr[] = longArrays[depth];
+        if(arr == null || arr.length < length) {
+            arr = new long[grow(arr == null ? 0 : arr.length, length)];
+            if(arr.length <= MAX_RETAINED_LENGTH)
+                longArrays[depth] = arr;
+        }
+
+        depth++;
+        return arr;
+    }
+
+    /**
+     * Release the most recently acquired array.
+     */
+    void release() {
+        depth--;
+    }
+
+    void sort(int arr[], int length) {
+        if(length < RADIX_SORT_THRESHOLD) {
+            Arrays.sort(arr, 0, length);
+        } else {
+            if(intSortBuffer == null || intSortBuffer.length < length)
+                intSortBuffer = new int[grow(intSortBuffer == null ? 0 : intSortBuffer.length, length)];
+            if(intSortCounts == null)
+                intSortCounts = PrimitiveRadixSort.newIntCounts();
+            PrimitiveRadixSort.sort(arr, length, intSortBuffer, intSortCounts);
+            if(intSortBuffer.length > MAX_RETAINED_LENGTH)
+                intSortBuffer = null;
+        }
+    }
+
+    void sort(long arr[], int length) {
+        if(length < RADIX_SORT_THRESHOLD) {
+            Arrays.sort(arr, 0, length);
+        } else {
+            if(longSortBuffer == null || longSortBuffer.length < length)
+                longSortBuffer = new long[grow(longSortBuffer == null ? 0 : longSortBuffer.length, length)];
+            if(longSortCounts == null)
+                longSortCounts = PrimitiveRadixSort.newLongCounts();
+            PrimitiveRadixSort.sort(arr, length, longSortBuffer, longSortCounts);
+            if(longSortBuffer.length > MAX_RETAINED_LENGTH)
+                longSortBuffer = null;
+        }
+    }
+
+    private int grow(int currentLength, int requiredLength) {
+        return Math.max(requiredLength, Math.min(Math.max(currentLength * 2, 16), MAX_RETAINED_LENGTH));
+    }
+
+}
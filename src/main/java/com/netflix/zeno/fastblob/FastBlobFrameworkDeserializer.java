@@ -22,7 +22,9 @@ import static com.netflix.zeno.fastblob.FastBlobFrameworkSerializer.NULL_FLOAT_B
 
 import com.netflix.zeno.fastblob.record.ByteData;
 import com.netflix.zeno.fastblob.record.FastBlobDeserializationRecord;
+import com.netflix.zeno.fastblob.record.UTF8String;
 import com.netflix.zeno.fastblob.record.VarInt;
+import com.netflix.zeno.fastblob.record.schema.FastBlobSchema.FieldType;
 import com.netflix.zeno.fastblob.state.FastBlobTypeDeserializationState;
 import com.netflix.zeno.serializer.FrameworkDeserializer;
 import com.netflix.zeno.serializer.NFTypeSerializer;
@@ -177,11 +179,7 @@ public class FastBlobFrameworkDeserializer extends FrameworkDeserializer<FastBlo
 
 
     private int readIntBits(ByteData byteData, long fieldPosition) {
-        int intBits = (byteData.get(fieldPosition++) & 0xFF) << 24;
-        intBits |= (byteData.get(fieldPosition++) & 0xFF) << 16;
-        intBits |= (byteData.get(fieldPosition++) & 0xFF) << 8;
-        intBits |= (byteData.get(fieldPosition) & 0xFF);
-        return intBits;
+        return byteData.getInt(fieldPosition);
     }
 
     /**
@@ -218,31 +216,40 @@ public class FastBlobFrameworkDeserializer extends FrameworkDeserializer<FastBlo
 
 
     private long readLongBits(ByteData byteData, long fieldPosition) {
-        long longBits = (long) (byteData.get(fieldPosition++) & 0xFF) << 56;
-        longBits |= (long) (byteData.get(fieldPosition++) & 0xFF) << 48;
-        longBits |= (long) (byteData.get(fieldPosition++) & 0xFF) << 40;
-        longBits |= (long) (byteData.get(fieldPosition++) & 0xFF) << 32;
-        longBits |= (long) (byteData.get(fieldPosition++) & 0xFF) << 24;
-        longBits |= (byteData.get(fieldPosition++) & 0xFF) << 16;
-        longBits |= (byteData.get(fieldPosition++) & 0xFF) << 8;
-        longBits |= (byteData.get(fieldPosition) & 0xFF);
-        return longBits;
+        return byteData.getLong(fieldPosition);
     }
 
     /**
-     * Read a String as UTF-8 encoded characters.  The length is encoded as a variable-byte integer.
+     * Read a String.  The length is encoded as a variable-byte integer.<p/>
+     *
+     * STRING fields contain one variable-byte integer per character, UTF8_STRING fields contain UTF-8 bytes.<p/>
+     *
+     * DICTIONARY_STRING fields contain the ordinal of the value in a string table type.  The canonical instance is returned.
      */
     @Override
     public String deserializeString(FastBlobDeserializationRecord rec, String fieldName) {
         ByteData byteData = rec.getByteData();
-        long fieldPosition = rec.getPosition(fieldName);
+        int schemaPosition = rec.getSchema().getPosition(fieldName);
+
+        if (schemaPosition == -1)
+            return null;
+
+        long fieldPosition = rec.getPosition(schemaPosition);
 
         if (fieldPosition == -1 || VarInt.readVNull(byteData, fieldPosition))
             return null;
 
+        FieldType fieldType = rec.getSchema().getFieldType(schemaPosition);
+
+        if(fieldType == FieldType.DICTIONARY_STRING)
+            return deserializeObject(rec, fieldPosition, rec.getSchema().getObjectType(schemaPosition));
+
         int length = VarInt.readVInt(byteData, fieldPosition);
         fieldPosition += VarInt.sizeOfVInt(length);
 
+        if(fieldType == FieldType.UTF8_STRING)
+            return UTF8String.read(byteData, fieldPosition, length);
+
         return readString(byteData, fieldPosition, length);
     }
 
@@ -322,7 +329,8 @@ public class FastBlobFrameworkDeserializer extends FrameworkDeserializer<FastBlo
         int length = VarInt.readVInt(byteData, fieldPosition);
         fieldPosition += VarInt.sizeOfVInt(length);
 
-        int numElements = VarInt.countVarIntsInRange(byteData, fieldPosition, length);
+        int ordinals[] = getOrdinalArray(length);
+        int numElements = byteData.readVIntArray(fieldPosition, length, ordinals);
 
         if(numElements == 0)
             return Collections.emptyList();
@@ -333,13 +341,10 @@ public class FastBlobFrameworkDeserializer extends FrameworkDeserializer<FastBlo
         FastBlobTypeDeserializationState<T> elementDeserializationState = ((FastBlobStateEngine) framework).getTypeDeserializationState(itemSerializer.getName());
 
         for(int i=0;i<numElements;i++) {
-            if(VarInt.readVNull(byteData, fieldPosition)) {
+            if(ordinals[i] == -1) {
                 list.builderSet(i, null);
-                fieldPosition += 1;
             } else {
-                int ordinal = VarInt.readVInt(byteData, fieldPosition);
-                fieldPosition += VarInt.sizeOfVInt(ordinal);
-                T element = elementDeserializationState.get(ordinal);
+                T element = elementDeserializationState.get(ordinals[i]);
 
                 if(element != null)
                     list.builderSet(i, element);
@@ -363,7 +368,8 @@ public class FastBlobFrameworkDeserializer extends FrameworkDeserializer<FastBlo
         int length = VarInt.readVInt(byteData, fieldPosition);
         fieldPosition += VarInt.sizeOfVInt(length);
 
-        int numElements = VarInt.countVarIntsInRange(byteData, fieldPosition, length);
+        int ordinals[] = getOrdinalArray(length);
+        int numElements = byteData.readVIntArray(fieldPosition, length, ordinals);
 
         if(numElements == 0)
             return Collections.emptySet();
@@ -376,14 +382,10 @@ public class FastBlobFrameworkDeserializer extends FrameworkDeserializer<FastBlo
         int previousOrdinal = 0;
 
         for(int i=0;i<numElements;i++) {
-            if(VarInt.readVNull(byteData, fieldPosition)) {
-                fieldPosition++;
+            if(ordinals[i] == -1) {
                 set.builderSet(i, null);
             } else {
-                int ordinal = VarInt.readVInt(byteData, fieldPosition);
-                fieldPosition += VarInt.sizeOfVInt(ordinal);
-
-                ordinal += previousOrdinal;
+                int ordinal = ordinals[i] + previousOrdinal;
                 previousOrdinal = ordinal;
 
                 T element = elementDeserializationState.get(ordinal);
@@ -410,7 +412,8 @@ public class FastBlobFrameworkDeserializer extends FrameworkDeserializer<FastBlo
         int length = VarInt.readVInt(byteData, fieldPosition);
         fieldPosition += VarInt.sizeOfVInt(length);
 
-        int numElements = VarInt.countVarIntsInRange(byteData, fieldPosition, length);
+        int ordinals[] = getOrdinalArray(length);
+        int numElements = byteData.readVIntArray(fieldPosition, length, ordinals);
 
         numElements /= 2;
 
@@ -423,7 +426,7 @@ public class FastBlobFrameworkDeserializer extends FrameworkDeserializer<FastBlo
         FastBlobTypeDeserializationState<K> keyDeserializationState = ((FastBlobStateEngine) framework).getTypeDeserializationState(keySerializer.getName());
         FastBlobTypeDeserializationState<V> valueDeserializationState = ((FastBlobStateEngine) framework).getTypeDeserializationState(valueSerializer.getName());
 
-        populateMap(byteData, fieldPosition, numElements, map, keyDeserializationState, valueDeserializationState);
+        populateMap(ordinals, numElements, map, keyDeserializationState, valueDeserializationState);
 
         return minimizedCollections.minimizeMap(map.builderFinish());
     }
@@ -442,7 +445,8 @@ public class FastBlobFrameworkDeserializer extends FrameworkDeserializer<FastBlo
         int length = VarInt.readVInt(byteData, fieldPosition);
         fieldPosition += VarInt.sizeOfVInt(length);
 
-        int numElements = VarInt.countVarIntsInRange(byteData, fieldPosition, length);
+        int ordinals[] = getOrdinalArray(length);
+        int numElements = byteData.readVIntArray(fieldPosition, length, ordinals);
 
         numElements /= 2;
 
@@ -455,13 +459,13 @@ public class FastBlobFrameworkDeserializer extends FrameworkDeserializer<FastBlo
         FastBlobTypeDeserializationState<K> keyDeserializationState = ((FastBlobStateEngine) framework).getTypeDeserializationState(keySerializer.getName());
         FastBlobTypeDeserializationState<V> valueDeserializationState = ((FastBlobStateEngine) framework).getTypeDeserializationState(valueSerializer.getName());
 
-        populateMap(byteData, fieldPosition, numElements, map, keyDeserializationState, valueDeserializationState);
+        populateMap(ordinals, numElements, map, keyDeserializationState, valueDeserializationState);
 
         return minimizedCollections.minimizeSortedMap( (SortedMap<K, V>) map.builderFinish() );
     }
 
 
-    private <K, V> void populateMap(ByteData byteData, long fieldPosition, int numElements, MapBuilder<K, V> mapToPopulate, FastBlobTypeDeserializationState<K> keyState, FastBlobTypeDeserializationState<V> valueState) {
+    private <K, V> void populateMap(int ordinals[], int numElements, MapBuilder<K, V> mapToPopulate, FastBlobTypeDeserializationState<K> keyState, FastBlobTypeDeserializationState<V> valueState) {
         int previousValueOrdinal = 0;
 
         for(int i=0;i<numElements;i++) {
@@ -470,24 +474,17 @@ public class FastBlobFrameworkDeserializer extends FrameworkDeserializer<FastBlo
 
             boolean undefinedKeyOrValue = false;
 
-            if(VarInt.readVNull(byteData, fieldPosition)) {
-                fieldPosition++;
-            } else {
-                int keyOrdinal = VarInt.readVInt(byteData, fieldPosition);
-                fieldPosition += VarInt.sizeOfVInt(keyOrdinal);
+            int keyOrdinal = ordinals[i * 2];
+            int valueOrdinal = ordinals[i * 2 + 1];
 
+            if(keyOrdinal != -1) {
                 key = keyState.get(keyOrdinal);
 
                 if(key == null)
                     undefinedKeyOrValue = true;
             }
 
-            if(VarInt.readVNull(byteData, fieldPosition)) {
-                fieldPosition++;
-            } else {
-                int valueOrdinal = VarInt.readVInt(byteData, fieldPosition);
-                fieldPosition += VarInt.sizeOfVInt(valueOrdinal);
-
+            if(valueOrdinal != -1) {
                 valueOrdinal += previousValueOrdinal;
                 previousValueOrdinal = valueOrdinal;
 
@@ -533,6 +530,20 @@ public class FastBlobFrameworkDeserializer extends FrameworkDeserializer<FastBlo
         return new String(chararr, 0, count);
     }
 
+    private final ThreadLocal<int[]> ordinalarr = new ThreadLocal<int[]>();
+
+    /**
+     * Get a scratch array large enough to hold the values decoded from a field of <code>length</code> bytes.
+     */
+    private int[] getOrdinalArray(int length) {
+        int arr[] = ordinalarr.get();
+        if(arr == null || arr.length < length) {
+            arr = new int[Math.max(length, 100)];
+            ordinalarr.set(arr);
+        }
+        return arr;
+    }
+
     private char[] getCharArray() {
         char ch[] = chararr.get();
         if(ch == null) {
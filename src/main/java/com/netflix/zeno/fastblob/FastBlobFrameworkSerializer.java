@@ -18,7 +18,7 @@
 package com.netflix.zeno.fastblob;
 
 import java.io.IOException;
-import java.util.Arrays;
+import java.nio.charset.Charset;
 import java.util.Collection;
 import java.util.Map;
 import java.util.Set;
@@ -41,6 +41,10 @@ public class FastBlobFrameworkSerializer extends FrameworkSerializer<FastBlobSer
     public static final int NULL_FLOAT_BITS = Float.floatToIntBits(Float.NaN) + 1;
     public static final long NULL_DOUBLE_BITS = Double.doubleToLongBits(Double.NaN) + 1;
 
+    public static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private final ThreadLocal<CollectionOrdinalScratch> collectionOrdinalScratch = new ThreadLocal<CollectionOrdinalScratch>();
+
     public FastBlobFrameworkSerializer(FastBlobStateEngine framework) {
         super(framework);
     }
@@ -75,7 +79,8 @@ public class FastBlobFrameworkSerializer extends FrameworkSerializer<FastBlobSer
     }
 
     /**
-     * Serialize a string as the UTF-8 value
+     * Serialize a string.  STRING fields are encoded as one VarInt per character, UTF8_STRING fields as UTF-8 bytes,
+     * and DICTIONARY_STRING fields as the ordinal of the value in the field's string table type.
      */
     public void serializeString(FastBlobSerializationRecord rec, String fieldName, String value) {
         if(value == null)
@@ -84,12 +89,36 @@ public class FastBlobFrameworkSerializer extends FrameworkSerializer<FastBlobSer
         int position = rec.getSchema().getPosition(fieldName);
         FieldType fieldType = rec.getSchema().getFieldType(position);
 
-        if(fieldType != FieldType.STRING)
+        if(fieldType != FieldType.STRING && fieldType != FieldType.UTF8_STRING && fieldType != FieldType.DICTIONARY_STRING)
             throw new IllegalArgumentException("Attempting to serialize a String as " + fieldType + " in field " + fieldName + ".  Carefully check your schema for type " + rec.getSchema().getName() + ".");
 
+        if(fieldType == FieldType.DICTIONARY_STRING) {
+            serializeDictionaryString(rec, position, rec.getSchema().getObjectType(position), value);
+            return;
+        }
+
+        ByteDataBuffer fieldBuffer = rec.getFieldBuffer(position);
+
+        if(fieldType == FieldType.UTF8_STRING)
+            writeUTF8String(value, fieldBuffer);
+        else
+            writeString(value, fieldBuffer);
+    }
+
+    /**
+     * Add the String to the string table type, then serialize the resulting ordinal as a variable-byte integer.
+     */
+    protected void serializeDictionaryString(FastBlobSerializationRecord rec, int position, String stringTableType, String value) {
         ByteDataBuffer fieldBuffer = rec.getFieldBuffer(position);
 
-        writeString(value, fieldBuffer);
+        FastBlobTypeSerializationState<String> stringTableState = ((FastBlobStateEngine) framework).getTypeSerializationState(stringTableType);
+
+        if(stringTableState == null)
+            throw new IllegalArgumentException("Unable to find string table type " + stringTableType + " for a field in type " + rec.getSchema().getName() + ".  Ensure it is returned from requiredSubSerializers().");
+
+        int ordinal = stringTableState.add(value, rec.getImageMembershipsFlags(), rec.getScratch());
+
+        VarInt.writeVInt(fieldBuffer, ordinal);
     }
 
     /**
@@ -266,7 +295,7 @@ public class FastBlobFrameworkSerializer extends FrameworkSerializer<FastBlobSer
 
         FastBlobTypeSerializationState<Object> typeSerializationState = ((FastBlobStateEngine) framework).getTypeSerializationState(typeName);
 
-        int ordinal = typeSerializationState.add(obj, rec.getImageMembershipsFlags());
+        int ordinal = typeSerializationState.add(obj, rec.getImageMembershipsFlags(), rec.getScratch());
 
         VarInt.writeVInt(fieldBuffer, ordinal);
     }
@@ -303,7 +332,7 @@ public class FastBlobFrameworkSerializer extends FrameworkSerializer<FastBlobSer
             if(obj == null) {
                 VarInt.writeVNull(fieldBuffer);
             } else {
-                int ordinal = typeSerializationState.add(obj, rec.getImageMembershipsFlags());
+                int ordinal = typeSerializationState.add(obj, rec.getImageMembershipsFlags(), rec.getScratch());
                 VarInt.writeVInt(fieldBuffer, ordinal);
             }
         }
@@ -328,31 +357,33 @@ public class FastBlobFrameworkSerializer extends FrameworkSerializer<FastBlobSer
 
         ByteDataBuffer fieldBuffer = rec.getFieldBuffer(position);
         FastBlobTypeSerializationState<Object> typeSerializationState = ((FastBlobStateEngine) framework).getTypeSerializationState(typeName);
-        int setOrdinals[] = new int[set.size()];
-
-        int i = 0;
-        for (T obj : set) {
-            if(obj == null) {
-                setOrdinals[i++] = -1;
-            } else {
-                setOrdinals[i++] = typeSerializationState.add(obj, rec.getImageMembershipsFlags());
+        CollectionOrdinalScratch scratch = collectionOrdinalScratch(rec);
+        int setOrdinals[] = scratch.acquireInts(set.size());
+
+        try {
+            int numOrdinals = 0;
+            for (T obj : set) {
+                if(obj == null) {
+                    setOrdinals[numOrdinals++] = -1;
+                } else {
+                    setOrdinals[numOrdinals++] = typeSerializationState.add(obj, rec.getImageMembershipsFlags(), rec.getScratch());
+                }
             }
-        }
-
-        if(setOrdinals.length > i)
-            setOrdinals = Arrays.copyOf(setOrdinals, i);
 
-        Arrays.sort(setOrdinals);
+            scratch.sort(setOrdinals, numOrdinals);
 
-        int currentOrdinal = 0;
+            int currentOrdinal = 0;
 
-        for (i = 0; i < setOrdinals.length; i++) {
-            if(setOrdinals[i] == -1) {
-                VarInt.writeVNull(fieldBuffer);
-            } else {
-                VarInt.writeVInt(fieldBuffer, setOrdinals[i] - currentOrdinal);
-                currentOrdinal = setOrdinals[i];
+            for (int i = 0; i < numOrdinals; i++) {
+                if(setOrdinals[i] == -1) {
+                    VarInt.writeVNull(fieldBuffer);
+                } else {
+                    VarInt.writeVInt(fieldBuffer, setOrdinals[i] - currentOrdinal);
+                    currentOrdinal = setOrdinals[i];
+                }
             }
+        } finally {
+            scratch.release();
         }
     }
 
@@ -376,46 +407,60 @@ public class FastBlobFrameworkSerializer extends FrameworkSerializer<FastBlobSer
         ByteDataBuffer fieldBuffer = rec.getFieldBuffer(position);
         FastBlobTypeSerializationState<K> keySerializationState = ((FastBlobStateEngine) framework).getTypeSerializationState(keyTypeName);
         FastBlobTypeSerializationState<V> valueSerializationState = ((FastBlobStateEngine) framework).getTypeSerializationState(valueTypeName);
-        long mapEntries[] = new long[map.size()];
+        CollectionOrdinalScratch scratch = collectionOrdinalScratch(rec);
+        long mapEntries[] = scratch.acquireLongs(map.size());
 
-        int i = 0;
-        for (Map.Entry<K, V> entry : map.entrySet()) {
-            int keyOrdinal = -1;
-            int valueOrdinal = -1;
+        try {
+            int numEntries = 0;
+            for (Map.Entry<K, V> entry : map.entrySet()) {
+                int keyOrdinal = -1;
+                int valueOrdinal = -1;
 
-            if(entry.getKey() != null)
-                keyOrdinal = keySerializationState.add(entry.getKey(), rec.getImageMembershipsFlags());
-            if(entry.getValue() != null)
-                valueOrdinal = valueSerializationState.add(entry.getValue(), rec.getImageMembershipsFlags());
+                if(entry.getKey() != null)
+                    keyOrdinal = keySerializationState.add(entry.getKey(), rec.getImageMembershipsFlags(), rec.getScratch());
+                if(entry.getValue() != null)
+                    valueOrdinal = valueSerializationState.add(entry.getValue(), rec.getImageMembershipsFlags(), rec.getScratch());
 
-            mapEntries[i++] = ((long)valueOrdinal << 32) | (keyOrdinal & 0xFFFFFFFFL);
-        }
-
-        if(mapEntries.length > i)
-            mapEntries = Arrays.copyOf(mapEntries, i);
+                mapEntries[numEntries++] = ((long)valueOrdinal << 32) | (keyOrdinal & 0xFFFFFFFFL);
+            }
 
-        Arrays.sort(mapEntries);
+            scratch.sort(mapEntries, numEntries);
 
-        int currentValueOrdinal = 0;
+            int currentValueOrdinal = 0;
 
-        for (i = 0; i < mapEntries.length ; i++) {
-            int keyOrdinal = (int) mapEntries[i];
-            int valueOrdinal = (int) (mapEntries[i] >> 32);
+            for (int i = 0; i < numEntries ; i++) {
+                int keyOrdinal = (int) mapEntries[i];
+                int valueOrdinal = (int) (mapEntries[i] >> 32);
 
-            if(keyOrdinal == -1)
-                VarInt.writeVNull(fieldBuffer);
-            else
-                VarInt.writeVInt(fieldBuffer, keyOrdinal);
+                if(keyOrdinal == -1)
+                    VarInt.writeVNull(fieldBuffer);
+                else
+                    VarInt.writeVInt(fieldBuffer, keyOrdinal);
 
-            if(valueOrdinal == -1) {
-                VarInt.writeVNull(fieldBuffer);
-            } else {
-                VarInt.writeVInt(fieldBuffer, valueOrdinal - currentValueOrdinal);
-                currentValueOrdinal = valueOrdinal;
+                if(valueOrdinal == -1) {
+                    VarInt.writeVNull(fieldBuffer);
+                } else {
+                    VarInt.writeVInt(fieldBuffer, valueOrdinal - currentValueOrdinal);
+                    currentValueOrdinal = valueOrdinal;
+                }
             }
+        } finally {
+            scratch.release();
         }
     }
 
+    private CollectionOrdinalScratch collectionOrdinalScratch(FastBlobSerializationRecord rec) {
+        if(rec.getScratch() != null)
+            return rec.getScratch().getCollectionOrdinalScratch();
+
+        CollectionOrdinalScratch scratch = collectionOrdinalScratch.get();
+        if(scratch == null) {
+            scratch = new CollectionOrdinalScratch();
+            collectionOrdinalScratch.set(scratch);
+        }
+        return scratch;
+    }
+
 
     /**
      * Encode a String as a series of VarInts, one per character.<p/>
@@ -431,4 +476,15 @@ public class FastBlobFrameworkSerializer extends FrameworkSerializer<FastBlobSer
         }
     }
 
+    /**
+     * Encode a String as a sequence of UTF-8 bytes.  The length of the field is the number of bytes.
+     *
+     * @param str
+     * @param out
+     */
+    protected void writeUTF8String(String str, ByteDataBuffer out) {
+        byte data[] = str.getBytes(UTF_8);
+        out.write(data, 0, data.length);
+    }
+
 }
@@ -66,6 +66,17 @@ public class FastBlobHeapFriendlyClientFrameworkSerializer extends FastBlobFrame
         VarInt.writeVInt(fieldBuffer, ordinal);
     }
 
+    @Override
+    protected void serializeDictionaryString(FastBlobSerializationRecord rec, int position, String stringTableType, String value) {
+        ByteDataBuffer fieldBuffer = rec.getFieldBuffer(position);
+
+        FastBlobTypeDeserializationState<Object> deserializationState = ((FastBlobStateEngine) framework).getTypeDeserializationState(stringTableType);
+
+        int ordinal = findObject(deserializationState, value, rec.getSchema().getFieldName(position));
+
+        VarInt.writeVInt(fieldBuffer, ordinal);
+    }
+
     @Override
     public <T> void serializeList(FastBlobSerializationRecord rec, String fieldName, String typeName, Collection<T> collection) {
         if(collection == null)
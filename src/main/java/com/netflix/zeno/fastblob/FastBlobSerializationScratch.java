@@ -0,0 +1,77 @@
+/*
+ *
+ *  Copyright 2014 Netflix, Inc.
+ *
+ *     Licensed under the Apache License, Version 2.0 (the "License");
+ *     you may not use this file except in compliance with the License.
+ *     You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *     Unless required by applicable law or agreed to in writing, software
+ *     distributed under the License is distributed on an "AS IS" BASIS,
+ *     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *     See the License for the specific language governing permissions and
+ *     limitations under the License.
+ *
+ */
+package com.netflix.zeno.fastblob;
+
+import com.netflix.zeno.fastblob.record.ByteDataBuffer;
+import com.netflix.zeno.fastblob.record.FastBlobSerializationRecord;
+import com.netflix.zeno.fastblob.record.schema.FastBlobSchema;
+
+import java.util.Arrays;
+
+/**
+ * The reusable records and buffers required to add objects to a FastBlobStateEngine, owned by a single worker thread.<p/>
+ *
+ * When an object is added with a FastBlobSerializationScratch, the scratch is attached to each FastBlobSerializationRecord used
+ * to serialize the object graph, and passed down to each referenced object's add.  This avoids a ThreadLocal lookup per state
+ * for every object in the graph.<p/>
+ *
+ * Records and buffers are indexed by each FastBlobTypeSerializationState's scratch index (see FastBlobStateEngine).
+ *
+ */
+public class FastBlobSerializationScratch {
+
+    private FastBlobSerializationRecord records[] = new FastBlobSerializationRecord[16];
+    private ByteDataBuffer buffers[] = new ByteDataBuffer[16];
+    private final CollectionOrdinalScratch collectionOrdinalScratch = new CollectionOrdinalScratch();
+
+    public FastBlobSerializationRecord getRecord(int scratchIndex, FastBlobSchema schema) {
+        ensureCapacity(scratchIndex);
+
+        FastBlobSerializationRecord rec = records[scratchIndex];
+        if(rec == null || rec.getSchema() != schema) {
+            rec = new FastBlobSerializationRecord(schema);
+            rec.setScratch(this);
+            records[scratchIndex] = rec;
+        }
+        return rec;
+    }
+
+    public ByteDataBuffer getBuffer(int scratchIndex) {
+        ensureCapacity(scratchIndex);
+
+        ByteDataBuffer buffer = buffers[scratchIndex];
+        if(buffer == null) {
+            buffer = new ByteDataBuffer(32);
+            buffers[scratchIndex] = buffer;
+        }
+        return buffer;
+    }
+
+    CollectionOrdinalScratch getCollectionOrdinalScratch() {
+        return collectionOrdinalScratch;
+    }
+
+    private void ensureCapacity(int scratchIndex) {
+        if(scratchIndex >= records.length) {
+            int newLength = Math.max(records.length * 2, scratchIndex + 1);
+            records = Arrays.copyOf(records, newLength);
+            buffers = Arrays.copyOf(buffers, newLength);
+        }
+    }
+
+}
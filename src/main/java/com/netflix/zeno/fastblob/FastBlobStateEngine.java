@@ -21,11 +21,13 @@ import com.netflix.zeno.fastblob.record.VarInt;
 import com.netflix.zeno.fastblob.state.ByteArrayOrdinalMap;
 import com.netflix.zeno.fastblob.state.FastBlobTypeDeserializationState;
 import com.netflix.zeno.fastblob.state.FastBlobTypeSerializationState;
+import com.netflix.zeno.fastblob.state.OrdinalReusePolicy;
 import com.netflix.zeno.fastblob.state.TypeDeserializationStateListener;
 import com.netflix.zeno.serializer.NFTypeSerializer;
 import com.netflix.zeno.serializer.SerializationFramework;
 import com.netflix.zeno.serializer.SerializerFactory;
 import com.netflix.zeno.util.SimultaneousExecutor;
+import com.netflix.zeno.util.collections.heapfriendly.HeapFriendlyMapArrayRecycler;
 
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
@@ -36,10 +38,14 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 
 /**
  * This is the SerializationFramework for the second-generation blob.<p/>
@@ -93,8 +99,13 @@ public class FastBlobStateEngine extends SerializationFramework {
 
     private int maxSingleObjectLength;
 
+    private HeapFriendlyMapArrayRecycler deserializationStateSegmentRecycler;
+
     private final long addToAllImagesFlags;
 
+    /// the number of objects claimed at a time by each thread during addAll()
+    private static final int ADD_ALL_BATCH_SIZE = 64;
+
     public FastBlobStateEngine(SerializerFactory factory) {
         this(factory, 1, true);
     }
@@ -128,6 +139,7 @@ public class FastBlobStateEngine extends SerializationFramework {
     private <T> void createSerializationState(NFTypeSerializer<T> serializer) {
         FastBlobTypeSerializationState<T> serializationState = new FastBlobTypeSerializationState<T>(serializer, numberOfConfigurations,
                 shouldUseObjectIdentityOrdinalCaching);
+        serializationState.setScratchIndex(orderedSerializationStates.size());
         serializationTypeStates.put(serializer.getName(), serializationState);
         orderedSerializationStates.add(serializationState);
         deserializationTypeStates.put(serializer.getName(), new FastBlobTypeDeserializationState<T>(serializer));
@@ -190,6 +202,93 @@ public class FastBlobStateEngine extends SerializationFramework {
         typeSerializationState.add(obj, addToImageFlags);
     }
 
+    /**
+     * Add all of the objects to this state engine, using the specified number of threads.  The objects will be added to all images.
+     *
+     * @return the number of objects added
+     */
+    public int addAll(String type, Iterable<?> objects, int numThreads) {
+        return addAll(type, objects, addToAllImagesFlags, numThreads);
+    }
+
+    /**
+     * Add all of the objects to this state engine, using the specified number of threads.  The images to which the objects should be
+     * added are specified in the same way as for add().<p/>
+     *
+     * Rather than partitioning the objects up front, each thread repeatedly claims the next small batch of objects from the Iterable,
+     * so that threads which happen to be given objects with large graphs do not hold up the others.  Each thread serializes with its
+     * own {@link FastBlobSerializationScratch}, which is passed down through every nested add.
+     *
+     * @return the number of objects added
+     */
+    public int addAll(String type, Iterable<?> objects, final long addToImageFlags, int numThreads) {
+        final FastBlobTypeSerializationState<Object> typeSerializationState = getTypeSerializationState(type);
+        if(typeSerializationState == null) {
+            throw new RuntimeException("Unable to find type.  Ensure there exists an NFTypeSerializer with the name: "  + type);
+        }
+
+        final Iterator<?> iterator = objects.iterator();
+        SimultaneousExecutor executor = new SimultaneousExecutor(numThreads, "zeno-add-all");
+        List<Future<Integer>> futures = new ArrayList<Future<Integer>>(numThreads);
+
+        try {
+            for(int i=0;i<numThreads;i++) {
+                futures.add(executor.submit(new Callable<Integer>() {
+                    public Integer call() {
+                        FastBlobSerializationScratch workerScratch = new FastBlobSerializationScratch();
+                        Object batch[] = new Object[ADD_ALL_BATCH_SIZE];
+                        int numAdded = 0;
+                        int batchSize;
+
+                        while((batchSize = nextBatch(iterator, batch)) != 0) {
+                            for(int j=0;j<batchSize;j++) {
+                                typeSerializationState.add(batch[j], addToImageFlags, workerScratch);
+                                batch[j] = null;
+                            }
+                            numAdded += batchSize;
+                        }
+
+                        return Integer.valueOf(numAdded);
+                    }
+                }));
+            }
+        } finally {
+            executor.awaitUninterruptibly();
+        }
+
+        int numAdded = 0;
+
+        for(Future<Integer> future : futures) {
+            try {
+                numAdded += future.get().intValue();
+            } catch(InterruptedException e) {
+                throw new RuntimeException(e);
+            } catch(ExecutionException e) {
+                throw new RuntimeException("Unable to add objects of type " + type, e.getCause());
+            }
+        }
+
+        return numAdded;
+    }
+
+    private static int nextBatch(Iterator<?> iterator, Object batch[]) {
+        synchronized(iterator) {
+            int batchSize = 0;
+            while(batchSize < batch.length && iterator.hasNext())
+                batch[batchSize++] = iterator.next();
+            return batchSize;
+        }
+    }
+
+    /**
+     * Specify the order in which each type's freed ordinals are reused in subsequent cycles (see {@link OrdinalReusePolicy}).
+     */
+    public void setOrdinalReusePolicy(OrdinalReusePolicy ordinalReusePolicy) {
+        for(FastBlobTypeSerializationState<?> state : orderedSerializationStates) {
+            state.setOrdinalReusePolicy(ordinalReusePolicy);
+        }
+    }
+
     /**
      * Add a {@link TypeDeserializationStateListener} to the specified type
      */
@@ -496,14 +595,55 @@ public class FastBlobStateEngine extends SerializationFramework {
 
     }
 
+    /**
+     * If true, each deserialization state will hold its objects in fixed-size Object[] segments rather than an ArrayList.<p/>
+     *
+     * The segments which held the previous objects are recycled after each double snapshot refresh, and reused to hold
+     * the objects during the next double snapshot refresh, so that refreshes do not allocate large arrays.  Note that
+     * an Iterator over a deserialization state will not observe the previous objects once a double snapshot refresh has completed.
+     */
+    public void setUseHeapFriendlyDeserializationStates(boolean useHeapFriendlyDeserializationStates) {
+        this.deserializationStateSegmentRecycler = useHeapFriendlyDeserializationStates ? new HeapFriendlyMapArrayRecycler() : null;
+
+        for(FastBlobTypeDeserializationState<?> state : deserializationTypeStates.values()) {
+            state.setSegmentRecycler(deserializationStateSegmentRecycler);
+        }
+    }
+
+    /**
+     * If object identity ordinal caching is enabled, choose whether the caches hold strong references to the objects added during each cycle,
+     * rather than weak references.  Strong references are released in bulk by prepareForNextCycle().
+     */
+    public void setUseStrongObjectIdentityOrdinalCaching(boolean useStrongReferences) {
+        for(FastBlobTypeSerializationState<?> state : orderedSerializationStates) {
+            state.setUseStrongObjectIdentityReferences(useStrongReferences);
+        }
+    }
+
+    /**
+     * If object identity ordinal caching is enabled, choose whether objects added during each cycle are remembered into the next cycle, so that
+     * unchanged object graphs are not serialized again.  This requires that added objects are never modified, even between cycles.
+     */
+    public void setRetainObjectIdentitiesAcrossCycles(boolean retainAcrossCycles) {
+        for(FastBlobTypeSerializationState<?> state : orderedSerializationStates) {
+            state.setRetainObjectIdentitiesAcrossCycles(retainAcrossCycles);
+        }
+    }
+
     public void prepareForDoubleSnapshotRefresh() {
         this.frameworkSerializer = new FastBlobHeapFriendlyClientFrameworkSerializer(this);
+
+        /// segments released during the last refresh (and cleared afterwards) will hold the objects for this refresh.
+        if(deserializationStateSegmentRecycler != null)
+            deserializationStateSegmentRecycler.swapCycleObjectArrays();
     }
 
+    /**
+     * The identity ordinal maps created during the refresh are retained, and kept up to date as subsequent deltas are applied.
+     */
     public void cleanUpAfterDoubleSnapshotRefresh() {
-        for(FastBlobTypeDeserializationState<?> state : deserializationTypeStates.values()) {
-            state.clearIdentityOrdinalMap();
-        }
+        if(deserializationStateSegmentRecycler != null)
+            deserializationStateSegmentRecycler.clearNextCycleObjectArrays();
     }
 
     private void copyObjects(final FastBlobStateEngine otherStateEngine, final String serializerName,
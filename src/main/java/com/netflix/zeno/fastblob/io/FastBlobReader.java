@@ -192,11 +192,12 @@ public class FastBlobReader {
 
             currentOrdinal += currentOrdinalDelta;
 
-            int objectSize = rec.position(byteData.currentStreamPosition());
-            byteData.incrementStreamPosition(objectSize);
-
             if(typeDeserializationState != null) {
+                rec.seek(byteData.currentStreamPosition());
                 typeDeserializationState.add(currentOrdinal, rec);
+                byteData.incrementStreamPosition(rec.length());
+            } else {
+                byteData.incrementStreamPosition(rec.sizeOf(byteData.currentStreamPosition()));
             }
         }
     }
@@ -234,7 +235,7 @@ public class FastBlobReader {
 
             currentOrdinal += currentOrdinalDelta;
 
-            int recordSize = rec.position(byteData.currentStreamPosition());
+            rec.seek(byteData.currentStreamPosition());
 
             if(typeDeserializationState != null) {
                 NFTypeSerializer<T> serializer = typeDeserializationState.getSerializer();
@@ -260,7 +261,7 @@ public class FastBlobReader {
                 frameworkSerializer.clearSerializationIntegrityFlawedFlag();
             }
 
-            byteData.incrementStreamPosition(recordSize);
+            byteData.incrementStreamPosition(rec.length());
         }
 
         if(typeDeserializationState != null) {
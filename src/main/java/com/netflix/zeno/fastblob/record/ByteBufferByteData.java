@@ -0,0 +1,62 @@
+/*
+ *
+ *  Copyright 2014 Netflix, Inc.
+ *
+ *     Licensed under the Apache License, Version 2.0 (the "License");
+ *     you may not use this file except in compliance with the License.
+ *     You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *     Unless required by applicable law or agreed to in writing, software
+ *     distributed under the License is distributed on an "AS IS" BASIS,
+ *     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *     See the License for the specific language governing permissions and
+ *     limitations under the License.
+ *
+ */
+package com.netflix.zeno.fastblob.record;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Exposes a ByteBuffer, for example a memory-mapped file, as ByteData.<p/>
+ *
+ * Only absolute reads are performed against the underlying buffer, so a single instance may be shared between threads.
+ *
+ */
+public class ByteBufferByteData implements ByteData {
+
+    private final ByteBuffer buffer;
+
+    public ByteBufferByteData(ByteBuffer buffer) {
+        /// getInt() and getLong() must be big-endian, regardless of the order of the buffer we were handed.
+        this.buffer = buffer.duplicate().order(ByteOrder.BIG_ENDIAN);
+    }
+
+    public long length() {
+        return buffer.limit();
+    }
+
+    @Override
+    public byte get(long position) {
+        return buffer.get((int)position);
+    }
+
+    @Override
+    public int getInt(long position) {
+        return buffer.getInt((int)position);
+    }
+
+    @Override
+    public long getLong(long position) {
+        return buffer.getLong((int)position);
+    }
+
+    @Override
+    public int readVIntArray(long position, int length, int dest[]) {
+        return VarInt.readVIntArray(this, position, length, dest);
+    }
+
+}
@@ -30,4 +30,23 @@ public interface ByteData {
 
     byte get(long position);
 
+    /**
+     * @return the 4 bytes beginning at position, as a big-endian int.
+     */
+    int getInt(long position);
+
+    /**
+     * @return the 8 bytes beginning at position, as a big-endian long.
+     */
+    long getLong(long position);
+
+    /**
+     * Decode all of the variable-byte integers contained in the <code>length</code> bytes beginning at <code>position</code>.<p/>
+     *
+     * Null values are decoded as -1.  The destination array must have room for <code>length</code> values.
+     *
+     * @return the number of values decoded.
+     */
+    int readVIntArray(long position, int length, int dest[]);
+
 }
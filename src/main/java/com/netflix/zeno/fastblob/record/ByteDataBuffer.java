@@ -42,6 +42,11 @@ public class ByteDataBuffer {
         buf.set(position++, b);
     }
 
+    public void write(byte[] data, int offset, int length) {
+        buf.copy(data, offset, position, length);
+        position += length;
+    }
+
     public void reset() {
         position = 0;
     }
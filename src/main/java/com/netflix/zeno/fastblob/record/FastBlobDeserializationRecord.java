@@ -26,7 +26,11 @@ import com.netflix.zeno.serializer.NFDeserializationRecord;
  *
  * The schema tells us how to read the data encoded in the SegmentedByteArray.<p/>
  *
- * When we position to a specific object instance's offset, we use the schema to guide us to set the pointers for each field in that instance.
+ * When we position to a specific object instance's offset, we use the schema to guide us to set the pointers for each field in that instance.<p/>
+ *
+ * Field pointers are computed on demand:  {@link #seek(long)} only records where the object begins, and the pointer for a field is
+ * resolved the first time that field (or any field after it) is requested.  Pointers for fields preceding the highest requested field are
+ * retained, so a serializer which reads its fields in schema order walks the record at most once.
  *
  * @author dkoszewnik
  *
@@ -35,6 +39,8 @@ public class FastBlobDeserializationRecord extends NFDeserializationRecord {
 
     private final ByteData byteData;
     private final long fieldPointers[];
+    private long objectBeginOffset;
+    private int numComputedFieldPointers;
 
     public FastBlobDeserializationRecord(FastBlobSchema schema, ByteData byteData) {
         super(schema);
@@ -43,24 +49,62 @@ public class FastBlobDeserializationRecord extends NFDeserializationRecord {
     }
 
     public long position() {
-        return fieldPointers[0];
+        return objectBeginOffset;
     }
-    
+
     /**
-     * Position this record to the byte at index <code>objectBeginOffset</code>.
+     * Position this record to the byte at index <code>objectBeginOffset</code>.<p/>
+     *
+     * This computes the pointers for every field in order to return the length, use {@link #seek(long)} if the length is not required.
      *
      * @param objectBeginOffset
      * @return The length of the object's data, in bytes.
      */
     public int position(long objectBeginOffset) {
-        long currentPosition = objectBeginOffset;
+        seek(objectBeginOffset);
+        return length();
+    }
 
-        for(int i=0;i<fieldPointers.length;i++) {
-            fieldPointers[i] = currentPosition;
+    /**
+     * Position this record to the byte at index <code>objectBeginOffset</code>, without computing any field pointers.
+     *
+     * @param objectBeginOffset
+     */
+    public void seek(long objectBeginOffset) {
+        this.objectBeginOffset = objectBeginOffset;
+        if(fieldPointers.length > 0) {
+            fieldPointers[0] = objectBeginOffset;
+            numComputedFieldPointers = 1;
+        }
+    }
+
+    /**
+     * @return The length of the currently positioned object's data, in bytes.
+     */
+    public int length() {
+        int lastField = fieldPointers.length - 1;
 
-            FieldType type = getSchema().getFieldType(i);
+        if(lastField < 0)
+            return 0;
+
+        long lastFieldPointer = fieldPointer(lastField);
+
+        return (int)(lastFieldPointer + fieldLength(lastFieldPointer, getSchema().getFieldType(lastField)) - objectBeginOffset);
+    }
+
+    /**
+     * Compute the length of the object's data beginning at the byte at index <code>objectBeginOffset</code>.<p/>
+     *
+     * This does not reposition this record.
+     *
+     * @param objectBeginOffset
+     * @return The length of the object's data, in bytes.
+     */
+    public int sizeOf(long objectBeginOffset) {
+        long currentPosition = objectBeginOffset;
 
-            currentPosition += fieldLength(currentPosition, type);
+        for(int i=0;i<fieldPointers.length;i++) {
+            currentPosition += fieldLength(currentPosition, getSchema().getFieldType(i));
         }
 
         return (int)(currentPosition - objectBeginOffset);
@@ -82,7 +126,14 @@ public class FastBlobDeserializationRecord extends NFDeserializationRecord {
         if(fieldPosition == -1)
             return -1;
 
-        return fieldPointers[fieldPosition];
+        return fieldPointer(fieldPosition);
+    }
+
+    /**
+     * get the offset into the byte data for the field at the given position in the schema.
+     */
+    public long getPosition(int fieldPosition) {
+        return fieldPointer(fieldPosition);
     }
 
     /**
@@ -92,7 +143,23 @@ public class FastBlobDeserializationRecord extends NFDeserializationRecord {
         int fieldPosition = getSchema().getPosition(fieldName);
         FieldType fieldType = getSchema().getFieldType(fieldPosition);
 
-        return fieldLength(fieldPointers[fieldPosition], fieldType);
+        return fieldLength(fieldPointer(fieldPosition), fieldType);
+    }
+
+    private long fieldPointer(int fieldPosition) {
+        if(fieldPosition >= numComputedFieldPointers) {
+            int i = numComputedFieldPointers - 1;
+            long currentPosition = fieldPointers[i];
+
+            while(i < fieldPosition) {
+                currentPosition += fieldLength(currentPosition, getSchema().getFieldType(i));
+                fieldPointers[++i] = currentPosition;
+            }
+
+            numComputedFieldPointers = fieldPosition + 1;
+        }
+
+        return fieldPointers[fieldPosition];
     }
 
     private int fieldLength(long currentPosition, FieldType type) {
@@ -18,6 +18,7 @@
 package com.netflix.zeno.fastblob.record;
 
 import com.netflix.zeno.fastblob.FastBlobFrameworkSerializer;
+import com.netflix.zeno.fastblob.FastBlobSerializationScratch;
 import com.netflix.zeno.fastblob.record.schema.FastBlobSchema;
 import com.netflix.zeno.fastblob.record.schema.FastBlobSchema.FieldType;
 import com.netflix.zeno.fastblob.state.FastBlobTypeSerializationState;
@@ -48,6 +49,7 @@ public class FastBlobSerializationRecord extends NFSerializationRecord {
     private final boolean isNonNull[];
 
     private long imageMembershipsFlags;
+    private FastBlobSerializationScratch scratch;
 
     /**
      * Create a new FastBlobSerializationRecord which conforms to the given FastBlobSchema.
@@ -135,4 +137,15 @@ public class FastBlobSerializationRecord extends NFSerializationRecord {
         return imageMembershipsFlags;
     }
 
+    /**
+     * The worker-owned scratch to which this record belongs, or null if this record is owned by its thread (see {@link FastBlobSerializationScratch}).
+     */
+    public void setScratch(FastBlobSerializationScratch scratch) {
+        this.scratch = scratch;
+    }
+
+    public FastBlobSerializationScratch getScratch() {
+        return scratch;
+    }
+
 }
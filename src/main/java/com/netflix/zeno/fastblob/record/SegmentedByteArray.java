@@ -62,6 +62,40 @@ public class SegmentedByteArray implements ByteData {
         return segments[(int)(index >>> log2OfSegmentSize)][(int)(index & bitmask)];
     }
 
+    /**
+     * Get the 4 bytes at the specified index as a big-endian int.  If they are all in the same segment, the segment is located only once.
+     */
+    public int getInt(long index) {
+        int offset = (int)(index & bitmask);
+
+        if(offset <= bitmask - 3) {
+            byte segment[] = segments[(int)(index >>> log2OfSegmentSize)];
+            return (segment[offset] << 24) | ((segment[offset + 1] & 0xFF) << 16) | ((segment[offset + 2] & 0xFF) << 8) | (segment[offset + 3] & 0xFF);
+        }
+
+        return (get(index) << 24) | ((get(index + 1) & 0xFF) << 16) | ((get(index + 2) & 0xFF) << 8) | (get(index + 3) & 0xFF);
+    }
+
+    /**
+     * Get the 8 bytes at the specified index as a big-endian long.
+     */
+    public long getLong(long index) {
+        return ((long)getInt(index) << 32) | (getInt(index + 4) & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Decode the variable-byte integers in the specified range.  If the range is contained in a single segment,
+     * the values are decoded directly from that segment.
+     */
+    public int readVIntArray(long index, int length, int dest[]) {
+        int offset = (int)(index & bitmask);
+
+        if(offset + length <= bitmask + 1)
+            return VarInt.readVIntArray(segments[(int)(index >>> log2OfSegmentSize)], offset, length, dest);
+
+        return VarInt.readVIntArray(this, index, length, dest);
+    }
+
     /**
      * Copy bytes from another ByteData to this array.
      *
@@ -104,6 +138,33 @@ public class SegmentedByteArray implements ByteData {
 
     }
 
+    /**
+     * Copy bytes from a byte array into this SegmentedByteArray.
+     *
+     * @param src the source data
+     * @param srcPos the position to begin copying from the source data
+     * @param destPos the position to begin writing in this array
+     * @param length the length of the data to copy
+     */
+    public void copy(byte[] src, int srcPos, long destPos, int length) {
+        int segmentLength = 1 << log2OfSegmentSize;
+        int currentSegment = (int)(destPos >>> log2OfSegmentSize);
+        int segmentStartPos = (int)(destPos & bitmask);
+        int remainingBytesInSegment = segmentLength - segmentStartPos;
+
+        while(length > 0) {
+            int bytesToCopyToSegment = Math.min(remainingBytesInSegment, length);
+            ensureCapacity(currentSegment);
+            System.arraycopy(src, srcPos, segments[currentSegment], segmentStartPos, bytesToCopyToSegment);
+
+            srcPos += bytesToCopyToSegment;
+            length -= bytesToCopyToSegment;
+            segmentStartPos = 0;
+            remainingBytesInSegment = segmentLength;
+            currentSegment++;
+        }
+    }
+
     /**
      * copies exactly data.length bytes from this SegmentedByteArray into the provided byte array
      *
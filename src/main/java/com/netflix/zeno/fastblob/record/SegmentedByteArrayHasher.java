@@ -67,7 +67,7 @@ public class SegmentedByteArrayHasher {
 
         for (long i = offset; i < roundedEnd; i += 4) {
             // little endian load order
-            int k1 = (data.get(i) & 0xff) | ((data.get(i + 1) & 0xff) << 8) | ((data.get(i + 2) & 0xff) << 16) | (data.get(i + 3) << 24);
+            int k1 = Integer.reverseBytes(data.getInt(i));
             k1 *= c1;
             k1 = (k1 << 15) | (k1 >>> 17); // ROTL32(k1,15);
             k1 *= c2;
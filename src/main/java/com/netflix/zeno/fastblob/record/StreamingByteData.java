@@ -96,6 +96,21 @@ public class StreamingByteData extends InputStream implements ByteData {
         return buf[(int)(position >>> log2OfBufferSegmentLength)][(int)(position & bufferSegmentLengthMask)];
     }
 
+    @Override
+    public int getInt(long position) {
+        return (get(position) << 24) | ((get(position + 1) & 0xFF) << 16) | ((get(position + 2) & 0xFF) << 8) | (get(position + 3) & 0xFF);
+    }
+
+    @Override
+    public long getLong(long position) {
+        return ((long)getInt(position) << 32) | (getInt(position + 4) & 0xFFFFFFFFL);
+    }
+
+    @Override
+    public int readVIntArray(long position, int length, int dest[]) {
+        return VarInt.readVIntArray(this, position, length, dest);
+    }
+
     @Override
     public int read() throws IOException {
         // if there are no more bytes, return -1
@@ -0,0 +1,56 @@
+/*
+ *
+ *  Copyright 2014 Netflix, Inc.
+ *
+ *     Licensed under the Apache License, Version 2.0 (the "License");
+ *     you may not use this file except in compliance with the License.
+ *     You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *     Unless required by applicable law or agreed to in writing, software
+ *     distributed under the License is distributed on an "AS IS" BASIS,
+ *     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *     See the License for the specific language governing permissions and
+ *     limitations under the License.
+ *
+ */
+package com.netflix.zeno.fastblob.record;
+
+import static com.netflix.zeno.fastblob.FastBlobFrameworkSerializer.UTF_8;
+
+/**
+ * Static utility methods for decoding UTF8_STRING fields.
+ *
+ */
+public class UTF8String {
+
+    private static final ThreadLocal<byte[]> bytearr = new ThreadLocal<byte[]>();
+
+    /**
+     * Decode a String from <code>length</code> UTF-8 bytes at the given position.  If the data is a SegmentedByteArray, the bytes are copied out in bulk.
+     */
+    public static String read(ByteData data, long position, int length) {
+        byte bytearr[] = getByteArray(length);
+
+        if(data instanceof SegmentedByteArray) {
+            ((SegmentedByteArray)data).copy(position, bytearr, 0, length);
+        } else {
+            for(int i=0;i<length;i++) {
+                bytearr[i] = data.get(position++);
+            }
+        }
+
+        return new String(bytearr, 0, length, UTF_8);
+    }
+
+    private static byte[] getByteArray(int length) {
+        byte b[] = bytearr.get();
+        if(b == null || b.length < length) {
+            b = new byte[Math.max(length, 100)];
+            bytearr.set(b);
+        }
+        return b;
+    }
+
+}
@@ -186,6 +186,66 @@ public class VarInt {
         return 9;
     }
 
+    /**
+     * Decode the variable-byte integers in a range of a byte array.  Nulls are decoded as -1.
+     *
+     * @return the number of values decoded.
+     */
+    public static int readVIntArray(byte data[], int position, int length, int dest[]) {
+        int end = position + length;
+        int count = 0;
+
+        while(position < end) {
+            byte b = data[position++];
+
+            if(b == (byte) 0x80) {
+                dest[count++] = -1;
+                continue;
+            }
+
+            int value = b & 0x7F;
+            while ((b & 0x80) != 0) {
+              b = data[position++];
+              value <<= 7;
+              value |= (b & 0x7F);
+            }
+
+            dest[count++] = value;
+        }
+
+        return count;
+    }
+
+    /**
+     * Decode the variable-byte integers in a range of a ByteData, one byte at a time.  Nulls are decoded as -1.
+     *
+     * @return the number of values decoded.
+     */
+    public static int readVIntArray(ByteData arr, long position, int length, int dest[]) {
+        long end = position + length;
+        int count = 0;
+
+        while(position < end) {
+            byte b = arr.get(position++);
+
+            if(b == (byte) 0x80) {
+                dest[count++] = -1;
+                continue;
+            }
+
+            int value = b & 0x7F;
+            while ((b & 0x80) != 0) {
+              b = arr.get(position++);
+              value <<= 7;
+              value |= (b & 0x7F);
+            }
+
+            dest[count++] = value;
+        }
+
+        return count;
+    }
+
     public static int countVarIntsInRange(ByteData byteData, long fieldPosition, int length) {
         int numInts = 0;
 
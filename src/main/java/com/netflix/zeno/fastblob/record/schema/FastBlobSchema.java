@@ -79,7 +79,7 @@ public class FastBlobSchema {
      *
      * <ul>
      * <li>For a primitive value, use new FieldDefinition(...)</li>
-     * <li>For an OBJECT, LIST, or SET, use new TypedFieldDefinition(...)</li>
+     * <li>For an OBJECT, LIST, SET, or DICTIONARY_STRING, use new TypedFieldDefinition(...)</li>
      * <li>For a MAP, use new MapFieldDefinition(...)</li>
      * </ul>
      *
@@ -252,7 +252,7 @@ public class FastBlobSchema {
         FieldType fieldType = def.getFieldType();
         dos.writeUTF(fieldType.name());
 
-        if(fieldType == FieldType.OBJECT || fieldType == FieldType.LIST || fieldType == FieldType.SET) {
+        if(fieldType == FieldType.OBJECT || fieldType == FieldType.LIST || fieldType == FieldType.SET || fieldType == FieldType.DICTIONARY_STRING) {
             if(def instanceof TypedFieldDefinition) {
                 dos.writeUTF(((TypedFieldDefinition)def).getSubType());
             } else {
@@ -292,7 +292,7 @@ public class FastBlobSchema {
     private static FieldDefinition readFieldDefinition(DataInputStream dis) throws IOException {
         FieldType fieldType = Enum.valueOf(FieldType.class, dis.readUTF());
 
-        if(fieldType == FieldType.OBJECT || fieldType == FieldType.LIST || fieldType == FieldType.SET) {
+        if(fieldType == FieldType.OBJECT || fieldType == FieldType.LIST || fieldType == FieldType.SET || fieldType == FieldType.DICTIONARY_STRING) {
             String subType = dis.readUTF();
 
             if(!subType.isEmpty())
@@ -320,6 +320,15 @@ public class FastBlobSchema {
         FLOAT(4, false),
         DOUBLE(8, false),
         STRING(-1, true),
+        /**
+         * A String encoded as a length-prefixed sequence of UTF-8 bytes, which may be bulk-copied upon decode.
+         */
+        UTF8_STRING(-1, true),
+        /**
+         * A String encoded as the ordinal of its value in a string table type.  Each distinct value is stored once,
+         * and is deserialized as a single canonical String instance.
+         */
+        DICTIONARY_STRING(-1, false),
         BYTES(-1, true),
         LIST(-1, true),
         SET(-1, true),
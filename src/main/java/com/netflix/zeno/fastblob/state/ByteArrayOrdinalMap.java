@@ -376,7 +376,7 @@ public class ByteArrayOrdinalMap {
                             int sizeOfData = VarInt.readVInt(byteData.getUnderlyingArray(), pointer);
                             pointer += VarInt.sizeOfVInt(sizeOfData);
 
-                            rec.position(pointer);
+                            rec.seek(pointer);
 
                             fill.add(ordinal, rec);
                         }
@@ -428,7 +428,7 @@ public class ByteArrayOrdinalMap {
                             int sizeOfData = VarInt.readVInt(byteData.getUnderlyingArray(), pointer);
                             pointer += VarInt.sizeOfVInt(sizeOfData);
 
-                            rec.position(pointer);
+                            rec.seek(pointer);
                             remapper.remapOrdinals(rec, mappedBuffer);
 
                             int newOrdinal = destState.addData(mappedBuffer, FastBlobImageUtils.toLong(imageMembershipsFlags));
@@ -626,6 +626,20 @@ public class ByteArrayOrdinalMap {
         return deserializedMap;
     }
 
+    /**
+     * Specify the order in which ordinals freed during compact() are reused.
+     */
+    public void setOrdinalReusePolicy(OrdinalReusePolicy reusePolicy) {
+        freeOrdinalTracker.setReusePolicy(reusePolicy);
+    }
+
+    /**
+     * @return the tracker of free ordinals, which also reports statistics about the density of the ordinal space.
+     */
+    public FreeOrdinalTracker getFreeOrdinalTracker() {
+        return freeOrdinalTracker;
+    }
+
     public ByteDataBuffer getByteData() {
         return byteData;
     }
@@ -25,6 +25,7 @@ import com.netflix.zeno.fastblob.record.VarInt;
 import com.netflix.zeno.fastblob.record.schema.FastBlobSchema;
 import com.netflix.zeno.serializer.NFTypeSerializer;
 import com.netflix.zeno.util.CollectionUnwrapper;
+import com.netflix.zeno.util.collections.heapfriendly.HeapFriendlyMapArrayRecycler;
 import java.util.ArrayList;
 import java.util.BitSet;
 import java.util.Iterator;
@@ -37,7 +38,10 @@ import java.util.concurrent.atomic.AtomicLongArray;
  *
  * This class is responsible for maintaining the mappings between ordinals and deserialized objects.
  * It performs this responsibility by maintaining an ArrayList of objects.  The location of the object
- * in the ArrayList will be the index of its ordinal.
+ * in the ArrayList will be the index of its ordinal.<p/>
+ *
+ * If a segment recycler is set, the objects are instead held in fixed-size segments borrowed from the recycler, and the
+ * segments which held the previous objects are returned to the recycler after each double snapshot refresh.
  *
  * @param <T>
  *
@@ -56,12 +60,32 @@ public class FastBlobTypeDeserializationState<T> implements Iterable<T> {
     private List<T> previousObjects;
     private BitSet copiedPreviousObjects;
     private ObjectIdentityOrdinalMap identityOrdinalMap;
+    private HeapFriendlyMapArrayRecycler segmentRecycler;
 
     public FastBlobTypeDeserializationState(NFTypeSerializer<T> serializer) {
         this.serializer = serializer;
         this.objects = new ArrayList<T>();
     }
 
+    /**
+     * Store this state's objects in segments borrowed from the specified recycler, or in an ArrayList if the recycler is null.<p/>
+     *
+     * The recycler's cycles must be swapped before, and its "next" cycle arrays cleared after, each double snapshot refresh.
+     *
+     * @see FastBlobStateEngine#setUseHeapFriendlyDeserializationStates(boolean)
+     */
+    public void setSegmentRecycler(HeapFriendlyMapArrayRecycler segmentRecycler) {
+        this.segmentRecycler = segmentRecycler;
+
+        List<T> currentObjects = objects;
+        objects = createObjectList(currentObjects.size());
+        objects.addAll(currentObjects);
+        releaseObjectList(currentObjects);
+
+        if(identityOrdinalMap != null)
+            identityOrdinalMap = new ObjectIdentityOrdinalMap(objects);
+    }
+
     public T get(int ordinal) {
         if(ordinal >= objects.size())
             return null;
@@ -72,7 +96,7 @@ public class FastBlobTypeDeserializationState<T> implements Iterable<T> {
     public void add(int ordinal, FastBlobDeserializationRecord rec) {
         T obj = serializer.deserialize(rec);
         ensureCapacity(ordinal + 1);
-        objects.set(ordinal, obj);
+        setObject(ordinal, obj);
         stateListener.addedObject(obj);
         stateListener.addedObject(obj, ordinal);
     }
@@ -80,11 +104,25 @@ public class FastBlobTypeDeserializationState<T> implements Iterable<T> {
     @SuppressWarnings("deprecation")
     public void remove(int ordinal) {
         T removedObject = objects.get(ordinal);
-        objects.set(ordinal, null);
+        setObject(ordinal, null);
         stateListener.removedObject(removedObject);
         stateListener.removedObject(removedObject, ordinal);
     }
 
+    /**
+     * Release all of this state's objects, without notifying the listener.<p/>
+     *
+     * This is intended for a reader which only visits the objects of this type as they are added (e.g. via a listener), and which no longer
+     * requires them once every type referencing this type has been read.  Any ordinal of this type read afterwards will deserialize as null.
+     */
+    public void releaseObjects() {
+        releaseObjectList(objects);
+        objects = createObjectList(0);
+
+        if(identityOrdinalMap != null)
+            identityOrdinalMap = new ObjectIdentityOrdinalMap(objects);
+    }
+
     public void setListener(TypeDeserializationStateListener<T> listener) {
         this.stateListener = listener;
     }
@@ -111,7 +149,10 @@ public class FastBlobTypeDeserializationState<T> implements Iterable<T> {
 
         previousObjects = objects;
         copiedPreviousObjects = new BitSet(previousObjects.size());
-        objects = new ArrayList<T>(previousObjects.size());
+        objects = createObjectList(previousObjects.size());
+
+        if(identityOrdinalMap != null)
+            identityOrdinalMap.beginRefresh(objects);
     }
 
     /**
@@ -132,7 +173,7 @@ public class FastBlobTypeDeserializationState<T> implements Iterable<T> {
                 int sizeOfData = VarInt.readVInt(byteData.getUnderlyingArray(), pointer);
                 pointer += VarInt.sizeOfVInt(sizeOfData);
 
-                rec.position(pointer);
+                rec.seek(pointer);
 
                 add(ordinal, rec);
             }
@@ -142,19 +183,28 @@ public class FastBlobTypeDeserializationState<T> implements Iterable<T> {
     /**
      * Not intended for external consumption.<p/>
      *
-     * This method is only intended to be used during heap-friendly double snapshot refresh.
+     * This method is only intended to be used during heap-friendly double snapshot refresh.<p/>
+     *
+     * Once created, the identity ordinal map is kept up to date as objects are added, removed and copied, until clearIdentityOrdinalMap() is called.
+     * Lookups via find() are not synchronized with these updates, so a lookup which races with the application of a delta may miss.
      */
     public void createIdentityOrdinalMap() {
-        identityOrdinalMap = new ObjectIdentityOrdinalMap(objects);
+        if(identityOrdinalMap == null)
+            identityOrdinalMap = new ObjectIdentityOrdinalMap(objects);
     }
 
     /**
      * Not intended for external consumption.<p/>
      *
-     * This method is only intended to be used during heap-friendly double snapshot refresh.
+     * This method is only intended to be used during heap-friendly double snapshot refresh.<p/>
+     *
+     * This may be called concurrently with the application of a delta.  In that case, an object which is present may not be found
+     * (-1 is returned), but an incorrect ordinal is never returned.
      */
     public int find(T obj) {
-        if(identityOrdinalMap == null)
+        /// objects of this type are not found while this type is itself being refreshed.
+        ObjectIdentityOrdinalMap identityOrdinalMap = this.identityOrdinalMap;
+        if(identityOrdinalMap == null || previousObjects != null)
             return -1;
 
         int ordinal = identityOrdinalMap.get(obj);
@@ -173,7 +223,7 @@ public class FastBlobTypeDeserializationState<T> implements Iterable<T> {
     public void copyPrevious(int newOrdinal, int previousOrdinal) {
         T obj = previousObjects.get(previousOrdinal);
         ensureCapacity(newOrdinal + 1);
-        objects.set(newOrdinal, obj);
+        setObject(newOrdinal, obj);
         copiedPreviousObjects.set(previousOrdinal);
         stateListener.reassignedObject(obj, previousOrdinal, newOrdinal);
     }
@@ -189,10 +239,17 @@ public class FastBlobTypeDeserializationState<T> implements Iterable<T> {
         for(int i=0;i<previousObjects.size();i++) {
             T t = previousObjects.get(i);
             if(t != null && !copiedPreviousObjects.get(i)) {
+                if(identityOrdinalMap != null)
+                    identityOrdinalMap.remove(t);
                 stateListener.removedObject(t);
                 stateListener.removedObject(t, i);
             }
         }
+
+        if(identityOrdinalMap != null)
+            identityOrdinalMap.endRefresh();
+
+        releaseObjectList(previousObjects);
         previousObjects = null;
         copiedPreviousObjects = null;
     }
@@ -248,6 +305,34 @@ public class FastBlobTypeDeserializationState<T> implements Iterable<T> {
         return new TypeDeserializationStateIterator<T>(objects);
     }
 
+    /**
+     * Set the object at the ordinal, keeping the identity ordinal map (if present) up to date.  An object must be removed from the
+     * identity ordinal map before it is removed from the List, because the map locates its entries via the List.
+     */
+    private void setObject(int ordinal, T obj) {
+        if(identityOrdinalMap != null) {
+            T previous = objects.get(ordinal);
+            if(previous != null && previous != obj)
+                identityOrdinalMap.remove(previous);
+        }
+
+        objects.set(ordinal, obj);
+
+        if(identityOrdinalMap != null && obj != null)
+            identityOrdinalMap.put(obj, ordinal);
+    }
+
+    private List<T> createObjectList(int initialCapacity) {
+        if(segmentRecycler != null)
+            return new RecycledSegmentList<T>(segmentRecycler);
+        return new ArrayList<T>(initialCapacity);
+    }
+
+    private void releaseObjectList(List<T> list) {
+        if(list instanceof RecycledSegmentList)
+            ((RecycledSegmentList<T>)list).releaseSegments();
+    }
+
     void ensureCapacity(int size) {
         while(objects.size() < size) {
             objects.add(null);
@@ -18,6 +18,7 @@
 package com.netflix.zeno.fastblob.state;
 
 import com.netflix.zeno.fastblob.FastBlobImageUtils;
+import com.netflix.zeno.fastblob.FastBlobSerializationScratch;
 import com.netflix.zeno.fastblob.FastBlobStateEngine;
 import com.netflix.zeno.fastblob.OrdinalMapping;
 import com.netflix.zeno.fastblob.record.ByteDataBuffer;
@@ -30,6 +31,8 @@ import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * This class represents the "serialization state" for a single type at some level of the object
@@ -72,6 +75,14 @@ public class FastBlobTypeSerializationState<T> {
     private ThreadSafeBitSet previousCycleImageMemberships[];
 
     private WeakObjectOrdinalMap objectOrdinalMap;
+    private WeakObjectOrdinalMap previousCycleObjectOrdinalMap;
+
+    /// alternating (FastBlobTypeSerializationState, Object) pairs referenced by the object currently being serialized on this thread.
+    private static final ThreadLocal<List<Object>> currentChildReferences = new ThreadLocal<List<Object>>();
+
+    private OrdinalReusePolicy ordinalReusePolicy = OrdinalReusePolicy.LIFO;
+
+    private int scratchIndex = -1;
 
     /**
      *
@@ -104,6 +115,47 @@ public class FastBlobTypeSerializationState<T> {
         }
     }
 
+    /**
+     * If object identity ordinal caching is enabled, choose whether the cache holds strong references to the added objects.<p/>
+     *
+     * Strong references are released in bulk when prepareForNextCycle() is called, and avoid the garbage collection overhead of
+     * weak reference processing.  They will retain every object added during a cycle until the end of that cycle.
+     */
+    public void setUseStrongObjectIdentityReferences(boolean useStrongReferences) {
+        if (objectOrdinalMap != null && objectOrdinalMap.isUsingStrongReferences() != useStrongReferences) {
+            objectOrdinalMap = new WeakObjectOrdinalMap(8, useStrongReferences);
+            if (previousCycleObjectOrdinalMap != null)
+                previousCycleObjectOrdinalMap = new WeakObjectOrdinalMap(8, useStrongReferences);
+        }
+    }
+
+    /**
+     * If object identity ordinal caching is enabled, choose whether the objects added during each cycle are remembered into the next cycle.<p/>
+     *
+     * If so, an object which was added during the previous cycle is assigned its previous ordinal without being serialized again.  The
+     * objects it references are added again in the same way, so an unchanged object graph costs one identity lookup per object rather
+     * than a serialization of each object.  This relies on the added objects being immutable across cycles, not just within a cycle.
+     */
+    public void setRetainObjectIdentitiesAcrossCycles(boolean retainAcrossCycles) {
+        if (objectOrdinalMap == null)
+            return;
+
+        if (retainAcrossCycles && previousCycleObjectOrdinalMap == null) {
+            previousCycleObjectOrdinalMap = new WeakObjectOrdinalMap(8, objectOrdinalMap.isUsingStrongReferences());
+        } else if (!retainAcrossCycles) {
+            previousCycleObjectOrdinalMap = null;
+        }
+    }
+
+    /**
+     * Not intended for external consumption.<p/>
+     *
+     * Assign the index of this state's record and buffer in each {@link FastBlobSerializationScratch}.  Each state in a FastBlobStateEngine has a distinct index.
+     */
+    public void setScratchIndex(int scratchIndex) {
+        this.scratchIndex = scratchIndex;
+    }
+
     public String getName() {
         return serializer.getName();
     }
@@ -112,6 +164,32 @@ public class FastBlobTypeSerializationState<T> {
         return typeSchema;
     }
 
+    /**
+     * Specify the order in which ordinals which are freed at the end of a cycle will be reused in subsequent cycles.
+     */
+    public void setOrdinalReusePolicy(OrdinalReusePolicy ordinalReusePolicy) {
+        this.ordinalReusePolicy = ordinalReusePolicy;
+        ordinalMap.setOrdinalReusePolicy(ordinalReusePolicy);
+    }
+
+    public OrdinalReusePolicy getOrdinalReusePolicy() {
+        return ordinalReusePolicy;
+    }
+
+    /**
+     * @return one greater than the highest ordinal currently reserved by this state.
+     */
+    public int getOrdinalSpaceSize() {
+        return ordinalMap.getFreeOrdinalTracker().getOrdinalSpaceSize();
+    }
+
+    /**
+     * @return the fraction of this state's ordinal space which is currently assigned to objects, between 0 and 1.
+     */
+    public double getOrdinalSpaceDensity() {
+        return ordinalMap.getFreeOrdinalTracker().getOrdinalSpaceDensity();
+    }
+
     /**
      * This is only useful when we start a new server with a different schema than the previous server.
      * The previous state schema gets loaded from the previously serialized previousStateTypeSchemaserver state.
@@ -155,25 +233,61 @@ public class FastBlobTypeSerializationState<T> {
      * @param imageMembershipsFlags
      */
     public int add(T data, long imageMembershipsFlags) {
+        return add(data, imageMembershipsFlags, null);
+    }
+
+    /**
+     * Add an object to this state, using the records and buffers in the provided worker-owned scratch, rather than those owned by the current thread.<p/>
+     *
+     * The scratch is passed down to the add of each object referenced by this object.  If the scratch is null, this is equivalent to add(data, imageMembershipsFlags).
+     */
+    public int add(T data, long imageMembershipsFlags, FastBlobSerializationScratch workerScratch) {
         if(!ordinalMap.isReadyForAddingObjects())
             throw new RuntimeException("The FastBlobStateEngine is not ready to add more Objects.  Did you remember to call stateEngine.prepareForNextCycle()?");
 
+        List<Object> childReferences = null;
+
         if (objectOrdinalMap != null) {
             Entry existingEntry = objectOrdinalMap.getEntry(data);
             if (existingEntry != null) {
                 if (existingEntry.hasImageMembershipsFlags(imageMembershipsFlags)) {
+                    recordChildReference(data);
                     return existingEntry.getOrdinal();
                 }
             }
+
+            if (previousCycleObjectOrdinalMap != null) {
+                if (existingEntry == null)
+                    existingEntry = previousCycleObjectOrdinalMap.getEntry(data);
+
+                if (existingEntry != null && existingEntry.getChildReferences() != null) {
+                    recordChildReference(data);
+                    return addMemoized(data, existingEntry, imageMembershipsFlags, workerScratch);
+                }
+
+                recordChildReference(data);
+                childReferences = new ArrayList<Object>();
+            }
         }
 
-        FastBlobSerializationRecord rec = record();
+        boolean useWorkerScratch = workerScratch != null && scratchIndex >= 0;
+        FastBlobSerializationRecord rec = useWorkerScratch ? workerScratch.getRecord(scratchIndex, typeSchema) : record();
 
         rec.setImageMembershipsFlags(imageMembershipsFlags);
 
-        serializer.serialize(data, rec);
+        if (childReferences != null) {
+            List<Object> parentChildReferences = currentChildReferences.get();
+            currentChildReferences.set(childReferences);
+            try {
+                serializer.serialize(data, rec);
+            } finally {
+                currentChildReferences.set(parentChildReferences);
+            }
+        } else {
+            serializer.serialize(data, rec);
+        }
 
-        ByteDataBuffer scratch = scratch();
+        ByteDataBuffer scratch = useWorkerScratch ? workerScratch.getBuffer(scratchIndex) : scratch();
         rec.writeDataTo(scratch);
 
         int ordinal = addData(scratch, imageMembershipsFlags);
@@ -182,11 +296,50 @@ public class FastBlobTypeSerializationState<T> {
         rec.reset();
 
         if (objectOrdinalMap != null) {
-            objectOrdinalMap.put(data, ordinal, imageMembershipsFlags);
+            objectOrdinalMap.put(data, ordinal, imageMembershipsFlags, childReferences == null ? null : childReferences.toArray());
         }
         return ordinal;
     }
 
+    /**
+     * Add an object which was serialized during this or the previous cycle, without serializing it again.<p/>
+     *
+     * The ordinal is still valid, because the object's serialized representation was used during the previous cycle, and was therefore not
+     * removed from the ByteArrayOrdinalMap by prepareForNextCycle().  The objects it references must be added again, so that they are included
+     * in this cycle's images.
+     */
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    private int addMemoized(T data, Entry entry, long imageMembershipsFlags, FastBlobSerializationScratch workerScratch) {
+        int ordinal = entry.getOrdinal();
+        Object[] children = entry.getChildReferences();
+
+        List<Object> parentChildReferences = currentChildReferences.get();
+        currentChildReferences.set(null);
+        try {
+            for(int i=0;i<children.length;i+=2) {
+                ((FastBlobTypeSerializationState)children[i]).add(children[i+1], imageMembershipsFlags, workerScratch);
+            }
+        } finally {
+            currentChildReferences.set(parentChildReferences);
+        }
+
+        addOrdinalToImages(imageMembershipsFlags, ordinal);
+        objectOrdinalMap.put(data, ordinal, imageMembershipsFlags, children);
+
+        return ordinal;
+    }
+
+    /**
+     * If an object which memoizes its child references is currently being serialized on this thread, record that it references this object.
+     */
+    private void recordChildReference(T data) {
+        List<Object> parentChildReferences = currentChildReferences.get();
+        if (parentChildReferences != null) {
+            parentChildReferences.add(this);
+            parentChildReferences.add(data);
+        }
+    }
+
     /**
      * Hook to add raw data. This is used during FastBlobStateEngine
      * combination. PreviousState
@@ -277,6 +430,15 @@ public class FastBlobTypeSerializationState<T> {
         for(ThreadSafeBitSet bitSet : imageMemberships) {
             bitSet.clearAll();
         }
+        if (previousCycleObjectOrdinalMap != null && typeSchema.equals(previousStateTypeSchema)) {
+            /// every object added during the cycle which just ended still has its ordinal in the ordinalMap.
+            WeakObjectOrdinalMap tempMap = previousCycleObjectOrdinalMap;
+            previousCycleObjectOrdinalMap = objectOrdinalMap;
+            objectOrdinalMap = tempMap;
+        } else if (previousCycleObjectOrdinalMap != null) {
+            previousCycleObjectOrdinalMap.clear();
+        }
+
         if (objectOrdinalMap != null) {
             objectOrdinalMap.clear();
         }
@@ -392,6 +554,10 @@ public class FastBlobTypeSerializationState<T> {
 
         ordinalMap = ByteArrayOrdinalMap.deserializeFrom(is);
 
+        if (previousCycleObjectOrdinalMap != null)
+            previousCycleObjectOrdinalMap.clear();
+        ordinalMap.setOrdinalReusePolicy(ordinalReusePolicy);
+
         for(int i=0;i<numConfigs;i++) {
             ThreadSafeBitSet bitSet = ThreadSafeBitSet.deserializeFrom(is);
             imageMemberships[i] = bitSet;
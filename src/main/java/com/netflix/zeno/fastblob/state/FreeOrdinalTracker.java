@@ -25,9 +25,11 @@ import java.io.OutputStream;
 import java.util.Arrays;
 
 /**
- * A stack of unused ordinals.<p/>
+ * A pool of unused ordinals.<p/>
  *
- * This helps fill the "holes" generated by removing unused ordinals during server processing.
+ * This helps fill the "holes" generated by removing unused ordinals during server processing.<p/>
+ *
+ * The order in which freed ordinals are reused is determined by an {@link OrdinalReusePolicy}.  By default, this is a stack (LIFO).
  *
  * @author dkoszewnik
  *
@@ -38,46 +40,132 @@ public class FreeOrdinalTracker {
     private int size;
     private int nextEmptyOrdinal;
 
+    private OrdinalReusePolicy reusePolicy;
+    /// LOWEST_FIRST only: freeOrdinals[head..size) are sorted ascending when this is true.
+    private boolean sorted;
+    private int head;
+
     public FreeOrdinalTracker() {
         this(0);
     }
 
+    public FreeOrdinalTracker(OrdinalReusePolicy reusePolicy) {
+        this(0);
+        this.reusePolicy = reusePolicy;
+    }
+
     private FreeOrdinalTracker(int nextEmptyOrdinal) {
         this.freeOrdinals = new int[64];
         this.nextEmptyOrdinal = nextEmptyOrdinal;
         this.size = 0;
+        this.reusePolicy = OrdinalReusePolicy.LIFO;
+        this.sorted = true;
     }
 
     /**
      * @return either an ordinal which was previously deallocated, or the next empty, previously unallocated ordinal in the sequence 0-n
      */
     public int getFreeOrdinal() {
-        if(size == 0)
+        if(reusePolicy == OrdinalReusePolicy.LOWEST_FIRST)
+            return getLowestFreeOrdinal();
+
+        if(size == head) {
+            head = size = 0;
             return nextEmptyOrdinal++;
+        }
 
         return freeOrdinals[--size];
     }
 
+    private int getLowestFreeOrdinal() {
+        if(!sorted)
+            sortAndTrim();
+
+        if(head == size) {
+            head = size = 0;
+            return nextEmptyOrdinal++;
+        }
+
+        return freeOrdinals[head++];
+    }
+
     /**
      * Return an ordinal to the pool after the object to which it was assigned is discarded.
      *
      * @param ordinal
      */
     public void returnOrdinalToPool(int ordinal) {
+        if(head != 0) {
+            System.arraycopy(freeOrdinals, head, freeOrdinals, 0, size - head);
+            size -= head;
+            head = 0;
+        }
+
         if(size == freeOrdinals.length) {
             freeOrdinals = Arrays.copyOf(freeOrdinals, freeOrdinals.length * 3 / 2);
         }
 
         freeOrdinals[size] = ordinal;
         size++;
+        sorted = false;
+    }
+
+    /**
+     * Sort the pending free ordinals, then give back any which sit at the top of the ordinal space.
+     */
+    private void sortAndTrim() {
+        Arrays.sort(freeOrdinals, head, size);
+
+        while(size > head && freeOrdinals[size - 1] == nextEmptyOrdinal - 1) {
+            size--;
+            nextEmptyOrdinal--;
+        }
+
+        sorted = true;
+    }
+
+    public void setReusePolicy(OrdinalReusePolicy reusePolicy) {
+        this.reusePolicy = reusePolicy;
+    }
+
+    public OrdinalReusePolicy getReusePolicy() {
+        return reusePolicy;
+    }
+
+    /**
+     * @return the number of ordinals which have been returned to the pool and not yet reused.
+     */
+    public int getNumFreeOrdinals() {
+        if(reusePolicy == OrdinalReusePolicy.LOWEST_FIRST && !sorted)
+            sortAndTrim();
+        return size - head;
+    }
+
+    /**
+     * @return the size of the ordinal space (one greater than the highest ordinal ever handed out and not trimmed).
+     */
+    public int getOrdinalSpaceSize() {
+        if(reusePolicy == OrdinalReusePolicy.LOWEST_FIRST && !sorted)
+            sortAndTrim();
+        return nextEmptyOrdinal;
+    }
+
+    /**
+     * @return the fraction of the ordinal space which is currently assigned, between 0 and 1.  An empty space has a density of 1.
+     */
+    public double getOrdinalSpaceDensity() {
+        int ordinalSpaceSize = getOrdinalSpaceSize();
+        if(ordinalSpaceSize == 0)
+            return 1.0d;
+        return (double)(ordinalSpaceSize - getNumFreeOrdinals()) / ordinalSpaceSize;
     }
 
 
     public void serializeTo(OutputStream os) throws IOException {
         VarInt.writeVInt(os, nextEmptyOrdinal);
-        VarInt.writeVInt(os, size);
+        VarInt.writeVInt(os, size - head);
 
-        for(int i=0;i<size;i++) {
+        for(int i=head;i<size;i++) {
             VarInt.writeVInt(os, freeOrdinals[i]);
         }
     }
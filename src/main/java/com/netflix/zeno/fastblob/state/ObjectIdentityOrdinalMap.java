@@ -26,16 +26,28 @@ import java.util.List;
  * This is used during "heap-friendly" double snapshot refreshes with the FastBlob.<p/>
  *
  * The vast majority of the extra memory required to maintain this mapping is the hashedOrdinals[] array, which is just an int array.  The values of this
- * array are the ordinals of the objects located at the position of each object's identity hash.  Collisions are resolved via linear probing.
+ * array are the ordinals of the objects located at the position of each object's identity hash.  Collisions are resolved via linear probing.<p/>
+ *
+ * The mapping may be kept up to date as objects are added to and removed from the List, with put() and remove().  During a double snapshot
+ * refresh, the objects move from the previous List to a new List.  Each entry records which of the two Lists its ordinal refers to with an
+ * "epoch" bit, which is flipped at the beginning of each refresh, so that the mapping may be updated as each object is moved without being rebuilt.
  *
  * @author dkoszewnik
  *
  */
 public class ObjectIdentityOrdinalMap {
 
-    private final List<Object> objects;
-    private final int hashedOrdinals[];
-    private final int hashModMask;
+    private static final int EPOCH_BIT = 1 << 30;
+    private static final int ORDINAL_MASK = EPOCH_BIT - 1;
+    private static final int EMPTY = -1;
+
+    private List<Object> objects;
+    private List<Object> previousObjects;
+    private int currentEpochBit;
+
+    /// replaced (never resized in place) when the map grows, so that a lookup which reads it once sees a consistent table.
+    private volatile int hashedOrdinals[];
+    private int size;
 
     /**
      * The List of Objects passed in here should be the same list as held by the FastBlobTypeDeserializationState.<p/>
@@ -55,42 +67,154 @@ public class ObjectIdentityOrdinalMap {
 
         arraySize = 1 << (32 - Integer.numberOfLeadingZeros(arraySize));
 
-        hashedOrdinals = new int[arraySize];
-        hashModMask = arraySize - 1;
+        int table[] = new int[arraySize];
+        Arrays.fill(table, EMPTY);
+        hashedOrdinals = table;
 
-        Arrays.fill(hashedOrdinals, -1);
+        this.objects = objects;
 
         for(int i=0;i<objects.size();i++) {
             if(objects.get(i) != null)
                 put(objects.get(i), i);
         }
+    }
 
-        this.objects = objects;
+    /**
+     * Map the object to the ordinal.  The object must already be contained at the index of its ordinal in the current List.<p/>
+     *
+     * If the object was already mapped (e.g. to its ordinal in the previous List during a double snapshot refresh), it is remapped.
+     */
+    public void put(Object obj, int ordinal) {
+        if(ordinal > ORDINAL_MASK)
+            throw new IllegalArgumentException("Ordinal " + ordinal + " is too large for an ObjectIdentityOrdinalMap");
+
+        int table[] = hashedOrdinals;
+        int bucket = findBucket(table, obj);
+
+        if(table[bucket] == EMPTY) {
+            if((size + 1) * 10 > table.length * 8) {
+                table = grow(table);
+                bucket = findBucket(table, obj);
+            }
+            size++;
+        }
+
+        table[bucket] = ordinal | currentEpochBit;
     }
 
-    private void put(Object obj, int ordinal) {
-        int hash = rehash(System.identityHashCode(obj));
+    /**
+     * Remove the mapping for the object, if there is one.
+     */
+    public void remove(Object obj) {
+        int table[] = hashedOrdinals;
+        int mask = table.length - 1;
+        int bucket = findBucket(table, obj);
+
+        if(table[bucket] == EMPTY)
+            return;
+
+        table[bucket] = EMPTY;
+        size--;
 
-        int bucket = hash & hashModMask;
+        /// shift back any subsequent entries in the probe sequence which would no longer be reachable.
+        int emptyBucket = bucket;
+        bucket = (bucket + 1) & mask;
 
-        while(hashedOrdinals[bucket] != -1)
-            bucket = (bucket + 1) & hashModMask;
+        while(table[bucket] != EMPTY) {
+            int idealBucket = rehash(System.identityHashCode(objectFor(table[bucket]))) & mask;
 
-        hashedOrdinals[bucket] = ordinal;
+            if(((bucket - idealBucket) & mask) >= ((bucket - emptyBucket) & mask)) {
+                table[emptyBucket] = table[bucket];
+                table[bucket] = EMPTY;
+                emptyBucket = bucket;
+            }
+
+            bucket = (bucket + 1) & mask;
+        }
     }
 
+    /**
+     * Lookups may be performed concurrently with modifications.  A lookup which races with a modification may miss
+     * (return -1 for) an object which is present, but will not return an incorrect ordinal.
+     */
     public int get(Object obj) {
-        int hash = rehash(System.identityHashCode(obj));
+        int table[] = hashedOrdinals;
+        int mask = table.length - 1;
+        int bucket = rehash(System.identityHashCode(obj)) & mask;
+
+        /// each slot is read once, so the returned ordinal is always the one which was matched.
+        int hashedOrdinal;
+        while((hashedOrdinal = table[bucket]) != EMPTY) {
+            if(objectFor(hashedOrdinal) == obj)
+                return hashedOrdinal & ORDINAL_MASK;
+            bucket = (bucket + 1) & mask;
+        }
+
+        return -1;
+    }
 
-        int bucket = hash & hashModMask;
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Begin a double snapshot refresh.  Existing entries will continue to refer to the previous List, until they are either
+     * remapped to the new List with put() or removed.
+     */
+    @SuppressWarnings({ "rawtypes", "unchecked" })
+    public void beginRefresh(List newObjects) {
+        previousObjects = objects;
+        objects = newObjects;
+        currentEpochBit ^= EPOCH_BIT;
+    }
 
-        while(hashedOrdinals[bucket] != -1) {
-            if(objects.get(hashedOrdinals[bucket]) == obj)
-                return hashedOrdinals[bucket];
-            bucket = (bucket + 1) & hashModMask;
+    /**
+     * Complete a double snapshot refresh.  By now, every entry which referred to the previous List must have been remapped or removed.
+     */
+    public void endRefresh() {
+        previousObjects = null;
+    }
+
+    private int findBucket(int table[], Object obj) {
+        int mask = table.length - 1;
+        int bucket = rehash(System.identityHashCode(obj)) & mask;
+
+        while(table[bucket] != EMPTY) {
+            if(objectFor(table[bucket]) == obj)
+                return bucket;
+            bucket = (bucket + 1) & mask;
         }
 
-        return -1;
+        return bucket;
+    }
+
+    private Object objectFor(int hashedOrdinal) {
+        List<Object> list = (hashedOrdinal & EPOCH_BIT) == currentEpochBit ? objects : previousObjects;
+        int ordinal = hashedOrdinal & ORDINAL_MASK;
+        return ordinal < list.size() ? list.get(ordinal) : null;
+    }
+
+    /**
+     * The new table is fully populated before it is published.
+     */
+    private int[] grow(int oldTable[]) {
+        int table[] = new int[oldTable.length * 2];
+        int mask = table.length - 1;
+        Arrays.fill(table, EMPTY);
+
+        for(int i=0;i<oldTable.length;i++) {
+            if(oldTable[i] != EMPTY) {
+                int bucket = rehash(System.identityHashCode(objectFor(oldTable[i]))) & mask;
+
+                while(table[bucket] != EMPTY)
+                    bucket = (bucket + 1) & mask;
+
+                table[bucket] = oldTable[i];
+            }
+        }
+
+        hashedOrdinals = table;
+        return table;
     }
 
     private int rehash(int hash) {
@@ -39,6 +39,7 @@ public class OrdinalRemapper {
 
             switch(fieldDef.getFieldType()) {
             case OBJECT:
+            case DICTIONARY_STRING:
                 typedFieldDef = (TypedFieldDefinition)fieldDef;
 
                 if(VarInt.readVNull(fromSpace, currentPointerPosition)) {
@@ -0,0 +1,35 @@
+/*
+ *
+ *  Copyright 2013 Netflix, Inc.
+ *
+ *     Licensed under the Apache License, Version 2.0 (the "License");
+ *     you may not use this file except in compliance with the License.
+ *     You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *     Unless required by applicable law or agreed to in writing, software
+ *     distributed under the License is distributed on an "AS IS" BASIS,
+ *     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *     See the License for the specific language governing permissions and
+ *     limitations under the License.
+ *
+ */
+package com.netflix.zeno.fastblob.state;
+
+/**
+ * The order in which a {@link FreeOrdinalTracker} hands out ordinals which were previously returned to the pool.<p/>
+ *
+ * <ul>
+ * <li>LIFO: the most recently freed ordinal is reused first.  This is the original behavior.</li>
+ * <li>LOWEST_FIRST: the lowest freed ordinal is reused first.  Freed ordinals at the top of the ordinal space
+ * are trimmed off, so that the high-water mark can shrink.  This keeps the ordinal space dense, which keeps
+ * the client-side ordinal-indexed structures compact and the gaps encoded in deltas small.</li>
+ * </ul>
+ */
+public enum OrdinalReusePolicy {
+
+    LIFO,
+    LOWEST_FIRST
+
+}
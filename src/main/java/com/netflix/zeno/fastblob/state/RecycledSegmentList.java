@@ -0,0 +1,108 @@
+/*
+ *
+ *  Copyright 2014 Netflix, Inc.
+ *
+ *     Licensed under the Apache License, Version 2.0 (the "License");
+ *     you may not use this file except in compliance with the License.
+ *     You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *     Unless required by applicable law or agreed to in writing, software
+ *     distributed under the License is distributed on an "AS IS" BASIS,
+ *     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *     See the License for the specific language governing permissions and
+ *     limitations under the License.
+ *
+ */
+package com.netflix.zeno.fastblob.state;
+
+import static com.netflix.zeno.util.collections.heapfriendly.HeapFriendlyMapArrayRecycler.INDIVIDUAL_OBJECT_ARRAY_SIZE;
+
+import com.netflix.zeno.util.collections.heapfriendly.HeapFriendlyMapArrayRecycler;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.RandomAccess;
+
+/**
+ * A List of a FastBlobTypeDeserializationState's Objects, stored in fixed-size Object[] segments which are borrowed from a
+ * HeapFriendlyMapArrayRecycler.<p/>
+ *
+ * Growing this List never copies or allocates a large contiguous array, and once the List is no longer needed its segments are
+ * returned to the recycler, to be reused by the List built during a subsequent double snapshot refresh.<p/>
+ *
+ * Only the operations used by FastBlobTypeDeserializationState are supported:  get(), set(), size() and appending via add().
+ *
+ */
+class RecycledSegmentList<T> extends AbstractList<T> implements RandomAccess {
+
+    private static final int SEGMENT_BITS = Integer.numberOfTrailingZeros(INDIVIDUAL_OBJECT_ARRAY_SIZE);
+    private static final int SEGMENT_MASK = INDIVIDUAL_OBJECT_ARRAY_SIZE - 1;
+
+    private final HeapFriendlyMapArrayRecycler recycler;
+
+    private Object[][] segments;
+    private int numSegments;
+    private int size;
+
+    RecycledSegmentList(HeapFriendlyMapArrayRecycler recycler) {
+        this.recycler = recycler;
+        this.segments = new Object[4][];
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public T get(int index) {
+        rangeCheck(index);
+        return (T) segments[index >>> SEGMENT_BITS][index & SEGMENT_MASK];
+    }
+
+    @Override
+    public T set(int index, T element) {
+        T previous = get(index);
+        segments[index >>> SEGMENT_BITS][index & SEGMENT_MASK] = element;
+        return previous;
+    }
+
+    @Override
+    public boolean add(T element) {
+        int segmentIndex = size >>> SEGMENT_BITS;
+
+        if(segmentIndex == numSegments) {
+            if(numSegments == segments.length)
+                segments = Arrays.copyOf(segments, segments.length * 2);
+            segments[numSegments++] = recycler.getObjectArray();
+        }
+
+        segments[segmentIndex][size & SEGMENT_MASK] = element;
+        size++;
+        modCount++;
+        return true;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Return each segment to the recycler.  This List is empty afterwards.
+     */
+    void releaseSegments() {
+        for(int i=0;i<numSegments;i++) {
+            recycler.returnObjectArray(segments[i]);
+            segments[i] = null;
+        }
+
+        numSegments = 0;
+        size = 0;
+        modCount++;
+    }
+
+    private void rangeCheck(int index) {
+        if(index < 0 || index >= size)
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+    }
+
+}
@@ -19,13 +19,19 @@ package com.netflix.zeno.fastblob.state;
 
 import java.lang.ref.ReferenceQueue;
 import java.lang.ref.WeakReference;
-import java.util.Arrays;
 
 /**
  * Weak hash lookup map associate object references to already seen ordinals.
  * The fundamental assumption made here is that objects are immutable, so that
  * once the ordinal is assigned to an object, the ordinal stays the same
- * throughout the life of the object.
+ * throughout the life of the object.<p/>
+ *
+ * Lookups do not lock.  Each segment's entry array is published through a volatile field, and writers
+ * (which do lock the segment) never modify a chain which a concurrent reader may be traversing in a way which
+ * could cause that reader to skip a live entry.<p/>
+ *
+ * Optionally, the map may hold strong references to its keys.  This is intended for maps which are
+ * cleared at the end of every cycle, and avoids the cost of reference processing during garbage collection.
  *
  * @author timurua
  *
@@ -37,21 +43,28 @@ public class WeakObjectOrdinalMap {
      */
     public static final class Entry extends WeakReference<Object> {
         // identity hashcode
-        private int hash;
+        private final int hash;
         // ordinal
-        private int ordinal;
+        private final int ordinal;
+        // the key, only if this entry holds a strong reference to it
+        private final Object strongKey;
+        // the objects directly referenced by the key, if recorded (see FastBlobTypeSerializationState)
+        private final Object[] childReferences;
         // membership flags
-        private long imageMembershipsFlags;
+        private volatile long imageMembershipsFlags;
         // linked list pointer
-        private Entry next;
+        private volatile Entry next;
 
         /**
-         * Creates new entry.
+         * Creates new entry.  If the key is strongly referenced, the WeakReference itself is given no referent,
+         * so that the garbage collector has no reference to process.
          */
-        Entry(Object key, ReferenceQueue<Object> queue, int hash, int ordinal, long imageMembershipsFlags, Entry next) {
-            super(key, queue);
+        Entry(Object key, boolean strong, ReferenceQueue<Object> queue, int hash, int ordinal, long imageMembershipsFlags, Object[] childReferences, Entry next) {
+            super(strong ? null : key, strong ? null : queue);
             this.hash  = hash;
             this.ordinal = ordinal;
+            this.strongKey = strong ? key : null;
+            this.childReferences = childReferences;
             this.imageMembershipsFlags = imageMembershipsFlags;
             this.next  = next;
         }
@@ -65,18 +78,27 @@ public class WeakObjectOrdinalMap {
         }
 
         public boolean hasImageMembershipsFlags(long newImageMembershipsFlags) {
+            long imageMembershipsFlags = this.imageMembershipsFlags;
             return (imageMembershipsFlags | newImageMembershipsFlags) == imageMembershipsFlags;
         }
 
+        Object[] getChildReferences() {
+            return childReferences;
+        }
+
+        Object getKey() {
+            return strongKey != null ? strongKey : get();
+        }
+
         @Override
         public String toString() {
-            Object v = get();
+            Object v = getKey();
             return v == null ? "null" : v.toString();
         }
     }
 
     /**
-     * The map is divided into segments to increase concurrency
+     * The map is divided into segments to reduce contention between writers
      */
     private class Segment {
 
@@ -89,7 +111,7 @@ public class WeakObjectOrdinalMap {
         private int count = 0;
         private int maxThreshold = 0;
         private int minThreshold = 0;
-        private Entry[] entries;
+        private volatile Entry[] entries;
 
         private final ReferenceQueue<Object> queue = new ReferenceQueue<Object>();
 
@@ -97,52 +119,36 @@ public class WeakObjectOrdinalMap {
             resize(MINIMUM_CAPACITY);
         }
 
-        public synchronized void put(Object object, int hashCode, int ordinal, long imageMembershipsFlags) {
+        public synchronized void put(Object object, int hashCode, int ordinal, long imageMembershipsFlags, Object[] childReferences) {
             removeGarbageCollectedEntities();
-            int index = index(hashCode, entries.length);
-            Entry current = entries[index];
-            Entry prev = null;
-            while (current != null) {
-                if (current.hash == hashCode) {
-                    Object currentObject = current.get();
-                    if( currentObject == null){
-                        deleteEntry(index, current, prev);
-                        current = current.next;
-                        continue;
-                    } else if (currentObject == object) {
-                        current.imageMembershipsFlags = (current.imageMembershipsFlags | imageMembershipsFlags);
-                        return;
-                    }
-                }
-                prev = current;
-                current = current.next;
+
+            Entry existing = find(entries, object, hashCode);
+            if(existing != null) {
+                existing.imageMembershipsFlags = (existing.imageMembershipsFlags | imageMembershipsFlags);
+                return;
             }
+
+            Entry[] entries = this.entries;
+            int index = index(hashCode, entries.length);
             count++;
-            Entry first = entries[index];
-            Entry entry = new Entry(object, queue, hashCode, ordinal, imageMembershipsFlags, first);
-            entries[index] = entry;
-            entry.next = first;
-            checkSize();
-            return;
+            entries[index] = new Entry(object, useStrongReferences, queue, hashCode, ordinal, imageMembershipsFlags, childReferences, entries[index]);
+            if(count > maxThreshold)
+                checkSize();
         }
 
-        public synchronized Entry get(Object object, int hashCode) {
-            removeGarbageCollectedEntities();
-            int index = index(hashCode, entries.length);
-            Entry current = entries[index];
-            Entry prev = null;
+        /**
+         * Does not lock.  A reader which races with a resize may miss an entry which is being added concurrently, which
+         * only costs the caller a redundant serialization.
+         */
+        public Entry get(Object object, int hashCode) {
+            return find(entries, object, hashCode);
+        }
+
+        private Entry find(Entry[] entries, Object object, int hashCode) {
+            Entry current = entries[index(hashCode, entries.length)];
             while (current != null) {
-                if (current.hash == hashCode) {
-                    Object currentObject = current.get();
-                    if( currentObject == null){
-                        deleteEntry(index, current, prev);
-                        current = current.next;
-                        continue;
-                    } else if (currentObject == object) {
-                        return current;
-                    }
-                }
-                prev = current;
+                if (current.hash == hashCode && current.getKey() == object)
+                    return current;
                 current = current.next;
             }
             return null;
@@ -167,69 +173,83 @@ public class WeakObjectOrdinalMap {
             resize(newCapacity);
         }
 
+        /**
+         * The entries are copied, rather than relinked, into the new array so that readers still traversing the old array see intact chains.
+         */
         private void resize(int newCapacity) {
             Entry[] newEntries = new Entry[newCapacity];
             if( entries != null){
                 for(Entry entry : entries){
                     Entry current = entry;
                     while(current != null){
-                        Entry newEntry = current;
+                        Object key = current.getKey();
+                        if(key != null) {
+                            int index = index(current.hash, newEntries.length);
+                            newEntries[index] = new Entry(key, useStrongReferences, queue, current.hash, current.ordinal, current.imageMembershipsFlags, current.childReferences, newEntries[index]);
+                        } else {
+                            count--;
+                        }
                         current = current.next;
-                        int index = index(newEntry.hash, newEntries.length);
-                        newEntry.next = newEntries[index];
-                        newEntries[index] = newEntry;
                     }
                 }
             }
-            minThreshold = (newEntries.length == MINIMUM_CAPACITY) ? 0 : (newEntries.length * LOAD_FACTOR_PERCENT / 200);
-            maxThreshold = (newEntries.length == MAXIMUM_CAPACITY) ? Integer.MAX_VALUE : newEntries.length * LOAD_FACTOR_PERCENT / 100;
+            setThresholds(newEntries.length);
             entries = newEntries;
         }
 
+        private void setThresholds(int capacity) {
+            minThreshold = (capacity == MINIMUM_CAPACITY) ? 0 : (capacity * LOAD_FACTOR_PERCENT / 200);
+            maxThreshold = (capacity == MAXIMUM_CAPACITY) ? Integer.MAX_VALUE : capacity * LOAD_FACTOR_PERCENT / 100;
+        }
+
         private void removeGarbageCollectedEntities() {
+            boolean removedEntries = false;
+
             for (Object x; (x = queue.poll()) != null; ) {
                 Entry entry = (Entry) x;
+                Entry[] entries = this.entries;
                 int index = index(entry.hash, entries.length);
                 Entry current = entries[index];
                 Entry prev = null;
                 while (current != null) {
                     if (current == entry) {
-                        deleteEntry(index, current, prev);
+                        /// unlinking a single entry leaves the remainder of the chain reachable for concurrent readers.
+                        count--;
+                        if (prev != null) {
+                            prev.next = current.next;
+                        } else {
+                            entries[index] = current.next;
+                        }
+                        removedEntries = true;
                         break;
                     }
                     prev = current;
                     current = current.next;
                 }
             }
-            checkSize();
-        }
 
-        private void deleteEntry(int index, Entry current, Entry prev) {
-            count--;
-            if (prev != null) {
-                prev.next = current.next;
-            } else {
-                entries[index] = current.next;
-            }
+            if(removedEntries)
+                checkSize();
         }
 
         private final int index(int hashCode, int capacity) {
-            return (hashCode >>> WeakObjectOrdinalMap.this.logOfSegmentNumber) % capacity;
+            /// the low bits of the hash code select the segment, so they are not used to select the bucket.
+            return (hashCode >>> (WeakObjectOrdinalMap.this.logOfSegmentNumber + 1)) & (capacity - 1);
         }
 
+        /**
+         * Discards all entries at once by replacing the entry array.  When holding strong references, the array
+         * keeps its capacity, since the same objects are typically added again during the next cycle.
+         */
         public synchronized void clear() {
+            int capacity = useStrongReferences ? entries.length : MINIMUM_CAPACITY;
 
-            while (queue.poll() != null)
-                ;
-
-            Arrays.fill(entries, null);
             count = 0;
-
-            resize(MINIMUM_CAPACITY);
+            setThresholds(capacity);
+            entries = new Entry[capacity];
 
             while (queue.poll() != null)
                 ;
-
         }
 
         public synchronized int size() {
@@ -241,17 +261,26 @@ public class WeakObjectOrdinalMap {
     private final Segment[] segments;
     private final int mask;
     private final int logOfSegmentNumber;
+    private final boolean useStrongReferences;
 
     public WeakObjectOrdinalMap(int logOfSegmentNumber) {
-        if (logOfSegmentNumber < 1 && logOfSegmentNumber > 32) {
+        this(logOfSegmentNumber, false);
+    }
+
+    /**
+     * @param useStrongReferences if true, the keys are strongly referenced until the map is cleared.
+     */
+    public WeakObjectOrdinalMap(int logOfSegmentNumber, boolean useStrongReferences) {
+        if (logOfSegmentNumber < 0 || logOfSegmentNumber > 29) {
             throw new RuntimeException("Invalid power level");
         }
+        this.useStrongReferences = useStrongReferences;
+        this.logOfSegmentNumber = logOfSegmentNumber;
+        this.mask = (2 << logOfSegmentNumber) - 1;
         segments = new Segment[2 << logOfSegmentNumber];
         for(int i=0; i<segments.length; i++){
             segments[i] = new Segment();
         }
-        this.mask = (2 << logOfSegmentNumber) - 1;
-        this.logOfSegmentNumber = logOfSegmentNumber;
     }
 
     /**
@@ -261,9 +290,17 @@ public class WeakObjectOrdinalMap {
      * @param ordinal
      */
     public void put(Object obj, int ordinal, long imageMembershipsFlags) {
+        put(obj, ordinal, imageMembershipsFlags, null);
+    }
+
+    /**
+     * Associating the obj with an ordinal, and record the objects which it directly references.  If the obj is already
+     * present, only its image memberships are updated.
+     */
+    public void put(Object obj, int ordinal, long imageMembershipsFlags, Object[] childReferences) {
         int hashCode = System.identityHashCode(obj);
         int segment = segment(hashCode);
-        segments[segment].put(obj, hashCode, ordinal, imageMembershipsFlags);
+        segments[segment].put(obj, hashCode, ordinal, imageMembershipsFlags, childReferences);
     }
 
     public Entry getEntry(Object obj) {
@@ -276,6 +313,10 @@ public class WeakObjectOrdinalMap {
         return hashCode & mask;
     }
 
+    public boolean isUsingStrongReferences() {
+        return useStrongReferences;
+    }
+
     public void clear(){
         for (Segment segment : segments) {
             segment.clear();
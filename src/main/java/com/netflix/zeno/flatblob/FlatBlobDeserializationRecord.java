@@ -17,6 +17,8 @@
  */
 package com.netflix.zeno.flatblob;
 
+import java.util.concurrent.ConcurrentHashMap;
+
 import com.netflix.zeno.fastblob.record.ByteData;
 import com.netflix.zeno.fastblob.record.VarInt;
 import com.netflix.zeno.fastblob.record.schema.FastBlobSchema;
@@ -28,6 +30,7 @@ public class FlatBlobDeserializationRecord extends NFDeserializationRecord {
     private final long fieldPointers[];
     private ByteData byteData;
     private boolean cacheElements;
+    private ConcurrentHashMap<String, FlatBlobTypeCache<?>> batchCaches;
 
     public FlatBlobDeserializationRecord(FastBlobSchema schema) {
         super(schema);
@@ -46,6 +49,36 @@ public class FlatBlobDeserializationRecord extends NFDeserializationRecord {
         return cacheElements;
     }
 
+    /**
+     * When deserializing a batch, uncached elements are shared between all of the objects in the batch via these caches.  Outside
+     * of a batch, this should be null.
+     */
+    void setBatchCaches(ConcurrentHashMap<String, FlatBlobTypeCache<?>> batchCaches) {
+        this.batchCaches = batchCaches;
+    }
+
+    ConcurrentHashMap<String, FlatBlobTypeCache<?>> getBatchCaches() {
+        return batchCaches;
+    }
+
+    boolean isBatch() {
+        return batchCaches != null;
+    }
+
+    @SuppressWarnings("unchecked")
+    <T> FlatBlobTypeCache<T> getBatchCache(String type) {
+        FlatBlobTypeCache<?> batchCache = batchCaches.get(type);
+
+        if(batchCache == null) {
+            batchCache = new FlatBlobTypeCache<Object>(type);
+            FlatBlobTypeCache<?> existingCache = batchCaches.putIfAbsent(type, batchCache);
+            if(existingCache != null)
+                batchCache = existingCache;
+        }
+
+        return (FlatBlobTypeCache<T>) batchCache;
+    }
+
     /**
      * Position this record to the byte at index <code>objectBeginOffset</code>.
      *
@@ -85,6 +118,13 @@ public class FlatBlobDeserializationRecord extends NFDeserializationRecord {
         return fieldPointers[fieldPosition];
     }
 
+    /**
+     * get the offset into the byte data for the field at the given position in the schema.
+     */
+    public long getPosition(int fieldPosition) {
+        return fieldPointers[fieldPosition];
+    }
+
 
     /**
      * get the offset into the byte data for the field represented by the String.
@@ -102,7 +142,7 @@ public class FlatBlobDeserializationRecord extends NFDeserializationRecord {
                 int fieldLength = VarInt.readVInt(byteData, currentPosition);
                 return VarInt.sizeOfVInt(fieldLength) + fieldLength;
             }
-        } else if(type.equals(FieldType.OBJECT)) {
+        } else if(type.equals(FieldType.OBJECT) || type.equals(FieldType.DICTIONARY_STRING)) {
             if(VarInt.readVNull(byteData, currentPosition)) {
                 return 1;
             } else {
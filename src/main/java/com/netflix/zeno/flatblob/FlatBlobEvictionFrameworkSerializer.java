@@ -17,6 +17,7 @@
  */
 package com.netflix.zeno.flatblob;
 
+import com.netflix.zeno.fastblob.record.schema.FastBlobSchema.FieldType;
 import com.netflix.zeno.serializer.FrameworkSerializer;
 import com.netflix.zeno.serializer.NFTypeSerializer;
 
@@ -35,7 +36,10 @@ public class FlatBlobEvictionFrameworkSerializer extends FrameworkSerializer<Fla
 
     @Override
     public void serializePrimitive(FlatBlobSerializationRecord rec, String fieldName, Object value) {
-        /// nothing to do.
+        /// only Strings in DICTIONARY_STRING fields are cached.
+        if(value instanceof String && rec.getSchema().getFieldType(fieldName) == FieldType.DICTIONARY_STRING) {
+            flatBlobFramework.getTypeCache(rec.getSchema().getObjectType(fieldName)).evict(value);
+        }
     }
 
     @Override
@@ -28,8 +28,10 @@ import java.util.Set;
 import java.util.SortedMap;
 
 import com.netflix.zeno.fastblob.record.ByteData;
+import com.netflix.zeno.fastblob.record.UTF8String;
 import com.netflix.zeno.fastblob.record.VarInt;
 import com.netflix.zeno.fastblob.record.schema.FastBlobSchema;
+import com.netflix.zeno.fastblob.record.schema.FastBlobSchema.FieldType;
 import com.netflix.zeno.serializer.FrameworkDeserializer;
 import com.netflix.zeno.serializer.NFTypeSerializer;
 import com.netflix.zeno.util.collections.CollectionImplementation;
@@ -225,14 +227,27 @@ public class FlatBlobFrameworkDeserializer extends FrameworkDeserializer<FlatBlo
     @Override
     public String deserializeString(FlatBlobDeserializationRecord rec, String fieldName) {
         ByteData byteData = rec.getByteData();
-        long fieldPosition = rec.getPosition(fieldName);
+        int schemaPosition = rec.getSchema().getPosition(fieldName);
+
+        if (schemaPosition == -1)
+            return null;
+
+        long fieldPosition = rec.getPosition(schemaPosition);
 
         if (fieldPosition == -1 || VarInt.readVNull(byteData, fieldPosition))
             return null;
 
+        FieldType fieldType = rec.getSchema().getFieldType(schemaPosition);
+
+        if(fieldType == FieldType.DICTIONARY_STRING)
+            return deserializeObject(rec, fieldPosition, rec.getSchema().getObjectType(schemaPosition));
+
         int length = VarInt.readVInt(byteData, fieldPosition);
         fieldPosition += VarInt.sizeOfVInt(length);
 
+        if(fieldType == FieldType.UTF8_STRING)
+            return UTF8String.read(byteData, fieldPosition, length);
+
         return readString(byteData, fieldPosition, length);
     }
 
@@ -300,17 +315,43 @@ public class FlatBlobFrameworkDeserializer extends FrameworkDeserializer<FlatBlo
 
         position += VarInt.sizeOfVInt(sizeOfUnderlyingData);
 
-        FlatBlobDeserializationRecord subRec = getDeserializationRecord(typeName);
-        subRec.setByteData(rec.getByteData());
-        subRec.setCacheElements(rec.shouldCacheElements());
-        subRec.position(position);
+        return deserializeElement(rec, position, ordinal, (NFTypeSerializer<T>) framework.getSerializer(typeName), typeCache);
+    }
 
-        T deserialized = (T) framework.getSerializer(typeName).deserialize(subRec);
+    /**
+     * Deserialize the element at the given position, which was not found in the type cache.<p/>
+     *
+     * If the parent record is caching elements, the element is added to the type cache.  Otherwise, if the parent record is part of
+     * a batch, the element is shared with the rest of the batch, so that each ordinal is only deserialized once per batch.
+     */
+    private <T> T deserializeElement(FlatBlobDeserializationRecord parentRec, long position, int ordinal, NFTypeSerializer<T> serializer, FlatBlobTypeCache<T> typeCache) {
+        FlatBlobTypeCache<T> batchCache = null;
+
+        if(!parentRec.shouldCacheElements() && parentRec.isBatch()) {
+            batchCache = parentRec.getBatchCache(serializer.getName());
+            T cached = batchCache.get(ordinal);
+            if(cached != null)
+                return cached;
+        }
 
-        if(rec.shouldCacheElements()) {
-            deserialized = typeCache.putIfAbsent(ordinal, deserialized);
+        FlatBlobDeserializationRecord rec = getDeserializationRecord(serializer.getName());
+        rec.setByteData(parentRec.getByteData());
+        rec.setCacheElements(parentRec.shouldCacheElements());
+        rec.setBatchCaches(parentRec.getBatchCaches());
+        rec.position(position);
+
+        T deserialized;
+        try {
+            deserialized = serializer.deserialize(rec);
+        } finally {
+            /// the per-thread record must not keep the batch's objects reachable after the batch completes
+            rec.setBatchCaches(null);
         }
 
+        if(parentRec.shouldCacheElements())
+            return typeCache.putIfAbsent(ordinal, deserialized);
+        if(batchCache != null)
+            return batchCache.putIfAbsent(ordinal, deserialized);
         return deserialized;
     }
 
@@ -349,17 +390,7 @@ public class FlatBlobFrameworkDeserializer extends FrameworkDeserializer<FlatBlo
                 if(cached != null) {
                     listBuilder.builderSet(i, cached);
                 } else {
-                    FlatBlobDeserializationRecord elementRec = getDeserializationRecord(itemSerializer.getName());
-                    elementRec.setByteData(rec.getByteData());
-                    elementRec.setCacheElements(rec.shouldCacheElements());
-                    elementRec.position(fieldPosition);
-                    T deserialized = itemSerializer.deserialize(elementRec);
-
-                    if(rec.shouldCacheElements()) {
-                        deserialized = typeCache.putIfAbsent(ordinal, deserialized);
-                    }
-
-                    listBuilder.builderSet(i, deserialized);
+                    listBuilder.builderSet(i, deserializeElement(rec, fieldPosition, ordinal, itemSerializer, typeCache));
                 }
 
                 fieldPosition += sizeOfData;
@@ -411,22 +442,11 @@ public class FlatBlobFrameworkDeserializer extends FrameworkDeserializer<FlatBlo
 
                 T cached = typeCache.get(ordinal);
                 if(cached != null) {
-                    setBuilder.builderSet(ordinal, cached);
-                    fieldPosition += sizeOfData;
-                    continue;
-                }
-
-                FlatBlobDeserializationRecord elementRec = getDeserializationRecord(itemSerializer.getName());
-                elementRec.setByteData(rec.getByteData());
-                elementRec.setCacheElements(rec.shouldCacheElements());
-                elementRec.position(fieldPosition);
-                T deserialized = itemSerializer.deserialize(elementRec);
-
-                if(rec.shouldCacheElements()) {
-                    deserialized = typeCache.putIfAbsent(ordinal, deserialized);
+                    setBuilder.builderSet(i, cached);
+                } else {
+                    setBuilder.builderSet(i, deserializeElement(rec, fieldPosition, ordinal, itemSerializer, typeCache));
                 }
 
-                setBuilder.builderSet(i, deserialized);
                 fieldPosition += sizeOfData;
             }
         }
@@ -458,7 +478,7 @@ public class FlatBlobFrameworkDeserializer extends FrameworkDeserializer<FlatBlo
         FlatBlobTypeCache<K> keyCache = getTypeCache(keySerializer.getName());
         FlatBlobTypeCache<V> valueCache = getTypeCache(valueSerializer.getName());
 
-        populateMap(byteData, fieldPosition, numElements, map, keySerializer, keyCache, valueSerializer, valueCache, rec.shouldCacheElements());
+        populateMap(rec, fieldPosition, numElements, map, keySerializer, keyCache, valueSerializer, valueCache);
 
         return minimizedCollections.minimizeMap(map.builderFinish());
     }
@@ -487,12 +507,13 @@ public class FlatBlobFrameworkDeserializer extends FrameworkDeserializer<FlatBlo
         FlatBlobTypeCache<K> keyCache = getTypeCache(keySerializer.getName());
         FlatBlobTypeCache<V> valueCache = getTypeCache(valueSerializer.getName());
 
-        populateMap(byteData, fieldPosition, numElements, map, keySerializer, keyCache, valueSerializer, valueCache, rec.shouldCacheElements());
+        populateMap(rec, fieldPosition, numElements, map, keySerializer, keyCache, valueSerializer, valueCache);
 
         return minimizedCollections.minimizeSortedMap( (SortedMap<K, V>) map.builderFinish() );
     }
 
-    private <K, V> void populateMap(ByteData byteData, long fieldPosition, int numElements, MapBuilder<K, V> mapToPopulate, NFTypeSerializer<K> keySerializer, FlatBlobTypeCache<K> keyCache, NFTypeSerializer<V> valueSerializer, FlatBlobTypeCache<V> valueCache, boolean shouldCacheElements) {
+    private <K, V> void populateMap(FlatBlobDeserializationRecord rec, long fieldPosition, int numElements, MapBuilder<K, V> mapToPopulate, NFTypeSerializer<K> keySerializer, FlatBlobTypeCache<K> keyCache, NFTypeSerializer<V> valueSerializer, FlatBlobTypeCache<V> valueCache) {
+        ByteData byteData = rec.getByteData();
         int previousValueOrdinal = 0;
 
         for(int i=0;i<numElements;i++) {
@@ -510,15 +531,8 @@ public class FlatBlobFrameworkDeserializer extends FrameworkDeserializer<FlatBlo
                 fieldPosition += VarInt.sizeOfVInt(sizeOfData);
 
                 key = keyCache.get(keyOrdinal);
-                if(key == null) {
-                    FlatBlobDeserializationRecord rec = getDeserializationRecord(keyCache.getName());
-                    rec.setByteData(byteData);
-                    rec.setCacheElements(shouldCacheElements);
-                    rec.position(fieldPosition);
-                    key = keySerializer.deserialize(rec);
-                    if(shouldCacheElements)
-                        key = keyCache.putIfAbsent(keyOrdinal, key);
-                }
+                if(key == null)
+                    key = deserializeElement(rec, fieldPosition, keyOrdinal, keySerializer, keyCache);
 
                 fieldPosition += sizeOfData;
 
@@ -538,15 +552,8 @@ public class FlatBlobFrameworkDeserializer extends FrameworkDeserializer<FlatBlo
                 previousValueOrdinal = valueOrdinal;
 
                 value = valueCache.get(valueOrdinal);
-                if(value == null) {
-                    FlatBlobDeserializationRecord rec = getDeserializationRecord(valueCache.getName());
-                    rec.setByteData(byteData);
-                    rec.setCacheElements(shouldCacheElements);
-                    rec.position(fieldPosition);
-                    value = valueSerializer.deserialize(rec);
-                    if(shouldCacheElements)
-                        value = valueCache.putIfAbsent(valueOrdinal, value);
-                }
+                if(value == null)
+                    value = deserializeElement(rec, fieldPosition, valueOrdinal, valueSerializer, valueCache);
 
                 fieldPosition += sizeOfData;
 
@@ -17,9 +17,11 @@
  */
 package com.netflix.zeno.flatblob;
 
+import com.netflix.zeno.fastblob.FastBlobFrameworkSerializer;
 import com.netflix.zeno.fastblob.FastBlobStateEngine;
 import com.netflix.zeno.fastblob.record.ByteDataBuffer;
 import com.netflix.zeno.fastblob.record.VarInt;
+import com.netflix.zeno.fastblob.record.schema.FastBlobSchema.FieldType;
 import com.netflix.zeno.fastblob.state.FastBlobTypeDeserializationState;
 import com.netflix.zeno.serializer.FrameworkSerializer;
 import com.netflix.zeno.serializer.NFTypeSerializer;
@@ -155,7 +157,17 @@ public class FlatBlobFrameworkSerializer extends FrameworkSerializer<FlatBlobSer
         if(value == null)
             return;
 
-        writeString(value, rec.getFieldBuffer(fieldName));
+        FieldType fieldType = rec.getSchema().getFieldType(fieldName);
+
+        if(fieldType == FieldType.DICTIONARY_STRING) {
+            int fieldPosition = rec.getSchema().getPosition(fieldName);
+            serializeObject(rec, fieldPosition, rec.getSchema().getObjectType(fieldPosition), value);
+        } else if(fieldType == FieldType.UTF8_STRING) {
+            byte data[] = value.getBytes(FastBlobFrameworkSerializer.UTF_8);
+            rec.getFieldBuffer(fieldName).write(data, 0, data.length);
+        } else {
+            writeString(value, rec.getFieldBuffer(fieldName));
+        }
     }
 
     @Override
@@ -244,31 +256,33 @@ public class FlatBlobFrameworkSerializer extends FrameworkSerializer<FlatBlobSer
         if(set == null)
             return;
 
-        FastBlobTypeDeserializationState<Object> typeDeserializationState = stateEngine.getTypeDeserializationState(typeName);
-
         int fieldPosition = rec.getSchema().getPosition(fieldName);
 
         ByteDataBuffer fieldBuffer = rec.getFieldBuffer(fieldPosition);
 
         int setOrdinals[] = new int[set.size()];
         Object unidentifiedSetObjects[] = null;
+        int numUnidentifiedSetObjects = 0;
 
         int i = 0;
         for (T obj : set) {
             if(obj == null) {
                 setOrdinals[i++] = -1;
             } else {
-                setOrdinals[i] = typeDeserializationState.find(obj);
+                setOrdinals[i] = findOrdinalInStateEngine(typeName, obj);
                 if(setOrdinals[i] == -1) {
                     if(unidentifiedSetObjects == null)
                         unidentifiedSetObjects = new Object[set.size()];
-                    unidentifiedSetObjects[i] = obj;
+                    unidentifiedSetObjects[numUnidentifiedSetObjects++] = obj;
                     setOrdinals[i] = Integer.MIN_VALUE;
                 }
                 i++;
             }
         }
 
+        /// unidentified objects sort to the front, and are written in the order they were encountered.
+        numUnidentifiedSetObjects = 0;
+
         Arrays.sort(setOrdinals);
 
         FlatBlobSerializationRecord subRecord = getSerializationRecord(typeName);
@@ -281,11 +295,11 @@ public class FlatBlobFrameworkSerializer extends FrameworkSerializer<FlatBlobSer
                 VarInt.writeVNull(fieldBuffer);
             } else {
                 if(setOrdinals[i]  == Integer.MIN_VALUE) {
-                    Object element = unidentifiedSetObjects[i];
+                    Object element = unidentifiedSetObjects[numUnidentifiedSetObjects++];
                     framework.getSerializer(typeName).serialize(element, subRecord);
                     VarInt.writeVNull(fieldBuffer);
                 } else {
-                    Object element = typeDeserializationState.get(setOrdinals[i]);
+                    Object element = stateEngine.getTypeDeserializationState(typeName).get(setOrdinals[i]);
                     framework.getSerializer(typeName).serialize(element, subRecord);
 
                     VarInt.writeVInt(fieldBuffer, setOrdinals[i] - currentOrdinal);
@@ -305,6 +319,11 @@ public class FlatBlobFrameworkSerializer extends FrameworkSerializer<FlatBlobSer
         if(map == null)
             return;
 
+        if(stateEngine == null) {
+            serializeUnidentifiedMap(rec, fieldName, keyTypeName, valueTypeName, map);
+            return;
+        }
+
         FastBlobTypeDeserializationState<Object> keyDeserializationState = stateEngine.getTypeDeserializationState(keyTypeName);
         FastBlobTypeDeserializationState<Object> valueDeserializationState = stateEngine.getTypeDeserializationState(valueTypeName);
 
@@ -370,6 +389,45 @@ public class FlatBlobFrameworkSerializer extends FrameworkSerializer<FlatBlobSer
         }
     }
 
+    /**
+     * Without a state engine, no ordinals can be identified.  Each key and value is written with the ordinal -1,
+     * which the deserializer will never find in (or add to) its cache.  Values are delta encoded against the
+     * previous value ordinal, so only the first value's ordinal is written as -1; the rest are written as 0.
+     */
+    private <K, V> void serializeUnidentifiedMap(FlatBlobSerializationRecord rec, String fieldName, String keyTypeName, String valueTypeName, Map<K, V> map) {
+        int fieldPosition = rec.getSchema().getPosition(fieldName);
+
+        ByteDataBuffer fieldBuffer = rec.getFieldBuffer(fieldPosition);
+
+        FlatBlobSerializationRecord keyRecord = getSerializationRecord(keyTypeName);
+        FlatBlobSerializationRecord valueRecord = getSerializationRecord(valueTypeName);
+
+        int currentValueOrdinal = 0;
+
+        for (Map.Entry<K, V> entry : map.entrySet()) {
+            if(entry.getKey() == null) {
+                VarInt.writeVNull(fieldBuffer);
+            } else {
+                keyRecord.reset();
+                framework.getSerializer(keyTypeName).serialize(entry.getKey(), keyRecord);
+                VarInt.writeVInt(fieldBuffer, -1);
+                VarInt.writeVInt(fieldBuffer, keyRecord.sizeOfData());
+                keyRecord.writeDataTo(fieldBuffer);
+            }
+
+            if(entry.getValue() == null) {
+                VarInt.writeVNull(fieldBuffer);
+            } else {
+                valueRecord.reset();
+                framework.getSerializer(valueTypeName).serialize(entry.getValue(), valueRecord);
+                VarInt.writeVInt(fieldBuffer, -1 - currentValueOrdinal);
+                VarInt.writeVInt(fieldBuffer, valueRecord.sizeOfData());
+                valueRecord.writeDataTo(fieldBuffer);
+                currentValueOrdinal = -1;
+            }
+        }
+    }
+
     /**
      * Encode a String as a series of VarInts, one per character.<p/>
      *
@@ -386,6 +444,9 @@ public class FlatBlobFrameworkSerializer extends FrameworkSerializer<FlatBlobSer
 
 
     private int findOrdinalInStateEngine(String typeName, Object obj) {
+        if(stateEngine == null)
+            return -1;
+
         FastBlobTypeDeserializationState<Object> typeDeserializationState = stateEngine.getTypeDeserializationState(typeName);
         int ordinal = typeDeserializationState.find(obj);
         return ordinal;
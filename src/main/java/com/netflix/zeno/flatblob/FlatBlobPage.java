@@ -0,0 +1,248 @@
+/*
+ *
+ *  Copyright 2014 Netflix, Inc.
+ *
+ *     Licensed under the Apache License, Version 2.0 (the "License");
+ *     you may not use this file except in compliance with the License.
+ *     You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *     Unless required by applicable law or agreed to in writing, software
+ *     distributed under the License is distributed on an "AS IS" BASIS,
+ *     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *     See the License for the specific language governing permissions and
+ *     limitations under the License.
+ *
+ */
+package com.netflix.zeno.flatblob;
+
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+
+import com.netflix.zeno.fastblob.io.FastBlobMalformedDataException;
+import com.netflix.zeno.fastblob.record.ByteBufferByteData;
+import com.netflix.zeno.fastblob.record.ByteData;
+import com.netflix.zeno.fastblob.record.schema.FastBlobSchema;
+import com.netflix.zeno.serializer.NFTypeSerializer;
+
+/**
+ * Provides random access, by key, to the objects in a page written by a {@link FlatBlobPageWriter}.<p/>
+ *
+ * Only the header is parsed when a page is opened.  Each lookup is a binary search of the index, followed by the deserialization of
+ * a single object, so a page may be memory-mapped from local disk and served without reading it in its entirety.<p/>
+ *
+ * The schemas stored in the page are checked against the serializers in the framework when the page is opened.
+ *
+ */
+public class FlatBlobPage {
+
+    static final int MAGIC = 0x464C4250;
+    static final int VERSION = 1;
+
+    private static final int INDEX_ENTRY_SIZE = 12;
+
+    private final FlatBlobSerializationFramework framework;
+    private final ByteData data;
+    private final String type;
+    private final Map<String, FastBlobSchema> schemas;
+    private final int numObjects;
+    private final long indexOffset;
+    private final long dataOffset;
+
+    /**
+     * Memory-map the page contained in the specified file.
+     */
+    public static FlatBlobPage open(FlatBlobSerializationFramework framework, File file) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+
+        try {
+            FileChannel channel = raf.getChannel();
+            if(channel.size() > Integer.MAX_VALUE)
+                throw new IOException("FlatBlob page " + file + " is too large to map");
+
+            /// the mapping remains valid after the file is closed.
+            return new FlatBlobPage(framework, new ByteBufferByteData(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size())));
+        } finally {
+            raf.close();
+        }
+    }
+
+    /**
+     * Read the page beginning at position 0 of the supplied ByteData.
+     */
+    public FlatBlobPage(FlatBlobSerializationFramework framework, ByteData data) throws IOException {
+        this.framework = framework;
+        this.data = data;
+
+        ByteDataInputStream is = new ByteDataInputStream(data);
+        DataInputStream dis = new DataInputStream(is);
+
+        if(dis.readInt() != MAGIC)
+            throw new FastBlobMalformedDataException("The data you are trying to read is not a FlatBlob page");
+
+        int version = dis.readInt();
+        if(version != VERSION)
+            throw new FastBlobMalformedDataException("The FlatBlob page you are trying to read is incompatible.  The expected version was " + VERSION + " but the actual version was " + version);
+
+        this.type = dis.readUTF();
+
+        int numSchemas = dis.readInt();
+        Map<String, FastBlobSchema> schemas = new HashMap<String, FastBlobSchema>();
+        for(int i=0;i<numSchemas;i++) {
+            FastBlobSchema schema = FastBlobSchema.readFrom(dis);
+            schemas.put(schema.getName(), schema);
+        }
+        this.schemas = Collections.unmodifiableMap(schemas);
+
+        this.numObjects = dis.readInt();
+        dis.readLong();
+
+        this.indexOffset = is.position();
+        this.dataOffset = indexOffset + ((long)numObjects * INDEX_ENTRY_SIZE);
+
+        validateSchemas();
+    }
+
+    public String getType() {
+        return type;
+    }
+
+    public int numObjects() {
+        return numObjects;
+    }
+
+    public FastBlobSchema getSchema(String type) {
+        return schemas.get(type);
+    }
+
+    /**
+     * @return the key at the given index.  Keys are ordered from lowest to highest.
+     */
+    public int getKey(int index) {
+        return data.getInt(indexOffset + ((long)index * INDEX_ENTRY_SIZE));
+    }
+
+    public boolean contains(int key) {
+        return findIndex(key) >= 0;
+    }
+
+    /**
+     * @return the object with the given key, or null if this page contains no such object.
+     */
+    public <T> T get(int key, boolean cacheElements) {
+        int index = findIndex(key);
+        if(index < 0)
+            return null;
+
+        return framework.deserialize(type, data, position(index), cacheElements);
+    }
+
+    public <T> List<T> getAll(int keys[], boolean cacheElements) {
+        return getAll(keys, cacheElements, null);
+    }
+
+    /**
+     * Retrieve the objects with each of the given keys as a single batch.  The returned List contains null for any key which this
+     * page does not contain.
+     *
+     * @see FlatBlobSerializationFramework#deserialize(String, ByteData[], int[], boolean, ExecutorService)
+     */
+    public <T> List<T> getAll(int keys[], boolean cacheElements, ExecutorService executor) {
+        int indexes[] = new int[keys.length];
+        int numFound = 0;
+
+        for(int i=0;i<keys.length;i++) {
+            indexes[i] = findIndex(keys[i]);
+            if(indexes[i] >= 0)
+                numFound++;
+        }
+
+        ByteData batchData[] = new ByteData[numFound];
+        int batchPositions[] = new int[numFound];
+        int batchIdx = 0;
+        for(int i=0;i<keys.length;i++) {
+            if(indexes[i] >= 0) {
+                batchData[batchIdx] = data;
+                batchPositions[batchIdx++] = position(indexes[i]);
+            }
+        }
+
+        List<T> found = framework.deserialize(type, batchData, batchPositions, cacheElements, executor);
+
+        if(numFound == keys.length)
+            return found;
+
+        List<T> results = new ArrayList<T>(keys.length);
+        int foundIdx = 0;
+        for(int i=0;i<keys.length;i++) {
+            results.add(indexes[i] >= 0 ? found.get(foundIdx++) : null);
+        }
+        return results;
+    }
+
+    private int position(int index) {
+        long offset = data.getLong(indexOffset + ((long)index * INDEX_ENTRY_SIZE) + 4);
+        return (int)(dataOffset + offset);
+    }
+
+    private int findIndex(int key) {
+        int low = 0;
+        int high = numObjects - 1;
+
+        while(low <= high) {
+            int mid = (low + high) >>> 1;
+            int midKey = getKey(mid);
+
+            if(midKey < key)
+                low = mid + 1;
+            else if(midKey > key)
+                high = mid - 1;
+            else
+                return mid;
+        }
+
+        return -(low + 1);
+    }
+
+    private void validateSchemas() {
+        if(framework.getSerializer(type) == null)
+            throw new FastBlobMalformedDataException("The FlatBlob page contains objects of type " + type + ", which has no serializer");
+
+        for(NFTypeSerializer<?> serializer : framework.getOrderedSerializers()) {
+            FastBlobSchema pageSchema = schemas.get(serializer.getName());
+
+            if(pageSchema != null && !pageSchema.equals(serializer.getFastBlobSchema()))
+                throw new FastBlobMalformedDataException("The FlatBlob page you are trying to read is incompatible.  The schema for type " + serializer.getName() + " does not match");
+        }
+    }
+
+    private static class ByteDataInputStream extends InputStream {
+        private final ByteData data;
+        private long position;
+
+        ByteDataInputStream(ByteData data) {
+            this.data = data;
+        }
+
+        @Override
+        public int read() throws IOException {
+            return data.get(position++) & 0xFF;
+        }
+
+        long position() {
+            return position;
+        }
+    }
+
+}
@@ -0,0 +1,131 @@
+/*
+ *
+ *  Copyright 2014 Netflix, Inc.
+ *
+ *     Licensed under the Apache License, Version 2.0 (the "License");
+ *     you may not use this file except in compliance with the License.
+ *     You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *     Unless required by applicable law or agreed to in writing, software
+ *     distributed under the License is distributed on an "AS IS" BASIS,
+ *     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *     See the License for the specific language governing permissions and
+ *     limitations under the License.
+ *
+ */
+package com.netflix.zeno.flatblob;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+import com.netflix.zeno.fastblob.record.ByteDataBuffer;
+import com.netflix.zeno.serializer.NFTypeSerializer;
+
+/**
+ * Accumulates flat blob serialized objects of a single type, each identified by an int key (e.g. its ordinal), and writes them as a
+ * single page which may be read with random access by a {@link FlatBlobPage}.<p/>
+ *
+ * The page layout is:<p/>
+ *
+ * <pre>
+ * int   magic
+ * int   version
+ * UTF   type name
+ * int   number of schemas, followed by each FastBlobSchema
+ * int   number of objects
+ * long  length of the data region
+ * index: (int key, long data offset) for each object, sorted by key
+ * data:  the flat blob serialized objects
+ * </pre>
+ *
+ */
+public class FlatBlobPageWriter {
+
+    private final FlatBlobSerializationFramework framework;
+    private final String type;
+    private final ByteDataBuffer data;
+
+    private int keys[];
+    private long offsets[];
+    private int numObjects;
+
+    public FlatBlobPageWriter(FlatBlobSerializationFramework framework, String type) {
+        if(framework.getSerializer(type) == null)
+            throw new IllegalArgumentException("No serializer for type " + type);
+
+        this.framework = framework;
+        this.type = type;
+        this.data = new ByteDataBuffer();
+        this.keys = new int[256];
+        this.offsets = new long[256];
+    }
+
+    public void add(int key, Object obj) {
+        if(numObjects == keys.length) {
+            keys = Arrays.copyOf(keys, keys.length * 2);
+            offsets = Arrays.copyOf(offsets, offsets.length * 2);
+        }
+
+        keys[numObjects] = key;
+        offsets[numObjects] = data.length();
+        numObjects++;
+
+        framework.serialize(type, obj, data);
+    }
+
+    public int numObjects() {
+        return numObjects;
+    }
+
+    public void writeTo(OutputStream os) throws IOException {
+        long sortedEntries[] = sortedIndexEntries();
+
+        DataOutputStream dos = new DataOutputStream(os);
+
+        dos.writeInt(FlatBlobPage.MAGIC);
+        dos.writeInt(FlatBlobPage.VERSION);
+        dos.writeUTF(type);
+
+        dos.writeInt(framework.getOrderedSerializers().size());
+        for(NFTypeSerializer<?> serializer : framework.getOrderedSerializers()) {
+            serializer.getFastBlobSchema().writeTo(dos);
+        }
+
+        dos.writeInt(numObjects);
+        dos.writeLong(data.length());
+
+        for(int i=0;i<numObjects;i++) {
+            int idx = (int)sortedEntries[i];
+            dos.writeInt(keys[idx]);
+            dos.writeLong(offsets[idx]);
+        }
+
+        data.getUnderlyingArray().writeTo(dos, 0, data.length());
+
+        dos.flush();
+    }
+
+    /**
+     * @return the index of each entry, ordered by key.  Each element holds the key in its upper 32 bits, and the index in its lower 32 bits.
+     */
+    private long[] sortedIndexEntries() {
+        long entries[] = new long[numObjects];
+
+        for(int i=0;i<numObjects;i++)
+            entries[i] = ((long)keys[i] << 32) | i;
+
+        Arrays.sort(entries);
+
+        for(int i=1;i<numObjects;i++) {
+            if((entries[i] >>> 32) == (entries[i-1] >>> 32))
+                throw new IllegalStateException("Duplicate key " + keys[(int)entries[i]] + " in FlatBlob page of type " + type);
+        }
+
+        return entries;
+    }
+
+}
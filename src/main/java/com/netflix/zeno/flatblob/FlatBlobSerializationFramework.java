@@ -17,9 +17,17 @@
  */
 package com.netflix.zeno.flatblob;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
 import com.netflix.zeno.fastblob.FastBlobStateEngine;
 import com.netflix.zeno.fastblob.record.ByteData;
 import com.netflix.zeno.fastblob.record.ByteDataBuffer;
+import com.netflix.zeno.serializer.NFTypeSerializer;
 import com.netflix.zeno.serializer.SerializationFramework;
 import com.netflix.zeno.serializer.SerializerFactory;
 
@@ -62,6 +70,9 @@ import com.netflix.zeno.serializer.SerializerFactory;
  */
 public class FlatBlobSerializationFramework extends SerializationFramework {
 
+    /// the number of objects deserialized by each task during a parallel batch deserialization
+    private static final int PARALLEL_CHUNK_SIZE = 64;
+
     FastBlobStateEngine stateEngine;
 
     public FlatBlobSerializationFramework(SerializerFactory serializerFactory) {
@@ -74,9 +85,7 @@ public class FlatBlobSerializationFramework extends SerializationFramework {
         this.frameworkSerializer = new FlatBlobFrameworkSerializer(this, stateEngine);
         this.frameworkDeserializer = new FlatBlobFrameworkDeserializer(this);
 
-        ///TODO: The data structure created here is used for double snapshot refresh.  If this is used in a real implementation,
-        ///then we would require a separate instance of the identity ordinal map, AND we would need to update this every cycle,
-        ///AND make sure this doesn't get out of sync with the actual objects.
+        /// the identity ordinal maps are shared with double snapshot refresh, and are kept in sync with the objects as each delta is applied.
         if(stateEngine != null) {
             for(String serializerName : stateEngine.getSerializerNames()) {
                 stateEngine.getTypeDeserializationState(serializerName).createIdentityOrdinalMap();
@@ -100,17 +109,98 @@ public class FlatBlobSerializationFramework extends SerializationFramework {
     public <T> T deserialize(String type, ByteData data, int position, boolean cacheElements) {
         FlatBlobDeserializationRecord rec = ((FlatBlobFrameworkDeserializer)frameworkDeserializer).getDeserializationRecord(type);
         rec.setCacheElements(cacheElements);
+        rec.setBatchCaches(null);
         rec.setByteData(data);
         rec.position(position);
 
         return (T) getSerializer(type).deserialize(rec);
     }
 
+    public <T> List<T> deserialize(String type, ByteData data[], int positions[], boolean cacheElements) {
+        return deserialize(type, data, positions, cacheElements, null);
+    }
+
+    /**
+     * Deserialize a batch of objects of the same type.  The object at index i is read from data[i], beginning at positions[i] (or at
+     * the beginning of data[i] if positions is null).<p/>
+     *
+     * The record and serializer lookups are performed once per batch, rather than once per object.  If elements are not being cached,
+     * each element ordinal is still only deserialized once per batch, and the resulting object is shared by every object in the batch
+     * which references it.<p/>
+     *
+     * If an ExecutorService is supplied, large batches are split into chunks which are deserialized in parallel.
+     *
+     * @return the deserialized objects, in the same order as the supplied data.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> List<T> deserialize(final String type, final ByteData data[], final int positions[], final boolean cacheElements, ExecutorService executor) {
+        final Object deserialized[] = new Object[data.length];
+        final ConcurrentHashMap<String, FlatBlobTypeCache<?>> batchCaches = cacheElements ? null : new ConcurrentHashMap<String, FlatBlobTypeCache<?>>();
+
+        if(executor == null || data.length <= PARALLEL_CHUNK_SIZE) {
+            deserializeChunk(type, data, positions, cacheElements, batchCaches, deserialized, 0, data.length);
+        } else {
+            List<Future<?>> futures = new ArrayList<Future<?>>();
+
+            for(int i=0;i<data.length;i+=PARALLEL_CHUNK_SIZE) {
+                final int fromIndex = i;
+                final int toIndex = Math.min(i + PARALLEL_CHUNK_SIZE, data.length);
+
+                futures.add(executor.submit(new Runnable() {
+                    public void run() {
+                        deserializeChunk(type, data, positions, cacheElements, batchCaches, deserialized, fromIndex, toIndex);
+                    }
+                }));
+            }
+
+            for(Future<?> future : futures) {
+                try {
+                    future.get();
+                } catch(InterruptedException e) {
+                    throw new RuntimeException(e);
+                } catch(ExecutionException e) {
+                    throw new RuntimeException("Unable to deserialize batch of type " + type, e.getCause());
+                }
+            }
+        }
+
+        List<T> list = new ArrayList<T>(deserialized.length);
+        for(int i=0;i<deserialized.length;i++)
+            list.add((T) deserialized[i]);
+        return list;
+    }
+
+    private void deserializeChunk(String type, ByteData data[], int positions[], boolean cacheElements, ConcurrentHashMap<String, FlatBlobTypeCache<?>> batchCaches, Object deserialized[], int fromIndex, int toIndex) {
+        NFTypeSerializer<?> serializer = getSerializer(type);
+        FlatBlobDeserializationRecord rec = ((FlatBlobFrameworkDeserializer)frameworkDeserializer).getDeserializationRecord(type);
+        rec.setCacheElements(cacheElements);
+        rec.setBatchCaches(batchCaches);
+
+        try {
+            for(int i=fromIndex;i<toIndex;i++) {
+                rec.setByteData(data[i]);
+                rec.position(positions == null ? 0 : positions[i]);
+                deserialized[i] = serializer.deserialize(rec);
+            }
+        } finally {
+            rec.setBatchCaches(null);
+        }
+    }
+
     public <T> T getCached(String type, int ordinal) {
         FlatBlobTypeCache<T> typeCache = ((FlatBlobFrameworkDeserializer)frameworkDeserializer).getTypeCache(type);
         return typeCache.get(ordinal);
     }
 
+    /**
+     * Bound the number of deserialized objects of the given type which will be cached, or pass 0 to leave the cache unbounded.<p/>
+     *
+     * Once the bound is reached, objects which have not been recently retrieved are dropped from the cache.
+     */
+    public void setMaxCachedObjects(String type, int maxObjects) {
+        getTypeCache(type).setMaxObjects(maxObjects);
+    }
+
     <T> FlatBlobTypeCache<T> getTypeCache(String type) {
         return ((FlatBlobFrameworkDeserializer)frameworkDeserializer).getTypeCache(type);
     }
@@ -17,148 +17,389 @@
  */
 package com.netflix.zeno.flatblob;
 
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.Arrays;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
+/**
+ * A reference-counted cache of deserialized objects for a single type, indexed by ordinal.<p/>
+ *
+ * Objects and their reference counts are held in ordinal-indexed segments of primitive slots, so a cache hit neither boxes the ordinal
+ * nor allocates.  Each slot's reference count doubles as its state:  0 is empty, -1 means another thread is currently populating or
+ * removing the slot, and any positive value is the number of references to the cached object.<p/>
+ *
+ * Optionally, the cache may be bounded to a maximum number of objects.  When the bound is exceeded, an object which has not been
+ * recently retrieved is dropped from the cache, selected with the CLOCK approximation of LRU.  Objects dropped in this way may still
+ * be referenced elsewhere; future retrievals of that ordinal will simply deserialize a new copy, and evict() calls for the dropped
+ * object are ignored.
+ *
+ */
 public class FlatBlobTypeCache<T> {
 
+    private static final int SEGMENT_BITS = 10;
+    private static final int SEGMENT_SIZE = 1 << SEGMENT_BITS;
+    private static final int SEGMENT_MASK = SEGMENT_SIZE - 1;
+
+    private static final int EMPTY = 0;
+    private static final int BUSY = -1;
+
     private final String name;
-    private final ConcurrentHashMap<Integer, ObjectIdentityKey> references;
-    private final ConcurrentHashMap<ObjectIdentityKey, Integer> ordinalLookup;
+    private final IdentityOrdinalIndex ordinalLookup;
+    private final AtomicInteger size;
+    private final Object clockLock;
+
+    private volatile Segment segments[];
+    private volatile int maxObjects;
+    private int clockHand;
 
     public FlatBlobTypeCache(String name) {
+        this(name, 0);
+    }
+
+    /**
+     * @param maxObjects the maximum number of objects to retain, or 0 if the cache should be unbounded.
+     */
+    public FlatBlobTypeCache(String name, int maxObjects) {
         this.name = name;
-        this.references = new ConcurrentHashMap<Integer, ObjectIdentityKey>();
-        this.ordinalLookup = new ConcurrentHashMap<ObjectIdentityKey, Integer>();
+        this.ordinalLookup = new IdentityOrdinalIndex();
+        this.size = new AtomicInteger(0);
+        this.clockLock = new Object();
+        this.segments = new Segment[0];
+        this.maxObjects = maxObjects;
     }
 
     public String getName() {
         return name;
     }
 
+    /**
+     * @return the number of objects currently cached.
+     */
+    public int size() {
+        return size.get();
+    }
+
+    public int getMaxObjects() {
+        return maxObjects;
+    }
+
+    /**
+     * Bound the number of objects retained by this cache, or pass 0 to leave the cache unbounded.
+     */
+    public void setMaxObjects(int maxObjects) {
+        this.maxObjects = maxObjects;
+        while(maxObjects > 0 && size.get() > maxObjects && evictLeastRecentlyUsed(-1));
+    }
+
     @SuppressWarnings("unchecked")
     public T putIfAbsent(int ordinal, T obj) {
-        if(ordinal >= 0) {
-            Integer ordinalInteger = Integer.valueOf(ordinal);
-            /// create a new key
-            ObjectIdentityKey key = new ObjectIdentityKey(obj);
-            while(true) {
-                /// try to put the key in the references map.
-                ObjectIdentityKey existingKey = references.putIfAbsent(ordinalInteger, key);
-                if(existingKey == null) {
-                    ordinalLookup.put(key, ordinalInteger);
-                    return obj;
-                }
+        if(ordinal < 0)
+            return obj;
+
+        Segment segment = getSegment(ordinal, true);
+        int index = ordinal & SEGMENT_MASK;
+
+        while(true) {
+            int references = segment.references.get(index);
 
-                /// if unsuccessful, try to increment the references for the key which won the race
-                if(existingKey.tryIncrementReferences())
-                    return (T) existingKey.getObject();
+            if(references > 0) {
+                /// another thread won the race, use the object it cached.
+                if(segment.references.compareAndSet(index, references, references + 1)) {
+                    segment.recentlyUsed[index] = true;
+                    return (T) segment.objects.get(index);
+                }
+            } else if(references == EMPTY) {
+                if(segment.references.compareAndSet(index, EMPTY, BUSY)) {
+                    segment.objects.set(index, obj);
+                    ordinalLookup.put(obj, ordinal);
+                    segment.recentlyUsed[index] = true;
+                    segment.references.set(index, 1);
 
-                /// use the older object in the cache.
-                key.setObject(existingKey.getObject());
+                    int maxObjects = this.maxObjects;
+                    if(size.incrementAndGet() > maxObjects && maxObjects > 0)
+                        evictLeastRecentlyUsed(ordinal);
 
-                /// this will spin, but not acquire the lock, thus preventing starvation
-                while(references.get(ordinalInteger) == existingKey);
+                    return obj;
+                }
             }
+
+            /// the slot is BUSY.  This will spin, but not acquire a lock, until the other thread is finished.
         }
-        return obj;
     }
 
+    /**
+     * Decrement the references to the object.  Once there are no remaining references, the object is removed from the cache.
+     */
     public void evict(T obj) {
-        ObjectIdentityKey lookupKey = getLookupKey(obj);
-        if(lookupKey != null) {
-            Integer ordinalInteger = ordinalLookup.get(lookupKey);
-            ObjectIdentityKey actualKey = references.get(ordinalInteger);
-
-            if(actualKey.decrementReferences()) {
-                ordinalLookup.remove(actualKey);
-                references.remove(ordinalInteger);
+        int ordinal = ordinalLookup.get(obj);
+        if(ordinal == -1)
+            return;
+
+        Segment segment = getSegment(ordinal, false);
+        int index = ordinal & SEGMENT_MASK;
+
+        while(true) {
+            int references = segment.references.get(index);
+
+            if(references == EMPTY)
+                return;
+
+            if(references != BUSY && segment.references.compareAndSet(index, references, BUSY)) {
+                if(segment.objects.get(index) != obj)
+                    segment.references.set(index, references);
+                else if(references == 1)
+                    remove(segment, index, ordinal);
+                else
+                    segment.references.set(index, references - 1);
+                return;
             }
         }
     }
 
+    /**
+     * Retrieve the cached object for the ordinal and increment its references, or return null if no object is cached.
+     */
     @SuppressWarnings("unchecked")
     public T get(int ordinal) {
         if(ordinal < 0)
             return null;
-        ObjectIdentityKey identityKey = references.get(Integer.valueOf(ordinal));
-        if(identityKey != null && identityKey.tryIncrementReferences())
-            return (T) identityKey.getObject();
-        return null;
-    }
 
-    /// cache lookup keys to reduce object allocation.
-    private static ThreadLocal<ObjectIdentityKey> lookupKey = new ThreadLocal<ObjectIdentityKey>();
+        Segment segment = getSegment(ordinal, false);
+        if(segment == null)
+            return null;
 
-    private ObjectIdentityKey getLookupKey(Object obj) {
-        ObjectIdentityKey key = lookupKey.get();
-        if(key == null) {
-            key = new ObjectIdentityKey();
-            lookupKey.set(key);
-        }
+        int index = ordinal & SEGMENT_MASK;
+
+        while(true) {
+            int references = segment.references.get(index);
 
-        key.setObject(obj);
+            /// an EMPTY or BUSY slot is treated as a miss, the caller will deserialize and call putIfAbsent().
+            if(references <= 0)
+                return null;
 
-        return key;
+            if(segment.references.compareAndSet(index, references, references + 1)) {
+                segment.recentlyUsed[index] = true;
+                return (T) segment.objects.get(index);
+            }
+        }
     }
 
-    private static class ObjectIdentityKey {
-        private Object obj;
-        private final AtomicInteger referenceCount;
+    /**
+     * Must only be called while the slot is held BUSY by the current thread.
+     */
+    private void remove(Segment segment, int index, int ordinal) {
+        ordinalLookup.remove(segment.objects.get(index), ordinal);
+        segment.objects.set(index, null);
+        size.decrementAndGet();
+        segment.references.set(index, EMPTY);
+    }
 
-        public ObjectIdentityKey() {
-            this.referenceCount = new AtomicInteger(0);
+    /**
+     * Sweep the clock hand over the cached ordinals, clearing the recently used flag of each populated slot it passes, and drop the
+     * first object whose flag was already clear.
+     *
+     * @return true if an object was dropped from the cache.
+     */
+    private boolean evictLeastRecentlyUsed(int excludeOrdinal) {
+        synchronized(clockLock) {
+            Segment segments[] = this.segments;
+            int capacity = segments.length * SEGMENT_SIZE;
+
+            for(int i=0;i<capacity * 2;i++) {
+                if(clockHand >= capacity)
+                    clockHand = 0;
+
+                int ordinal = clockHand++;
+                Segment segment = segments[ordinal >>> SEGMENT_BITS];
+                int index = ordinal & SEGMENT_MASK;
+
+                if(segment == null) {
+                    clockHand += SEGMENT_MASK - index;
+                    i += SEGMENT_MASK - index;
+                    continue;
+                }
+
+                int references = segment.references.get(index);
+
+                if(references <= 0 || ordinal == excludeOrdinal)
+                    continue;
+
+                if(segment.recentlyUsed[index]) {
+                    segment.recentlyUsed[index] = false;
+                    continue;
+                }
+
+                if(segment.references.compareAndSet(index, references, BUSY)) {
+                    remove(segment, index, ordinal);
+                    return true;
+                }
+            }
+
+            return false;
         }
+    }
+
+    private Segment getSegment(int ordinal, boolean create) {
+        int segmentIndex = ordinal >>> SEGMENT_BITS;
+
+        Segment segments[] = this.segments;
+        if(segmentIndex < segments.length && segments[segmentIndex] != null)
+            return segments[segmentIndex];
 
-        public ObjectIdentityKey(Object obj) {
-            this.obj = obj;
-            this.referenceCount = new AtomicInteger(1);
+        if(!create)
+            return null;
+
+        synchronized(this) {
+            segments = this.segments;
+            if(segmentIndex < segments.length && segments[segmentIndex] != null)
+                return segments[segmentIndex];
+
+            /// segments are never replaced, only the array referencing them, so concurrent readers of a segment are unaffected.
+            Segment newSegments[] = Arrays.copyOf(segments, Math.max(segments.length, segmentIndex + 1));
+            newSegments[segmentIndex] = new Segment();
+            this.segments = newSegments;
+
+            return newSegments[segmentIndex];
         }
+    }
 
-        public Object getObject() {
-            return obj;
+    private static class Segment {
+        private final AtomicIntegerArray references = new AtomicIntegerArray(SEGMENT_SIZE);
+        private final AtomicReferenceArray<Object> objects = new AtomicReferenceArray<Object>(SEGMENT_SIZE);
+        /// CLOCK reference bits.  These are only hints, so no synchronization is required.
+        private final boolean recentlyUsed[] = new boolean[SEGMENT_SIZE];
+    }
+
+    /**
+     * Maps cached objects, by identity, back to their ordinals so that evict() can locate an object's slot.<p/>
+     *
+     * This is a lock-striped, linear-probing hash table, which holds keys and ordinals in parallel arrays rather than allocating an entry
+     * per object.
+     */
+    private static class IdentityOrdinalIndex {
+        private static final int NUM_STRIPES = 16;
+
+        private final Stripe stripes[];
+
+        IdentityOrdinalIndex() {
+            stripes = new Stripe[NUM_STRIPES];
+            for(int i=0;i<NUM_STRIPES;i++)
+                stripes[i] = new Stripe();
         }
 
-        public void setObject(Object obj) {
-            this.obj = obj;
+        int get(Object obj) {
+            int hash = hash(obj);
+            return stripes[hash & (NUM_STRIPES - 1)].get(obj, hash);
         }
 
-        /**
-         * We will only increment references if the number of references does not equal 0.
-         *
-         * If the number of references reaches 0, then this entry will be scheduled for eviction.
-         *
-         * @return
-         */
-        public boolean tryIncrementReferences() {
-            while(true) {
-                int current = referenceCount.get();
-                if(current == 0)
-                    return false;
-                int next = current + 1;
-                if (referenceCount.compareAndSet(current, next))
-                    return true;
-            }
+        void put(Object obj, int ordinal) {
+            int hash = hash(obj);
+            stripes[hash & (NUM_STRIPES - 1)].put(obj, hash, ordinal);
         }
 
-        /**
-         * Decrement references, and return true if the number of references reaches 0.
-         *
-         * @return
-         */
-        public boolean decrementReferences() {
-            return referenceCount.decrementAndGet() == 0;
+        void remove(Object obj, int ordinal) {
+            int hash = hash(obj);
+            stripes[hash & (NUM_STRIPES - 1)].remove(obj, hash, ordinal);
         }
 
-        public int hashCode() {
-            return System.identityHashCode(obj);
+        private static int hash(Object obj) {
+            int hash = System.identityHashCode(obj);
+            hash = ~hash + (hash << 15);
+            hash = hash ^ (hash >>> 12);
+            hash = hash + (hash << 2);
+            hash = hash ^ (hash >>> 4);
+            hash = hash * 2057;
+            hash = hash ^ (hash >>> 16);
+            return hash;
         }
 
-        public boolean equals(Object other) {
-            if(other instanceof ObjectIdentityKey) {
-                return obj == ((ObjectIdentityKey)other).getObject();
+        private static class Stripe {
+            private Object keys[] = new Object[16];
+            private int ordinals[] = new int[16];
+            private int size;
+
+            synchronized int get(Object obj, int hash) {
+                int mask = keys.length - 1;
+                int bucket = (hash >>> 4) & mask;
+
+                while(keys[bucket] != null) {
+                    if(keys[bucket] == obj)
+                        return ordinals[bucket];
+                    bucket = (bucket + 1) & mask;
+                }
+
+                return -1;
+            }
+
+            synchronized void put(Object obj, int hash, int ordinal) {
+                if(size * 4 >= keys.length * 3)
+                    grow();
+
+                if(insert(obj, hash, ordinal))
+                    size++;
+            }
+
+            synchronized void remove(Object obj, int hash, int ordinal) {
+                int mask = keys.length - 1;
+                int bucket = (hash >>> 4) & mask;
+
+                while(keys[bucket] != obj || ordinals[bucket] != ordinal) {
+                    if(keys[bucket] == null)
+                        return;
+                    bucket = (bucket + 1) & mask;
+                }
+
+                keys[bucket] = null;
+                size--;
+
+                /// shift back any subsequent keys in the probe sequence which would no longer be reachable.
+                int emptyBucket = bucket;
+                bucket = (bucket + 1) & mask;
+
+                while(keys[bucket] != null) {
+                    int idealBucket = (hash(keys[bucket]) >>> 4) & mask;
+
+                    if(((bucket - idealBucket) & mask) >= ((bucket - emptyBucket) & mask)) {
+                        keys[emptyBucket] = keys[bucket];
+                        ordinals[emptyBucket] = ordinals[bucket];
+                        keys[bucket] = null;
+                        emptyBucket = bucket;
+                    }
+
+                    bucket = (bucket + 1) & mask;
+                }
+            }
+
+            private boolean insert(Object obj, int hash, int ordinal) {
+                int mask = keys.length - 1;
+                int bucket = (hash >>> 4) & mask;
+
+                while(keys[bucket] != null) {
+                    if(keys[bucket] == obj) {
+                        ordinals[bucket] = ordinal;
+                        return false;
+                    }
+                    bucket = (bucket + 1) & mask;
+                }
+
+                keys[bucket] = obj;
+                ordinals[bucket] = ordinal;
+                return true;
+            }
+
+            private void grow() {
+                Object oldKeys[] = keys;
+                int oldOrdinals[] = ordinals;
+
+                keys = new Object[oldKeys.length * 2];
+                ordinals = new int[oldKeys.length * 2];
+
+                for(int i=0;i<oldKeys.length;i++) {
+                    if(oldKeys[i] != null)
+                        insert(oldKeys[i], hash(oldKeys[i]), oldOrdinals[i]);
+                }
             }
-            return false;
         }
     }
 }
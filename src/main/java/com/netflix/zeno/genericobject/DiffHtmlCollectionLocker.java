@@ -32,19 +32,32 @@ import java.util.List;
  * This helps to eyeball the differences between two objects with collections in their hierarchies, without
  * requiring knowledge of the semantics of these objects.<p/>
  *
- * The similarity metric used here is the <a href="http://matpalm.com/resemblance/jaccard_coeff/">jaccard</a> distance.
+ * The similarity metric used here is the <a href="http://matpalm.com/resemblance/jaccard_coeff/">jaccard</a> distance.  For large
+ * collections, candidate pairs are found approximately with MinHash signatures.
  *
  * @author dkoszewnik
  *
  */
 public class DiffHtmlCollectionLocker {
 
+    /// collections with more pairs of elements than this are lined up by the approximate MinHashPairwiseMatcher
+    public static final int DEFAULT_APPROXIMATE_MATCHING_THRESHOLD = 100 * 100;
+
     private final DiffSerializationFramework diffFramework;
+    private int approximateMatchingThreshold = DEFAULT_APPROXIMATE_MATCHING_THRESHOLD;
 
     public DiffHtmlCollectionLocker(SerializerFactory factory) {
         diffFramework = new DiffSerializationFramework(factory);
     }
 
+    /**
+     * Collections for which the product of the sizes exceeds this threshold are lined up with the {@link MinHashPairwiseMatcher},
+     * otherwise the exact {@link JaccardMatrixPairwiseMatcher} is used.
+     */
+    public void setApproximateMatchingThreshold(int approximateMatchingThreshold) {
+        this.approximateMatchingThreshold = approximateMatchingThreshold;
+    }
+
     void lockCollectionFields(GenericObject from, GenericObject to) {
         List<Field> lockedFromFields = new ArrayList<Field>();
         List<Field> lockedToFields = new ArrayList<Field>();
@@ -52,7 +65,7 @@ public class DiffHtmlCollectionLocker {
         List<DiffRecord> fromDiffRecords = createDiffRecordList(from);
         List<DiffRecord> toDiffRecords = createDiffRecordList(to);
 
-        JaccardMatrixPairwiseMatcher matcher = new JaccardMatrixPairwiseMatcher(from.getFields(), fromDiffRecords, to.getFields(), toDiffRecords);
+        PairwiseMatcher matcher = createMatcher(from.getFields(), fromDiffRecords, to.getFields(), toDiffRecords);
 
         while (matcher.nextPair()) {
             lockedFromFields.add(matcher.getX());
@@ -63,6 +76,12 @@ public class DiffHtmlCollectionLocker {
         to.setFields(lockedToFields);
     }
 
+    private PairwiseMatcher createMatcher(List<Field> fromFields, List<DiffRecord> fromDiffRecords, List<Field> toFields, List<DiffRecord> toDiffRecords) {
+        if((long)fromFields.size() * toFields.size() > approximateMatchingThreshold)
+            return new MinHashPairwiseMatcher(fromFields, fromDiffRecords, toFields, toDiffRecords);
+        return new JaccardMatrixPairwiseMatcher(fromFields, fromDiffRecords, toFields, toDiffRecords);
+    }
+
     private List<DiffRecord> createDiffRecordList(GenericObject from) {
         List<DiffRecord> diffRecords = new ArrayList<DiffRecord>();
 
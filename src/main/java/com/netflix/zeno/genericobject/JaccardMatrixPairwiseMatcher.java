@@ -34,7 +34,7 @@ import java.util.List;
  * @author dkoszewnik
  *
  */
-public class JaccardMatrixPairwiseMatcher {
+public class JaccardMatrixPairwiseMatcher implements PairwiseMatcher {
 
     private final List<Field> objects1;
     private final List<Field> objects2;
@@ -69,7 +69,7 @@ public class JaccardMatrixPairwiseMatcher {
         illegalRows = new BitSet();
     }
 
-    private float calculateJaccardDistance(DiffRecord rec1, DiffRecord rec2) {
+    static float calculateJaccardDistance(DiffRecord rec1, DiffRecord rec2) {
         DiffRecordValueListMap map1 = rec1.getValueListMap();
         DiffRecordValueListMap map2 = rec2.getValueListMap();
 
@@ -112,6 +112,7 @@ public class JaccardMatrixPairwiseMatcher {
         return ((float)xorCardinality) / ((float)(xorCardinality + unionCardinality));
     }
 
+    @Override
     public boolean nextPair() {
         int minColumn = -1;
         int minRow = -1;
@@ -163,10 +164,12 @@ public class JaccardMatrixPairwiseMatcher {
         return false;
     }
 
+    @Override
     public Field getX() {
         return x;
     }
 
+    @Override
     public Field getY() {
         return y;
     }
@@ -0,0 +1,276 @@
+/*
+ *
+ *  Copyright 2013 Netflix, Inc.
+ *
+ *     Licensed under the Apache License, Version 2.0 (the "License");
+ *     you may not use this file except in compliance with the License.
+ *     You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *     Unless required by applicable law or agreed to in writing, software
+ *     distributed under the License is distributed on an "AS IS" BASIS,
+ *     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *     See the License for the specific language governing permissions and
+ *     limitations under the License.
+ *
+ */
+package com.netflix.zeno.genericobject;
+
+import com.netflix.zeno.diff.DiffPropertyPath;
+import com.netflix.zeno.diff.DiffRecord;
+import com.netflix.zeno.diff.DiffRecordValueListMap;
+import com.netflix.zeno.genericobject.GenericObject.Field;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * This class pulls out matching pairs of objects based on approximate maximum jaccard similarity.<p/>
+ *
+ * Rather than computing the jaccard distance between every pair of objects, as the {@link JaccardMatrixPairwiseMatcher} does,
+ * each object is reduced to a MinHash signature.  The signatures are divided into bands, and only those pairs of objects which
+ * have an identical band are considered candidates.  The exact jaccard distance is computed for each candidate pair,
+ * and the candidates are then greedily matched, most similar first.<p/>
+ *
+ * Pairs which are similar, but do not share any identical band, may not be matched.  For the sizes of collections where this matters,
+ * it's an acceptable tradeoff against the quadratic time and memory required by the exact matcher.<p/>
+ *
+ * For a good discussion of MinHash and locality-sensitive hashing, see chapter 3 of "Mining of Massive Datasets", http://www.mmds.org/
+ */
+public class MinHashPairwiseMatcher implements PairwiseMatcher {
+
+    private static final int NUM_BANDS = 32;
+    private static final int ROWS_PER_BAND = 2;
+    private static final int SIGNATURE_LENGTH = NUM_BANDS * ROWS_PER_BAND;
+
+    private static final long EMPTY_RECORD_TOKEN = 0x61C8864680B583EBL;
+
+    private final List<Field> objects1;
+    private final List<Field> objects2;
+
+    private final long matchedPairs[];
+    private int nextMatchedPair;
+    private final BitSet matchedColumns;
+    private final BitSet matchedRows;
+    private int nextUnmatchedColumn;
+    private int nextUnmatchedRow;
+
+    private Field x;
+    private Field y;
+
+    public MinHashPairwiseMatcher(List<Field> objects1, List<DiffRecord> recs1, List<Field> objects2, List<DiffRecord> recs2) {
+        this.objects1 = objects1;
+        this.objects2 = objects2;
+
+        long signatures1[][] = new long[recs1.size()][];
+        for(int i=0;i<signatures1.length;i++)
+            signatures1[i] = signature(recs1.get(i));
+
+        long signatures2[][] = new long[recs2.size()][];
+        for(int i=0;i<signatures2.length;i++)
+            signatures2[i] = signature(recs2.get(i));
+
+        List<CandidatePair> candidates = findCandidates(recs1, signatures1, recs2, signatures2);
+
+        this.matchedColumns = new BitSet(objects1.size());
+        this.matchedRows = new BitSet(objects2.size());
+        this.matchedPairs = greedilyMatch(candidates);
+    }
+
+    private List<CandidatePair> findCandidates(List<DiffRecord> recs1, long signatures1[][], List<DiffRecord> recs2, long signatures2[][]) {
+        Set<Long> candidatePairKeys = new HashSet<Long>();
+        List<CandidatePair> candidates = new ArrayList<CandidatePair>();
+
+        for(int band=0;band<NUM_BANDS;band++) {
+            Map<Long, List<Integer>> buckets = new HashMap<Long, List<Integer>>();
+
+            for(int j=0;j<signatures2.length;j++) {
+                Long bucket = Long.valueOf(bandHash(signatures2[j], band));
+                List<Integer> bucketRows = buckets.get(bucket);
+                if(bucketRows == null) {
+                    bucketRows = new ArrayList<Integer>();
+                    buckets.put(bucket, bucketRows);
+                }
+                bucketRows.add(Integer.valueOf(j));
+            }
+
+            for(int i=0;i<signatures1.length;i++) {
+                List<Integer> bucketRows = buckets.get(Long.valueOf(bandHash(signatures1[i], band)));
+                if(bucketRows != null) {
+                    for(Integer row : bucketRows) {
+                        int j = row.intValue();
+                        if(candidatePairKeys.add(Long.valueOf(pairKey(i, j)))) {
+                            float distance = JaccardMatrixPairwiseMatcher.calculateJaccardDistance(recs1.get(i), recs2.get(j));
+                            if(distance < 1.0F)
+                                candidates.add(new CandidatePair(i, j, distance));
+                        }
+                    }
+                }
+            }
+        }
+
+        return candidates;
+    }
+
+    /**
+     * Sort the candidates by distance, and then match them in order, skipping candidates for which either object has already been matched.<p/>
+     *
+     * Ties are broken in the same order the exact matcher breaks them, lowest column then lowest row.
+     */
+    private long[] greedilyMatch(List<CandidatePair> candidates) {
+        CandidatePair sorted[] = candidates.toArray(new CandidatePair[candidates.size()]);
+        Arrays.sort(sorted);
+
+        long matched[] = new long[Math.min(objects1.size(), objects2.size())];
+        int numMatched = 0;
+
+        for(CandidatePair candidate : sorted) {
+            if(!matchedColumns.get(candidate.column) && !matchedRows.get(candidate.row)) {
+                matchedColumns.set(candidate.column);
+                matchedRows.set(candidate.row);
+                matched[numMatched++] = pairKey(candidate.column, candidate.row);
+            }
+        }
+
+        return Arrays.copyOf(matched, numMatched);
+    }
+
+    @Override
+    public boolean nextPair() {
+        if(nextMatchedPair < matchedPairs.length) {
+            long pair = matchedPairs[nextMatchedPair++];
+            x = objects1.get((int)(pair >>> 32));
+            y = objects2.get((int)pair);
+            return true;
+        }
+
+        nextUnmatchedColumn = matchedColumns.nextClearBit(nextUnmatchedColumn);
+        if(nextUnmatchedColumn < objects1.size()) {
+            x = objects1.get(nextUnmatchedColumn++);
+            y = null;
+            return true;
+        }
+
+        nextUnmatchedRow = matchedRows.nextClearBit(nextUnmatchedRow);
+        if(nextUnmatchedRow < objects2.size()) {
+            x = null;
+            y = objects2.get(nextUnmatchedRow++);
+            return true;
+        }
+
+        x = null;
+        y = null;
+        return false;
+    }
+
+    @Override
+    public Field getX() {
+        return x;
+    }
+
+    @Override
+    public Field getY() {
+        return y;
+    }
+
+    /**
+     * Each key/value pair in the record is a token.  Repeated key/value pairs are distinguished by their occurrence count,
+     * so that the signature reflects the same multiset semantics as the exact jaccard distance.
+     */
+    private static long[] signature(DiffRecord rec) {
+        DiffRecordValueListMap map = rec.getValueListMap();
+
+        int numTokens = 0;
+        long tokens[] = new long[16];
+
+        for(DiffPropertyPath key : map.keySet()) {
+            long keyHash = key.hashCode();
+            for(Object value : map.getList(key)) {
+                if(numTokens == tokens.length)
+                    tokens = Arrays.copyOf(tokens, tokens.length * 2);
+                tokens[numTokens++] = mix((keyHash << 32) ^ (value == null ? 0 : value.hashCode()));
+            }
+        }
+
+        if(numTokens == 0)
+            tokens[numTokens++] = EMPTY_RECORD_TOKEN;
+
+        Arrays.sort(tokens, 0, numTokens);
+
+        long previousToken = tokens[0];
+        int occurrence = 0;
+        for(int i=1;i<numTokens;i++) {
+            long token = tokens[i];
+            if(token == previousToken) {
+                tokens[i] = mix(token + (++occurrence));
+            } else {
+                previousToken = token;
+                occurrence = 0;
+            }
+        }
+
+        long signature[] = new long[SIGNATURE_LENGTH];
+        Arrays.fill(signature, Long.MAX_VALUE);
+
+        for(int i=0;i<numTokens;i++) {
+            long token = tokens[i];
+            for(int h=0;h<SIGNATURE_LENGTH;h++) {
+                long hash = mix(token + (h * 0x9E3779B97F4A7C15L));
+                if(hash < signature[h])
+                    signature[h] = hash;
+            }
+        }
+
+        return signature;
+    }
+
+    private static long bandHash(long signature[], int band) {
+        long hash = band;
+        for(int i=band*ROWS_PER_BAND;i<(band+1)*ROWS_PER_BAND;i++) {
+            hash = mix(hash ^ signature[i]);
+        }
+        return hash;
+    }
+
+    private static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        h *= 0xC4CEB9FE1A85EC53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    private static long pairKey(int column, int row) {
+        return ((long)column << 32) | (row & 0xFFFFFFFFL);
+    }
+
+    private static class CandidatePair implements Comparable<CandidatePair> {
+        private final int column;
+        private final int row;
+        private final float distance;
+
+        public CandidatePair(int column, int row, float distance) {
+            this.column = column;
+            this.row = row;
+            this.distance = distance;
+        }
+
+        @Override
+        public int compareTo(CandidatePair o) {
+            if(distance != o.distance)
+                return distance < o.distance ? -1 : 1;
+            if(column != o.column)
+                return column < o.column ? -1 : 1;
+            return row - o.row;
+        }
+    }
+
+}
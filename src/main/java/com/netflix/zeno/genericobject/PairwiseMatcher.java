@@ -0,0 +1,47 @@
+/*
+ *
+ *  Copyright 2013 Netflix, Inc.
+ *
+ *     Licensed under the Apache License, Version 2.0 (the "License");
+ *     you may not use this file except in compliance with the License.
+ *     You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *     Unless required by applicable law or agreed to in writing, software
+ *     distributed under the License is distributed on an "AS IS" BASIS,
+ *     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *     See the License for the specific language governing permissions and
+ *     limitations under the License.
+ *
+ */
+package com.netflix.zeno.genericobject;
+
+import com.netflix.zeno.genericobject.GenericObject.Field;
+
+/**
+ * Pulls out matching pairs of objects from two collections, most similar pairs first.<p/>
+ *
+ * Once no more similar pairs remain, each unmatched object is returned paired with null.
+ *
+ */
+public interface PairwiseMatcher {
+
+    /**
+     * Advance to the next pair.
+     *
+     * @return false if there are no more pairs.
+     */
+    public boolean nextPair();
+
+    /**
+     * @return the object from the first collection in the current pair, or null.
+     */
+    public Field getX();
+
+    /**
+     * @return the object from the second collection in the current pair, or null.
+     */
+    public Field getY();
+
+}
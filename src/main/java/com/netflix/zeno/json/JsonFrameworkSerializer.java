@@ -70,7 +70,7 @@ public class JsonFrameworkSerializer extends FrameworkSerializer<JsonWriteGeneri
         serializePrimitive(rec, fieldName, str);
     }
 
-    private static boolean isPrimitive(Class<?> type) {
+    static boolean isPrimitive(Class<?> type) {
         return type.isEnum() || PrimitiveObjectIdentifier.isPrimitiveOrWrapper(type);
     }
 
@@ -17,16 +17,28 @@
  */
 package com.netflix.zeno.json;
 
+import java.io.BufferedReader;
 import java.io.IOException;
+import java.io.Reader;
 import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
 
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.netflix.zeno.fastblob.FastBlobStateEngine;
 import com.netflix.zeno.serializer.NFTypeSerializer;
 import com.netflix.zeno.serializer.SerializationFramework;
 import com.netflix.zeno.serializer.SerializerFactory;
 import com.netflix.zeno.serializer.common.MapSerializer;
+import com.netflix.zeno.util.SimultaneousExecutor;
 
 /**
  *
@@ -42,6 +54,11 @@ import com.netflix.zeno.serializer.common.MapSerializer;
  */
 public class JsonSerializationFramework extends SerializationFramework {
 
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    /// the number of lines parsed by each task during a parallel newline-delimited import
+    private static final int NEWLINE_DELIMITED_BATCH_SIZE = 1024;
+
     public JsonSerializationFramework(SerializerFactory factory) {
         super(factory);
         this.frameworkSerializer = new JsonFrameworkSerializer(this);
@@ -84,8 +101,7 @@ public class JsonSerializationFramework extends SerializationFramework {
 
 
     public <T> T deserializeJson(String type, String json) throws IOException {
-        ObjectMapper mapper = new ObjectMapper();
-        JsonNode node = mapper.readTree(json);
+        JsonNode node = MAPPER.readTree(json);
         NFTypeSerializer<T> serializer = getSerializer(type);
         JsonReadGenericRecord readRecord = new JsonReadGenericRecord(serializer.getFastBlobSchema(), node);
         T object = serializer.deserialize(readRecord);
@@ -100,9 +116,116 @@ public class JsonSerializationFramework extends SerializationFramework {
         MapSerializer<K, V> mapSerializer = new MapSerializer<K, V>(keySerializer, valueSerializer);
         mapSerializer.setSerializationFramework(this);
 
-        JsonNode node = new ObjectMapper().readTree(json);
+        JsonNode node = MAPPER.readTree(json);
         JsonReadGenericRecord readRecord = new JsonReadGenericRecord(mapSerializer.getFastBlobSchema(), node);
         return mapSerializer.deserialize(readRecord);
     }
 
+    /**
+     * Stream JSON objects of the given type from the supplied Reader directly into the FastBlobStateEngine.<p/>
+     *
+     * The input may be either a single JSON array of objects, or a sequence of JSON objects (e.g. newline-delimited JSON).  The input
+     * is read with a JsonParser, and only the object currently being added is held in memory.
+     *
+     * @return the number of objects added to the state engine
+     */
+    public int importJson(String type, Reader reader, FastBlobStateEngine stateEngine) throws IOException {
+        NFTypeSerializer<Object> serializer = getSerializer(type);
+        JsonParser parser = MAPPER.getFactory().createParser(reader);
+
+        try {
+            int numObjects = 0;
+
+            JsonToken token = parser.nextToken();
+            if(token == JsonToken.START_ARRAY)
+                token = parser.nextToken();
+
+            while(token != null && token != JsonToken.END_ARRAY) {
+                if(token != JsonToken.VALUE_NULL) {
+                    JsonNode node = MAPPER.readTree(parser);
+                    stateEngine.add(type, serializer.deserialize(new JsonReadGenericRecord(serializer.getFastBlobSchema(), node)));
+                    numObjects++;
+                }
+                token = parser.nextToken();
+            }
+
+            return numObjects;
+        } finally {
+            parser.close();
+        }
+    }
+
+    /**
+     * Stream newline-delimited JSON objects of the given type from the supplied Reader directly into the FastBlobStateEngine, parsing
+     * with the specified number of threads.<p/>
+     *
+     * Lines are handed to the parsing threads in batches.  At most two batches per thread are in flight at any time, so memory
+     * usage is bounded regardless of the size of the input.
+     *
+     * @return the number of objects added to the state engine
+     */
+    public int importNewlineDelimitedJson(final String type, Reader reader, final FastBlobStateEngine stateEngine, int numThreads) throws IOException {
+        BufferedReader lineReader = new BufferedReader(reader);
+        SimultaneousExecutor executor = new SimultaneousExecutor(numThreads, "zeno-json-import");
+        Semaphore batchesInFlight = new Semaphore(numThreads * 2);
+        List<Future<Integer>> futures = new ArrayList<Future<Integer>>();
+
+        try {
+            List<String> batch = new ArrayList<String>(NEWLINE_DELIMITED_BATCH_SIZE);
+            String line;
+
+            while((line = lineReader.readLine()) != null) {
+                if(line.trim().length() == 0)
+                    continue;
+
+                batch.add(line);
+
+                if(batch.size() == NEWLINE_DELIMITED_BATCH_SIZE) {
+                    futures.add(submitImportBatch(executor, batchesInFlight, type, batch, stateEngine));
+                    batch = new ArrayList<String>(NEWLINE_DELIMITED_BATCH_SIZE);
+                }
+            }
+
+            if(!batch.isEmpty())
+                futures.add(submitImportBatch(executor, batchesInFlight, type, batch, stateEngine));
+        } finally {
+            executor.awaitUninterruptibly();
+        }
+
+        int numObjects = 0;
+
+        for(Future<Integer> future : futures) {
+            try {
+                numObjects += future.get().intValue();
+            } catch(InterruptedException e) {
+                throw new RuntimeException(e);
+            } catch(ExecutionException e) {
+                throw new RuntimeException("Unable to import JSON for type " + type, e.getCause());
+            }
+        }
+
+        return numObjects;
+    }
+
+    private Future<Integer> submitImportBatch(SimultaneousExecutor executor, final Semaphore batchesInFlight, final String type, final List<String> lines, final FastBlobStateEngine stateEngine) {
+        batchesInFlight.acquireUninterruptibly();
+
+        return executor.submit(new Callable<Integer>() {
+            public Integer call() throws Exception {
+                try {
+                    NFTypeSerializer<Object> serializer = getSerializer(type);
+
+                    for(String line : lines) {
+                        JsonNode node = MAPPER.readTree(line);
+                        stateEngine.add(type, serializer.deserialize(new JsonReadGenericRecord(serializer.getFastBlobSchema(), node)));
+                    }
+
+                    return Integer.valueOf(lines.size());
+                } finally {
+                    batchesInFlight.release();
+                }
+            }
+        });
+    }
+
 }
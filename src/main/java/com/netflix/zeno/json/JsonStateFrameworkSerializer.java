@@ -0,0 +1,116 @@
+/*
+ *
+ *  Copyright 2014 Netflix, Inc.
+ *
+ *     Licensed under the Apache License, Version 2.0 (the "License");
+ *     you may not use this file except in compliance with the License.
+ *     You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *     Unless required by applicable law or agreed to in writing, software
+ *     distributed under the License is distributed on an "AS IS" BASIS,
+ *     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *     See the License for the specific language governing permissions and
+ *     limitations under the License.
+ *
+ */
+package com.netflix.zeno.json;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.netflix.zeno.serializer.NFTypeSerializer;
+
+import java.util.Collection;
+import java.util.Set;
+
+/**
+ * Writes each non-primitive sub-object as the ordinal of that object in the FastBlobStateEngine being exported, rather than inlining it.<p/>
+ *
+ * Maps are written by the JsonFrameworkSerializer, which delegates each key and value to serializeObject().<p/>
+ *
+ * Objects which cannot be found in the state engine are inlined, as they would be by the JsonFrameworkSerializer.
+ *
+ */
+class JsonStateFrameworkSerializer extends JsonFrameworkSerializer {
+
+    private final JsonStateSerializationFramework stateFramework;
+
+    JsonStateFrameworkSerializer(JsonStateSerializationFramework framework) {
+        super(framework);
+        this.stateFramework = framework;
+    }
+
+    @Deprecated
+    @Override
+    public void serializeObject(JsonWriteGenericRecord record, String fieldName, String typeName, Object obj) {
+        if(obj == null || isPrimitive(obj.getClass())) {
+            super.serializeObject(record, fieldName, typeName, obj);
+            return;
+        }
+
+        int ordinal = stateFramework.findOrdinal(typeName, obj);
+
+        if(ordinal == -1) {
+            super.serializeObject(record, fieldName, typeName, obj);
+            return;
+        }
+
+        try {
+            record.getGenerator().writeNumberField(fieldName, ordinal);
+        } catch (Exception ex) {
+            throw new RuntimeException(ex);
+        }
+    }
+
+    @Override
+    public <T> void serializeList(JsonWriteGenericRecord rec, String fieldName, String typeName, Collection<T> obj) {
+        serializeOrdinals(rec, "list", typeName, obj);
+    }
+
+    @Override
+    public <T> void serializeSet(JsonWriteGenericRecord rec, String fieldName, String typeName, Set<T> obj) {
+        serializeOrdinals(rec, "set", typeName, obj);
+    }
+
+    @SuppressWarnings({ "rawtypes", "unchecked" })
+    private <T> void serializeOrdinals(JsonWriteGenericRecord record, String fieldName, String typeName, Collection<T> obj) {
+        try {
+            JsonGenerator generator = record.getGenerator();
+
+            if (obj == null) {
+                generator.writeObjectField(fieldName, null);
+                return;
+            }
+
+            generator.writeArrayFieldStart(fieldName);
+
+            JsonWriteGenericRecord elemRecord = null;
+
+            for (T t : obj) {
+                if (t == null || isPrimitive(t.getClass())) {
+                    generator.writeObject(t);
+                    continue;
+                }
+
+                int ordinal = stateFramework.findOrdinal(typeName, t);
+
+                if (ordinal != -1) {
+                    generator.writeNumber(ordinal);
+                } else {
+                    if(elemRecord == null)
+                        elemRecord = new JsonWriteGenericRecord(generator);
+
+                    NFTypeSerializer elemSerializer = getSerializer(typeName);
+                    generator.writeStartObject();
+                    elemSerializer.serialize(t, elemRecord);
+                    generator.writeEndObject();
+                }
+            }
+
+            generator.writeEndArray();
+        } catch (Exception ex) {
+            throw new RuntimeException(ex);
+        }
+    }
+
+}
@@ -0,0 +1,220 @@
+/*
+ *
+ *  Copyright 2014 Netflix, Inc.
+ *
+ *     Licensed under the Apache License, Version 2.0 (the "License");
+ *     you may not use this file except in compliance with the License.
+ *     You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *     Unless required by applicable law or agreed to in writing, software
+ *     distributed under the License is distributed on an "AS IS" BASIS,
+ *     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *     See the License for the specific language governing permissions and
+ *     limitations under the License.
+ *
+ */
+package com.netflix.zeno.json;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.netflix.zeno.fastblob.FastBlobStateEngine;
+import com.netflix.zeno.fastblob.state.FastBlobTypeDeserializationState;
+import com.netflix.zeno.fastblob.state.ObjectIdentityOrdinalMap;
+import com.netflix.zeno.serializer.NFTypeSerializer;
+import com.netflix.zeno.serializer.SerializationFramework;
+import com.netflix.zeno.serializer.SerializerFactory;
+import com.netflix.zeno.util.CollectionUnwrapper;
+import com.netflix.zeno.util.SimultaneousExecutor;
+
+/**
+ * Streams the entire contents of a FastBlobStateEngine as JSON, one type at a time.<p/>
+ *
+ * Each object is written with an "_ordinal" field, and references to other non-primitive objects are written as the ordinal of the
+ * referenced object, rather than inlining the referenced object's contents.  A single JsonGenerator is used for each output stream,
+ * so no intermediate String is built for any object.<p/>
+ *
+ * The state engine's deserialization states must be populated (e.g. by fillDeserializationStatesFromSerializedData()) before exporting.
+ * A single instance should not be used to export more than one state engine concurrently.
+ *
+ */
+public class JsonStateSerializationFramework extends SerializationFramework {
+
+    public static final String ORDINAL_FIELD_NAME = "_ordinal";
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    private Map<String, ObjectIdentityOrdinalMap> ordinalMaps = new HashMap<String, ObjectIdentityOrdinalMap>();
+
+    public JsonStateSerializationFramework(SerializerFactory factory) {
+        super(factory);
+        this.frameworkSerializer = new JsonStateFrameworkSerializer(this);
+    }
+
+    /**
+     * Write every object in the state engine to the OutputStream as a single JSON object, containing one array of objects for each type.<p/>
+     *
+     * Types are written in dependency order.  The OutputStream is flushed, but not closed.
+     */
+    public void exportState(FastBlobStateEngine stateEngine, OutputStream os) throws IOException {
+        ordinalMaps = createOrdinalMaps(stateEngine);
+
+        try {
+            JsonGenerator generator = JSON_FACTORY.createGenerator(os, JsonEncoding.UTF8);
+
+            generator.writeStartObject();
+
+            for(NFTypeSerializer<?> serializer : stateEngine.getOrderedSerializers()) {
+                FastBlobTypeDeserializationState<Object> typeState = stateEngine.getTypeDeserializationState(serializer.getName());
+
+                if(typeState != null) {
+                    generator.writeFieldName(serializer.getName());
+                    writeTypeState(serializer.getName(), typeState, generator);
+                }
+            }
+
+            generator.writeEndObject();
+            generator.flush();
+        } finally {
+            ordinalMaps = new HashMap<String, ObjectIdentityOrdinalMap>();
+        }
+    }
+
+    /**
+     * Write every object in the state engine to the specified directory, one file per type named &lt;type&gt;.json, using the specified
+     * number of threads.<p/>
+     *
+     * Each file contains a single JSON array of objects.
+     */
+    public void exportState(FastBlobStateEngine stateEngine, File directory, int numThreads) throws IOException {
+        ordinalMaps = createOrdinalMaps(stateEngine);
+
+        SimultaneousExecutor executor = new SimultaneousExecutor(numThreads, "zeno-json-export");
+        List<Future<Void>> futures = new ArrayList<Future<Void>>();
+
+        try {
+            for(NFTypeSerializer<?> serializer : stateEngine.getOrderedSerializers()) {
+                final String typeName = serializer.getName();
+                final FastBlobTypeDeserializationState<Object> typeState = stateEngine.getTypeDeserializationState(typeName);
+
+                if(typeState == null)
+                    continue;
+
+                final File file = new File(directory, typeName + ".json");
+
+                futures.add(executor.submit(new Callable<Void>() {
+                    public Void call() throws Exception {
+                        OutputStream os = new BufferedOutputStream(new FileOutputStream(file));
+
+                        try {
+                            JsonGenerator generator = JSON_FACTORY.createGenerator(os, JsonEncoding.UTF8);
+                            writeTypeState(typeName, typeState, generator);
+                            generator.flush();
+                        } finally {
+                            os.close();
+                        }
+
+                        return null;
+                    }
+                }));
+            }
+        } finally {
+            executor.awaitUninterruptibly();
+        }
+
+        try {
+            for(Future<Void> future : futures) {
+                try {
+                    future.get();
+                } catch(InterruptedException e) {
+                    throw new RuntimeException(e);
+                } catch(ExecutionException e) {
+                    if(e.getCause() instanceof IOException)
+                        throw (IOException) e.getCause();
+                    throw new RuntimeException("Unable to export JSON", e.getCause());
+                }
+            }
+        } finally {
+            ordinalMaps = new HashMap<String, ObjectIdentityOrdinalMap>();
+        }
+    }
+
+    /**
+     * Returns the ordinal of the object in the state engine currently being exported, or -1 if the object is not present.
+     */
+    int findOrdinal(String typeName, Object obj) {
+        ObjectIdentityOrdinalMap ordinalMap = ordinalMaps.get(typeName);
+
+        if(ordinalMap == null)
+            return -1;
+
+        int ordinal = ordinalMap.get(obj);
+
+        if(ordinal == -1) {
+            Object unwrapped = CollectionUnwrapper.unwrap(obj);
+            if(unwrapped != obj)
+                ordinal = ordinalMap.get(unwrapped);
+        }
+
+        return ordinal;
+    }
+
+    private void writeTypeState(String typeName, FastBlobTypeDeserializationState<Object> typeState, JsonGenerator generator) throws IOException {
+        NFTypeSerializer<Object> serializer = getSerializer(typeName);
+        JsonWriteGenericRecord record = new JsonWriteGenericRecord(generator);
+
+        generator.writeStartArray();
+
+        for(int i=0;i<=typeState.maxOrdinal();i++) {
+            Object obj = typeState.get(i);
+
+            if(obj != null) {
+                generator.writeStartObject();
+                generator.writeNumberField(ORDINAL_FIELD_NAME, i);
+                serializer.serialize(obj, record);
+                generator.writeEndObject();
+            }
+        }
+
+        generator.writeEndArray();
+    }
+
+    /**
+     * Builds identity ordinal maps over the deserialized objects, rather than using the maps held by the deserialization states, so that
+     * the state engine is left untouched by the export.
+     */
+    private Map<String, ObjectIdentityOrdinalMap> createOrdinalMaps(FastBlobStateEngine stateEngine) {
+        Map<String, ObjectIdentityOrdinalMap> ordinalMaps = new HashMap<String, ObjectIdentityOrdinalMap>();
+
+        for(String typeName : stateEngine.getSerializerNames()) {
+            FastBlobTypeDeserializationState<Object> typeState = stateEngine.getTypeDeserializationState(typeName);
+
+            if(typeState == null)
+                continue;
+
+            List<Object> objects = new ArrayList<Object>(typeState.maxOrdinal() + 1);
+            for(int i=0;i<=typeState.maxOrdinal();i++)
+                objects.add(typeState.get(i));
+
+            ordinalMaps.put(typeName, new ObjectIdentityOrdinalMap(objects));
+        }
+
+        return ordinalMaps;
+    }
+
+}
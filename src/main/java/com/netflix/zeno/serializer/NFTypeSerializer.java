@@ -165,6 +165,19 @@ public abstract class NFTypeSerializer<T> {
         return field;
     }
 
+    /**
+     * A String field whose values are stored once each in the string table type <code>stringTableType</code>, and referenced by ordinal.<p/>
+     *
+     * The string table type must be serialized by a {@link com.netflix.zeno.serializer.common.StringSerializer} with that name, which
+     * should be returned from requiredSubSerializers().  Values are written and read with serializePrimitive() and deserializePrimitiveString().
+     */
+    protected FastBlobSchemaField dictionaryStringField(String name, String stringTableType) {
+        FastBlobSchemaField field = new FastBlobSchemaField();
+        field.name = name;
+        field.type = new TypedFieldDefinition(FieldType.DICTIONARY_STRING, stringTableType);
+        return field;
+    }
+
     protected FastBlobSchemaField listField(String name, String elementType) {
         FastBlobSchemaField field = new FastBlobSchemaField();
         field.name = name;
@@ -0,0 +1,150 @@
+/*
+ *
+ *  Copyright 2014 Netflix, Inc.
+ *
+ *     Licensed under the Apache License, Version 2.0 (the "License");
+ *     you may not use this file except in compliance with the License.
+ *     You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *     Unless required by applicable law or agreed to in writing, software
+ *     distributed under the License is distributed on an "AS IS" BASIS,
+ *     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *     See the License for the specific language governing permissions and
+ *     limitations under the License.
+ *
+ */
+package com.netflix.zeno.util;
+
+import java.util.Arrays;
+
+/**
+ * Least-significant-digit radix sorts for arrays of primitives, producing the same (signed) order as java.util.Arrays.sort().<p/>
+ *
+ * Each sort requires a scratch buffer at least as long as the range being sorted, and a table of digit counts created with
+ * newIntCounts() or newLongCounts(), so that repeated sorts need not allocate.  Passes over digits which are identical
+ * for every element are skipped, so sorting values which span a small range (e.g. ordinals) costs only a few passes.
+ *
+ */
+public final class PrimitiveRadixSort {
+
+    private static final int BITS_PER_DIGIT = 8;
+    private static final int DIGIT_MASK = (1 << BITS_PER_DIGIT) - 1;
+
+    private PrimitiveRadixSort() { }
+
+    /**
+     * Create a table of digit counts for sorting ints.
+     */
+    public static int[][] newIntCounts() {
+        return new int[4][1 << BITS_PER_DIGIT];
+    }
+
+    /**
+     * Create a table of digit counts for sorting longs.
+     */
+    public static int[][] newLongCounts() {
+        return new int[8][1 << BITS_PER_DIGIT];
+    }
+
+    /**
+     * Sort the first length elements of arr.  The counts must have been created with newIntCounts().
+     */
+    public static void sort(int arr[], int length, int buffer[], int counts[][]) {
+        if(length < 2)
+            return;
+
+        clear(counts);
+
+        for(int i=0;i<length;i++) {
+            int value = arr[i] ^ Integer.MIN_VALUE;
+            for(int digit=0;digit<4;digit++)
+                counts[digit][(value >>> (digit * BITS_PER_DIGIT)) & DIGIT_MASK]++;
+        }
+
+        int from[] = arr;
+        int to[] = buffer;
+
+        for(int digit=0;digit<4;digit++) {
+            int shift = digit * BITS_PER_DIGIT;
+            int digitCounts[] = counts[digit];
+
+            if(digitCounts[((from[0] ^ Integer.MIN_VALUE) >>> shift) & DIGIT_MASK] == length)
+                continue;
+
+            toOffsets(digitCounts);
+
+            for(int i=0;i<length;i++) {
+                int value = from[i];
+                to[digitCounts[((value ^ Integer.MIN_VALUE) >>> shift) & DIGIT_MASK]++] = value;
+            }
+
+            int temp[] = from;
+            from = to;
+            to = temp;
+        }
+
+        if(from != arr)
+            System.arraycopy(from, 0, arr, 0, length);
+    }
+
+    /**
+     * Sort the first length elements of arr.  The counts must have been created with newLongCounts().
+     */
+    public static void sort(long arr[], int length, long buffer[], int counts[][]) {
+        if(length < 2)
+            return;
+
+        clear(counts);
+
+        for(int i=0;i<length;i++) {
+            long value = arr[i] ^ Long.MIN_VALUE;
+            for(int digit=0;digit<8;digit++)
+                counts[digit][(int)(value >>> (digit * BITS_PER_DIGIT)) & DIGIT_MASK]++;
+        }
+
+        long from[] = arr;
+        long to[] = buffer;
+
+        for(int digit=0;digit<8;digit++) {
+            int shift = digit * BITS_PER_DIGIT;
+            int digitCounts[] = counts[digit];
+
+            if(digitCounts[(int)((from[0] ^ Long.MIN_VALUE) >>> shift) & DIGIT_MASK] == length)
+                continue;
+
+            toOffsets(digitCounts);
+
+            for(int i=0;i<length;i++) {
+                long value = from[i];
+                to[digitCounts[(int)((value ^ Long.MIN_VALUE) >>> shift) & DIGIT_MASK]++] = value;
+            }
+
+            long temp[] = from;
+            from = to;
+            to = temp;
+        }
+
+        if(from != arr)
+            System.arraycopy(from, 0, arr, 0, length);
+    }
+
+    private static void clear(int counts[][]) {
+        for(int i=0;i<counts.length;i++)
+            Arrays.fill(counts[i], 0);
+    }
+
+    /**
+     * Convert the counts of each digit into the starting offset of each digit.
+     */
+    private static void toOffsets(int digitCounts[]) {
+        int offset = 0;
+        for(int i=0;i<digitCounts.length;i++) {
+            int count = digitCounts[i];
+            digitCounts[i] = offset;
+            offset += count;
+        }
+    }
+
+}
@@ -17,8 +17,12 @@
  */
 package com.netflix.zeno.util.collections.heapfriendly;
 
+import com.netflix.zeno.util.SimultaneousExecutor;
+
 import java.util.Arrays;
-import java.util.LinkedList;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Contains two pools of Object[] arrays.<p/>
@@ -36,7 +40,10 @@ import java.util.LinkedList;
  * segmented arrays with segments from the "current" cycle pool.<p/>
  *
  * At the beginning of each update cycle, we swap the pointers to the "current" and "next" cycle pools.  This way, we're always
- * overwriting the data from 2 cycles ago, and the Object arrays just remain in OldGen.
+ * overwriting the data from 2 cycles ago, and the Object arrays just remain in OldGen.<p/>
+ *
+ * Arrays may be retrieved and returned concurrently, so that many HeapFriendlyHashMaps may be built in parallel.  Swapping and
+ * clearing the pools must still happen between update cycles, while no maps are being built.
  *
  * @author dkoszewnik
  *
@@ -45,41 +52,186 @@ public class HeapFriendlyMapArrayRecycler {
 
     public static final int INDIVIDUAL_OBJECT_ARRAY_SIZE = 4096;
 
-    private LinkedList<Object[]> currentCycleObjects;
-    private LinkedList<Object[]> nextCycleObjects;
+    /// the number of arrays each thread takes from the shared "current" cycle pool at a time
+    private static final int THREAD_CACHE_SIZE = 16;
+
+    private final ThreadLocal<ThreadCache> threadCaches;
+    private final ConcurrentLinkedQueue<ThreadCache> registeredThreadCaches;
+    private final AtomicLong numAllocatedArrays;
+
+    private volatile Pool currentCycleObjects;
+    private volatile Pool nextCycleObjects;
 
     public HeapFriendlyMapArrayRecycler() {
-        this.currentCycleObjects = new LinkedList<Object[]>();
-        this.nextCycleObjects = new LinkedList<Object[]>();
+        this.currentCycleObjects = new Pool();
+        this.nextCycleObjects = new Pool();
+        this.registeredThreadCaches = new ConcurrentLinkedQueue<ThreadCache>();
+        this.numAllocatedArrays = new AtomicLong();
+        this.threadCaches = new ThreadLocal<ThreadCache>() {
+            protected ThreadCache initialValue() {
+                return new ThreadCache();
+            }
+        };
     }
 
+    /**
+     * Retrieve an Object array from the "current" cycle pool, or allocate a new one if the pool is empty.<p/>
+     *
+     * Arrays are taken from the shared pool in small batches, which are cached by the calling thread, so that many maps may
+     * be constructed concurrently without contending on the pool.
+     */
     public Object[] getObjectArray() {
-        if(!currentCycleObjects.isEmpty()) {
-            return currentCycleObjects.removeFirst();
+        ThreadCache cache = threadCaches.get();
+        Pool currentCycleObjects = this.currentCycleObjects;
+
+        if(cache.pool != currentCycleObjects) {
+            cache.returnArrays();
+            cache.pool = currentCycleObjects;
         }
 
+        if(cache.numArrays == 0)
+            cache.takeArrays();
+
+        if(cache.numArrays > 0)
+            return cache.arrays[--cache.numArrays];
+
+        numAllocatedArrays.incrementAndGet();
         return new Object[INDIVIDUAL_OBJECT_ARRAY_SIZE];
     }
 
     public void returnObjectArray(Object[] toReturn) {
-        nextCycleObjects.addLast(toReturn);
+        nextCycleObjects.add(toReturn);
     }
 
     public void clearNextCycleObjectArrays() {
-        for(Object[] arr : nextCycleObjects) {
+        for(Object[] arr : nextCycleObjects.arrays) {
             Arrays.fill(arr, null);
         }
     }
 
-    public void swapCycleObjectArrays() {
-        LinkedList<Object[]> temp = currentCycleObjects;
+    /**
+     * Clear the Object arrays in the "next" cycle pool, dividing the work between the specified number of threads.
+     */
+    public void clearNextCycleObjectArrays(int numThreads) {
+        final Object[][] arrays = nextCycleObjects.arrays.toArray(new Object[0][]);
+        final int arraysPerThread = (arrays.length / numThreads) + 1;
+
+        SimultaneousExecutor executor = new SimultaneousExecutor(numThreads, "heap-friendly-map-array-recycler");
+
+        for(int i=0;i<arrays.length;i+=arraysPerThread) {
+            final int fromIndex = i;
+            final int toIndex = Math.min(i + arraysPerThread, arrays.length);
+
+            executor.execute(new Runnable() {
+                public void run() {
+                    for(int i=fromIndex;i<toIndex;i++)
+                        Arrays.fill(arrays[i], null);
+                }
+            });
+        }
+
+        executor.awaitUninterruptibly();
+    }
+
+    /**
+     * Must not be called while maps are being constructed or released.
+     */
+    public synchronized void swapCycleObjectArrays() {
+        returnThreadCachedArrays();
+
+        Pool temp = currentCycleObjects;
         currentCycleObjects = nextCycleObjects;
         nextCycleObjects = temp;
     }
 
-    public void clear() {
-        currentCycleObjects.clear();
-        nextCycleObjects.clear();
+    /**
+     * Must not be called while maps are being constructed or released.
+     */
+    public synchronized void clear() {
+        returnThreadCachedArrays();
+
+        currentCycleObjects = new Pool();
+        nextCycleObjects = new Pool();
+        numAllocatedArrays.set(0);
+    }
+
+    /**
+     * @return the number of Object arrays allocated by this recycler, each of which holds INDIVIDUAL_OBJECT_ARRAY_SIZE references.
+     */
+    public long getNumAllocatedArrays() {
+        return numAllocatedArrays.get();
+    }
+
+    /**
+     * @return the number of Object arrays available to be handed out during the current cycle.
+     */
+    public int getNumCurrentCycleArrays() {
+        return currentCycleObjects.size.get();
+    }
+
+    /**
+     * @return the number of Object arrays which have been returned during the current cycle.
+     */
+    public int getNumNextCycleArrays() {
+        return nextCycleObjects.size.get();
+    }
+
+    /**
+     * Arrays which remain in thread caches are returned to the pool they were taken from.  This way, arrays cached by threads which have
+     * since terminated are not lost.
+     */
+    private void returnThreadCachedArrays() {
+        ThreadCache cache;
+        while((cache = registeredThreadCaches.poll()) != null) {
+            cache.returnArrays();
+            cache.pool = null;
+            cache.registered = false;
+        }
+    }
+
+    private static class Pool {
+        private final ConcurrentLinkedQueue<Object[]> arrays = new ConcurrentLinkedQueue<Object[]>();
+        private final AtomicInteger size = new AtomicInteger();
+
+        private void add(Object[] arr) {
+            arrays.add(arr);
+            size.incrementAndGet();
+        }
+
+        private Object[] poll() {
+            Object[] arr = arrays.poll();
+            if(arr != null)
+                size.decrementAndGet();
+            return arr;
+        }
+    }
+
+    private class ThreadCache {
+        private final Object[][] arrays = new Object[THREAD_CACHE_SIZE][];
+        private int numArrays;
+        private Pool pool;
+        private volatile boolean registered;
+
+        private void takeArrays() {
+            if(!registered) {
+                registered = true;
+                registeredThreadCaches.add(this);
+            }
+
+            while(numArrays < THREAD_CACHE_SIZE) {
+                Object[] arr = pool.poll();
+                if(arr == null)
+                    return;
+                arrays[numArrays++] = arr;
+            }
+        }
+
+        private void returnArrays() {
+            while(numArrays > 0) {
+                pool.add(arrays[--numArrays]);
+                arrays[numArrays] = null;
+            }
+        }
     }
 
     private final static HeapFriendlyMapArrayRecycler theInstance = new HeapFriendlyMapArrayRecycler();
@@ -0,0 +1,84 @@
+/*
+ *
+ *  Copyright 2014 Netflix, Inc.
+ *
+ *     Licensed under the Apache License, Version 2.0 (the "License");
+ *     you may not use this file except in compliance with the License.
+ *     You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *     Unless required by applicable law or agreed to in writing, software
+ *     distributed under the License is distributed on an "AS IS" BASIS,
+ *     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *     See the License for the specific language governing permissions and
+ *     limitations under the License.
+ *
+ */
+package com.netflix.zeno.diff;
+
+import java.util.BitSet;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class DiffFingerprintIndexTest {
+
+    @Test
+    public void matchesIdenticalFingerprintsByKey() {
+        DiffFingerprintIndex index = new DiffFingerprintIndex();
+
+        for(int i=0;i<10000;i++)
+            index.add(Integer.valueOf(i), i, fingerprint(i));
+
+        Assert.assertEquals(10000, index.size());
+
+        for(int i=0;i<10000;i+=2)
+            Assert.assertTrue(index.matchIdentical(Integer.valueOf(i), fingerprint(i)));
+        for(int i=1;i<10000;i+=4)
+            Assert.assertFalse(index.matchIdentical(Integer.valueOf(i), fingerprint(i + 1)));
+
+        Assert.assertFalse(index.matchIdentical(Integer.valueOf(20000), fingerprint(20000)));
+
+        /// the odd ordinals were either changed or unmatched.
+        BitSet expected = new BitSet();
+        for(int i=1;i<10000;i+=2)
+            expected.set(i);
+        Assert.assertEquals(expected, index.getUnmatchedOrChangedOrdinals());
+    }
+
+    @Test
+    public void collidingKeyHashesAreNeverIdentical() {
+        /// "Aa" and "BB" have the same hashCode()
+        DiffFingerprintIndex index = new DiffFingerprintIndex();
+        index.add("Aa", 0, fingerprint(1));
+        index.add("BB", 1, fingerprint(2));
+        index.add("C", 2, fingerprint(3));
+
+        Assert.assertFalse(index.matchIdentical("Aa", fingerprint(1)));
+        Assert.assertTrue(index.matchIdentical("C", fingerprint(3)));
+
+        BitSet expected = new BitSet();
+        expected.set(0);
+        expected.set(1);
+        Assert.assertEquals(expected, index.getUnmatchedOrChangedOrdinals());
+    }
+
+    @Test
+    public void unfingerprintableObjectsAreNeverIdentical() {
+        DiffFingerprintIndex index = new DiffFingerprintIndex();
+        DiffFingerprintRecord rec = fingerprint(1);
+        rec.unfingerprintable();
+        index.add(Integer.valueOf(1), 0, rec);
+
+        Assert.assertFalse(index.matchIdentical(Integer.valueOf(1), rec));
+        Assert.assertTrue(index.getUnmatchedOrChangedOrdinals().get(0));
+    }
+
+    private DiffFingerprintRecord fingerprint(long value) {
+        DiffFingerprintRecord rec = new DiffFingerprintRecord();
+        rec.write(value);
+        return rec;
+    }
+
+}
@@ -18,12 +18,14 @@
 package com.netflix.zeno.diff;
 
 import com.netflix.zeno.diff.TypeDiff.ObjectDiffScore;
+import com.netflix.zeno.serializer.NFSerializationRecord;
 import com.netflix.zeno.serializer.NFTypeSerializer;
 import com.netflix.zeno.serializer.SerializerFactory;
 import com.netflix.zeno.testpojos.TypeA;
 import com.netflix.zeno.testpojos.TypeASerializer;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
@@ -114,4 +116,66 @@ public class DiffFrameworkTest {
 
     }
 
+    @Test
+    public void skipsIdenticalObjectsWithFingerprintFramework() {
+        List<TypeA> list1 = new ArrayList<TypeA>();
+        List<TypeA> list2 = new ArrayList<TypeA>();
+
+        list1.add(new TypeA(1, 2));
+        list2.add(new TypeA(1, 2));
+
+        list1.add(new TypeA(2, 3));
+        list2.add(new TypeA(2, 4));
+
+        list1.add(new TypeA(5, 7));
+        list2.add(new TypeA(5, 7));
+
+        list1.add(new TypeA(6, 9));
+        list2.add(new TypeA(6, 10));
+
+        TypeDiffInstruction<TypeA> diffInstruction = new TypeDiffInstruction<TypeA>() {
+            public String getSerializerName() {
+                return "TypeA";
+            }
+
+            @Override
+            public Object getKey(TypeA object) {
+                return Integer.valueOf(object.getVal1());
+            }
+        };
+
+        final AtomicInteger fingerprintedObjects = new AtomicInteger();
+
+        DiffFingerprintSerializationFramework fingerprintFramework = new DiffFingerprintSerializationFramework(new SerializerFactory() {
+            public NFTypeSerializer<?>[] createSerializers() {
+                return new NFTypeSerializer<?>[] { new TypeASerializer() {
+                    @Override
+                    public void doSerialize(TypeA value, NFSerializationRecord rec) {
+                        fingerprintedObjects.incrementAndGet();
+                        super.doSerialize(value, rec);
+                    }
+                } };
+            }
+        });
+
+        TypeDiff<TypeA> typeDiff = new TypeDiffOperation<TypeA>(diffInstruction).performDiff(framework, fingerprintFramework, list1, list2, 2);
+
+        Assert.assertEquals(0, typeDiff.getExtraInFrom().size());
+        Assert.assertEquals(0, typeDiff.getExtraInTo().size());
+        Assert.assertEquals(4, typeDiff.getItemCountFrom());
+        Assert.assertEquals(4, typeDiff.getItemCountTo());
+
+        Assert.assertEquals(2, typeDiff.getDiffObjects().size());
+        for (ObjectDiffScore<TypeA> diffScore : typeDiff.getDiffObjects()) {
+            Assert.assertEquals(2, diffScore.getScore());
+            Assert.assertTrue(diffScore.getFrom().equals(new TypeA(2, 3)) || diffScore.getFrom().equals(new TypeA(6, 9)));
+        }
+
+        Assert.assertEquals(1.0, typeDiff.getSortedFieldDifferencesDescending().get(0).getDiffScore().getDiffPercent(), 0.001);
+        Assert.assertEquals(2, typeDiff.getNumSkippedByFingerprint());
+
+        /// each Object is fingerprinted exactly once
+        Assert.assertEquals(8, fingerprintedObjects.get());
+    }
+
 }
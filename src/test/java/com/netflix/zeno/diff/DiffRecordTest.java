@@ -0,0 +1,89 @@
+/*
+ *
+ *  Copyright 2013 Netflix, Inc.
+ *
+ *     Licensed under the Apache License, Version 2.0 (the "License");
+ *     you may not use this file except in compliance with the License.
+ *     You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *     Unless required by applicable law or agreed to in writing, software
+ *     distributed under the License is distributed on an "AS IS" BASIS,
+ *     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *     See the License for the specific language governing permissions and
+ *     limitations under the License.
+ *
+ */
+package com.netflix.zeno.diff;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+
+import org.apache.commons.lang.mutable.MutableInt;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class DiffRecordTest {
+
+    @Test
+    public void storesValuesByInternedPropertyPath() {
+        DiffRecord rec = new DiffRecord();
+        rec.setTopLevelSerializerName("Top");
+
+        rec.serializePrimitive("int", 1);
+        rec.serializePrimitive("int", Integer.valueOf(2));
+        rec.serializeObject("sub");
+        rec.serializePrimitive("double", 1.5d);
+        rec.serializePrimitive("string", "hello");
+        rec.finishedObject();
+
+        DiffRecordValueListMap values = rec.getValueListMap();
+
+        List<Object> ints = values.getList(new DiffPropertyPath("Top", new String[] { "int" }));
+        Assert.assertEquals(new HashSet<Object>(Arrays.<Object>asList(1, 2)), new HashSet<Object>(ints));
+        Assert.assertEquals(Arrays.<Object>asList(Double.valueOf(1.5d)), values.getList(new DiffPropertyPath("Top", new String[] { "sub", "double" })));
+        Assert.assertEquals(Arrays.<Object>asList("hello"), values.getList(new DiffPropertyPath("Top", new String[] { "sub", "string" })));
+        Assert.assertNull(values.getList(new DiffPropertyPath("Top", new String[] { "sub" })));
+
+        int numKeys = 0;
+        for(DiffPropertyPath key : values.keySet()) {
+            Assert.assertNotNull(values.getList(key));
+            numKeys++;
+        }
+        Assert.assertEquals(3, numKeys);
+
+        rec.clear();
+
+        Assert.assertNull(values.getList(new DiffPropertyPath("Top", new String[] { "int" })));
+        Assert.assertFalse(values.keySet().iterator().hasNext());
+    }
+
+    @Test
+    public void countsUnmatchedValuesAcrossPrimitiveTypes() {
+        DiffRecord rec1 = new DiffRecord();
+        DiffRecord rec2 = new DiffRecord();
+        rec1.setTopLevelSerializerName("Top");
+        rec2.setTopLevelSerializerName("Top");
+
+        rec1.serializePrimitive("value", 1);
+        rec1.serializePrimitive("value", 1L);
+        rec1.serializePrimitive("value", 3);
+        rec1.serializePrimitive("value", "x");
+
+        rec2.serializePrimitive("value", Integer.valueOf(3));
+        rec2.serializePrimitive("value", 1);
+        rec2.serializePrimitive("value", 1);
+        rec2.serializePrimitive("value", "x");
+
+        DiffRecordValueListMap.ValueColumn column1 = rec1.getValueListMap().getUsedColumn(0);
+        DiffRecordValueListMap.ValueColumn column2 = rec2.getValueListMap().getUsedColumn(0);
+
+        /// the Long 1 and the second Integer 1 are unmatched
+        Assert.assertEquals(2, column1.countUnmatched(column2, new HashMap<Object, MutableInt>()));
+    }
+
+}
@@ -0,0 +1,109 @@
+/*
+ *
+ *  Copyright 2013 Netflix, Inc.
+ *
+ *     Licensed under the Apache License, Version 2.0 (the "License");
+ *     you may not use this file except in compliance with the License.
+ *     You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *     Unless required by applicable law or agreed to in writing, software
+ *     distributed under the License is distributed on an "AS IS" BASIS,
+ *     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *     See the License for the specific language governing permissions and
+ *     limitations under the License.
+ *
+ */
+package com.netflix.zeno.diff;
+
+import com.netflix.zeno.genericobject.GenericObject.Field;
+import com.netflix.zeno.genericobject.MinHashPairwiseMatcher;
+import com.netflix.zeno.serializer.NFTypeSerializer;
+import com.netflix.zeno.serializer.SerializerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class MinHashPairwiseMatcherTest {
+
+    private DiffSerializationFramework diffFramework = null;
+
+    private final List<Field> objects1 = new ArrayList<Field>();
+    private final List<Field> objects2 = new ArrayList<Field>();
+    private final List<DiffRecord> recs1 = new ArrayList<DiffRecord>();
+    private final List<DiffRecord> recs2 = new ArrayList<DiffRecord>();
+
+    @Before
+    public void setUp() {
+        diffFramework = new DiffSerializationFramework(new SerializerFactory() {
+            public NFTypeSerializer<?>[] createSerializers() {
+                return new NFTypeSerializer<?>[] { new ASerializer() };
+            }
+        });
+    }
+
+    @Test
+    public void matchesIdenticalPairsInLargeCollections() {
+        for(int i=0;i<200;i++) {
+            addObject(new TypeB(i, i * 2, i * 3), objects1, recs1);
+        }
+
+        for(int i=199;i>=0;i--) {
+            addObject(new TypeB(i, i * 2, i * 3), objects2, recs2);
+        }
+        addObject(new TypeB(-1, -1, -1), objects2, recs2);
+
+        MinHashPairwiseMatcher matcher = new MinHashPairwiseMatcher(objects1, recs1, objects2, recs2);
+
+        for(int i=0;i<200;i++) {
+            Assert.assertTrue(matcher.nextPair());
+            Assert.assertEquals(matcher.getX().getValue(), matcher.getY().getValue());
+        }
+
+        Assert.assertTrue(matcher.nextPair());
+        Assert.assertNull(matcher.getX());
+        Assert.assertEquals(new TypeB(-1, -1, -1), matcher.getY().getValue());
+        Assert.assertFalse(matcher.nextPair());
+    }
+
+    @Test
+    public void matchesMostSimilarPairsFirst() {
+        addObject(new TypeB(1, 1, 1), objects1, recs1);
+        addObject(new TypeB(3, 3, 3), objects1, recs1);
+        addObject(new TypeB(7, 8, 9), objects1, recs1);
+
+        addObject(new TypeB(3, 3, 3), objects2, recs2);
+        addObject(new TypeB(1, 1, 2), objects2, recs2);
+
+        MinHashPairwiseMatcher matcher = new MinHashPairwiseMatcher(objects1, recs1, objects2, recs2);
+
+        Assert.assertTrue(matcher.nextPair());
+        Assert.assertEquals(new TypeB(3, 3, 3), matcher.getX().getValue());
+        Assert.assertEquals(new TypeB(3, 3, 3), matcher.getY().getValue());
+        Assert.assertTrue(matcher.nextPair());
+        Assert.assertEquals(new TypeB(1, 1, 1), matcher.getX().getValue());
+        Assert.assertEquals(new TypeB(1, 1, 2), matcher.getY().getValue());
+        Assert.assertTrue(matcher.nextPair());
+        Assert.assertEquals(new TypeB(7, 8, 9), matcher.getX().getValue());
+        Assert.assertNull(matcher.getY());
+        Assert.assertFalse(matcher.nextPair());
+    }
+
+    @SuppressWarnings("unchecked")
+    private void addObject(Object obj, List<Field> objs, List<DiffRecord> recs) {
+        NFTypeSerializer<Object> serializer = (NFTypeSerializer<Object>) diffFramework.getSerializer("TypeB");
+        DiffRecord rec = new DiffRecord();
+        rec.setSchema(serializer.getFastBlobSchema());
+        rec.setTopLevelSerializerName("TypeB");
+        serializer.serialize(obj, rec);
+
+        objs.add(new Field("obj", obj));
+        recs.add(rec);
+    }
+
+}
@@ -0,0 +1,246 @@
+/*
+ *
+ *  Copyright 2013 Netflix, Inc.
+ *
+ *     Licensed under the Apache License, Version 2.0 (the "License");
+ *     you may not use this file except in compliance with the License.
+ *     You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *     Unless required by applicable law or agreed to in writing, software
+ *     distributed under the License is distributed on an "AS IS" BASIS,
+ *     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *     See the License for the specific language governing permissions and
+ *     limitations under the License.
+ *
+ */
+package com.netflix.zeno.diff;
+
+import com.netflix.zeno.diff.TypeDiff.FieldDiffScore;
+import com.netflix.zeno.diff.TypeDiff.ObjectDiffScore;
+import com.netflix.zeno.fastblob.FastBlobStateEngine;
+import com.netflix.zeno.fastblob.io.FastBlobReader;
+import com.netflix.zeno.fastblob.io.FastBlobWriter;
+import com.netflix.zeno.serializer.NFTypeSerializer;
+import com.netflix.zeno.serializer.SerializerFactory;
+import com.netflix.zeno.testpojos.TypeA;
+import com.netflix.zeno.testpojos.TypeASerializer;
+import com.netflix.zeno.testpojos.TypeB;
+import com.netflix.zeno.testpojos.TypeC;
+import com.netflix.zeno.testpojos.TypeCSerializer;
+import com.netflix.zeno.testpojos.TypeD;
+import com.netflix.zeno.testpojos.TypeDSerializer;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class SnapshotFileDiffOperationTest {
+
+    private final SerializerFactory factory = new SerializerFactory() {
+        public NFTypeSerializer<?>[] createSerializers() {
+            return new NFTypeSerializer<?>[] { new TypeASerializer() };
+        }
+    };
+
+    private File fromSnapshot;
+    private File toSnapshot;
+
+    @Before
+    public void setUp() throws IOException {
+        fromSnapshot = File.createTempFile("diff-from", ".snapshot");
+        toSnapshot = File.createTempFile("diff-to", ".snapshot");
+
+        writeSnapshot(fromSnapshot, new TypeA(1, 2), new TypeA(2, 3), new TypeA(3, 4), new TypeA(5, 7), new TypeA(6, 9), new TypeA(7, 11));
+        writeSnapshot(toSnapshot, new TypeA(1, 2), new TypeA(2, 4), new TypeA(4, 6), new TypeA(5, 7), new TypeA(6, 10), new TypeA(8, 12));
+    }
+
+    @After
+    public void tearDown() {
+        fromSnapshot.delete();
+        toSnapshot.delete();
+    }
+
+    @Test
+    public void diffsSnapshotFiles() throws Exception {
+        DiffOperation diffOperation = diffOperation();
+
+        DiffReport report = diffOperation.performDiff(null, fromSnapshot, toSnapshot);
+        TypeDiff<TypeA> typeDiff = report.getTypeDiff("TypeA");
+
+        Assert.assertEquals(6, typeDiff.getItemCountFrom());
+        Assert.assertEquals(6, typeDiff.getItemCountTo());
+
+        Assert.assertEquals(2, typeDiff.getExtraInFrom().size());
+        Assert.assertTrue(typeDiff.getExtraInFrom().contains(new TypeA(3, 4)));
+        Assert.assertTrue(typeDiff.getExtraInFrom().contains(new TypeA(7, 11)));
+
+        Assert.assertEquals(2, typeDiff.getExtraInTo().size());
+        Assert.assertTrue(typeDiff.getExtraInTo().contains(new TypeA(4, 6)));
+        Assert.assertTrue(typeDiff.getExtraInTo().contains(new TypeA(8, 12)));
+
+        Set<TypeA> diffFrom = new HashSet<TypeA>();
+        for(ObjectDiffScore<TypeA> diffScore : typeDiff.getDiffObjects()) {
+            Assert.assertEquals(2, diffScore.getScore());
+            diffFrom.add(diffScore.getFrom());
+        }
+
+        Assert.assertEquals(2, diffFrom.size());
+        Assert.assertTrue(diffFrom.contains(new TypeA(2, 3)));
+        Assert.assertTrue(diffFrom.contains(new TypeA(6, 9)));
+        Assert.assertEquals(4, report.getTotalDiffs());
+    }
+
+    @Test
+    public void skipsIdenticalPairsAndMatchesInMemoryDiff() throws Exception {
+        TypeDiff<TypeA> fileDiff = diffOperation().performDiff(null, fromSnapshot, toSnapshot).getTypeDiff("TypeA");
+
+        DiffOperation inMemoryOperation = diffOperation();
+        inMemoryOperation.setSkipIdenticalObjects(true);
+        TypeDiff<TypeA> inMemoryDiff = inMemoryOperation.performDiff(readSnapshot(fromSnapshot, factory), readSnapshot(toSnapshot, factory)).getTypeDiff("TypeA");
+
+        Assert.assertEquals(inMemoryDiff.getItemCountFrom(), fileDiff.getItemCountFrom());
+        Assert.assertEquals(inMemoryDiff.getItemCountTo(), fileDiff.getItemCountTo());
+        Assert.assertEquals(new HashSet<TypeA>(inMemoryDiff.getExtraInFrom()), new HashSet<TypeA>(fileDiff.getExtraInFrom()));
+        Assert.assertEquals(new HashSet<TypeA>(inMemoryDiff.getExtraInTo()), new HashSet<TypeA>(fileDiff.getExtraInTo()));
+        Assert.assertEquals(diffScores(inMemoryDiff), diffScores(fileDiff));
+        Assert.assertEquals(inMemoryDiff.getTotalDiffs(), fileDiff.getTotalDiffs());
+        Assert.assertEquals(2, fileDiff.getNumSkippedByFingerprint());
+        Assert.assertEquals(inMemoryDiff.getNumSkippedByFingerprint(), fileDiff.getNumSkippedByFingerprint());
+
+        /// without skipping, the identical pairs (1, 2) and (5, 7) would also be compared field by field.
+        TypeDiff<TypeA> unskippedDiff = diffOperation().performDiff(readSnapshot(fromSnapshot, factory), readSnapshot(toSnapshot, factory)).getTypeDiff("TypeA");
+
+        Assert.assertEquals(inMemoryDiff.getFieldDifferences().keySet(), fileDiff.getFieldDifferences().keySet());
+        for(Map.Entry<DiffPropertyPath, FieldDiffScore<TypeA>> entry : fileDiff.getFieldDifferences().entrySet()) {
+            FieldDiffScore<TypeA> inMemoryScore = inMemoryDiff.getFieldDifferences().get(entry.getKey());
+            Assert.assertEquals(inMemoryScore.getDiffCount(), entry.getValue().getDiffCount());
+            Assert.assertEquals(inMemoryScore.getTotalCount(), entry.getValue().getTotalCount());
+
+            FieldDiffScore<TypeA> unskippedScore = unskippedDiff.getFieldDifferences().get(entry.getKey());
+            Assert.assertEquals(unskippedScore.getTotalCount() / 2, entry.getValue().getTotalCount());
+        }
+    }
+
+    @Test
+    public void diffsReferencedTypesOfLargerDataModels() throws Exception {
+        SerializerFactory modelFactory = new SerializerFactory() {
+            public NFTypeSerializer<?>[] createSerializers() {
+                return new NFTypeSerializer<?>[] { new TypeCSerializer(), new TypeDSerializer() };
+            }
+        };
+
+        FastBlobStateEngine fromState = new FastBlobStateEngine(modelFactory);
+        fromState.add("TypeC", typeC(new TypeB(1, "one"), new TypeB(2, "two")));
+        fromState.add("TypeC", typeC(new TypeB(3, "three"), new TypeB(4, "four")));
+        fromState.add("TypeC", typeC(new TypeB(5, "five")));
+        fromState.add("TypeD", new TypeD(Integer.valueOf(1), new TypeA(1, 2)));
+        writeSnapshot(fromSnapshot, fromState);
+
+        FastBlobStateEngine toState = new FastBlobStateEngine(modelFactory);
+        toState.add("TypeC", typeC(new TypeB(1, "one"), new TypeB(2, "deux")));
+        toState.add("TypeC", typeC(new TypeB(3, "three"), new TypeB(6, "six")));
+        toState.add("TypeC", typeC(new TypeB(5, "five")));
+        toState.add("TypeD", new TypeD(Integer.valueOf(2), new TypeA(3, 4)));
+        writeSnapshot(toSnapshot, toState);
+
+        /// the instruction's type is only reachable through the TypeC -> List<TypeB> hierarchy.
+        DiffInstruction instruction = new DiffInstruction(new TypeDiffInstruction<TypeB>() {
+            public String getSerializerName() {
+                return "TypeB";
+            }
+
+            public Object getKey(TypeB object) {
+                return Integer.valueOf(object.getVal1());
+            }
+        });
+
+        TypeDiff<TypeB> fileDiff = new DiffOperation(modelFactory, instruction).performDiff(null, fromSnapshot, toSnapshot).getTypeDiff("TypeB");
+
+        DiffOperation inMemoryOperation = new DiffOperation(modelFactory, instruction);
+        inMemoryOperation.setSkipIdenticalObjects(true);
+        TypeDiff<TypeB> inMemoryDiff = inMemoryOperation.performDiff(readSnapshot(fromSnapshot, modelFactory), readSnapshot(toSnapshot, modelFactory)).getTypeDiff("TypeB");
+
+        Assert.assertEquals(5, fileDiff.getItemCountFrom());
+        Assert.assertEquals(5, fileDiff.getItemCountTo());
+        Assert.assertEquals(3, fileDiff.getNumSkippedByFingerprint());
+        Assert.assertEquals(Collections.singletonList(new TypeB(4, "four")), fileDiff.getExtraInFrom());
+        Assert.assertEquals(Collections.singletonList(new TypeB(6, "six")), fileDiff.getExtraInTo());
+        Assert.assertEquals(1, fileDiff.getDiffObjects().size());
+        Assert.assertEquals(new TypeB(2, "two"), fileDiff.getDiffObjects().get(0).getFrom());
+
+        Assert.assertEquals(inMemoryDiff.getItemCountFrom(), fileDiff.getItemCountFrom());
+        Assert.assertEquals(inMemoryDiff.getItemCountTo(), fileDiff.getItemCountTo());
+        Assert.assertEquals(inMemoryDiff.getNumSkippedByFingerprint(), fileDiff.getNumSkippedByFingerprint());
+        Assert.assertEquals(inMemoryDiff.getTotalDiffs(), fileDiff.getTotalDiffs());
+    }
+
+    private TypeC typeC(TypeB... typeBs) {
+        return new TypeC(new HashMap<String, TypeA>(), Arrays.asList(typeBs));
+    }
+
+    private Set<String> diffScores(TypeDiff<TypeA> typeDiff) {
+        Set<String> scores = new HashSet<String>();
+        for(ObjectDiffScore<TypeA> diffScore : typeDiff.getDiffObjects())
+            scores.add(diffScore.getFrom().getVal1() + ":" + diffScore.getScore());
+        return scores;
+    }
+
+    private DiffOperation diffOperation() {
+        return new DiffOperation(factory, new DiffInstruction(new TypeDiffInstruction<TypeA>() {
+            public String getSerializerName() {
+                return "TypeA";
+            }
+
+            public Object getKey(TypeA object) {
+                return Integer.valueOf(object.getVal1());
+            }
+        }));
+    }
+
+    private FastBlobStateEngine readSnapshot(File file, SerializerFactory factory) throws IOException {
+        FastBlobStateEngine stateEngine = new FastBlobStateEngine(factory);
+        InputStream is = new FileInputStream(file);
+        try {
+            new FastBlobReader(stateEngine).readSnapshot(is);
+        } finally {
+            is.close();
+        }
+        return stateEngine;
+    }
+
+    private void writeSnapshot(File file, TypeA... objects) throws IOException {
+        FastBlobStateEngine stateEngine = new FastBlobStateEngine(factory);
+        for(TypeA a : objects) {
+            stateEngine.add("TypeA", a);
+        }
+        writeSnapshot(file, stateEngine);
+    }
+
+    private void writeSnapshot(File file, FastBlobStateEngine stateEngine) throws IOException {
+        stateEngine.prepareForWrite();
+
+        DataOutputStream os = new DataOutputStream(new FileOutputStream(file));
+        try {
+            new FastBlobWriter(stateEngine).writeSnapshot(os);
+        } finally {
+            os.close();
+        }
+    }
+
+}
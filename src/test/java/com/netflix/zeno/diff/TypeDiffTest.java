@@ -0,0 +1,78 @@
+/*
+ *
+ *  Copyright 2013 Netflix, Inc.
+ *
+ *     Licensed under the Apache License, Version 2.0 (the "License");
+ *     you may not use this file except in compliance with the License.
+ *     You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *     Unless required by applicable law or agreed to in writing, software
+ *     distributed under the License is distributed on an "AS IS" BASIS,
+ *     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *     See the License for the specific language governing permissions and
+ *     limitations under the License.
+ *
+ */
+package com.netflix.zeno.diff;
+
+import com.netflix.zeno.diff.TypeDiff.ObjectDiffScore;
+
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TypeDiffTest {
+
+    @Test
+    public void retainsHighestScoringSamplesWithExactCounts() {
+        TypeDiff<Integer> diff1 = new TypeDiff<Integer>("Test", 3);
+        TypeDiff<Integer> diff2 = new TypeDiff<Integer>("Test", 3);
+
+        for(int i=0;i<100;i++) {
+            TypeDiff<Integer> diff = i % 2 == 0 ? diff1 : diff2;
+            int score = (i * 37) % 100 + 1;
+            diff.addDiffObject(Integer.valueOf(i), Integer.valueOf(i), score);
+            diff.addExtraInFrom(Integer.valueOf(i));
+        }
+        diff2.addExtraInTo(Integer.valueOf(1000));
+
+        TypeDiff<Integer> merged = new TypeDiff<Integer>("Test", 3);
+        merged.merge(diff1);
+        merged.merge(diff2);
+
+        Assert.assertEquals(100, merged.getNumDiffObjects());
+        Assert.assertEquals(5050, merged.getTotalDiffs());
+        Assert.assertEquals(100, merged.getNumExtraInFrom());
+        Assert.assertEquals(1, merged.getNumExtraInTo());
+        Assert.assertEquals(3, merged.getExtraInFrom().size());
+        Assert.assertEquals(1, merged.getExtraInTo().size());
+
+        List<ObjectDiffScore<Integer>> sorted = merged.getSortedDiffObjects();
+        Assert.assertEquals(3, sorted.size());
+        Assert.assertEquals(100, sorted.get(0).getScore());
+        Assert.assertEquals(99, sorted.get(1).getScore());
+        Assert.assertEquals(98, sorted.get(2).getScore());
+
+        DiffReport report = new DiffReport(null, Collections.<TypeDiff<?>>singletonList(merged));
+        Assert.assertEquals(5050, report.getTotalDiffs());
+        Assert.assertEquals(101, report.getTotalExtra());
+    }
+
+    @Test
+    public void retainsAllSamplesWhenUnbounded() {
+        TypeDiff<Integer> diff = new TypeDiff<Integer>("Test");
+
+        for(int i=0;i<10;i++) {
+            diff.addDiffObject(Integer.valueOf(i), Integer.valueOf(i), i + 1);
+        }
+
+        Assert.assertEquals(10, diff.getDiffObjects().size());
+        Assert.assertEquals(1, diff.getDiffObjects().get(0).getScore());
+        Assert.assertEquals(55, diff.getTotalDiffs());
+    }
+
+}
@@ -0,0 +1,40 @@
+package com.netflix.zeno.diff.history;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.netflix.zeno.fastblob.record.ByteDataBuffer;
+import com.netflix.zeno.fastblob.record.SegmentedByteArrayHasher;
+
+public class DiffHistoryKeyEncoderTest {
+
+    private final DiffHistoryKeyEncoder encoder = new DiffHistoryKeyEncoder();
+
+    @Test
+    public void hashesTheEncodedValueRatherThanHashCode() {
+        ByteDataBuffer expected = new ByteDataBuffer();
+        expected.write((byte)2);  // Integer
+        expected.write((byte)1);
+
+        Assert.assertEquals(SegmentedByteArrayHasher.hashCode(expected), encoder.hash(Integer.valueOf(1)));
+    }
+
+    @Test
+    public void equalKeysHashEqually() {
+        Assert.assertEquals(encoder.hash("key"), encoder.hash(new String("key")));
+        Assert.assertEquals(encoder.hash(TimeUnit.SECONDS), encoder.hash(TimeUnit.valueOf("SECONDS")));
+        Assert.assertEquals(encoder.hash(Arrays.<Object>asList(1L, TimeUnit.DAYS)), encoder.hash(Arrays.<Object>asList(Long.valueOf(1), TimeUnit.DAYS)));
+
+        Assert.assertFalse(encoder.hash(TimeUnit.SECONDS) == encoder.hash(TimeUnit.DAYS));
+        Assert.assertFalse(encoder.hash(Integer.valueOf(1)) == encoder.hash(Long.valueOf(1)));
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void rejectsKeysWithIdentityHashCodes() {
+        encoder.hash(new Object());
+    }
+
+}
@@ -10,6 +10,7 @@ import org.junit.Test;
 import com.netflix.zeno.diff.DiffInstruction;
 import com.netflix.zeno.diff.TypeDiffInstruction;
 import com.netflix.zeno.fastblob.FastBlobStateEngine;
+import com.netflix.zeno.serializer.SerializerFactory;
 import com.netflix.zeno.testpojos.TypeA;
 
 public class DiffHistoryTrackerGroupedKeyTest extends DiffHistoryAbstractTest {
@@ -25,8 +26,23 @@ public class DiffHistoryTrackerGroupedKeyTest extends DiffHistoryAbstractTest {
 
     @Test
     public void testHistory() throws IOException {
-        diffHistory = diffHistoryTracker();
+        diffHistory = diffHistoryTracker(null);
+        assertHistory();
+    }
+
+    @Test
+    public void testCompactHistory() throws IOException {
+        diffHistory = diffHistoryTracker(serializerFactory());
+        assertHistory();
+    }
+
+    @Test
+    public void testIncrementalHistory() throws IOException {
+        diffHistory = new DiffHistoryTracker(10, stateEngine, diffInstruction(), serializerFactory(), null, true);
+        assertHistory();
+    }
 
+    private void assertHistory() throws IOException {
         addHistoricalState(2, 1, 1, 1);
         addHistoricalState(2, 1, 1, 3);
         addHistoricalState(2, 2, 1, 3);
@@ -69,26 +85,27 @@ public class DiffHistoryTrackerGroupedKeyTest extends DiffHistoryAbstractTest {
         diffHistory.addState();
     }
 
-    private DiffHistoryTracker diffHistoryTracker() {
-        return new DiffHistoryTracker(10,
-                stateEngine,
-                new DiffInstruction(
-                    new TypeDiffInstruction<TypeA>() {
-                        public String getSerializerName() {
-                            return "TypeA";
-                        }
-
-                        public Object getKey(TypeA object) {
-                            return Integer.valueOf(object.getVal2());
-                        }
-
-                        @Override
-                        public boolean isUniqueKey() {
-                            return false;
-                        }
-                    }
-                )
-            );
+    private DiffHistoryTracker diffHistoryTracker(SerializerFactory historySerializerFactory) {
+        return new DiffHistoryTracker(10, stateEngine, diffInstruction(), historySerializerFactory);
+    }
+
+    private DiffInstruction diffInstruction() {
+        return new DiffInstruction(
+            new TypeDiffInstruction<TypeA>() {
+                public String getSerializerName() {
+                    return "TypeA";
+                }
+
+                public Object getKey(TypeA object) {
+                    return Integer.valueOf(object.getVal2());
+                }
+
+                @Override
+                public boolean isUniqueKey() {
+                    return false;
+                }
+            }
+        );
     }
 
     private void assertArraysContainSameElements(int expected[], int actual[]) {
@@ -17,6 +17,7 @@
  */
 package com.netflix.zeno.diff.history;
 
+import java.io.File;
 import java.io.IOException;
 import java.util.List;
 
@@ -27,6 +28,7 @@ import org.junit.Test;
 import com.netflix.zeno.diff.DiffInstruction;
 import com.netflix.zeno.diff.TypeDiffInstruction;
 import com.netflix.zeno.fastblob.FastBlobStateEngine;
+import com.netflix.zeno.serializer.SerializerFactory;
 import com.netflix.zeno.testpojos.TypeA;
 
 public class DiffHistoryTrackerUniqueKeyTest extends DiffHistoryAbstractTest {
@@ -42,8 +44,48 @@ public class DiffHistoryTrackerUniqueKeyTest extends DiffHistoryAbstractTest {
 
     @Test
     public void testHistory() throws IOException {
-        diffHistory = diffHistoryTracker();
+        diffHistory = diffHistoryTracker(null);
+        assertHistory();
+    }
+
+    @Test
+    public void testCompactHistory() throws IOException {
+        diffHistory = diffHistoryTracker(serializerFactory());
+        assertHistory();
+    }
+
+    @Test
+    public void testIncrementalHistory() throws IOException {
+        diffHistory = new DiffHistoryTracker(10, stateEngine, diffInstruction(), serializerFactory(), null, true);
+        assertHistory();
+    }
+
+    @Test
+    public void testLoggedHistory() throws IOException {
+        File logFile = File.createTempFile("diff-history", ".log");
+        logFile.deleteOnExit();
 
+        DiffHistoryLog historyLog = new DiffHistoryLog(logFile);
+        diffHistory = diffHistoryTracker(2, historyLog);
+        assertHistory();
+
+        Assert.assertEquals(6, historyLog.numStates());
+        Assert.assertNotNull(diffHistory.getHistoricalStateHeaderTags("2"));
+        historyLog.close();
+
+        /// the history survives a restart, once the tracker has seen the current state.
+        historyLog = new DiffHistoryLog(logFile);
+        diffHistory = diffHistoryTracker(2, historyLog);
+        diffHistory.addState();
+        assertObjectHistories();
+
+        Assert.assertEquals(6, diffHistory.getObjectHistory("TypeA", Integer.valueOf(1)).size());
+        Assert.assertNotNull(diffHistory.getHistoricalStateHeaderTags("2"));
+        Assert.assertEquals(6, historyLog.numStates());
+        historyLog.close();
+    }
+
+    private void assertHistory() throws IOException {
         addHistoricalState(1,    null, null, 1);
         addHistoricalState(2,    null,    1, 1);
         addHistoricalState(null,    1,    1, 1);
@@ -52,6 +94,10 @@ public class DiffHistoryTrackerUniqueKeyTest extends DiffHistoryAbstractTest {
         addHistoricalState(3,    null,    2, 1);
         addHistoricalState(null, null,    2, 1);
 
+        assertObjectHistories();
+    }
+
+    private void assertObjectHistories() {
         List<DiffObjectHistoricalTransition<TypeA>> object1History = diffHistory.getObjectHistory("TypeA", Integer.valueOf(1));
         List<DiffObjectHistoricalTransition<TypeA>> object2History = diffHistory.getObjectHistory("TypeA", Integer.valueOf(2));
         List<DiffObjectHistoricalTransition<TypeA>> object3History = diffHistory.getObjectHistory("TypeA", Integer.valueOf(3));
@@ -91,21 +137,30 @@ public class DiffHistoryTrackerUniqueKeyTest extends DiffHistoryAbstractTest {
         diffHistory.addState();
     }
 
-    private DiffHistoryTracker diffHistoryTracker() {
-        return new DiffHistoryTracker(10,
-                stateEngine,
-                new DiffInstruction(
-                    new TypeDiffInstruction<TypeA>() {
-                        public String getSerializerName() {
-                            return "TypeA";
-                        }
-
-                        public Object getKey(TypeA object) {
-                            return Integer.valueOf(object.getVal1());
-                        }
-                    }
-                )
-            );
+    private DiffHistoryTracker diffHistoryTracker(SerializerFactory historySerializerFactory) {
+        return diffHistoryTracker(10, historySerializerFactory, null);
+    }
+
+    private DiffHistoryTracker diffHistoryTracker(int numStatesToKeepInMemory, DiffHistoryLog historyLog) {
+        return diffHistoryTracker(numStatesToKeepInMemory, serializerFactory(), historyLog);
+    }
+
+    private DiffHistoryTracker diffHistoryTracker(int numStatesToKeepInMemory, SerializerFactory historySerializerFactory, DiffHistoryLog historyLog) {
+        return new DiffHistoryTracker(numStatesToKeepInMemory, stateEngine, diffInstruction(), historySerializerFactory, historyLog);
+    }
+
+    private DiffInstruction diffInstruction() {
+        return new DiffInstruction(
+            new TypeDiffInstruction<TypeA>() {
+                public String getSerializerName() {
+                    return "TypeA";
+                }
+
+                public Object getKey(TypeA object) {
+                    return Integer.valueOf(object.getVal1());
+                }
+            }
+        );
     }
 
 }
@@ -0,0 +1,130 @@
+/*
+ *
+ *  Copyright 2013 Netflix, Inc.
+ *
+ *     Licensed under the Apache License, Version 2.0 (the "License");
+ *     you may not use this file except in compliance with the License.
+ *     You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *     Unless required by applicable law or agreed to in writing, software
+ *     distributed under the License is distributed on an "AS IS" BASIS,
+ *     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *     See the License for the specific language governing permissions and
+ *     limitations under the License.
+ *
+ */
+package com.netflix.zeno.fastblob;
+
+import com.netflix.zeno.fastblob.record.schema.FastBlobSchema;
+import com.netflix.zeno.fastblob.state.FastBlobTypeDeserializationState;
+import com.netflix.zeno.serializer.NFDeserializationRecord;
+import com.netflix.zeno.serializer.NFSerializationRecord;
+import com.netflix.zeno.serializer.NFTypeSerializer;
+import com.netflix.zeno.serializer.SerializerFactory;
+import com.netflix.zeno.serializer.common.StringSerializer;
+
+import java.util.Collection;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class DictionaryStringSerializationTest extends BlobSerializationAbstract {
+
+    @Override
+    @Before
+    public void setUp() throws Exception {
+        serializationState = new FastBlobStateEngine(new SerializerFactory() {
+            public NFTypeSerializer<?>[] createSerializers() {
+                return new NFTypeSerializer<?>[] { new LocalizedSerializer() };
+            }
+        });
+        super.setUp();
+    }
+
+    @Test
+    public void deserializesCanonicalStringInstances() throws Exception {
+        cache("Localized", new Localized(1, new String("en-US")));
+        cache("Localized", new Localized(2, new String("en-US")));
+        cache("Localized", new Localized(3, new String("fr-FR")));
+        cache("Localized", new Localized(4, null));
+
+        serializeAndDeserializeSnapshot();
+
+        FastBlobTypeDeserializationState<String> stringTable = serializationState.getTypeDeserializationState("Locales");
+        Assert.assertEquals(2, stringTable.countObjects());
+
+        Localized en1 = find(1);
+        Localized en2 = find(2);
+
+        Assert.assertEquals("en-US", en1.locale);
+        Assert.assertSame(en1.locale, en2.locale);
+        Assert.assertEquals("fr-FR", find(3).locale);
+        Assert.assertNull(find(4).locale);
+    }
+
+    @Test
+    public void dictionaryStringsSurviveDeltas() throws Exception {
+        cache("Localized", new Localized(1, "en-US"));
+        serializeAndDeserializeSnapshot();
+
+        cache("Localized", new Localized(1, "en-US"));
+        cache("Localized", new Localized(2, "de-DE"));
+        serializeAndDeserializeDelta();
+
+        Assert.assertEquals("en-US", find(1).locale);
+        Assert.assertEquals("de-DE", find(2).locale);
+    }
+
+    private Localized find(int id) {
+        for(Localized l : this.<Localized>getAll("Localized")) {
+            if(l.id == id)
+                return l;
+        }
+        return null;
+    }
+
+    private static class Localized {
+        private final int id;
+        private final String locale;
+
+        public Localized(int id, String locale) {
+            this.id = id;
+            this.locale = locale;
+        }
+    }
+
+    private static class LocalizedSerializer extends NFTypeSerializer<Localized> {
+
+        public LocalizedSerializer() {
+            super("Localized");
+        }
+
+        @Override
+        public void doSerialize(Localized value, NFSerializationRecord rec) {
+            serializePrimitive(rec, "id", value.id);
+            serializePrimitive(rec, "locale", value.locale);
+        }
+
+        @Override
+        protected Localized doDeserialize(NFDeserializationRecord rec) {
+            return new Localized(deserializeInteger(rec, "id"), deserializePrimitiveString(rec, "locale"));
+        }
+
+        @Override
+        protected FastBlobSchema createSchema() {
+            return schema(
+                    field("id", FastBlobSchema.FieldType.INT),
+                    dictionaryStringField("locale", "Locales")
+            );
+        }
+
+        @Override
+        public Collection<NFTypeSerializer<?>> requiredSubSerializers() {
+            return serializers(new StringSerializer("Locales"));
+        }
+    }
+
+}
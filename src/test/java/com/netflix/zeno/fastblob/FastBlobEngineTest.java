@@ -3,10 +3,15 @@ package com.netflix.zeno.fastblob;
 import com.netflix.zeno.fastblob.io.FastBlobReader;
 import com.netflix.zeno.fastblob.io.FastBlobWriter;
 import com.netflix.zeno.fastblob.state.FastBlobTypeDeserializationState;
+import com.netflix.zeno.fastblob.state.FastBlobTypeSerializationState;
 import com.netflix.zeno.serializer.NFTypeSerializer;
 import com.netflix.zeno.serializer.SerializerFactory;
 import com.netflix.zeno.serializer.common.IntegerSerializer;
 import com.netflix.zeno.serializer.common.StringSerializer;
+import com.netflix.zeno.testpojos.TypeA;
+import com.netflix.zeno.testpojos.TypeB;
+import com.netflix.zeno.testpojos.TypeC;
+import com.netflix.zeno.testpojos.TypeCSerializer;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
@@ -15,8 +20,14 @@ import java.io.DataOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 import org.junit.Assert;
 import org.junit.Before;
@@ -159,6 +170,102 @@ public class FastBlobEngineTest {
         assertData(destEngine, 4, false, true);
     }
 
+    @Test
+    public void addsAllObjectsInParallel() throws Exception {
+        List<Integer> data = new ArrayList<Integer>();
+        for(int i=0;i<10000;i++)
+            data.add(Integer.valueOf(i % 5000));
+
+        Assert.assertEquals(10000, srcEngine1.addAll("Integer", data, FastBlobImageUtils.toLong(false, true), 4));
+        Assert.assertEquals(5000, srcEngine1.getTypeSerializationState("Integer").getImageMembershipBitSet(1).cardinality());
+        Assert.assertEquals(0, srcEngine1.getTypeSerializationState("Integer").getImageMembershipBitSet(0).cardinality());
+
+        assertData(srcEngine1, 0, false, true);
+        assertData(srcEngine1, 4999, false, true);
+    }
+
+    @Test
+    public void addsNestedObjectsInParallelIdenticallyToSequentialAdds() throws Exception {
+        SerializerFactory typeCFactory = new SerializerFactory() {
+            public NFTypeSerializer<?>[] createSerializers() {
+                return new NFTypeSerializer<?>[] { new TypeCSerializer() };
+            }
+        };
+
+        List<TypeC> firstImageOnly = new ArrayList<TypeC>();
+        List<TypeC> bothImages = new ArrayList<TypeC>();
+        for(int i=0;i<2000;i++) {
+            Map<String, TypeA> typeAMap = new HashMap<String, TypeA>();
+            for(int j=0;j<i%7;j++)
+                typeAMap.put("a" + (i + j) % 50, new TypeA(i % 100, j));
+            List<TypeB> typeBs = new ArrayList<TypeB>();
+            for(int j=0;j<i%5;j++)
+                typeBs.add(new TypeB(j, "b" + i % 30));
+
+            TypeC c = new TypeC(typeAMap, typeBs);
+            if(i % 3 == 0)
+                firstImageOnly.add(c);
+            else
+                bothImages.add(c);
+        }
+        /// some objects are also added to the first image only, after being added to both
+        firstImageOnly.addAll(bothImages.subList(0, 100));
+
+        FastBlobStateEngine parallelEngine = new FastBlobStateEngine(typeCFactory, 2);
+        parallelEngine.addAll("TypeC", bothImages, FastBlobImageUtils.toLong(true, true), 4);
+        parallelEngine.addAll("TypeC", firstImageOnly, FastBlobImageUtils.toLong(true, false), 4);
+
+        FastBlobStateEngine sequentialEngine = new FastBlobStateEngine(typeCFactory, 2);
+        for(TypeC c : bothImages)
+            sequentialEngine.add("TypeC", c, FastBlobImageUtils.toLong(true, true));
+        for(TypeC c : firstImageOnly)
+            sequentialEngine.add("TypeC", c, FastBlobImageUtils.toLong(true, false));
+
+        /// adding the objects again sequentially assigns no new ordinals and changes no image memberships.
+        Map<String, int[]> parallelCardinalities = imageCardinalities(parallelEngine);
+        for(TypeC c : bothImages)
+            parallelEngine.add("TypeC", c, FastBlobImageUtils.toLong(true, true));
+        for(TypeC c : firstImageOnly)
+            parallelEngine.add("TypeC", c, FastBlobImageUtils.toLong(true, false));
+
+        Assert.assertEquals(parallelCardinalities.keySet(), imageCardinalities(parallelEngine).keySet());
+        for(Map.Entry<String, int[]> entry : imageCardinalities(parallelEngine).entrySet()) {
+            Assert.assertArrayEquals(parallelCardinalities.get(entry.getKey()), entry.getValue());
+            Assert.assertArrayEquals(imageCardinalities(sequentialEngine).get(entry.getKey()), entry.getValue());
+        }
+
+        parallelEngine.prepareForWrite();
+        sequentialEngine.prepareForWrite();
+
+        for(int image=0;image<2;image++) {
+            FastBlobStateEngine parallelClient = new FastBlobStateEngine(typeCFactory);
+            FastBlobStateEngine sequentialClient = new FastBlobStateEngine(typeCFactory);
+            fillDeserializationWithImage(parallelEngine, parallelClient, image);
+            fillDeserializationWithImage(sequentialEngine, sequentialClient, image);
+
+            for(String type : new String[] { "TypeC", "TypeA", "TypeB", "Strings" })
+                Assert.assertEquals(allObjects(sequentialClient, type), allObjects(parallelClient, type));
+        }
+    }
+
+    private Map<String, int[]> imageCardinalities(FastBlobStateEngine stateEngine) {
+        Map<String, int[]> cardinalities = new HashMap<String, int[]>();
+        for(FastBlobTypeSerializationState<?> state : stateEngine.getOrderedSerializationStates()) {
+            cardinalities.put(state.getName(), new int[] {
+                    state.getImageMembershipBitSet(0).cardinality(),
+                    state.getImageMembershipBitSet(1).cardinality(),
+                    state.getOrdinalSpaceSize() });
+        }
+        return cardinalities;
+    }
+
+    private Set<Object> allObjects(FastBlobStateEngine stateEngine, String type) {
+        Set<Object> objects = new HashSet<Object>();
+        for(Object obj : stateEngine.getTypeDeserializationState(type))
+            objects.add(obj);
+        return objects;
+    }
+
     private void copyEngine(FastBlobStateEngine srcStateEngine, FastBlobStateEngine destStateEngine) {
         srcStateEngine.copySerializationStatesTo(destStateEngine, Collections.<String> emptyList());
     }
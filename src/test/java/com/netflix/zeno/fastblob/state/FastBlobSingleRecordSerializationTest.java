@@ -17,6 +17,7 @@
  */
 package com.netflix.zeno.fastblob.state;
 
+import com.netflix.zeno.fastblob.FastBlobFrameworkSerializer;
 import com.netflix.zeno.fastblob.FastBlobStateEngine;
 import com.netflix.zeno.fastblob.record.ByteDataBuffer;
 import com.netflix.zeno.fastblob.record.FastBlobDeserializationRecord;
@@ -89,6 +90,31 @@ public class FastBlobSingleRecordSerializationTest {
     }
 
 
+    @Test
+    public void testUTF8StringSerializationAndDeserialization() {
+        PojoWithAllTypes testType = new PojoWithAllTypes();
+        testType.stringField = "H\u00e9llo w\u00f6rld \u4e16\u754c!";
+
+        NFTypeSerializer<PojoWithAllTypes> serializer = stateEngine.getSerializer("TestType");
+
+        serializer.serialize(testType, rec);
+
+        ByteDataBuffer buf = new ByteDataBuffer();
+
+        rec.writeDataTo(buf);
+
+        FastBlobDeserializationRecord deserializationRecord = new FastBlobDeserializationRecord(schema, buf.getUnderlyingArray());
+        deserializationRecord.position(0);
+
+        Assert.assertEquals(testType.stringField.getBytes(FastBlobFrameworkSerializer.UTF_8).length + 1, deserializationRecord.getFieldLength("utf8string"));
+
+        PojoWithAllTypes deserialized = serializer.deserialize(deserializationRecord);
+
+        Assert.assertEquals(testType.stringField, deserialized.stringField);
+        Assert.assertEquals(testType.stringField, deserialized.utf8StringField);
+    }
+
+
     public class TestSchemaSerializer extends NFTypeSerializer<PojoWithAllTypes> {
 
         public TestSchemaSerializer() {
@@ -105,6 +131,7 @@ public class FastBlobSingleRecordSerializationTest {
             serializePrimitive(rec, "float", value.floatField);
             serializePrimitive(rec, "double", value.doubleField);
             serializePrimitive(rec, "string", value.stringField);
+            serializePrimitive(rec, "utf8string", value.stringField);
             serializePrimitive(rec, "bytes", value.bytesField);
         }
 
@@ -117,6 +144,7 @@ public class FastBlobSingleRecordSerializationTest {
             type.longField = deserializeLong(rec, "long");
             type.floatField = deserializeFloat(rec, "float");
             type.stringField = deserializePrimitiveString(rec, "string");
+            type.utf8StringField = deserializePrimitiveString(rec, "utf8string");
             type.bytesField = deserializeBytes(rec, "bytes");
 
             return type;
@@ -131,6 +159,7 @@ public class FastBlobSingleRecordSerializationTest {
                     field("float", FieldType.FLOAT),
                     field("double", FieldType.DOUBLE),
                     field("string", FieldType.STRING),
+                    field("utf8string", FieldType.UTF8_STRING),
                     field("bytes", FieldType.BYTES)
             );
         }
@@ -141,4 +170,36 @@ public class FastBlobSingleRecordSerializationTest {
         }
 
     }
+
+    @Test
+    public void testLazyFieldPointersAndLength() {
+        PojoWithAllTypes testType = new PojoWithAllTypes();
+        testType.intField = 324515;
+        testType.stringField = "Hello world!";
+
+        NFTypeSerializer<PojoWithAllTypes> serializer = stateEngine.getSerializer("TestType");
+
+        serializer.serialize(testType, rec);
+
+        ByteDataBuffer buf = new ByteDataBuffer();
+        buf.write((byte)0);
+        rec.writeDataTo(buf);
+
+        int expectedLength = (int)buf.length() - 1;
+
+        FastBlobDeserializationRecord deserializationRecord = new FastBlobDeserializationRecord(schema, buf.getUnderlyingArray());
+        Assert.assertEquals(expectedLength, deserializationRecord.sizeOf(1));
+
+        deserializationRecord.seek(1);
+        Assert.assertEquals(1, deserializationRecord.position());
+        Assert.assertEquals(testType.stringField.getBytes(FastBlobFrameworkSerializer.UTF_8).length + 1, deserializationRecord.getFieldLength("utf8string"));
+
+        PojoWithAllTypes deserialized = serializer.deserialize(deserializationRecord);
+
+        Assert.assertEquals(testType.intField, deserialized.intField);
+        Assert.assertEquals(testType.stringField, deserialized.stringField);
+        Assert.assertEquals(expectedLength, deserializationRecord.length());
+        Assert.assertEquals(expectedLength, deserializationRecord.position(1));
+    }
+
 }
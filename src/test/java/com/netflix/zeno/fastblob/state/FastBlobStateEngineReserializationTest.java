@@ -52,6 +52,94 @@ public class FastBlobStateEngineReserializationTest {
 
     }
 
+    @Test
+    public void heapFriendlyDeserializationStatesSurviveDoubleSnapshotRefreshes() throws Exception {
+        FastBlobStateEngine serverEngine = typeAStateEngine();
+        FastBlobStateEngine clientEngine = typeAStateEngine();
+        clientEngine.setUseHeapFriendlyDeserializationStates(true);
+        FastBlobReader reader = new FastBlobReader(clientEngine);
+
+        reader.readSnapshot(new ByteArrayInputStream(snapshot(serverEngine, 0, 10000)));
+        TypeA reusedObject = findTypeA(clientEngine, 7500);
+
+        reader.readSnapshot(new ByteArrayInputStream(snapshot(serverEngine, 5000, 15000)));
+        assertTypeAs(clientEngine, 5000, 15000);
+        Assert.assertSame(reusedObject, findTypeA(clientEngine, 7500));
+
+        reader.readSnapshot(new ByteArrayInputStream(snapshot(serverEngine, 0, 10000)));
+        assertTypeAs(clientEngine, 0, 10000);
+
+        reader.readSnapshot(new ByteArrayInputStream(snapshot(serverEngine, 20000, 21000)));
+        assertTypeAs(clientEngine, 20000, 21000);
+    }
+
+    @Test
+    public void identityOrdinalMapsAreMaintainedAcrossDeltas() throws Exception {
+        FastBlobStateEngine serverEngine = typeAStateEngine();
+        FastBlobStateEngine clientEngine = typeAStateEngine();
+        FastBlobReader reader = new FastBlobReader(clientEngine);
+
+        reader.readSnapshot(new ByteArrayInputStream(snapshot(serverEngine, 0, 1000)));
+        /// a second snapshot is applied as a double snapshot refresh, which creates the identity ordinal maps.
+        reader.readSnapshot(new ByteArrayInputStream(snapshot(serverEngine, 500, 1500)));
+        assertIdentityOrdinalMap(clientEngine);
+
+        for(int i=1;i<=3;i++) {
+            serverEngine.prepareForNextCycle();
+            for(int j=500+(i*100);j<1500+(i*100);j++)
+                serverEngine.add("TypeA", new TypeA(j, j));
+            serverEngine.setLatestVersion("delta" + i);
+            serverEngine.prepareForWrite();
+
+            ByteArrayOutputStream delta = new ByteArrayOutputStream();
+            new FastBlobWriter(serverEngine).writeDelta(delta);
+            reader.readDelta(new ByteArrayInputStream(delta.toByteArray()));
+
+            assertTypeAs(clientEngine, 500+(i*100), 1500+(i*100));
+            assertIdentityOrdinalMap(clientEngine);
+        }
+    }
+
+    private void assertIdentityOrdinalMap(FastBlobStateEngine clientEngine) {
+        FastBlobTypeDeserializationState<TypeA> state = clientEngine.getTypeDeserializationState("TypeA");
+        for(int i=0;i<=state.maxOrdinal();i++) {
+            TypeA a = state.get(i);
+            if(a != null)
+                Assert.assertEquals(i, state.find(a));
+        }
+        Assert.assertEquals(-1, state.find(new TypeA(600, 600)));
+    }
+
+    private byte[] snapshot(FastBlobStateEngine serverEngine, int fromVal, int toVal) throws Exception {
+        serverEngine.prepareForNextCycle();
+        for(int i=fromVal;i<toVal;i++)
+            serverEngine.add("TypeA", new TypeA(i, i));
+        serverEngine.setLatestVersion(String.valueOf(fromVal));
+        serverEngine.prepareForWrite();
+
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        new FastBlobWriter(serverEngine).writeSnapshot(baos);
+        return baos.toByteArray();
+    }
+
+    private void assertTypeAs(FastBlobStateEngine clientEngine, int fromVal, int toVal) {
+        FastBlobTypeDeserializationState<TypeA> state = clientEngine.getTypeDeserializationState("TypeA");
+        Assert.assertEquals(toVal - fromVal, state.countObjects());
+
+        for(TypeA a : state) {
+            Assert.assertTrue(a.getVal1() >= fromVal && a.getVal1() < toVal);
+        }
+    }
+
+    private TypeA findTypeA(FastBlobStateEngine clientEngine, int val) {
+        FastBlobTypeDeserializationState<TypeA> state = clientEngine.getTypeDeserializationState("TypeA");
+        for(TypeA a : state) {
+            if(a.getVal1() == val)
+                return a;
+        }
+        return null;
+    }
+
     private FastBlobStateEngine typeAStateEngine() {
         return new FastBlobStateEngine(new SerializerFactory() {
             @Override
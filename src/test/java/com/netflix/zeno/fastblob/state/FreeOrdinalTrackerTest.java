@@ -81,4 +81,47 @@ public class FreeOrdinalTrackerTest {
         Assert.assertEquals(101, deserializedTracker.getFreeOrdinal());
     }
 
+    @Test
+    public void lowestFirstPolicyReturnsLowestFreedOrdinals() {
+        FreeOrdinalTracker tracker = new FreeOrdinalTracker(OrdinalReusePolicy.LOWEST_FIRST);
+
+        for(int i=0;i<100;i++) {
+            tracker.getFreeOrdinal();
+        }
+
+        tracker.returnOrdinalToPool(40);
+        tracker.returnOrdinalToPool(20);
+        tracker.returnOrdinalToPool(30);
+
+        Assert.assertEquals(20, tracker.getFreeOrdinal());
+
+        tracker.returnOrdinalToPool(10);
+
+        Assert.assertEquals(10, tracker.getFreeOrdinal());
+        Assert.assertEquals(30, tracker.getFreeOrdinal());
+        Assert.assertEquals(40, tracker.getFreeOrdinal());
+        Assert.assertEquals(100, tracker.getFreeOrdinal());
+    }
+
+    @Test
+    public void lowestFirstPolicyTrimsTopOfOrdinalSpace() {
+        FreeOrdinalTracker tracker = new FreeOrdinalTracker(OrdinalReusePolicy.LOWEST_FIRST);
+
+        for(int i=0;i<100;i++) {
+            tracker.getFreeOrdinal();
+        }
+
+        tracker.returnOrdinalToPool(99);
+        tracker.returnOrdinalToPool(50);
+        tracker.returnOrdinalToPool(98);
+
+        Assert.assertEquals(98, tracker.getOrdinalSpaceSize());
+        Assert.assertEquals(1, tracker.getNumFreeOrdinals());
+        Assert.assertEquals(97.0d / 98.0d, tracker.getOrdinalSpaceDensity(), 0.0001d);
+
+        Assert.assertEquals(50, tracker.getFreeOrdinal());
+        Assert.assertEquals(98, tracker.getFreeOrdinal());
+        Assert.assertEquals(99, tracker.getFreeOrdinal());
+    }
+
 }
@@ -0,0 +1,111 @@
+/*
+ *
+ *  Copyright 2014 Netflix, Inc.
+ *
+ *     Licensed under the Apache License, Version 2.0 (the "License");
+ *     you may not use this file except in compliance with the License.
+ *     You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *     Unless required by applicable law or agreed to in writing, software
+ *     distributed under the License is distributed on an "AS IS" BASIS,
+ *     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *     See the License for the specific language governing permissions and
+ *     limitations under the License.
+ *
+ */
+package com.netflix.zeno.fastblob.state;
+
+import com.netflix.zeno.fastblob.FastBlobStateEngine;
+import com.netflix.zeno.fastblob.io.FastBlobWriter;
+import com.netflix.zeno.serializer.NFSerializationRecord;
+import com.netflix.zeno.serializer.NFTypeSerializer;
+import com.netflix.zeno.serializer.SerializerFactory;
+import com.netflix.zeno.serializer.common.ListSerializer;
+import com.netflix.zeno.testpojos.TypeA;
+import com.netflix.zeno.testpojos.TypeASerializer;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ObjectIdentityMemoizationTest {
+
+    private CountingTypeASerializer memoizedTypeASerializer;
+    private FastBlobStateEngine memoizedEngine;
+    private FastBlobStateEngine referenceEngine;
+
+    @Before
+    public void setUp() {
+        memoizedTypeASerializer = new CountingTypeASerializer();
+        memoizedEngine = new FastBlobStateEngine(factory(memoizedTypeASerializer));
+        memoizedEngine.setRetainObjectIdentitiesAcrossCycles(true);
+        referenceEngine = new FastBlobStateEngine(factory(new CountingTypeASerializer()));
+    }
+
+    @Test
+    public void unchangedObjectsAreNotReserializedInTheNextCycle() throws Exception {
+        TypeA a1 = new TypeA(1, 1);
+        TypeA a2 = new TypeA(2, 2);
+        TypeA a3 = new TypeA(3, 3);
+        List<TypeA> list1 = Arrays.asList(a1, a2);
+        List<TypeA> list2 = Arrays.asList(a3);
+        List<TypeA> list3 = Arrays.asList(a3, new TypeA(4, 4));
+
+        assertSameBlobs(true, list1, list2);
+        Assert.assertEquals(3, memoizedTypeASerializer.numSerializations);
+
+        assertSameBlobs(false, list1, list3);
+        Assert.assertEquals(4, memoizedTypeASerializer.numSerializations);
+
+        assertSameBlobs(false, list3);
+        Assert.assertEquals(4, memoizedTypeASerializer.numSerializations);
+
+        /// list1's elements were not part of the previous cycle, so they must be serialized again.
+        assertSameBlobs(false, list1, list3);
+        Assert.assertEquals(6, memoizedTypeASerializer.numSerializations);
+    }
+
+    private void assertSameBlobs(boolean snapshot, List<?>... lists) throws Exception {
+        Assert.assertArrayEquals(cycle(referenceEngine, snapshot, lists), cycle(memoizedEngine, snapshot, lists));
+    }
+
+    private byte[] cycle(FastBlobStateEngine engine, boolean snapshot, List<?>... lists) throws Exception {
+        engine.prepareForNextCycle();
+        for(List<?> list : lists)
+            engine.add("ListOfTypeA", list);
+        engine.setLatestVersion("version");
+        engine.prepareForWrite();
+
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        if(snapshot)
+            new FastBlobWriter(engine).writeSnapshot(os);
+        else
+            new FastBlobWriter(engine).writeDelta(os);
+        return os.toByteArray();
+    }
+
+    private SerializerFactory factory(final TypeASerializer typeASerializer) {
+        return new SerializerFactory() {
+            public NFTypeSerializer<?>[] createSerializers() {
+                return new NFTypeSerializer<?>[] { new ListSerializer<TypeA>(typeASerializer) };
+            }
+        };
+    }
+
+    private static class CountingTypeASerializer extends TypeASerializer {
+        private int numSerializations;
+
+        @Override
+        public void doSerialize(TypeA obj, NFSerializationRecord rec) {
+            numSerializations++;
+            super.doSerialize(obj, rec);
+        }
+    }
+
+}
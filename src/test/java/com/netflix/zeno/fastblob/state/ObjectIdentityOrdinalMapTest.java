@@ -0,0 +1,150 @@
+/*
+ *
+ *  Copyright 2014 Netflix, Inc.
+ *
+ *     Licensed under the Apache License, Version 2.0 (the "License");
+ *     you may not use this file except in compliance with the License.
+ *     You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *     Unless required by applicable law or agreed to in writing, software
+ *     distributed under the License is distributed on an "AS IS" BASIS,
+ *     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *     See the License for the specific language governing permissions and
+ *     limitations under the License.
+ *
+ */
+package com.netflix.zeno.fastblob.state;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ObjectIdentityOrdinalMapTest {
+
+    @Test
+    public void findsObjectsByIdentity() {
+        List<Object> objects = new ArrayList<Object>();
+        Integer one = new Integer(1);
+        objects.add(one);
+        objects.add(null);
+        objects.add("two");
+
+        ObjectIdentityOrdinalMap map = new ObjectIdentityOrdinalMap(objects);
+
+        Assert.assertEquals(2, map.size());
+        Assert.assertEquals(0, map.get(one));
+        Assert.assertEquals(2, map.get("two"));
+        Assert.assertEquals(-1, map.get(new Integer(1)));
+        Assert.assertEquals(-1, map.get(null));
+    }
+
+    @Test
+    public void maintainsEntriesAsObjectsAreAddedAndRemoved() {
+        List<Object> objects = new ArrayList<Object>();
+        ObjectIdentityOrdinalMap map = new ObjectIdentityOrdinalMap(objects);
+
+        for(int i=0;i<1000;i++) {
+            Object obj = new Object();
+            objects.add(obj);
+            map.put(obj, i);
+        }
+
+        Assert.assertEquals(1000, map.size());
+
+        for(int i=0;i<1000;i+=3) {
+            map.remove(objects.get(i));
+            objects.set(i, null);
+        }
+
+        for(int i=0;i<1000;i++) {
+            if(i % 3 == 0)
+                Assert.assertEquals(-1, map.get(new Object()));
+            else
+                Assert.assertEquals(i, map.get(objects.get(i)));
+        }
+
+        Assert.assertEquals(666, map.size());
+    }
+
+    @Test
+    public void lookupsMayRaceWithGrowth() throws Exception {
+        final Object objects[] = new Object[200000];
+        for(int i=0;i<objects.length;i++)
+            objects[i] = new Object();
+
+        final List<Object> list = new ArrayList<Object>(Arrays.asList(objects));
+        final ObjectIdentityOrdinalMap map = new ObjectIdentityOrdinalMap(new ArrayList<Object>());
+        final AtomicBoolean done = new AtomicBoolean();
+        final AtomicInteger incorrectOrdinals = new AtomicInteger();
+
+        Thread reader = new Thread(new Runnable() {
+            public void run() {
+                while(!done.get()) {
+                    for(int i=0;i<objects.length;i+=101) {
+                        int ordinal = map.get(objects[i]);
+                        if(ordinal != -1 && ordinal != i)
+                            incorrectOrdinals.incrementAndGet();
+                    }
+                }
+            }
+        });
+        reader.start();
+
+        /// switch the map over to the fully populated List, so that only the map itself is modified while the reader runs.
+        map.beginRefresh(list);
+        map.endRefresh();
+        for(int i=0;i<objects.length;i++)
+            map.put(objects[i], i);
+
+        done.set(true);
+        reader.join();
+
+        Assert.assertEquals(0, incorrectOrdinals.get());
+        Assert.assertEquals(objects.length, map.size());
+    }
+
+    @Test
+    public void remapsEntriesDuringRefresh() {
+        List<Object> previousObjects = new ArrayList<Object>();
+        for(int i=0;i<100;i++)
+            previousObjects.add(new Object());
+
+        ObjectIdentityOrdinalMap map = new ObjectIdentityOrdinalMap(previousObjects);
+
+        List<Object> objects = new ArrayList<Object>();
+        map.beginRefresh(objects);
+
+        /// entries not yet remapped still resolve against the previous List
+        Assert.assertEquals(10, map.get(previousObjects.get(10)));
+
+        /// keep the odd objects, in reverse order, and add a new object.
+        for(int i=99;i>0;i-=2) {
+            Object obj = previousObjects.get(i);
+            objects.add(obj);
+            map.put(obj, objects.size() - 1);
+        }
+
+        Object added = new Object();
+        objects.add(added);
+        map.put(added, objects.size() - 1);
+
+        for(int i=0;i<100;i+=2)
+            map.remove(previousObjects.get(i));
+
+        map.endRefresh();
+
+        Assert.assertEquals(51, map.size());
+        Assert.assertEquals(0, map.get(previousObjects.get(99)));
+        Assert.assertEquals(49, map.get(previousObjects.get(1)));
+        Assert.assertEquals(50, map.get(added));
+        Assert.assertEquals(-1, map.get(previousObjects.get(0)));
+    }
+
+}
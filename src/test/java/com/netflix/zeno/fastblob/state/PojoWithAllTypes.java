@@ -26,6 +26,7 @@ public class PojoWithAllTypes {
     Double doubleField;
     Boolean boolField;
     String stringField;
+    String utf8StringField;
     byte[] bytesField;
 
 
@@ -17,7 +17,9 @@
  */
 package com.netflix.zeno.fastblob.state;
 
+import com.netflix.zeno.fastblob.record.ByteDataBuffer;
 import com.netflix.zeno.fastblob.record.SegmentedByteArray;
+import com.netflix.zeno.fastblob.record.VarInt;
 
 import org.junit.Assert;
 import org.junit.Test;
@@ -67,4 +69,49 @@ public class SegmentedByteArrayTest {
         Assert.assertEquals((byte)100, arr.get(0x1FFFFFFFFL));
     }
 
+    @Test
+    public void readsIntsAndLongsAcrossSegmentBoundaries() {
+        SegmentedByteArray arr = new SegmentedByteArray(3);
+
+        for(int i=0;i<64;i++) {
+            arr.set(i, (byte)(i * 37));
+        }
+
+        for(int i=0;i<56;i++) {
+            int expectedInt = 0;
+            long expectedLong = 0;
+            for(int j=0;j<8;j++) {
+                if(j < 4)
+                    expectedInt = (expectedInt << 8) | (arr.get(i + j) & 0xFF);
+                expectedLong = (expectedLong << 8) | (arr.get(i + j) & 0xFF);
+            }
+
+            Assert.assertEquals(expectedInt, arr.getInt(i));
+            Assert.assertEquals(expectedLong, arr.getLong(i));
+        }
+    }
+
+    @Test
+    public void readsVIntArraysInsideAndAcrossSegments() {
+        int values[] = new int[] { 0, 1, 127, 128, -1, 16384, Integer.MAX_VALUE, 3, -1, 2097152 };
+
+        for(int log2SegmentSize : new int[] { 2, 3, 10 }) {
+            ByteDataBuffer buf = new ByteDataBuffer(1 << log2SegmentSize);
+            for(int value : values) {
+                if(value == -1)
+                    VarInt.writeVNull(buf);
+                else
+                    VarInt.writeVInt(buf, value);
+            }
+
+            int decoded[] = new int[(int)buf.length()];
+            int count = buf.getUnderlyingArray().readVIntArray(0, (int)buf.length(), decoded);
+
+            Assert.assertEquals(values.length, count);
+            for(int i=0;i<values.length;i++) {
+                Assert.assertEquals(values[i], decoded[i]);
+            }
+        }
+    }
+
 }
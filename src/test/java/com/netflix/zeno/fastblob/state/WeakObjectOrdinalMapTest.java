@@ -17,6 +17,8 @@
  */
 package com.netflix.zeno.fastblob.state;
 
+import java.util.concurrent.atomic.AtomicInteger;
+
 import org.apache.commons.lang.math.RandomUtils;
 import org.junit.Assert;
 import org.junit.Test;
@@ -88,6 +90,55 @@ public class WeakObjectOrdinalMapTest {
         Assert.assertEquals(0, map.size());
     }
 
+    @Test
+    public void strongReferencesAreRetainedUntilCleared() throws Exception {
+        WeakObjectOrdinalMap map = new WeakObjectOrdinalMap(8, true);
+
+        for(int i=0;i<1000;i++)
+            map.put(new MyClass(), i, 1);
+
+        doGC();
+        Assert.assertEquals(1000, map.size());
+
+        map.clear();
+        Assert.assertEquals(0, map.size());
+    }
+
+    @Test
+    public void concurrentPutsAndGets() throws Exception {
+        final WeakObjectOrdinalMap map = new WeakObjectOrdinalMap(2, true);
+        final MyClass objects[] = new MyClass[100000];
+        for(int i=0;i<objects.length;i++)
+            objects[i] = new MyClass();
+
+        final AtomicInteger incorrectOrdinals = new AtomicInteger();
+        final Thread threads[] = new Thread[4];
+
+        for(int t=0;t<threads.length;t++) {
+            final int threadNumber = t;
+            threads[t] = new Thread(new Runnable() {
+                public void run() {
+                    for(int i=threadNumber;i<objects.length;i+=threads.length) {
+                        map.put(objects[i], i, 1);
+                        /// lookups of entries added by other threads may miss, but must never return the wrong ordinal.
+                        WeakObjectOrdinalMap.Entry entry = map.getEntry(objects[objects.length - i - 1]);
+                        if(entry != null && entry.getOrdinal() != objects.length - i - 1)
+                            incorrectOrdinals.incrementAndGet();
+                    }
+                }
+            });
+            threads[t].start();
+        }
+
+        for(Thread thread : threads)
+            thread.join();
+
+        Assert.assertEquals(0, incorrectOrdinals.get());
+        Assert.assertEquals(objects.length, map.size());
+        for(int i=0;i<objects.length;i++)
+            Assert.assertEquals(i, map.getEntry(objects[i]).getOrdinal());
+    }
+
     private void doGC() throws InterruptedException {
         System.gc();
         Thread.sleep(1000);
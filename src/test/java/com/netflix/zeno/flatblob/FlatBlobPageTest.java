@@ -0,0 +1,151 @@
+/*
+ *
+ *  Copyright 2014 Netflix, Inc.
+ *
+ *     Licensed under the Apache License, Version 2.0 (the "License");
+ *     you may not use this file except in compliance with the License.
+ *     You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *     Unless required by applicable law or agreed to in writing, software
+ *     distributed under the License is distributed on an "AS IS" BASIS,
+ *     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *     See the License for the specific language governing permissions and
+ *     limitations under the License.
+ *
+ */
+package com.netflix.zeno.flatblob;
+
+import com.netflix.zeno.fastblob.io.FastBlobMalformedDataException;
+import com.netflix.zeno.fastblob.record.ByteData;
+import com.netflix.zeno.fastblob.record.SegmentedByteArray;
+import com.netflix.zeno.fastblob.record.schema.FastBlobSchema;
+import com.netflix.zeno.fastblob.record.schema.FastBlobSchema.FieldType;
+import com.netflix.zeno.serializer.NFTypeSerializer;
+import com.netflix.zeno.serializer.SerializerFactory;
+import com.netflix.zeno.testpojos.TypeA;
+import com.netflix.zeno.testpojos.TypeASerializer;
+import com.netflix.zeno.testpojos.TypeD;
+import com.netflix.zeno.testpojos.TypeDSerializer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class FlatBlobPageTest {
+
+    private FlatBlobSerializationFramework framework;
+
+    @Before
+    public void setUp() {
+        framework = new FlatBlobSerializationFramework(new SerializerFactory() {
+            public NFTypeSerializer<?>[] createSerializers() {
+                return new NFTypeSerializer<?>[] { new TypeDSerializer() };
+            }
+        });
+    }
+
+    @Test
+    public void readsObjectsByKeyFromMappedFile() throws IOException {
+        FlatBlobPageWriter writer = new FlatBlobPageWriter(framework, "TypeD");
+
+        for(int i=999;i>=0;i--)
+            writer.add(i * 2, typeD(i));
+
+        File file = File.createTempFile("flatblob", ".page");
+        file.deleteOnExit();
+
+        FileOutputStream os = new FileOutputStream(file);
+        writer.writeTo(os);
+        os.close();
+
+        FlatBlobPage page = FlatBlobPage.open(framework, file);
+
+        Assert.assertEquals("TypeD", page.getType());
+        Assert.assertEquals(1000, page.numObjects());
+        Assert.assertEquals(0, page.getKey(0));
+        Assert.assertEquals(1998, page.getKey(999));
+        Assert.assertEquals(framework.getSerializer("TypeD").getFastBlobSchema(), page.getSchema("TypeD"));
+
+        Assert.assertEquals(typeD(0), page.get(0, false));
+        Assert.assertEquals(typeD(500), page.get(1000, false));
+        Assert.assertEquals(typeD(999), page.get(1998, false));
+        Assert.assertNull(page.get(1, false));
+        Assert.assertNull(page.get(-2, false));
+        Assert.assertFalse(page.contains(2000));
+
+        List<TypeD> batch = page.getAll(new int[] { 6, 7, 4 }, false);
+        Assert.assertEquals(typeD(3), batch.get(0));
+        Assert.assertNull(batch.get(1));
+        Assert.assertEquals(typeD(2), batch.get(2));
+    }
+
+    @Test
+    public void readsPageFromByteData() throws IOException {
+        FlatBlobPageWriter writer = new FlatBlobPageWriter(framework, "TypeD");
+        writer.add(-5, typeD(1));
+        writer.add(Integer.MAX_VALUE, typeD(2));
+
+        FlatBlobPage page = new FlatBlobPage(framework, pageData(writer));
+
+        Assert.assertEquals(typeD(1), page.get(-5, true));
+        Assert.assertEquals(typeD(2), page.get(Integer.MAX_VALUE, true));
+    }
+
+    @Test(expected=IllegalStateException.class)
+    public void rejectsDuplicateKeys() throws IOException {
+        FlatBlobPageWriter writer = new FlatBlobPageWriter(framework, "TypeD");
+        writer.add(1, typeD(1));
+        writer.add(1, typeD(2));
+        writer.writeTo(new ByteArrayOutputStream());
+    }
+
+    @Test(expected=FastBlobMalformedDataException.class)
+    public void rejectsPagesWithIncompatibleSchemas() throws IOException {
+        FlatBlobPageWriter writer = new FlatBlobPageWriter(typeAFramework(new TypeASerializer()), "TypeA");
+        writer.add(1, new TypeA(1, 1));
+        ByteData data = pageData(writer);
+
+        FlatBlobSerializationFramework incompatibleFramework = typeAFramework(new TypeASerializer() {
+            @Override
+            public FastBlobSchema createSchema() {
+                return schema(
+                        field("val1", FieldType.INT),
+                        field("val2", FieldType.LONG)
+                );
+            }
+        });
+
+        new FlatBlobPage(incompatibleFramework, data);
+    }
+
+    private FlatBlobSerializationFramework typeAFramework(final TypeASerializer serializer) {
+        return new FlatBlobSerializationFramework(new SerializerFactory() {
+            public NFTypeSerializer<?>[] createSerializers() {
+                return new NFTypeSerializer<?>[] { serializer };
+            }
+        });
+    }
+
+    private ByteData pageData(FlatBlobPageWriter writer) throws IOException {
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        writer.writeTo(os);
+        byte bytes[] = os.toByteArray();
+
+        SegmentedByteArray data = new SegmentedByteArray(10);
+        data.copy(bytes, 0, 0, bytes.length);
+        return data;
+    }
+
+    private TypeD typeD(int val) {
+        return new TypeD(val, new TypeA(val % 10, val % 10));
+    }
+
+}
@@ -3,16 +3,26 @@ package com.netflix.zeno.flatblob;
 import com.netflix.zeno.fastblob.FastBlobStateEngine;
 import com.netflix.zeno.fastblob.io.FastBlobReader;
 import com.netflix.zeno.fastblob.io.FastBlobWriter;
+import com.netflix.zeno.fastblob.record.ByteData;
 import com.netflix.zeno.fastblob.record.ByteDataBuffer;
 import com.netflix.zeno.serializer.NFTypeSerializer;
 import com.netflix.zeno.serializer.SerializerFactory;
 import com.netflix.zeno.testpojos.TypeA;
+import com.netflix.zeno.testpojos.TypeB;
+import com.netflix.zeno.testpojos.TypeC;
+import com.netflix.zeno.testpojos.TypeCSerializer;
 import com.netflix.zeno.testpojos.TypeD;
 import com.netflix.zeno.testpojos.TypeDSerializer;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import org.junit.Assert;
 import org.junit.Before;
@@ -121,6 +131,78 @@ public class FlatBlobTest {
         Assert.assertSame(deserializedD2.getTypeA(), deserializedD3.getTypeA());
     }
 
+    @Test
+    public void serializesWithoutStateEngine() {
+        FlatBlobSerializationFramework detachedFramework = new FlatBlobSerializationFramework(new SerializerFactory() {
+            public NFTypeSerializer<?>[] createSerializers() {
+                return new NFTypeSerializer<?>[] { new TypeCSerializer() };
+            }
+        });
+
+        Map<String, TypeA> typeAMap = new HashMap<String, TypeA>();
+        typeAMap.put("one", new TypeA(1, 1));
+        typeAMap.put("two", new TypeA(2, 2));
+        typeAMap.put("three", new TypeA(3, 3));
+        TypeC c = new TypeC(typeAMap, Arrays.asList(new TypeB(1, "one"), new TypeB(2, "two")));
+
+        ByteDataBuffer cBuf = new ByteDataBuffer();
+        detachedFramework.serialize("TypeC", c, cBuf);
+
+        TypeC deserializedC = detachedFramework.deserialize("TypeC", cBuf.getUnderlyingArray(), false);
+
+        Assert.assertEquals(c.getTypeAMap(), deserializedC.getTypeAMap());
+        Assert.assertEquals(c.getTypeBs(), deserializedC.getTypeBs());
+    }
+
+    @Test
+    public void uncachedElementsAreDeduplicatedWithinABatch() {
+        ByteDataBuffer d1Buf = new ByteDataBuffer();
+        ByteDataBuffer d2Buf = new ByteDataBuffer();
+
+        flatBlobFramework.serialize("TypeD", d1, d1Buf);
+        flatBlobFramework.serialize("TypeD", d2, d2Buf);
+
+        List<TypeD> batch = flatBlobFramework.deserialize("TypeD", new ByteData[] { d1Buf.getUnderlyingArray(), d2Buf.getUnderlyingArray() }, null, false);
+
+        Assert.assertEquals(d1, batch.get(0));
+        Assert.assertEquals(d2, batch.get(1));
+        Assert.assertSame(batch.get(0).getTypeA(), batch.get(1).getTypeA());
+
+        TypeD deserializedD1 = flatBlobFramework.deserialize("TypeD", d1Buf.getUnderlyingArray(), false);
+        Assert.assertNotSame(batch.get(0).getTypeA(), deserializedD1.getTypeA());
+    }
+
+    @Test
+    public void deserializesBatchesInParallel() throws Exception {
+        TypeD objects[] = new TypeD[] { d1, d2, d3 };
+        ByteDataBuffer buf = new ByteDataBuffer();
+
+        int numObjects = 1000;
+        ByteData data[] = new ByteData[numObjects];
+        int positions[] = new int[numObjects];
+
+        for(int i=0;i<numObjects;i++) {
+            positions[i] = (int) buf.length();
+            flatBlobFramework.serialize("TypeD", objects[i % 3], buf);
+        }
+
+        Arrays.fill(data, buf.getUnderlyingArray());
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+
+        try {
+            List<TypeD> batch = flatBlobFramework.deserialize("TypeD", data, positions, true, executor);
+
+            Assert.assertEquals(numObjects, batch.size());
+            for(int i=0;i<numObjects;i++)
+                Assert.assertEquals(objects[i % 3], batch.get(i));
+
+            Assert.assertSame(batch.get(0).getTypeA(), batch.get(numObjects - 1).getTypeA());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
     private TypeD typeD(int dVal, int aVal) {
         return new TypeD(dVal, new TypeA(aVal, aVal));
     }
@@ -0,0 +1,117 @@
+/*
+ *
+ *  Copyright 2014 Netflix, Inc.
+ *
+ *     Licensed under the Apache License, Version 2.0 (the "License");
+ *     you may not use this file except in compliance with the License.
+ *     You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *     Unless required by applicable law or agreed to in writing, software
+ *     distributed under the License is distributed on an "AS IS" BASIS,
+ *     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *     See the License for the specific language governing permissions and
+ *     limitations under the License.
+ *
+ */
+package com.netflix.zeno.flatblob;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class FlatBlobTypeCacheTest {
+
+    @Test
+    public void countsReferencesBeforeRemovingObjects() {
+        FlatBlobTypeCache<String> cache = new FlatBlobTypeCache<String>("String");
+        String obj = new String("obj");
+
+        Assert.assertSame(obj, cache.putIfAbsent(5000, obj));
+        Assert.assertSame(obj, cache.putIfAbsent(5000, new String("obj")));
+        Assert.assertSame(obj, cache.get(5000));
+
+        cache.evict(obj);
+        cache.evict(obj);
+        Assert.assertSame(obj, cache.get(5000));
+
+        cache.evict(obj);
+        cache.evict(obj);
+        Assert.assertNull(cache.get(5000));
+        Assert.assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void ignoresNegativeOrdinals() {
+        FlatBlobTypeCache<String> cache = new FlatBlobTypeCache<String>("String");
+        String obj = new String("obj");
+
+        Assert.assertSame(obj, cache.putIfAbsent(-1, obj));
+        Assert.assertNull(cache.get(-1));
+        Assert.assertNull(cache.get(100));
+        cache.evict(obj);
+    }
+
+    @Test
+    public void boundedCacheDropsLeastRecentlyUsedObjects() {
+        FlatBlobTypeCache<String> cache = new FlatBlobTypeCache<String>("String", 3);
+
+        String zero = cache.putIfAbsent(0, "zero");
+        cache.putIfAbsent(1, "one");
+        cache.putIfAbsent(2, "two");
+        cache.putIfAbsent(3, "three");
+
+        Assert.assertEquals(3, cache.size());
+        Assert.assertNull(cache.get(0));
+
+        /// a dropped object may still be evicted by its holders without affecting the cache.
+        cache.evict(zero);
+        Assert.assertEquals(3, cache.size());
+
+        /// ordinal 1 is referenced again, so ordinal 2 is the next to go.
+        cache.get(1);
+        cache.putIfAbsent(4, "four");
+
+        Assert.assertNotNull(cache.get(1));
+        Assert.assertNull(cache.get(2));
+        Assert.assertNotNull(cache.get(3));
+        Assert.assertNotNull(cache.get(4));
+    }
+
+    @Test
+    public void shrinkingTheBoundDropsObjects() {
+        FlatBlobTypeCache<Integer> cache = new FlatBlobTypeCache<Integer>("Integer");
+
+        for(int i=0;i<10000;i++)
+            cache.putIfAbsent(i * 3, Integer.valueOf(i));
+
+        cache.setMaxObjects(100);
+
+        Assert.assertEquals(100, cache.size());
+    }
+
+    @Test
+    public void concurrentAccessRespectsTheBound() throws InterruptedException {
+        final FlatBlobTypeCache<Object> cache = new FlatBlobTypeCache<Object>("Object", 500);
+        Thread threads[] = new Thread[4];
+
+        for(int t=0;t<threads.length;t++) {
+            threads[t] = new Thread() {
+                public void run() {
+                    for(int i=0;i<100000;i++) {
+                        int ordinal = i % 1000;
+                        if(cache.get(ordinal) == null)
+                            cache.putIfAbsent(ordinal, new Object());
+                    }
+                }
+            };
+            threads[t].start();
+        }
+
+        for(Thread thread : threads)
+            thread.join();
+
+        Assert.assertTrue(cache.size() <= 500);
+    }
+
+}
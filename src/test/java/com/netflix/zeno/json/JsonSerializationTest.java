@@ -17,9 +17,12 @@
  */
 package com.netflix.zeno.json;
 
+import com.netflix.zeno.fastblob.FastBlobStateEngine;
+import com.netflix.zeno.fastblob.state.FastBlobTypeDeserializationState;
 import com.netflix.zeno.serializer.NFTypeSerializer;
 import com.netflix.zeno.serializer.SerializerFactory;
 import com.netflix.zeno.serializer.common.IntegerSerializer;
+import com.netflix.zeno.serializer.common.ListSerializer;
 import com.netflix.zeno.testpojos.TypeA;
 import com.netflix.zeno.testpojos.TypeASerializer;
 import com.netflix.zeno.testpojos.TypeB;
@@ -29,11 +32,19 @@ import com.netflix.zeno.testpojos.TypeD;
 import com.netflix.zeno.testpojos.TypeG;
 import com.netflix.zeno.testpojos.TypeGSerializer;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.StringReader;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
 
 import org.junit.Assert;
 import org.junit.Before;
@@ -139,6 +150,113 @@ public class JsonSerializationTest {
         }
     }
 
+    @Test
+    public void importsJsonArrayIntoStateEngine() throws IOException {
+        JsonSerializationFramework jsonFramework = new JsonSerializationFramework(typeCSerializerFactory);
+        String json = "[" + jsonFramework.serializeAsJson("TypeC", createTestTypeC(), false) + ", null, "
+                          + jsonFramework.serializeAsJson("TypeC", new TypeC(new HashMap<String, TypeA>(), new ArrayList<TypeB>()), false) + "]";
+
+        FastBlobStateEngine stateEngine = new FastBlobStateEngine(typeCSerializerFactory);
+
+        Assert.assertEquals(2, jsonFramework.importJson("TypeC", new StringReader(json), stateEngine));
+
+        Set<TypeC> imported = importedObjects(stateEngine, "TypeC");
+        Assert.assertEquals(2, imported.size());
+        Assert.assertTrue(imported.contains(createTestTypeC()));
+    }
+
+    @Test
+    public void importsNewlineDelimitedJsonIntoStateEngine() throws IOException {
+        JsonSerializationFramework jsonFramework = new JsonSerializationFramework(typeASerializerFactory);
+
+        StringBuilder json = new StringBuilder();
+        for(int i=0;i<5000;i++) {
+            json.append(jsonFramework.serializeAsJson("TypeA", new TypeA(i, i * 2), false)).append("\n");
+        }
+
+        FastBlobStateEngine stateEngine = new FastBlobStateEngine(typeASerializerFactory);
+
+        Assert.assertEquals(5000, jsonFramework.importNewlineDelimitedJson("TypeA", new StringReader(json.toString()), stateEngine, 4));
+
+        Set<TypeA> imported = importedObjects(stateEngine, "TypeA");
+        Assert.assertEquals(5000, imported.size());
+        Assert.assertTrue(imported.contains(new TypeA(4999, 9998)));
+    }
+
+    @Test
+    public void exportsStateEngineWithOrdinalReferences() throws IOException {
+        FastBlobStateEngine stateEngine = new FastBlobStateEngine(typeCSerializerFactory);
+        stateEngine.add("TypeC", createTestTypeC());
+        importedObjects(stateEngine, "TypeC");
+
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        new JsonStateSerializationFramework(typeCSerializerFactory).exportState(stateEngine, os);
+
+        JsonNode root = new ObjectMapper().readTree(os.toByteArray());
+
+        JsonNode typeC = root.get("TypeC").get(0);
+        Assert.assertEquals(0, typeC.get("_ordinal").intValue());
+        Assert.assertTrue(typeC.get("typeA").isInt());
+        Assert.assertTrue(typeC.get("typeB").isInt());
+
+        JsonNode typeAMap = findByOrdinal(root.get(TypeCSerializer.MAP_SERIALIZER.getName()), typeC.get("typeA").intValue());
+        Map<String, Integer> typeAOrdinals = new HashMap<String, Integer>();
+        for(JsonNode entry : typeAMap.get("map")) {
+            String key = findByOrdinal(root.get("Strings"), entry.get("key").intValue()).get("value").textValue();
+            typeAOrdinals.put(key, entry.get("value").intValue());
+        }
+
+        JsonNode typeA = findByOrdinal(root.get("TypeA"), typeAOrdinals.get("a34").intValue());
+        Assert.assertEquals(3, typeA.get("val1").intValue());
+        Assert.assertEquals(4, typeA.get("val2").intValue());
+
+        JsonNode typeBList = findByOrdinal(root.get(TypeCSerializer.LIST_SERIALIZER.getName()), typeC.get("typeB").intValue());
+        Assert.assertEquals(2, typeBList.get("list").size());
+        JsonNode typeB = findByOrdinal(root.get("TypeB"), typeBList.get("list").get(1).intValue());
+        Assert.assertEquals("six", typeB.get("val2").textValue());
+    }
+
+    @Test
+    public void exportsPrimitiveListElementsInline() throws IOException {
+        SerializerFactory factory = new SerializerFactory() {
+            public NFTypeSerializer<?>[] createSerializers() {
+                return new NFTypeSerializer<?>[] { new ListSerializer<Integer>("IntegerList", new IntegerSerializer()) };
+            }
+        };
+
+        FastBlobStateEngine stateEngine = new FastBlobStateEngine(factory);
+        stateEngine.add("IntegerList", Arrays.asList(100, 200));
+        importedObjects(stateEngine, "IntegerList");
+
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        new JsonStateSerializationFramework(factory).exportState(stateEngine, os);
+
+        JsonNode list = findByOrdinal(new ObjectMapper().readTree(os.toByteArray()).get("IntegerList"), 0).get("list");
+        Assert.assertEquals(100, list.get(0).intValue());
+        Assert.assertEquals(200, list.get(1).intValue());
+    }
+
+    private JsonNode findByOrdinal(JsonNode typeSection, int ordinal) {
+        for(JsonNode node : typeSection) {
+            if(node.get(JsonStateSerializationFramework.ORDINAL_FIELD_NAME).intValue() == ordinal)
+                return node;
+        }
+        Assert.fail("No object with ordinal " + ordinal);
+        return null;
+    }
+
+    private <T> Set<T> importedObjects(FastBlobStateEngine stateEngine, String type) {
+        stateEngine.prepareForWrite();
+        stateEngine.fillDeserializationStatesFromSerializedData();
+
+        Set<T> objects = new HashSet<T>();
+        FastBlobTypeDeserializationState<T> typeState = stateEngine.getTypeDeserializationState(type);
+        for(T obj : typeState) {
+            objects.add(obj);
+        }
+        return objects;
+    }
+
     private TypeC createTestTypeC() {
         Map<String, TypeA> typeAMap = new HashMap<String, TypeA>();
         List<TypeB> typeBs = new ArrayList<TypeB>();
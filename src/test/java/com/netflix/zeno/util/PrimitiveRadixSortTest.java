@@ -0,0 +1,77 @@
+/*
+ *
+ *  Copyright 2014 Netflix, Inc.
+ *
+ *     Licensed under the Apache License, Version 2.0 (the "License");
+ *     you may not use this file except in compliance with the License.
+ *     You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *     Unless required by applicable law or agreed to in writing, software
+ *     distributed under the License is distributed on an "AS IS" BASIS,
+ *     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *     See the License for the specific language governing permissions and
+ *     limitations under the License.
+ *
+ */
+package com.netflix.zeno.util;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class PrimitiveRadixSortTest {
+
+    private final Random rand = new Random(1234);
+
+    @Test
+    public void sortsIntsInSignedOrder() {
+        // the same counts are reused by each sort
+        int counts[][] = PrimitiveRadixSort.newIntCounts();
+
+        for(int bound : new int[] { 2, 1000, 1 << 20, Integer.MAX_VALUE }) {
+            int arr[] = new int[5000];
+            for(int i=0;i<arr.length;i++)
+                arr[i] = rand.nextInt(10) == 0 ? -rand.nextInt(bound) : rand.nextInt(bound);
+
+            int expected[] = Arrays.copyOf(arr, 4000);
+            Arrays.sort(expected);
+
+            PrimitiveRadixSort.sort(arr, 4000, new int[4000], counts);
+
+            Assert.assertArrayEquals(expected, Arrays.copyOf(arr, 4000));
+        }
+    }
+
+    @Test
+    public void sortsLongsInSignedOrder() {
+        long arr[] = new long[5000];
+        for(int i=0;i<arr.length;i++) {
+            /// encoded the same way as map entries: value ordinal in the high bits, key ordinal in the low bits, -1 for null.
+            int keyOrdinal = rand.nextInt(20) == 0 ? -1 : rand.nextInt(100000);
+            int valueOrdinal = rand.nextInt(20) == 0 ? -1 : rand.nextInt(100000);
+            arr[i] = ((long)valueOrdinal << 32) | (keyOrdinal & 0xFFFFFFFFL);
+        }
+
+        long expected[] = arr.clone();
+        Arrays.sort(expected);
+
+        PrimitiveRadixSort.sort(arr, arr.length, new long[arr.length], PrimitiveRadixSort.newLongCounts());
+
+        Assert.assertArrayEquals(expected, arr);
+    }
+
+    @Test
+    public void sortsEmptyAndUniformRanges() {
+        int empty[] = new int[0];
+        PrimitiveRadixSort.sort(empty, 0, new int[0], PrimitiveRadixSort.newIntCounts());
+
+        long uniform[] = new long[] { 7, 7, 7, 7 };
+        PrimitiveRadixSort.sort(uniform, 4, new long[4], PrimitiveRadixSort.newLongCounts());
+        Assert.assertArrayEquals(new long[] { 7, 7, 7, 7 }, uniform);
+    }
+
+}
@@ -0,0 +1,125 @@
+/*
+ *
+ *  Copyright 2014 Netflix, Inc.
+ *
+ *     Licensed under the Apache License, Version 2.0 (the "License");
+ *     you may not use this file except in compliance with the License.
+ *     You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *     Unless required by applicable law or agreed to in writing, software
+ *     distributed under the License is distributed on an "AS IS" BASIS,
+ *     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *     See the License for the specific language governing permissions and
+ *     limitations under the License.
+ *
+ */
+package com.netflix.zeno.util.collections.heapfriendly;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class HeapFriendlyMapArrayRecyclerTest {
+
+    private HeapFriendlyMapArrayRecycler recycler;
+
+    @Before
+    public void setUp() {
+        recycler = new HeapFriendlyMapArrayRecycler();
+    }
+
+    @Test
+    public void concurrentlyBuiltMapsReuseArraysFromTwoCyclesAgo() throws InterruptedException {
+        List<HeapFriendlyHashMap<Integer, Integer>> maps = buildMapsConcurrently(8, 20000);
+        long allocatedAfterFirstCycle = recycler.getNumAllocatedArrays();
+
+        for(int cycle=0;cycle<4;cycle++) {
+            recycler.swapCycleObjectArrays();
+            for(HeapFriendlyHashMap<Integer, Integer> map : maps)
+                map.releaseObjectArrays();
+            recycler.clearNextCycleObjectArrays(4);
+
+            maps = buildMapsConcurrently(8, 20000);
+
+            for(HeapFriendlyHashMap<Integer, Integer> map : maps) {
+                Assert.assertEquals(20000, map.size());
+                Assert.assertEquals(Integer.valueOf(19999), map.get(Integer.valueOf(19999)));
+            }
+        }
+
+        /// the first two cycles allocate arrays, after which every array is recycled.
+        Assert.assertEquals(allocatedAfterFirstCycle * 2, recycler.getNumAllocatedArrays());
+    }
+
+    @Test
+    public void arraysCachedByTerminatedThreadsAreReturnedOnSwap() throws InterruptedException {
+        for(int i=0;i<100;i++)
+            recycler.returnObjectArray(new Object[HeapFriendlyMapArrayRecycler.INDIVIDUAL_OBJECT_ARRAY_SIZE]);
+        recycler.swapCycleObjectArrays();
+
+        Thread thread = new Thread() {
+            public void run() {
+                recycler.getObjectArray();
+            }
+        };
+        thread.start();
+        thread.join();
+
+        Assert.assertTrue(recycler.getNumCurrentCycleArrays() < 99);
+
+        recycler.swapCycleObjectArrays();
+
+        Assert.assertEquals(99, recycler.getNumNextCycleArrays());
+        Assert.assertEquals(0, recycler.getNumAllocatedArrays());
+    }
+
+    @Test
+    public void clearsNextCycleArraysInParallel() {
+        List<Object[]> arrays = new ArrayList<Object[]>();
+
+        for(int i=0;i<50;i++) {
+            Object arr[] = new Object[HeapFriendlyMapArrayRecycler.INDIVIDUAL_OBJECT_ARRAY_SIZE];
+            arr[i] = Integer.valueOf(i);
+            arrays.add(arr);
+            recycler.returnObjectArray(arr);
+        }
+
+        recycler.clearNextCycleObjectArrays(3);
+
+        for(Object[] arr : arrays) {
+            for(Object obj : arr)
+                Assert.assertNull(obj);
+        }
+    }
+
+    private List<HeapFriendlyHashMap<Integer, Integer>> buildMapsConcurrently(int numMaps, final int numEntries) throws InterruptedException {
+        final List<HeapFriendlyHashMap<Integer, Integer>> maps = new ArrayList<HeapFriendlyHashMap<Integer, Integer>>();
+        Thread threads[] = new Thread[numMaps];
+
+        for(int i=0;i<numMaps;i++) {
+            threads[i] = new Thread() {
+                public void run() {
+                    HeapFriendlyHashMap<Integer, Integer> map = new HeapFriendlyHashMap<Integer, Integer>(numEntries, recycler);
+                    for(int j=0;j<numEntries;j++)
+                        map.put(Integer.valueOf(j), Integer.valueOf(j));
+
+                    synchronized(maps) {
+                        maps.add(map);
+                    }
+                }
+            };
+            threads[i].start();
+        }
+
+        for(Thread thread : threads)
+            thread.join();
+
+        return maps;
+    }
+
+}